@@ -37,6 +37,11 @@ import org.biofuzztk.cfg.BioFuzzAttackTag.TagType;
  * grammar as a graph (CFG-graph). The implementation uses the simplest possible 
  * representation of a graph, i.e. an adjacency list.
  * 
+ * Once the CFG-graph is complete, it can be frozen into a compressed sparse
+ * row (CSR) form that is read by getChoiceCnt() and getChoice() without
+ * boxing. The frozen form is rebuilt on the first access after the 
+ * CFG-graph was modified.
+ * 
  * @author julian
  *
  */
@@ -46,10 +51,49 @@ public class BioFuzzAttackCfg {
 	
 	private Vector<BioFuzzAttackTag> matDesc;
 	private HashMap<Number,List<Number>> matCoord;
+	private int version;
+	private BioFuzzCfgRewrite rewrite;
+	private BioFuzzSymbolTable symbols;
+	
+	/**
+	 * 
+	 * A frozen adjacency list. The successors of node i are stored in 
+	 * targets from offsets[i] to offsets[i+1] (exclusive).
+	 * 
+	 */
+	private static class Csr {
+		private final int version;
+		private final int [] offsets;
+		private final int [] targets;
+		
+		Csr(int version, int [] offsets, int [] targets) {
+			this.version = version;
+			this.offsets = offsets;
+			this.targets = targets;
+		}
+	}
+	
+	// frozen CFG-graph and frozen CFG-graph as seen by the parser
+	private volatile Csr csr;
+	private volatile Csr parseCsr;
 	
 	public BioFuzzAttackCfg() {
 		this.matDesc = new Vector<BioFuzzAttackTag>();
 		this.matCoord = new HashMap<Number,List<Number>>();
+		this.version = 0;
+		this.rewrite = null;
+		this.symbols = null;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return a counter that is incremented whenever the CFG-graph is modified.
+	 * 
+	 */
+	public int getVersion() {
+		return this.version;
 	}
 
 	/**
@@ -59,6 +103,8 @@ public class BioFuzzAttackCfg {
 	 */
 	public void setMatDesc(Vector<BioFuzzAttackTag> matDesc) {
 		this.matDesc = matDesc;
+		this.version++;
+		this.rewrite = null;
 	}
 
 	/**
@@ -71,6 +117,8 @@ public class BioFuzzAttackCfg {
 	 * 
 	 */
 	public void addPoint(int a, int b) {
+		this.version++;
+		this.rewrite = null;
 		
 		if (!this.matCoord.containsKey(a)){
 			List<Number> l = new ArrayList<Number>();
@@ -88,7 +136,8 @@ public class BioFuzzAttackCfg {
 	
 	/**
 	 * 
-	 * Returns a list of successors for a given node.
+	 * Returns a list of successors for a given node. The list must not be
+	 * modified, use addPoint() instead.
 	 * 
 	 * @param idx identifies a node (node A).
 	 * @return a list of indices that identify all successors from node A. 
@@ -100,6 +149,190 @@ public class BioFuzzAttackCfg {
 		return this.matCoord.get(idx);
 	}
 	
+	/**
+	 * 
+	 * Freezes the CFG-graph and the CFG-graph as seen by the parser. This 
+	 * is done on demand anyway, but can be called once the grammar is 
+	 * complete to keep it out of the first parsing run.
+	 * 
+	 */
+	public void freeze() {
+		getCsr();
+		getParseCsr();
+	}
+	
+	/**
+	 * 
+	 * Sets the symbol table of the grammar. Terminals that are appended 
+	 * afterwards are interned by appendAtag().
+	 * 
+	 * @param symbols the symbol table of the grammar.
+	 * 
+	 */
+	void setSymbolTable(BioFuzzSymbolTable symbols) {
+		this.symbols = symbols;
+	}
+	
+	private Csr getCsr() {
+		Csr c = this.csr;
+		if(c == null || c.version != this.version) {
+			int n = this.matDesc.size();
+			for(Number k : this.matCoord.keySet()) {
+				n = Math.max(n, k.intValue() + 1);
+			}
+			c = build(n, this.matCoord);
+			this.csr = c;
+		}
+		return c;
+	}
+	
+	private Csr getParseCsr() {
+		if(this.rewrite == null)
+			return getCsr();
+		
+		Csr c = this.parseCsr;
+		if(c == null || c.version != this.version) {
+			List<List<Number>> lists = new ArrayList<List<Number>>();
+			for(int i = 0; i < this.rewrite.getDescNrs(); i++) {
+				lists.add(this.rewrite.getChoicesByIdx(i));
+			}
+			c = build(lists);
+			this.parseCsr = c;
+		}
+		return c;
+	}
+	
+	private Csr build(int n, HashMap<Number,List<Number>> coord) {
+		List<List<Number>> lists = new ArrayList<List<Number>>(n);
+		for(int i = 0; i < n; i++) {
+			lists.add(coord.get(i));
+		}
+		return build(lists);
+	}
+	
+	private Csr build(List<List<Number>> lists) {
+		int [] offsets = new int[lists.size() + 1];
+		for(int i = 0; i < lists.size(); i++) {
+			List<Number> l = lists.get(i);
+			offsets[i + 1] = offsets[i] + (l == null ? 0 : l.size());
+		}
+		
+		int [] targets = new int[offsets[lists.size()]];
+		for(int i = 0; i < lists.size(); i++) {
+			List<Number> l = lists.get(i);
+			if(l == null)
+				continue;
+			for(int j = 0; j < l.size(); j++) {
+				targets[offsets[i] + j] = l.get(j).intValue();
+			}
+		}
+		return new Csr(this.version, offsets, targets);
+	}
+	
+	/**
+	 * 
+	 * Returns the number of successors of a node in the frozen CFG-graph.
+	 * 
+	 * @param idx identifies a node.
+	 * @return the number of successors or 0 if idx is unknown.
+	 * 
+	 */
+	public int getChoiceCnt(int idx) {
+		Csr c = getCsr();
+		if(idx < 0 || idx >= c.offsets.length - 1)
+			return 0;
+		return c.offsets[idx + 1] - c.offsets[idx];
+	}
+	
+	/**
+	 * 
+	 * Returns a successor of a node in the frozen CFG-graph. The order of
+	 * the successors is the same as in getChoicesByIdx().
+	 * 
+	 * @param idx identifies a node.
+	 * @param k index of the successor (smaller than getChoiceCnt(idx)).
+	 * @return the index of the successor.
+	 * 
+	 */
+	public int getChoice(int idx, int k) {
+		Csr c = getCsr();
+		assert(k >= 0 && c.offsets[idx] + k < c.offsets[idx + 1]);
+		return c.targets[c.offsets[idx] + k];
+	}
+	
+	/**
+	 * 
+	 * Returns the number of successors of a node in the frozen CFG-graph
+	 * as seen by the parser (see getParseChoicesByIdx()).
+	 * 
+	 * @param idx identifies a node.
+	 * @return the number of successors or 0 if idx is unknown.
+	 * 
+	 */
+	public int getParseChoiceCnt(int idx) {
+		Csr c = getParseCsr();
+		if(idx < 0 || idx >= c.offsets.length - 1)
+			return 0;
+		return c.offsets[idx + 1] - c.offsets[idx];
+	}
+	
+	/**
+	 * 
+	 * Returns a successor of a node in the frozen CFG-graph as seen by the
+	 * parser (see getParseChoicesByIdx()).
+	 * 
+	 * @param idx identifies a node.
+	 * @param k index of the successor (smaller than getParseChoiceCnt(idx)).
+	 * @return the index of the successor.
+	 * 
+	 */
+	public int getParseChoice(int idx, int k) {
+		Csr c = getParseCsr();
+		assert(k >= 0 && c.offsets[idx] + k < c.offsets[idx + 1]);
+		return c.targets[c.offsets[idx] + k];
+	}
+	
+	/**
+	 * 
+	 * Returns a list of successors for a given node as seen by the parser,
+	 * i.e. from the rewritten CFG-graph if left recursion has been
+	 * eliminated.
+	 * 
+	 * @param idx identifies a node (node A).
+	 * @return a list of indices that identify all successors from node A. 
+	 * 
+	 */
+	public List<Number> getParseChoicesByIdx(int idx) {
+		if(this.rewrite != null)
+			return this.rewrite.getChoicesByIdx(idx);
+		return getChoicesByIdx(idx);
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the rewritten CFG-graph or null if the production rule has
+	 * not been rewritten.
+	 * 
+	 */
+	public BioFuzzCfgRewrite getRewrite() {
+		return this.rewrite;
+	}
+	
+	/**
+	 * 
+	 * Replaces the CFG-graph that is used by the parser. The rewrite is 
+	 * dropped as soon as the CFG-graph is modified.
+	 * 
+	 * @param rewrite the rewritten CFG-graph or null.
+	 * 
+	 */
+	public void setRewrite(BioFuzzCfgRewrite rewrite) {
+		this.rewrite = rewrite;
+		this.version++;
+	}
+	
 	/**
 	 * 
 	 * Returns the number of nodes.
@@ -120,12 +353,15 @@ public class BioFuzzAttackCfg {
 	 */
 	public void addAtag(BioFuzzAttackTag atag) {
 		this.matDesc.add(atag);
+		this.version++;
+		this.rewrite = null;
 	}
 	
 	/**
 	 * 
 	 * Extends the CFG-graph after creation. This is useful if
 	 * you want to modify production rules that are already present.
+	 * Terminals appended to a frozen grammar are interned right away.
 	 * 
 	 * @param atag a node of the CFG-graph.
 	 * 
@@ -166,11 +402,16 @@ public class BioFuzzAttackCfg {
 		
 		addPoint(0,coord);
 		addPoint(coord,coord+1);
+		
+		// the parser only reads the symbols of a frozen grammar
+		if(this.symbols != null)
+			atag.getSymbol(this.symbols);
 	}
 	
 	/**
 	 * 
-	 * Translates a node index to the 'real' node.
+	 * Translates a node index to the 'real' node. Copies that have been
+	 * inlined by a rewrite are numbered after the nodes of the CFG-graph.
 	 * 
 	 * @param descIdx
 	 * @return a node of the CFG-graph.
@@ -179,6 +420,8 @@ public class BioFuzzAttackCfg {
 	public BioFuzzAttackTag getAtagByIdx(int descIdx) {
 		if ( descIdx >= 0 && this.matDesc.size() > descIdx ) {
 			return this.matDesc.get(descIdx);
+		} else if (this.rewrite != null) {
+			return this.rewrite.getCopy(descIdx);
 		} else {
 			return null;
 		}
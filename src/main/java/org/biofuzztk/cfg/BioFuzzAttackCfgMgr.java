@@ -20,9 +20,13 @@
 
 package org.biofuzztk.cfg;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 
 /**
@@ -42,8 +46,19 @@ public class BioFuzzAttackCfgMgr {
 	 */
 	private Map<String,BioFuzzAttackCfg> cfgMap;
 	
+	private BioFuzzFirstSets firstSets;
+	private long firstSetsVersion;
+	private BioFuzzSymbolTable symbols;
+	private String digest;
+	private long digestVersion;
+	
 	public BioFuzzAttackCfgMgr() {
 		this.cfgMap = new HashMap<String,BioFuzzAttackCfg>();
+		this.firstSets = null;
+		this.firstSetsVersion = 0;
+		this.symbols = new BioFuzzSymbolTable();
+		this.digest = null;
+		this.digestVersion = 0;
 	}
 	
 	/**
@@ -57,6 +72,8 @@ public class BioFuzzAttackCfgMgr {
 	public BioFuzzAttackCfg createAttackCfg(String name) {
 		BioFuzzAttackCfg cfg = new BioFuzzAttackCfg();
 		cfgMap.put(name, cfg);
+		this.firstSets = null;
+		this.digest = null;
 		return cfg;
 	}
 	
@@ -93,6 +110,132 @@ public class BioFuzzAttackCfgMgr {
 	 */
 	public void setCfgMap(HashMap<String, BioFuzzAttackCfg> cfgMap) {
 		this.cfgMap = cfgMap;
+		this.firstSets = null;
+		this.digest = null;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return a number that changes whenever a production rule is modified.
+	 * 
+	 */
+	public long getVersion() {
+		long version = 0;
+		for(BioFuzzAttackCfg cfg : this.cfgMap.values()) {
+			version += cfg.getVersion();
+		}
+		return version;
+	}
+	
+	/**
+	 * 
+	 * Computes a hash of the production rules, i.e. of the names, the 
+	 * tags and the edges of all CFG-graphs and their rewrites. Unlike getVersion(), the hash
+	 * identifies a grammar, so equal grammars have equal hashes. It is 
+	 * recomputed if a production rule has been modified.
+	 * 
+	 * @return the SHA-1 hash of this grammar as a hex string.
+	 * 
+	 */
+	public synchronized String getDigest() {
+		long version = getVersion();
+		
+		if(this.digest != null && this.digestVersion == version)
+			return this.digest;
+		
+		StringBuilder sb = new StringBuilder();
+		for(String key : new TreeSet<String>(this.cfgMap.keySet())) {
+			BioFuzzAttackCfg cfg = this.cfgMap.get(key);
+			sb.append(key).append('\n');
+			for(int i = 0; i < cfg.getDescNrs(); i++) {
+				BioFuzzAttackTag atag = cfg.getAtagByIdx(i);
+				sb.append(atag.getTagType()).append(' ').append(atag.getName()).append(' ');
+				sb.append(cfg.getChoicesByIdx(i)).append('\n');
+			}
+			// the parser sees the rewritten CFG-graph
+			BioFuzzCfgRewrite rewrite = cfg.getRewrite();
+			for(int i = 0; rewrite != null && i < rewrite.getDescNrs(); i++) {
+				if(rewrite.isCopy(i))
+					sb.append(rewrite.getOriginCfg(i).getAtagByIdx(rewrite.getOriginIdx(i)).getName()).append(' ');
+				sb.append(rewrite.getChoicesByIdx(i)).append('\n');
+			}
+		}
+		
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			StringBuilder hex = new StringBuilder();
+			for(byte b : md.digest(sb.toString().getBytes(StandardCharsets.UTF_8))) {
+				hex.append(String.format("%02x", b & 0xff));
+			}
+			this.digest = hex.toString();
+			this.digestVersion = version;
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		return this.digest;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the symbol table of the terminals of this grammar.
+	 * 
+	 */
+	public BioFuzzSymbolTable getSymbolTable() {
+		return this.symbols;
+	}
+	
+	/**
+	 * 
+	 * Returns the FIRST sets of all production rules. The FIRST sets
+	 * are recomputed if a production rule has been modified.
+	 * 
+	 * @return the FIRST sets.
+	 * 
+	 */
+	public synchronized BioFuzzFirstSets getFirstSets() {
+		long version = getVersion();
+		
+		if(this.firstSets == null || this.firstSetsVersion != version) {
+			this.firstSets = new BioFuzzFirstSets(this);
+			this.firstSetsVersion = version;
+		}
+		return this.firstSets;
+	}
+
+	/**
+	 * 
+	 * Freezes the CFG-graphs of all production rules (see 
+	 * BioFuzzAttackCfg.freeze()), interns the symbols of all terminals
+	 * and computes the FIRST sets. This should be called once the grammar
+	 * is complete.
+	 * 
+	 */
+	public void freeze() {
+		for(BioFuzzAttackCfg cfg : this.cfgMap.values()) {
+			cfg.freeze();
+			cfg.setSymbolTable(this.symbols);
+			for(int i = 0; i < cfg.getDescNrs(); i++) {
+				cfg.getAtagByIdx(i).getSymbol(this.symbols);
+			}
+		}
+		getFirstSets();
+	}
+	
+	/**
+	 * 
+	 * Sets FIRST sets that were computed before, e.g. by a loaded 
+	 * snapshot. They are recomputed once a production rule is modified.
+	 * 
+	 * @param firstSets the FIRST sets of this grammar.
+	 * 
+	 */
+	synchronized void setFirstSets(BioFuzzFirstSets firstSets) {
+		this.firstSets = firstSets;
+		this.firstSetsVersion = getVersion();
 	}
 
 	@Override
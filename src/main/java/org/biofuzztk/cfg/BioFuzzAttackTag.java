@@ -120,6 +120,23 @@ public class BioFuzzAttackTag {
 	private TagType tagType;
 	private int coord;
 	private Node node;
+	private BioFuzzRexpMatcher matcher;
+	private volatile Symbol symbol;
+	
+	/**
+	 * 
+	 * The symbol of a tag in the symbol table of a grammar.
+	 * 
+	 */
+	private static class Symbol {
+		private final BioFuzzSymbolTable table;
+		private final int value;
+		
+		Symbol(BioFuzzSymbolTable table, int value) {
+			this.table = table;
+			this.value = value;
+		}
+	}
 	
 
 	public BioFuzzAttackTag(Node node,String name, TagType tagType, int coord) {
@@ -127,6 +144,7 @@ public class BioFuzzAttackTag {
 		this.tagType = tagType;
 		this.coord = coord;
 		this.node = node;
+		this.symbol = null;
 	}
 	
 	public BioFuzzAttackTag(Node node,String name, TagType tagType) {
@@ -134,6 +152,7 @@ public class BioFuzzAttackTag {
 		this.tagType = tagType;
 		this.coord = 0;
 		this.node = node;
+		this.symbol = null;
 	}	
 	
 	public BioFuzzAttackTag() {
@@ -141,6 +160,7 @@ public class BioFuzzAttackTag {
 		this.tagType = TagType.ROOT;
 		this.coord = 0;
 		this.node = null;
+		this.symbol = null;
 	}	
 	
 	public BioFuzzAttackTag(BioFuzzAttackTag atag) {
@@ -148,6 +168,8 @@ public class BioFuzzAttackTag {
 		this.tagType = atag.tagType;
 		this.coord = atag.coord;
 		this.node = atag.node;
+		this.matcher = atag.matcher;
+		this.symbol = atag.symbol;
 	}
 	
 	/**
@@ -176,6 +198,8 @@ public class BioFuzzAttackTag {
 
 	public void setName(String name) {
 		this.name = name;
+		this.matcher = null;
+		this.symbol = null;
 	}
 
 	public TagType getTagType() {
@@ -184,6 +208,56 @@ public class BioFuzzAttackTag {
 
 	public void setTagType(TagType tagType) {
 		this.tagType = tagType;
+		this.matcher = null;
+		this.symbol = null;
+	}
+	
+	/**
+	 * 
+	 * Returns the symbol of a TERMINAL tag in the symbol table of a 
+	 * grammar. The symbol is interned on the first call.
+	 * 
+	 * @param table the symbol table of the grammar this tag belongs to.
+	 * @return the symbol of a TERMINAL tag or BioFuzzSymbolTable.NONE.
+	 * 
+	 */
+	public int getSymbol(BioFuzzSymbolTable table) {
+		Symbol sym = this.symbol;
+		
+		if(sym == null || sym.table != table) {
+			sym = new Symbol(table, this.tagType == TagType.TERMINAL && this.name != null ? 
+					table.intern(this.name) : BioFuzzSymbolTable.NONE);
+			this.symbol = sym;
+		}
+		return sym.value;
+	}
+	
+	/**
+	 * 
+	 * Returns the compiled regular expression of a REGEXP tag. The regular
+	 * expression is compiled on the first call.
+	 * 
+	 * @return the compiled regular expression or null if this is not a REGEXP tag.
+	 * 
+	 */
+	public BioFuzzRexpMatcher getMatcher() {
+		if(this.tagType != TagType.REGEXP)
+			return null;
+		if(this.matcher == null)
+			this.matcher = new BioFuzzRexpMatcher(this.name);
+		return this.matcher;
+	}
+
+	/**
+	 * 
+	 * Sets the compiled regular expression of a REGEXP tag.
+	 * 
+	 * @param matcher the compiled regular expression of the name of this tag.
+	 * 
+	 */
+	void setMatcher(BioFuzzRexpMatcher matcher) {
+		assert(this.tagType == TagType.REGEXP && matcher.getRexp().equals(this.name));
+		this.matcher = matcher;
 	}
 
 	public int getCoord() {
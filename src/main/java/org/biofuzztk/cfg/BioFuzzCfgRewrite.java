@@ -0,0 +1,352 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.cfg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * 
+ * The rewritten CFG-graph of a production rule that is used by the parser
+ * instead of the original one. The rewrite is the result of eliminating 
+ * left recursion (see BioFuzzGrammarNormalizer). It keeps enough 
+ * information to translate a derivation of the rewritten graph back to the
+ * production rules of the original grammar:
+ * 
+ * - A fold edge (p,s) is added to eliminate the left recursive node n. 
+ * When s follows p, all nodes derived so far become children of n.
+ * 
+ * - A copy is a node of another production rule that has been inlined in 
+ * place of a non-terminal (the site). Consecutive copies of the same site
+ * that are connected by an internal edge are children of the site.
+ * 
+ * Copies are numbered after the nodes of the original CFG-graph.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzCfgRewrite {
+	
+	/**
+	 * 
+	 * Origin of a copy.
+	 * 
+	 * @author julian
+	 *
+	 */
+	private static class Origin {
+		private final BioFuzzAttackCfg cfg;
+		private final int idx;
+		private final int site;
+		
+		Origin(BioFuzzAttackCfg cfg, int idx, int site) {
+			this.cfg = cfg;
+			this.idx = idx;
+			this.site = site;
+		}
+	}
+	
+	private HashMap<Number,List<Number>> matCoord;
+	private int base;
+	private Vector<BioFuzzAttackTag> copies;
+	private Map<Integer,Origin> origins;
+	private Map<Long,Integer> folds;
+	private Set<Long> internal;
+	
+	/**
+	 * 
+	 * Constructor. The rewrite starts as a copy of the CFG-graph of cfg.
+	 * 
+	 * @param cfg production rule definition.
+	 * 
+	 */
+	BioFuzzCfgRewrite(BioFuzzAttackCfg cfg) {
+		this.matCoord = new HashMap<Number,List<Number>>();
+		this.base = cfg.getDescNrs();
+		this.copies = new Vector<BioFuzzAttackTag>();
+		this.origins = new HashMap<Integer,Origin>();
+		this.folds = new HashMap<Long,Integer>();
+		this.internal = new HashSet<Long>();
+		
+		for(int i = 0; i < this.base; i++) {
+			List<Number> choices = cfg.getChoicesByIdx(i);
+			if(choices != null)
+				this.matCoord.put(i, new ArrayList<Number>(choices));
+		}
+	}
+	
+	private static long edge(int a, int b) {
+		return ((long)a << 32) | (b & 0xffffffffL);
+	}
+	
+	/**
+	 * 
+	 * Returns the successors of a node in the rewritten CFG-graph.
+	 * 
+	 * @param idx identifies a node.
+	 * @return a list of indices of all successors or null.
+	 * 
+	 */
+	public List<Number> getChoicesByIdx(int idx) {
+		return this.matCoord.get(idx);
+	}
+	
+	/**
+	 * 
+	 * Checks whether an edge is present in the rewritten CFG-graph.
+	 * 
+	 * @param a a node.
+	 * @param b its successor.
+	 * @return true if the edge is present.
+	 * 
+	 */
+	boolean hasPoint(int a, int b) {
+		List<Number> l = this.matCoord.get(a);
+		if(l == null)
+			return false;
+		for(Number n : l) {
+			if(n.intValue() == b)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * 
+	 * Adds an edge to the rewritten CFG-graph.
+	 * 
+	 * @param a a node.
+	 * @param b its successor.
+	 * @return false if the edge was already present.
+	 * 
+	 */
+	boolean addPoint(int a, int b) {
+		if(hasPoint(a,b))
+			return false;
+		
+		List<Number> l = this.matCoord.get(a);
+		if(l == null) {
+			l = new ArrayList<Number>();
+			this.matCoord.put(a, l);
+		}
+		l.add(b);
+		return true;
+	}
+	
+	/**
+	 * 
+	 * Removes an edge from the rewritten CFG-graph.
+	 * 
+	 * @param a a node.
+	 * @param b its successor.
+	 * 
+	 */
+	void removePoint(int a, int b) {
+		List<Number> l = this.matCoord.get(a);
+		if(l == null)
+			return;
+		for(int i = 0; i < l.size(); i++) {
+			if(l.get(i).intValue() == b) {
+				l.remove(i);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * Adds a copy of a node of another production rule.
+	 * 
+	 * @param atag the node to copy.
+	 * @param cfg production rule definition of the node.
+	 * @param idx index of the node in cfg.
+	 * @param site index of the non-terminal the copy is inlined for.
+	 * @return the index of the copy.
+	 * 
+	 */
+	int addCopy(BioFuzzAttackTag atag, BioFuzzAttackCfg cfg, int idx, int site) {
+		int cidx = this.base + this.copies.size();
+		BioFuzzAttackTag copy = new BioFuzzAttackTag(atag);
+		copy.setCoord(cidx);
+		this.copies.add(copy);
+		this.origins.put(cidx, new Origin(cfg, idx, site));
+		return cidx;
+	}
+	
+	/**
+	 * 
+	 * Marks an edge as fold edge.
+	 * 
+	 * @param p a node.
+	 * @param s its successor.
+	 * @param n the left recursive node that is eliminated by (p,s).
+	 * 
+	 */
+	void addFold(int p, int s, int n) {
+		this.folds.put(edge(p,s), n);
+	}
+	
+	/**
+	 * 
+	 * Marks an edge between two copies of the same site as internal.
+	 * 
+	 * @param a a copy.
+	 * @param b its successor.
+	 * 
+	 */
+	void addInternal(int a, int b) {
+		this.internal.add(edge(a,b));
+	}
+	
+	/**
+	 * 
+	 * Translates an index to the node of the rewritten CFG-graph.
+	 * 
+	 * @param idx index of a copy.
+	 * @return the copy or null.
+	 * 
+	 */
+	BioFuzzAttackTag getCopy(int idx) {
+		int i = idx - this.base;
+		return (i >= 0 && i < this.copies.size()) ? this.copies.get(i) : null;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of nodes including copies.
+	 * 
+	 */
+	public int getDescNrs() {
+		return this.base + this.copies.size();
+	}
+	
+	/**
+	 * 
+	 * Checks whether an edge is a fold edge.
+	 * 
+	 * @param p a node.
+	 * @param s its successor.
+	 * @return the left recursive node that is eliminated by (p,s) or -1.
+	 * 
+	 */
+	public int getFold(int p, int s) {
+		Integer n = this.folds.get(edge(p,s));
+		return n == null ? -1 : n;
+	}
+	
+	/**
+	 * 
+	 * Checks whether a node is a copy.
+	 * 
+	 * @param idx index of a node.
+	 * @return true if the node is a copy.
+	 * 
+	 */
+	public boolean isCopy(int idx) {
+		return this.origins.containsKey(idx);
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @param idx index of a copy.
+	 * @return the production rule definition the copy comes from.
+	 * 
+	 */
+	public BioFuzzAttackCfg getOriginCfg(int idx) {
+		return this.origins.get(idx).cfg;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @param idx index of a copy.
+	 * @return the index of the copied node in its production rule definition.
+	 * 
+	 */
+	public int getOriginIdx(int idx) {
+		return this.origins.get(idx).idx;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @param idx index of a copy.
+	 * @return the index of the non-terminal the copy is inlined for.
+	 * 
+	 */
+	public int getSite(int idx) {
+		return this.origins.get(idx).site;
+	}
+	
+	/**
+	 * 
+	 * Checks whether an edge connects two copies of the same inlined 
+	 * non-terminal.
+	 * 
+	 * @param a a copy.
+	 * @param b its successor.
+	 * @return true if the edge is internal.
+	 * 
+	 */
+	public boolean isInternal(int a, int b) {
+		return this.internal.contains(edge(a,b));
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of fold edges.
+	 * 
+	 */
+	public int getFoldCnt() {
+		return this.folds.size();
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of copies.
+	 * 
+	 */
+	public int getCopyCnt() {
+		return this.copies.size();
+	}
+	
+	@Override
+	public String toString() {
+		return "BioFuzzCfgRewrite" + "\nMatcoord:" + this.matCoord + 
+				"\nCopies: " + this.copies + "\nFolds: " + this.folds.size() + "\n";
+	}
+
+}
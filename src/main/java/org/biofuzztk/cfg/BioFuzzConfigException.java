@@ -0,0 +1,73 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.cfg;
+
+/**
+ * 
+ * An error in a configuration file. The position of the error is 
+ * reported as line and column (both starting at 1, -1 if unknown).
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzConfigException extends Exception {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final String file;
+	private final int line;
+	private final int column;
+	
+	/**
+	 * 
+	 * Constructor.
+	 * 
+	 * @param file name of the configuration file.
+	 * @param line line of the error.
+	 * @param column column of the error.
+	 * @param msg description of the error.
+	 * @param cause the underlying exception or null.
+	 * 
+	 */
+	public BioFuzzConfigException(String file, int line, int column, String msg, Throwable cause) {
+		super(file + ":" + line + ":" + column + ": " + msg, cause);
+		this.file = file;
+		this.line = line;
+		this.column = column;
+	}
+	
+	public BioFuzzConfigException(String file, int line, int column, String msg) {
+		this(file, line, column, msg, null);
+	}
+	
+	public String getFile() {
+		return this.file;
+	}
+	
+	public int getLine() {
+		return this.line;
+	}
+	
+	public int getColumn() {
+		return this.column;
+	}
+
+}
@@ -20,11 +20,22 @@
 
 package org.biofuzztk.cfg;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Stack;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -67,7 +78,7 @@ public class BioFuzzConfigReader {
 			doc.getDocumentElement().normalize();
 			return doc;
 		} catch (Exception e) {
-			System.out.println(e.getMessage());
+			logger.error("cannot read " + fname + ": " + e.getMessage());
 		}
 		return null;
 	}
@@ -126,6 +137,8 @@ public class BioFuzzConfigReader {
 		case "REGEXP": {
 			String label = node.getAttributes().getNamedItem("label").getNodeValue();
 			BioFuzzAttackTag atag = createAndRegAttackTag(node,label,TagType.REGEXP,cfg);
+			// compile the regular expression once
+			logger.debug("compiled " + atag.getMatcher().toString());
 			
 			while(predStack.size() > 0) {
 				BioFuzzAttackTag elem = predStack.pop();
@@ -341,6 +354,9 @@ public class BioFuzzConfigReader {
 		System.out.println("parse");
 		Document doc = read(file);
 		
+		if(doc == null)
+			return null;
+		
 		NodeList rules = doc.getElementsByTagName("rule");
 		
 		BioFuzzAttackCfgMgr mgr = new BioFuzzAttackCfgMgr();
@@ -373,7 +389,362 @@ public class BioFuzzConfigReader {
 			}
 		}
 		
+		// freeze the CFG-graphs and compute FIRST sets once the grammar is complete
+		mgr.freeze();
+		
 		return mgr;	
 	}
+	
+	/**
+	 * 
+	 * Read the configuration file and create a datastructure from it. 
+	 * Optionally, left recursion is eliminated (see BioFuzzGrammarNormalizer).
+	 * 
+	 * @param file the path to the file.
+	 * @param normalize if true, left recursive production rules are rewritten.
+	 * @return datastructure that resembles the CFG-graph.
+	 * 
+	 */
+	public static BioFuzzAttackCfgMgr readConfigFile(String file, boolean normalize) {
+		BioFuzzAttackCfgMgr mgr = readConfigFile(file);
+		
+		if(normalize && mgr != null)
+			BioFuzzGrammarNormalizer.normalize(mgr);
+		
+		return mgr;
+	}
+	
+	/**
+	 * 
+	 * Read the configuration file and create a datastructure from it. The
+	 * datastructure is loaded from a snapshot (see BioFuzzGrammarSnapshot)
+	 * if there is one for the current content of the file. Otherwise, the 
+	 * file is read and the snapshot is written.
+	 * 
+	 * @param file the path to the file.
+	 * @param snapshot the path to the snapshot.
+	 * @return datastructure that resembles the CFG-graph.
+	 * 
+	 */
+	public static BioFuzzAttackCfgMgr readConfigFile(String file, String snapshot) {
+		byte [] hash = null;
+		
+		try {
+			hash = BioFuzzGrammarSnapshot.digest(file);
+			BioFuzzAttackCfgMgr mgr = BioFuzzGrammarSnapshot.read(snapshot, hash);
+			if(mgr != null) {
+				logger.debug("loaded snapshot " + snapshot);
+				return mgr;
+			}
+		} catch (IOException e) {
+			logger.warn("cannot read snapshot " + snapshot + ": " + e.getMessage());
+		}
+		
+		BioFuzzAttackCfgMgr mgr = readConfigFile(file);
+		
+		if(mgr != null && hash != null) {
+			try {
+				BioFuzzGrammarSnapshot.write(mgr, hash, snapshot);
+			} catch (IOException e) {
+				logger.warn("cannot write snapshot " + snapshot + ": " + e.getMessage());
+			}
+		}
+		
+		return mgr;
+	}
+	
+	/**
+	 * 
+	 * Read the configuration file with a StAX parser and create a 
+	 * datastructure from it. The file is read in a single pass without 
+	 * building a DOM, so besides the datastructure only the production 
+	 * rule that is currently read is kept in memory. The tags have no 
+	 * XML node.
+	 * 
+	 * @param file the path to the file.
+	 * @return datastructure that resembles the CFG-graph.
+	 * @throws BioFuzzConfigException if the file cannot be read or is not a valid configuration.
+	 * 
+	 */
+	public static BioFuzzAttackCfgMgr streamConfigFile(String file) throws BioFuzzConfigException {
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+			return streamConfig(in, file);
+		} catch (IOException e) {
+			throw new BioFuzzConfigException(file, -1, -1, e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * 
+	 * Read a configuration with a StAX parser and create a datastructure 
+	 * from it (see streamConfigFile()).
+	 * 
+	 * @param in the configuration.
+	 * @param name name of the configuration that is used in error messages.
+	 * @return datastructure that resembles the CFG-graph.
+	 * @throws BioFuzzConfigException if the configuration is not valid.
+	 * 
+	 */
+	public static BioFuzzAttackCfgMgr streamConfig(InputStream in, String name) throws BioFuzzConfigException {
+		XMLStreamReader r = null;
+		
+		try {
+			XMLInputFactory fact = XMLInputFactory.newInstance();
+			fact.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+			r = fact.createXMLStreamReader(in);
+			
+			BioFuzzAttackCfgMgr mgr = new StaxReader(r, name).read();
+			
+			// freeze the CFG-graphs and compute FIRST sets once the grammar is complete
+			mgr.freeze();
+			
+			return mgr;
+		} catch (XMLStreamException e) {
+			Location loc = e.getLocation();
+			throw new BioFuzzConfigException(name, loc == null ? -1 : loc.getLineNumber(), 
+					loc == null ? -1 : loc.getColumnNumber(), e.getMessage(), e);
+		} finally {
+			if(r != null) {
+				try {
+					r.close();
+				} catch (XMLStreamException e) {
+					logger.debug("cannot close " + name + ": " + e.getMessage());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * Builds the CFG-graphs while the configuration is read. This is the
+	 * counterpart of handleTok() for StAX. REGEXP tags with the same 
+	 * regular expression share the same compiled matcher.
+	 * 
+	 * @author julian
+	 *
+	 */
+	private static class StaxReader {
+		
+		private final XMLStreamReader r;
+		private final String name;
+		private final Map<String,BioFuzzRexpMatcher> matchers;
+		
+		StaxReader(XMLStreamReader r, String name) {
+			this.r = r;
+			this.name = name;
+			this.matchers = new HashMap<String,BioFuzzRexpMatcher>();
+		}
+		
+		BioFuzzAttackCfgMgr read() throws XMLStreamException, BioFuzzConfigException {
+			BioFuzzAttackCfgMgr mgr = new BioFuzzAttackCfgMgr();
+			
+			while(this.r.hasNext()) {
+				if(this.r.next() == XMLStreamConstants.START_ELEMENT && this.r.getLocalName().equals("rule"))
+					rule(mgr);
+			}
+			return mgr;
+		}
+		
+		/**
+		 * 
+		 * Reads a production rule. The reader is positioned at the start
+		 * of the rule element and is left at its end.
+		 * 
+		 * @param mgr the grammar.
+		 * 
+		 */
+		private void rule(BioFuzzAttackCfgMgr mgr) throws XMLStreamException, BioFuzzConfigException {
+			String ruleName = null;
+			boolean hasVal = false;
+			
+			while(nextChild()) {
+				String elem = this.r.getLocalName();
+				
+				if(elem.equals("key") && ruleName == null) {
+					ruleName = getLabel();
+					skip();
+				} else if(elem.equals("val") && !hasVal) {
+					if(ruleName == null)
+						throw error("<val> before <key>");
+					hasVal = true;
+					
+					BioFuzzAttackCfg cfg = mgr.createAttackCfg(ruleName);
+					Stack<BioFuzzAttackTag> predStack = new Stack<BioFuzzAttackTag>();
+					
+					while(nextChild()) {
+						tok(cfg, predStack);
+					}
+				} else {
+					skip();
+				}
+			}
+			
+			if(ruleName == null)
+				throw error("rule without <key>");
+			if(!hasVal)
+				throw error("rule " + ruleName + " without <val>");
+		}
+		
+		/**
+		 * 
+		 * Reads an element of a production rule definition. The reader is 
+		 * positioned at the start of the element and is left at its end.
+		 * 
+		 * @param cfg production rule definition.
+		 * @param predStack a stack to keep track of the predecessors.
+		 * 
+		 */
+		private void tok(BioFuzzAttackCfg cfg, Stack<BioFuzzAttackTag> predStack) 
+				throws XMLStreamException, BioFuzzConfigException {
+			
+			switch(this.r.getLocalName().toUpperCase()) {
+			
+			case "CONST": 
+				link(createAndRegAttackTag(null, getLabel(), TagType.TERMINAL, cfg), cfg, predStack);
+				skip();
+				break;
+			case "REGEXP": {
+				BioFuzzAttackTag atag = createAndRegAttackTag(null, getLabel(), TagType.REGEXP, cfg);
+				BioFuzzRexpMatcher m = this.matchers.get(atag.getName());
+				if(m == null) {
+					m = atag.getMatcher();
+					this.matchers.put(atag.getName(), m);
+				} else {
+					atag.setMatcher(m);
+				}
+				link(atag, cfg, predStack);
+				skip();
+			}
+			break;
+			case "VAR":
+				link(createAndRegAttackTag(null, getLabel(), TagType.NON_TERMINAL, cfg), cfg, predStack);
+				skip();
+				break;
+			case "START": 
+				if(predStack.size() > 0)
+					throw error("<start> has to be the first element");
+				predStack.add(createAndRegAttackTag(null, "^", TagType.START, cfg));
+				skip();
+				break;
+			case "STOP": 
+				link(createAndRegAttackTag(null, "$", TagType.STOP, cfg), cfg, predStack);
+				skip();
+				break;
+			case "GRP": 
+				while(nextChild()) {
+					tok(cfg, predStack);
+				}
+				break;
+			case "ZORONE": {
+				Stack<BioFuzzAttackTag> zonePred = new Stack<BioFuzzAttackTag>();
+				zonePred.addAll(predStack);
+				
+				while(nextChild()) {
+					tok(cfg, zonePred);
+				}
+				predStack.addAll(zonePred);
+			}
+			break;
+			case "ONEOF": {
+				Stack<BioFuzzAttackTag> predStackCp = new Stack<BioFuzzAttackTag>();
+				predStackCp.addAll(predStack);
+				predStack.clear();
+				
+				while(nextChild()) {
+					Stack<BioFuzzAttackTag> ofstack = new Stack<BioFuzzAttackTag>();
+					ofstack.addAll(predStackCp);
+					tok(cfg, ofstack);
+					
+					while(ofstack.size() > 0) {
+						predStack.push(ofstack.pop());
+					}
+				}
+			}
+			break;
+			case "ZORMORE": {
+				Stack<BioFuzzAttackTag> zostack = new Stack<BioFuzzAttackTag>();
+				BioFuzzAttackTag first = null;
+				zostack.addAll(predStack);
+				
+				while(nextChild()) {
+					tok(cfg, zostack);
+					if(first == null && zostack.size() > 0)
+						first = zostack.get(zostack.size()-1);
+				}
+				
+				if(zostack.size() > 0) {
+					if(first == null)
+						throw error("empty <zormore>");
+					BioFuzzAttackTag last = zostack.get(zostack.size()-1);
+					cfg.addPoint(last.getCoord(), first.getCoord());
+					predStack.addAll(zostack);
+				}
+			}
+			break;
+			default:
+				logger.debug("ignore element " + this.r.getLocalName());
+				skip();
+				break;
+			}
+		}
+		
+		/**
+		 * 
+		 * Connects all predecessors to a new node and makes it the only
+		 * predecessor.
+		 * 
+		 */
+		private static void link(BioFuzzAttackTag atag, BioFuzzAttackCfg cfg, Stack<BioFuzzAttackTag> predStack) {
+			while(predStack.size() > 0) {
+				cfg.addPoint(predStack.pop().getCoord(), atag.getCoord());
+			}
+			predStack.add(atag);
+		}
+		
+		private String getLabel() throws BioFuzzConfigException {
+			String label = this.r.getAttributeValue(null, "label");
+			if(label == null)
+				throw error("<" + this.r.getLocalName() + "> without label");
+			return label;
+		}
+		
+		private BioFuzzConfigException error(String msg) {
+			Location loc = this.r.getLocation();
+			return new BioFuzzConfigException(this.name, loc.getLineNumber(), loc.getColumnNumber(), msg);
+		}
+		
+		/**
+		 * 
+		 * Moves the reader to the next child element of the current element.
+		 * 
+		 * @return false if the end of the current element is reached instead.
+		 * 
+		 */
+		private boolean nextChild() throws XMLStreamException {
+			while(true) {
+				int ev = this.r.next();
+				if(ev == XMLStreamConstants.START_ELEMENT)
+					return true;
+				if(ev == XMLStreamConstants.END_ELEMENT)
+					return false;
+			}
+		}
+		
+		/**
+		 * 
+		 * Moves the reader to the end of the current element.
+		 * 
+		 */
+		private void skip() throws XMLStreamException {
+			int depth = 1;
+			while(depth > 0) {
+				int ev = this.r.next();
+				if(ev == XMLStreamConstants.START_ELEMENT)
+					depth++;
+				else if(ev == XMLStreamConstants.END_ELEMENT)
+					depth--;
+			}
+		}
+	}
 
 }
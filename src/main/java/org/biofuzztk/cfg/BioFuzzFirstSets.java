@@ -0,0 +1,359 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.cfg;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.Vector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.cfg.BioFuzzAttackTag.TagType;
+
+/**
+ * 
+ * FIRST sets of all production rules of a grammar. The FIRST set of a 
+ * production rule contains all terminals and regular expressions that
+ * can match the first token of a string that is derived from the rule.
+ * A production rule is nullable if it can derive the empty string.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzFirstSets {
+	
+	final static Logger logger = LoggerFactory.getLogger(BioFuzzFirstSets.class);
+	
+	/**
+	 * 
+	 * FIRST set of a single production rule.
+	 * 
+	 * @author julian
+	 *
+	 */
+	private static class FirstSet {
+		private Set<String> terminals = new HashSet<String>();
+		private BitSet symbols = new BitSet();
+		private Set<String> rexps = new HashSet<String>();
+		private List<BioFuzzRexpMatcher> matchers = new Vector<BioFuzzRexpMatcher>();
+		private boolean nullable = false;
+	}
+	
+	private Map<BioFuzzAttackCfg,FirstSet> sets;
+	private BioFuzzAttackCfgMgr mgr;
+	
+	/**
+	 * 
+	 * Constructor. Computes the FIRST sets of all production rules.
+	 * 
+	 * @param mgr the grammar.
+	 * 
+	 */
+	public BioFuzzFirstSets(BioFuzzAttackCfgMgr mgr) {
+		this.sets = new HashMap<BioFuzzAttackCfg,FirstSet>();
+		this.mgr = mgr;
+		
+		for(String key : mgr.getKeys()) {
+			this.sets.put(mgr.getAttackCfgByKey(key), new FirstSet());
+		}
+		
+		// iterate until a fixed point is reached
+		boolean changed = true;
+		int rounds = 0;
+		while(changed) {
+			changed = false;
+			rounds++;
+			for(String key : mgr.getKeys()) {
+				changed |= update(mgr, mgr.getAttackCfgByKey(key));
+			}
+		}
+		
+		compile(new HashMap<String,BioFuzzRexpMatcher>());
+		
+		logger.debug("FIRST sets computed after " + rounds + " rounds");
+	}
+	
+	/**
+	 * 
+	 * Constructor for FIRST sets that were computed before. 
+	 * 
+	 * @param mgr the grammar.
+	 * @param terminals maps each production rule to the terminals of its FIRST set.
+	 * @param rexps maps each production rule to the regular expressions of its FIRST set.
+	 * @param nullable the production rules that are nullable.
+	 * @param matchers compiled regular expressions that can be shared.
+	 * 
+	 */
+	BioFuzzFirstSets(BioFuzzAttackCfgMgr mgr, Map<BioFuzzAttackCfg,Set<String>> terminals, 
+			Map<BioFuzzAttackCfg,Set<String>> rexps, Set<BioFuzzAttackCfg> nullable, 
+			Map<String,BioFuzzRexpMatcher> matchers) {
+		this.sets = new HashMap<BioFuzzAttackCfg,FirstSet>();
+		this.mgr = mgr;
+		
+		for(String key : mgr.getKeys()) {
+			BioFuzzAttackCfg cfg = mgr.getAttackCfgByKey(key);
+			FirstSet fs = new FirstSet();
+			fs.terminals.addAll(terminals.get(cfg));
+			fs.rexps.addAll(rexps.get(cfg));
+			fs.nullable = nullable.contains(cfg);
+			this.sets.put(cfg, fs);
+		}
+		
+		compile(matchers);
+	}
+	
+	/**
+	 * 
+	 * Creates the symbols and matchers of all FIRST sets. 
+	 * 
+	 * @param matchers compiled regular expressions, new ones are added.
+	 * 
+	 */
+	private void compile(Map<String,BioFuzzRexpMatcher> matchers) {
+		for(FirstSet fs : this.sets.values()) {
+			for(String terminal : fs.terminals) {
+				fs.symbols.set(this.mgr.getSymbolTable().intern(terminal));
+			}
+			for(String rexp : fs.rexps) {
+				BioFuzzRexpMatcher m = matchers.get(rexp);
+				if(m == null) {
+					m = new BioFuzzRexpMatcher(rexp);
+					matchers.put(rexp, m);
+				}
+				fs.matchers.add(m);
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * Walks over all nodes of cfg that can be reached without consuming
+	 * a token and adds their terminals to the FIRST set of cfg.
+	 * 
+	 * @param mgr the grammar.
+	 * @param cfg production rule definition.
+	 * @return true if the FIRST set of cfg has changed.
+	 * 
+	 */
+	private boolean update(BioFuzzAttackCfgMgr mgr, BioFuzzAttackCfg cfg) {
+		FirstSet fs = this.sets.get(cfg);
+		boolean changed = false;
+		
+		Set<Integer> visited = new HashSet<Integer>();
+		Stack<Integer> todo = new Stack<Integer>();
+		todo.push(0);
+		
+		while(!todo.isEmpty()) {
+			int idx = todo.pop();
+			
+			if(!visited.add(idx))
+				continue;
+			
+			int choiceCnt = cfg.getParseChoiceCnt(idx);
+			
+			for(int i = 0; i < choiceCnt; i++) {
+				int choice = cfg.getParseChoice(idx, i);
+				BioFuzzAttackTag atag = cfg.getAtagByIdx(choice);
+				
+				switch(atag.getTagType()) {
+					case TERMINAL:
+						changed |= fs.terminals.add(BioFuzzSymbolTable.normalize(atag.getName()));
+						break;
+					case REGEXP:
+						changed |= fs.rexps.add(atag.getName());
+						break;
+					case NON_TERMINAL: {
+						FirstSet nt = this.sets.get(mgr.getAttackCfgByKey(atag.getName()));
+						if(nt == null)
+							break;
+						if(nt != fs) {
+							changed |= fs.terminals.addAll(nt.terminals);
+							changed |= fs.rexps.addAll(nt.rexps);
+						}
+						if(nt.nullable)
+							todo.push(choice);
+					}
+					break;
+					case STOP:
+						if(!fs.nullable) {
+							fs.nullable = true;
+							changed = true;
+						}
+						break;
+					default:
+						todo.push(choice);
+						break;
+				}
+			}
+		}
+		return changed;
+	}
+	
+	/**
+	 * 
+	 * Checks whether a production rule can derive the empty string.
+	 * 
+	 * @param cfg production rule definition.
+	 * @return true if cfg is nullable or unknown.
+	 * 
+	 */
+	public boolean isNullable(BioFuzzAttackCfg cfg) {
+		FirstSet fs = this.sets.get(cfg);
+		return fs == null || fs.nullable;
+	}
+	
+	/**
+	 * 
+	 * Checks whether the end of a production rule can be reached from a 
+	 * node without consuming a token.
+	 * 
+	 * @param cfg production rule definition.
+	 * @param idx index of the node in cfg.
+	 * @return true if the rest of cfg is nullable.
+	 * 
+	 */
+	public boolean canComplete(BioFuzzAttackCfg cfg, int idx) {
+		if(!this.sets.containsKey(cfg))
+			return false;
+		
+		Set<Integer> visited = new HashSet<Integer>();
+		Stack<Integer> todo = new Stack<Integer>();
+		todo.push(idx);
+		
+		while(!todo.isEmpty()) {
+			int cur = todo.pop();
+			
+			if(!visited.add(cur))
+				continue;
+			
+			int choiceCnt = cfg.getParseChoiceCnt(cur);
+			
+			for(int i = 0; i < choiceCnt; i++) {
+				int choice = cfg.getParseChoice(cur, i);
+				BioFuzzAttackTag atag = cfg.getAtagByIdx(choice);
+				
+				switch(atag.getTagType()) {
+					case STOP:
+						return true;
+					case TERMINAL:
+					case REGEXP:
+						break;
+					case NON_TERMINAL: {
+						FirstSet nt = this.sets.get(this.mgr.getAttackCfgByKey(atag.getName()));
+						if(nt != null && nt.nullable)
+							todo.push(choice);
+					}
+					break;
+					default:
+						todo.push(choice);
+						break;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * 
+	 * Checks whether a string that is derived from a production rule 
+	 * can start with the given token.
+	 * 
+	 * @param cfg production rule definition.
+	 * @param tok the token.
+	 * @return false if cfg cannot start with tok.
+	 * 
+	 */
+	public boolean canStartWith(BioFuzzAttackCfg cfg, String tok) {
+		FirstSet fs = this.sets.get(cfg);
+		
+		if(fs == null)
+			return true;
+		
+		if(fs.terminals.contains(BioFuzzSymbolTable.normalize(tok)))
+			return true;
+		
+		for(BioFuzzRexpMatcher m : fs.matchers) {
+			if(m.matches(tok))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * 
+	 * Checks whether a string that is derived from a production rule 
+	 * can start with the given token.
+	 * 
+	 * @param cfg production rule definition.
+	 * @param sym the symbol of the token.
+	 * @param tok the token.
+	 * @return false if cfg cannot start with tok.
+	 * 
+	 */
+	public boolean canStartWith(BioFuzzAttackCfg cfg, int sym, String tok) {
+		FirstSet fs = this.sets.get(cfg);
+		
+		if(fs == null)
+			return true;
+		
+		if(sym != BioFuzzSymbolTable.NONE && fs.symbols.get(sym))
+			return true;
+		
+		for(BioFuzzRexpMatcher m : fs.matchers) {
+			if(m.matches(tok))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @param cfg production rule definition.
+	 * @return the terminals of the FIRST set of cfg (lower case).
+	 * 
+	 */
+	public Set<String> getTerminals(BioFuzzAttackCfg cfg) {
+		FirstSet fs = this.sets.get(cfg);
+		return fs == null ? null : fs.terminals;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @param cfg production rule definition.
+	 * @return the regular expressions of the FIRST set of cfg.
+	 * 
+	 */
+	public Set<String> getRexps(BioFuzzAttackCfg cfg) {
+		FirstSet fs = this.sets.get(cfg);
+		return fs == null ? null : fs.rexps;
+	}
+
+}
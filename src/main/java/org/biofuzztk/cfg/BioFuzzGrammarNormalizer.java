@@ -0,0 +1,528 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.cfg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.TreeSet;
+import java.util.Vector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.cfg.BioFuzzAttackTag.TagType;
+
+/**
+ * 
+ * Detects and eliminates left recursion of a grammar. A production rule
+ * is left recursive if it can derive itself as leftmost symbol without
+ * consuming a token, either directly (S -> S a) or indirectly by means 
+ * of other production rules (A -> B x, B -> A y).
+ * 
+ * Indirect left recursion is turned into direct left recursion by 
+ * inlining the production rules of a cycle into each other (Paull's 
+ * algorithm). Direct left recursion is replaced by iteration, i.e. 
+ * S -> S a | b becomes S -> b {a}. 
+ * 
+ * The original CFG-graphs are not modified. The parser works on a 
+ * rewritten copy of each affected production rule (see BioFuzzCfgRewrite)
+ * and parse-trees are translated back to the original production rules,
+ * so that the generator, the validator and the modifier are not affected.
+ * 
+ * Left recursion that is hidden behind a nullable prefix (S -> A S a with
+ * A nullable) is detected but not eliminated.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzGrammarNormalizer {
+	
+	final static Logger logger = LoggerFactory.getLogger(BioFuzzGrammarNormalizer.class);
+	
+	/**
+	 * 
+	 * Copies of the nodes of an inlined production rule on one level, 
+	 * i.e. in the host or in the production rule the inlined 
+	 * non-terminal is a copy of.
+	 * 
+	 */
+	private static class Level {
+		private final BioFuzzCfgRewrite rw;
+		private final Map<Integer,Integer> copies;
+		
+		Level(BioFuzzCfgRewrite rw) {
+			this.rw = rw;
+			this.copies = new HashMap<Integer,Integer>();
+		}
+	}
+	
+	/**
+	 * 
+	 * Returns the production rules that are left recursive. The rewritten
+	 * CFG-graphs are considered, i.e. the result is empty after the
+	 * grammar has been normalized.
+	 * 
+	 * @param mgr the grammar.
+	 * @return the names of all left recursive production rules.
+	 * 
+	 */
+	public static Set<String> getLeftRecursiveRules(BioFuzzAttackCfgMgr mgr) {
+		BioFuzzFirstSets firstSets = mgr.getFirstSets();
+		
+		Map<String,Set<String>> corners = new HashMap<String,Set<String>>();
+		for(String key : mgr.getKeys()) {
+			corners.put(key, getLeftCorners(mgr, firstSets, mgr.getAttackCfgByKey(key)));
+		}
+		
+		Set<String> res = new TreeSet<String>();
+		for(String key : mgr.getKeys()) {
+			if(reach(corners, key).contains(key))
+				res.add(key);
+		}
+		return res;
+	}
+	
+	/**
+	 * 
+	 * Eliminates left recursion. Production rules that are affected get a
+	 * rewritten CFG-graph that is used by the parser. This function should
+	 * be called once after the grammar has been loaded and before parsing.
+	 * 
+	 * @param mgr the grammar.
+	 * @return the names of all production rules that have been rewritten.
+	 * 
+	 */
+	public static Set<String> normalize(BioFuzzAttackCfgMgr mgr) {
+		Set<String> leftRec = getLeftRecursiveRules(mgr);
+		Set<String> res = new TreeSet<String>();
+		
+		if(leftRec.isEmpty())
+			return res;
+		
+		// only leftmost non-terminals that directly follow the start node
+		// can be eliminated
+		Map<String,Set<String>> direct = new HashMap<String,Set<String>>();
+		for(String key : mgr.getKeys()) {
+			Set<String> names = new HashSet<String>();
+			BioFuzzAttackCfg cfg = mgr.getAttackCfgByKey(key);
+			for(int n : getStartNts(cfg, cfg.getRewrite())) {
+				names.add(cfg.getAtagByIdx(n).getName());
+			}
+			direct.put(key, names);
+		}
+		
+		Map<String,Set<String>> reachable = new HashMap<String,Set<String>>();
+		for(String key : leftRec) {
+			reachable.put(key, reach(direct, key));
+		}
+		
+		Map<BioFuzzAttackCfg,BioFuzzCfgRewrite> rws = new HashMap<BioFuzzAttackCfg,BioFuzzCfgRewrite>();
+		Set<String> done = new HashSet<String>();
+		
+		for(String key : leftRec) {
+			if(done.contains(key))
+				continue;
+			
+			if(!reachable.get(key).contains(key)) {
+				logger.warn("left recursion of " + key + " is hidden behind a nullable prefix - not eliminated");
+				continue;
+			}
+			
+			// the cycle key is part of - leftRec is sorted
+			List<String> cycle = new ArrayList<String>();
+			for(String other : leftRec) {
+				if(reachable.get(other).contains(key) && reachable.get(key).contains(other))
+					cycle.add(other);
+			}
+			done.addAll(cycle);
+			
+			for(int i = 0; i < cycle.size(); i++) {
+				BioFuzzAttackCfg ai = mgr.getAttackCfgByKey(cycle.get(i));
+				
+				for(int j = 0; j < i; j++) {
+					String aj = cycle.get(j);
+					int n;
+					while((n = findStartNt(ai, rws.get(ai), aj)) >= 0) {
+						inline(mgr, rws, ai, n, mgr.getAttackCfgByKey(aj));
+						res.add(cycle.get(i));
+					}
+				}
+				
+				if(eliminate(rws, ai, cycle.get(i)))
+					res.add(cycle.get(i));
+			}
+		}
+		
+		for(Map.Entry<BioFuzzAttackCfg,BioFuzzCfgRewrite> e : rws.entrySet()) {
+			e.getKey().setRewrite(e.getValue());
+		}
+		mgr.freeze();
+		
+		Set<String> left = getLeftRecursiveRules(mgr);
+		logger.debug("rewritten " + res + " - still left recursive " + left);
+		
+		return res;
+	}
+	
+	/**
+	 * 
+	 * Returns all production rules that can be reached from key.
+	 * 
+	 * @param edges maps a production rule to its successors.
+	 * @param key name of the production rule to start from.
+	 * @return the names of the reachable production rules (without key 
+	 * itself unless it is part of a cycle).
+	 * 
+	 */
+	private static Set<String> reach(Map<String,Set<String>> edges, String key) {
+		Set<String> visited = new HashSet<String>();
+		Stack<String> todo = new Stack<String>();
+		
+		if(edges.containsKey(key))
+			todo.addAll(edges.get(key));
+		
+		while(!todo.isEmpty()) {
+			String cur = todo.pop();
+			if(!visited.add(cur))
+				continue;
+			if(edges.containsKey(cur))
+				todo.addAll(edges.get(cur));
+		}
+		return visited;
+	}
+	
+	/**
+	 * 
+	 * Returns the names of all non-terminals that can be reached from the 
+	 * start node of cfg without consuming a token.
+	 * 
+	 * @param mgr the grammar.
+	 * @param firstSets FIRST sets of the grammar.
+	 * @param cfg production rule definition.
+	 * @return the names of the non-terminals.
+	 * 
+	 */
+	private static Set<String> getLeftCorners(BioFuzzAttackCfgMgr mgr, 
+			BioFuzzFirstSets firstSets, BioFuzzAttackCfg cfg) {
+		Set<String> names = new HashSet<String>();
+		Set<Integer> visited = new HashSet<Integer>();
+		Stack<Integer> todo = new Stack<Integer>();
+		todo.push(0);
+		
+		while(!todo.isEmpty()) {
+			int idx = todo.pop();
+			
+			if(!visited.add(idx))
+				continue;
+			
+			List<Number> choices = cfg.getParseChoicesByIdx(idx);
+			if(choices == null)
+				continue;
+			
+			for(Number n : choices) {
+				BioFuzzAttackTag atag = cfg.getAtagByIdx(n.intValue());
+				
+				if(atag.getTagType() == TagType.NON_TERMINAL) {
+					BioFuzzAttackCfg ntCfg = mgr.getAttackCfgByKey(atag.getName());
+					if(ntCfg == null)
+						continue;
+					names.add(atag.getName());
+					if(firstSets.isNullable(ntCfg))
+						todo.push(n.intValue());
+				}
+			}
+		}
+		return names;
+	}
+	
+	/**
+	 * 
+	 * Returns the rewrite of cfg. The rewrite is created on first use.
+	 * 
+	 */
+	private static BioFuzzCfgRewrite getRewrite(Map<BioFuzzAttackCfg,BioFuzzCfgRewrite> rws, 
+			BioFuzzAttackCfg cfg) {
+		BioFuzzCfgRewrite rw = rws.get(cfg);
+		if(rw == null) {
+			rw = cfg.getRewrite() != null ? cfg.getRewrite() : new BioFuzzCfgRewrite(cfg);
+			rws.put(cfg, rw);
+		}
+		return rw;
+	}
+	
+	/**
+	 * 
+	 * Returns the successors of a node, either from the rewrite or from the
+	 * CFG-graph.
+	 * 
+	 */
+	private static List<Number> getChoices(BioFuzzAttackCfg cfg, BioFuzzCfgRewrite rw, int idx) {
+		List<Number> choices = (rw != null) ? rw.getChoicesByIdx(idx) : cfg.getChoicesByIdx(idx);
+		return choices == null ? Collections.<Number>emptyList() : new ArrayList<Number>(choices);
+	}
+	
+	/**
+	 * 
+	 * Translates a node index to the node - copies included.
+	 * 
+	 */
+	private static BioFuzzAttackTag getAtag(BioFuzzAttackCfg cfg, BioFuzzCfgRewrite rw, int idx) {
+		BioFuzzAttackTag atag = cfg.getAtagByIdx(idx);
+		if(atag == null && rw != null)
+			atag = rw.getCopy(idx);
+		return atag;
+	}
+	
+	/**
+	 * 
+	 * Returns the index of the stop node of cfg.
+	 * 
+	 */
+	private static int getStopIdx(BioFuzzAttackCfg cfg) {
+		int stop = cfg.getDescNrs() - 1;
+		assert(cfg.getAtagByIdx(stop).getTagType() == TagType.STOP);
+		return stop;
+	}
+	
+	/**
+	 * 
+	 * Returns the non-terminals that directly follow the start node.
+	 * 
+	 */
+	private static List<Integer> getStartNts(BioFuzzAttackCfg cfg, BioFuzzCfgRewrite rw) {
+		List<Integer> res = new Vector<Integer>();
+		for(Number n : getChoices(cfg, rw, 0)) {
+			if(getAtag(cfg, rw, n.intValue()).getTagType() == TagType.NON_TERMINAL)
+				res.add(n.intValue());
+		}
+		return res;
+	}
+	
+	/**
+	 * 
+	 * Returns a non-terminal with the given name that directly follows the
+	 * start node or -1.
+	 * 
+	 */
+	private static int findStartNt(BioFuzzAttackCfg cfg, BioFuzzCfgRewrite rw, String name) {
+		for(int n : getStartNts(cfg, rw)) {
+			if(getAtag(cfg, rw, n).getName().equals(name))
+				return n;
+		}
+		return -1;
+	}
+	
+	/**
+	 * 
+	 * Replaces the leftmost non-terminal n of host by the nodes of the 
+	 * production rule inl.
+	 * 
+	 * @param mgr the grammar.
+	 * @param rws rewrites of all production rules.
+	 * @param host the production rule to modify.
+	 * @param n index of the non-terminal in host.
+	 * @param inl the production rule to inline.
+	 * 
+	 */
+	private static void inline(BioFuzzAttackCfgMgr mgr, Map<BioFuzzAttackCfg,BioFuzzCfgRewrite> rws,
+			BioFuzzAttackCfg host, int n, BioFuzzAttackCfg inl) {
+		BioFuzzCfgRewrite hrw = getRewrite(rws, host);
+		BioFuzzCfgRewrite irw = rws.get(inl);
+		int stop = getStopIdx(inl);
+		
+		List<Number> succ = getChoices(host, hrw, n);
+		hrw.removePoint(0, n);
+		
+		// nodes of inl that can be reached from its start node
+		List<Integer> nodes = new Vector<Integer>();
+		Set<Integer> visited = new HashSet<Integer>();
+		Stack<Integer> todo = new Stack<Integer>();
+		todo.push(0);
+		while(!todo.isEmpty()) {
+			int idx = todo.pop();
+			if(!visited.add(idx))
+				continue;
+			if(idx != 0 && idx != stop)
+				nodes.add(idx);
+			for(Number c : getChoices(inl, irw, idx)) {
+				todo.push(c.intValue());
+			}
+		}
+		Collections.sort(nodes);
+		
+		List<Level> levels = new Vector<Level>();
+		copy(rws, host, n, inl, irw, nodes, levels);
+		Map<Integer,Integer> copies = levels.get(0).copies;
+		
+		for(int x : nodes) {
+			for(Number c : getChoices(inl, irw, x)) {
+				int y = c.intValue();
+				
+				if(y == stop) {
+					// leave the inlined production rule
+					for(Number s : succ) {
+						hrw.addPoint(copies.get(x), s.intValue());
+						markExit(levels, x, s.intValue());
+					}
+				} else {
+					hrw.addPoint(copies.get(x), copies.get(y));
+					for(Level l : levels) {
+						l.rw.addInternal(l.copies.get(x), l.copies.get(y));
+					}
+				}
+			}
+		}
+		
+		for(Number c : getChoices(inl, irw, 0)) {
+			int y = c.intValue();
+			if(y != stop) {
+				hrw.addPoint(0, copies.get(y));
+			} else {
+				// inl derives the empty string
+				for(Number s : succ) {
+					if(hrw.addPoint(0, s.intValue()))
+						hrw.addFold(0, s.intValue(), n);
+				}
+			}
+		}
+		
+		logger.debug("inlined " + nodes.size() + " nodes in place of " + 
+				getAtag(host, hrw, n).getName());
+	}
+	
+	/**
+	 * 
+	 * Creates copies of nodes of inl in host. If n is a copy itself, the 
+	 * nodes are copied to the production rule n is a copy of as well, so 
+	 * that the inlined production rule ends up as child of the right 
+	 * non-terminal.
+	 * 
+	 * @param rws rewrites of all production rules.
+	 * @param host the production rule to modify.
+	 * @param n index of the non-terminal in host.
+	 * @param inl the production rule to inline.
+	 * @param irw the rewrite of inl or null.
+	 * @param nodes indices of the nodes to copy.
+	 * @param levels the copies, outermost level first.
+	 * 
+	 */
+	private static void copy(Map<BioFuzzAttackCfg,BioFuzzCfgRewrite> rws, BioFuzzAttackCfg host, 
+			int n, BioFuzzAttackCfg inl, BioFuzzCfgRewrite irw, List<Integer> nodes, List<Level> levels) {
+		BioFuzzCfgRewrite hrw = getRewrite(rws, host);
+		Level level = new Level(hrw);
+		int pos = levels.size();
+		levels.add(level);
+		
+		if(!hrw.isCopy(n)) {
+			for(int x : nodes) {
+				level.copies.put(x, hrw.addCopy(getAtag(inl, irw, x), inl, x, n));
+			}
+			return;
+		}
+		
+		BioFuzzAttackCfg origin = hrw.getOriginCfg(n);
+		copy(rws, origin, hrw.getOriginIdx(n), inl, irw, nodes, levels);
+		Map<Integer,Integer> inner = levels.get(pos + 1).copies;
+		
+		for(int x : nodes) {
+			level.copies.put(x, hrw.addCopy(getAtag(inl, irw, x), origin, inner.get(x), hrw.getSite(n)));
+		}
+	}
+	
+	/**
+	 * 
+	 * Marks the edge from the copy of x to s as internal on all levels on
+	 * which both nodes are copies of the same site.
+	 * 
+	 */
+	private static void markExit(List<Level> levels, int x, int s) {
+		for(Level l : levels) {
+			int cx = l.copies.get(x);
+			if(!l.rw.isCopy(s) || l.rw.getSite(s) != l.rw.getSite(cx))
+				return;
+			l.rw.addInternal(cx, s);
+			s = l.rw.getOriginIdx(s);
+		}
+	}
+	
+	/**
+	 * 
+	 * Replaces direct left recursion of cfg by iteration. For each left 
+	 * recursive node n, the successors of n are appended to every node 
+	 * that ends the production rule.
+	 * 
+	 * @param rws rewrites of all production rules.
+	 * @param cfg production rule definition.
+	 * @param key name of the production rule.
+	 * @return true if cfg has been modified.
+	 * 
+	 */
+	private static boolean eliminate(Map<BioFuzzAttackCfg,BioFuzzCfgRewrite> rws, 
+			BioFuzzAttackCfg cfg, String key) {
+		BioFuzzCfgRewrite rw = rws.get(cfg);
+		
+		List<Integer> rec = new Vector<Integer>();
+		for(int n : getStartNts(cfg, rw)) {
+			if(getAtag(cfg, rw, n).getName().equals(key))
+				rec.add(n);
+		}
+		
+		if(rec.isEmpty())
+			return false;
+		
+		rw = getRewrite(rws, cfg);
+		int stop = getStopIdx(cfg);
+		
+		List<Integer> ends = new Vector<Integer>();
+		for(int p = 0; p < rw.getDescNrs(); p++) {
+			if(rw.hasPoint(p, stop))
+				ends.add(p);
+		}
+		
+		for(int n : rec) {
+			rw.removePoint(0, n);
+		}
+		
+		for(int n : rec) {
+			for(Number c : getChoices(cfg, rw, n)) {
+				int s = c.intValue();
+				if(s == stop)
+					continue;
+				for(int p : ends) {
+					if(rw.addPoint(p, s))
+						rw.addFold(p, s, n);
+					else
+						logger.debug("edge " + p + " -> " + s + " already present in " + key);
+				}
+			}
+		}
+		
+		logger.debug("eliminated direct left recursion of " + key);
+		return true;
+	}
+
+}
@@ -0,0 +1,403 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.cfg;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dk.brics.automaton.Automaton;
+import dk.brics.automaton.RegExp;
+import dk.brics.automaton.RunAutomaton;
+import dk.brics.automaton.State;
+import dk.brics.automaton.Transition;
+
+import org.biofuzztk.cfg.BioFuzzAttackTag.TagType;
+
+/**
+ * 
+ * A compiled grammar that can be loaded without reading the XML 
+ * configuration file. A snapshot contains the nodes and the adjacency
+ * lists of all CFG-graphs, the minimal automatons of all regular 
+ * expressions and the FIRST sets. It is keyed by the SHA-1 hash of the configuration 
+ * file, i.e. a snapshot is ignored as soon as the file is modified.
+ * 
+ * Rewrites of the grammar (see BioFuzzGrammarNormalizer) are not part
+ * of a snapshot. They have to be applied again after loading.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzGrammarSnapshot {
+	
+	final static Logger logger = LoggerFactory.getLogger(BioFuzzGrammarSnapshot.class);
+	
+	private static final int MAGIC = 0x42465347;
+	private static final int FORMAT = 1;
+	
+	private BioFuzzGrammarSnapshot() {
+	}
+	
+	/**
+	 * 
+	 * Computes the hash of a configuration file.
+	 * 
+	 * @param file the path to the file.
+	 * @return the SHA-1 hash of the content of file.
+	 * @throws IOException if the file cannot be read.
+	 * 
+	 */
+	public static byte [] digest(String file) throws IOException {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			return md.digest(Files.readAllBytes(Paths.get(file)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * 
+	 * Writes a snapshot of a grammar. The file is replaced atomically, so
+	 * concurrent readers either see the old or the new snapshot.
+	 * 
+	 * @param mgr the grammar.
+	 * @param hash hash of the configuration file the grammar was read from.
+	 * @param snapshot the path to the snapshot.
+	 * @throws IOException if the snapshot cannot be written.
+	 * 
+	 */
+	public static void write(BioFuzzAttackCfgMgr mgr, byte [] hash, String snapshot) throws IOException {
+		List<String> keys = new ArrayList<String>(new TreeSet<String>(mgr.getKeys()));
+		
+		// strings and regular expressions are stored once
+		List<String> strs = new ArrayList<String>();
+		Map<String,Integer> strIdx = new HashMap<String,Integer>();
+		Map<String,BioFuzzRexpMatcher> matchers = new HashMap<String,BioFuzzRexpMatcher>();
+		boolean rewritten = false;
+		
+		for(String key : keys) {
+			index(key, strs, strIdx);
+			BioFuzzAttackCfg cfg = mgr.getAttackCfgByKey(key);
+			rewritten |= cfg.getRewrite() != null;
+			for(int i = 0; i < cfg.getDescNrs(); i++) {
+				BioFuzzAttackTag atag = cfg.getAtagByIdx(i);
+				index(atag.getName(), strs, strIdx);
+				if(atag.getTagType() == TagType.REGEXP && !matchers.containsKey(atag.getName()))
+					matchers.put(atag.getName(), atag.getMatcher());
+			}
+		}
+		
+		// the FIRST sets of a rewritten grammar do not fit to its CFG-graphs
+		BioFuzzFirstSets fs = rewritten ? null : mgr.getFirstSets();
+		if(fs != null) {
+			for(String key : keys) {
+				BioFuzzAttackCfg cfg = mgr.getAttackCfgByKey(key);
+				for(String t : fs.getTerminals(cfg))
+					index(t, strs, strIdx);
+				for(String r : fs.getRexps(cfg))
+					index(r, strs, strIdx);
+			}
+		}
+		
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+		
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT);
+		out.writeInt(hash.length);
+		out.write(hash);
+		
+		out.writeInt(strs.size());
+		for(String s : strs) {
+			byte [] b = s.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(b.length);
+			out.write(b);
+		}
+		
+		out.writeInt(matchers.size());
+		for(BioFuzzRexpMatcher m : matchers.values()) {
+			out.writeInt(strIdx.get(m.getRexp()));
+			if(m.isAutomaton())
+				writeAutomaton(out, new RegExp(m.getRexp(), RegExp.NONE).toAutomaton());
+			else
+				out.writeInt(-1);
+		}
+		
+		out.writeInt(keys.size());
+		for(String key : keys) {
+			BioFuzzAttackCfg cfg = mgr.getAttackCfgByKey(key);
+			out.writeInt(strIdx.get(key));
+			out.writeInt(cfg.getDescNrs());
+			for(int i = 0; i < cfg.getDescNrs(); i++) {
+				BioFuzzAttackTag atag = cfg.getAtagByIdx(i);
+				out.writeByte(atag.getTagType().ordinal());
+				out.writeInt(atag.getName() == null ? -1 : strIdx.get(atag.getName()));
+				out.writeInt(atag.getCoord());
+			}
+			for(int i = 0; i < cfg.getDescNrs(); i++) {
+				List<Number> choices = cfg.getChoicesByIdx(i);
+				out.writeInt(choices == null ? 0 : choices.size());
+				if(choices == null)
+					continue;
+				for(Number n : choices) {
+					out.writeInt(n.intValue());
+				}
+			}
+		}
+		
+		out.writeBoolean(fs != null);
+		if(fs != null) {
+			for(String key : keys) {
+				BioFuzzAttackCfg cfg = mgr.getAttackCfgByKey(key);
+				out.writeBoolean(fs.isNullable(cfg));
+				writeIdx(out, fs.getTerminals(cfg), strIdx);
+				writeIdx(out, fs.getRexps(cfg), strIdx);
+			}
+		}
+		out.flush();
+		
+		Path dst = Paths.get(snapshot).toAbsolutePath();
+		Path tmp = Files.createTempFile(dst.getParent(), dst.getFileName().toString(), ".tmp");
+		try {
+			Files.write(tmp, bos.toByteArray());
+			try {
+				Files.move(tmp, dst, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp, dst, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+		
+		logger.debug("wrote snapshot " + snapshot + " (" + bos.size() + " bytes)");
+	}
+	
+	private static void index(String s, List<String> strs, Map<String,Integer> strIdx) {
+		if(s != null && !strIdx.containsKey(s)) {
+			strIdx.put(s, strs.size());
+			strs.add(s);
+		}
+	}
+	
+	/**
+	 * 
+	 * Writes the states and transitions of a deterministic automaton. The
+	 * initial state is written first.
+	 * 
+	 */
+	private static void writeAutomaton(DataOutputStream out, Automaton a) throws IOException {
+		assert(a.isDeterministic());
+		
+		List<State> states = new ArrayList<State>();
+		Map<State,Integer> stateIdx = new HashMap<State,Integer>();
+		states.add(a.getInitialState());
+		stateIdx.put(a.getInitialState(), 0);
+		for(State st : a.getStates()) {
+			if(!stateIdx.containsKey(st)) {
+				stateIdx.put(st, states.size());
+				states.add(st);
+			}
+		}
+		
+		out.writeInt(states.size());
+		for(State st : states) {
+			out.writeBoolean(st.isAccept());
+			out.writeInt(st.getTransitions().size());
+			for(Transition t : st.getTransitions()) {
+				out.writeChar(t.getMin());
+				out.writeChar(t.getMax());
+				out.writeInt(stateIdx.get(t.getDest()));
+			}
+		}
+	}
+	
+	private static void writeIdx(DataOutputStream out, Set<String> set, Map<String,Integer> strIdx) throws IOException {
+		out.writeInt(set.size());
+		for(String s : set) {
+			out.writeInt(strIdx.get(s));
+		}
+	}
+	
+	/**
+	 * 
+	 * Loads a snapshot. The file is mapped into memory.
+	 * 
+	 * @param snapshot the path to the snapshot.
+	 * @param hash hash of the configuration file the grammar has to be read from.
+	 * @return the grammar or null if there is no snapshot for the given hash.
+	 * @throws IOException if the snapshot cannot be read or is corrupt.
+	 * 
+	 */
+	public static BioFuzzAttackCfgMgr read(String snapshot, byte [] hash) throws IOException {
+		File f = new File(snapshot);
+		if(!f.isFile())
+			return null;
+		
+		MappedByteBuffer buf;
+		try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+		}
+		
+		try {
+			if(buf.remaining() < 8 || buf.getInt() != MAGIC || buf.getInt() != FORMAT) {
+				logger.debug("snapshot " + snapshot + " has an unknown format");
+				return null;
+			}
+			
+			byte [] stored = new byte[buf.getInt()];
+			buf.get(stored);
+			if(!Arrays.equals(stored, hash)) {
+				logger.debug("snapshot " + snapshot + " is outdated");
+				return null;
+			}
+			
+			return read(buf);
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | 
+				IllegalArgumentException e) {
+			throw new IOException("corrupt snapshot " + snapshot, e);
+		}
+	}
+	
+	private static BioFuzzAttackCfgMgr read(ByteBuffer buf) throws IOException {
+		String [] strs = new String[buf.getInt()];
+		for(int i = 0; i < strs.length; i++) {
+			byte [] b = new byte[buf.getInt()];
+			buf.get(b);
+			strs[i] = new String(b, StandardCharsets.UTF_8);
+		}
+		
+		int mcnt = buf.getInt();
+		Map<String,BioFuzzRexpMatcher> matchers = new HashMap<String,BioFuzzRexpMatcher>();
+		for(int i = 0; i < mcnt; i++) {
+			String rexp = strs[buf.getInt()];
+			Automaton a = readAutomaton(buf);
+			matchers.put(rexp, new BioFuzzRexpMatcher(rexp, a == null ? null : new RunAutomaton(a)));
+		}
+		
+		TagType [] types = TagType.values();
+		BioFuzzAttackCfgMgr mgr = new BioFuzzAttackCfgMgr();
+		
+		int rcnt = buf.getInt();
+		BioFuzzAttackCfg [] cfgs = new BioFuzzAttackCfg[rcnt];
+		for(int r = 0; r < rcnt; r++) {
+			BioFuzzAttackCfg cfg = mgr.createAttackCfg(strs[buf.getInt()]);
+			cfgs[r] = cfg;
+			
+			int tcnt = buf.getInt();
+			for(int i = 0; i < tcnt; i++) {
+				TagType type = types[buf.get()];
+				int name = buf.getInt();
+				int coord = buf.getInt();
+				BioFuzzAttackTag atag = new BioFuzzAttackTag(null, name < 0 ? null : strs[name], type, coord);
+				if(type == TagType.REGEXP)
+					atag.setMatcher(matchers.get(atag.getName()));
+				cfg.addAtag(atag);
+			}
+			for(int i = 0; i < tcnt; i++) {
+				int ccnt = buf.getInt();
+				for(int j = 0; j < ccnt; j++) {
+					cfg.addPoint(i, buf.getInt());
+				}
+			}
+		}
+		
+		if(buf.get() != 0) {
+			Map<BioFuzzAttackCfg,Set<String>> terminals = new HashMap<BioFuzzAttackCfg,Set<String>>();
+			Map<BioFuzzAttackCfg,Set<String>> rexps = new HashMap<BioFuzzAttackCfg,Set<String>>();
+			Set<BioFuzzAttackCfg> nullable = new HashSet<BioFuzzAttackCfg>();
+			
+			for(BioFuzzAttackCfg cfg : cfgs) {
+				if(buf.get() != 0)
+					nullable.add(cfg);
+				terminals.put(cfg, readIdx(buf, strs));
+				rexps.put(cfg, readIdx(buf, strs));
+			}
+			mgr.setFirstSets(new BioFuzzFirstSets(mgr, terminals, rexps, nullable, matchers));
+		}
+		
+		if(buf.hasRemaining())
+			throw new IOException("unexpected data at the end of the snapshot");
+		
+		mgr.freeze();
+		return mgr;
+	}
+	
+	private static Automaton readAutomaton(ByteBuffer buf) {
+		int cnt = buf.getInt();
+		if(cnt < 0)
+			return null;
+		
+		State [] states = new State[cnt];
+		for(int i = 0; i < cnt; i++) {
+			states[i] = new State();
+		}
+		for(int i = 0; i < cnt; i++) {
+			states[i].setAccept(buf.get() != 0);
+			int tcnt = buf.getInt();
+			for(int j = 0; j < tcnt; j++) {
+				char min = buf.getChar();
+				char max = buf.getChar();
+				states[i].addTransition(new Transition(min, max, states[buf.getInt()]));
+			}
+		}
+		
+		Automaton a = new Automaton();
+		a.setInitialState(states[0]);
+		a.setDeterministic(true);
+		return a;
+	}
+	
+	private static Set<String> readIdx(ByteBuffer buf, String [] strs) {
+		int cnt = buf.getInt();
+		Set<String> set = new HashSet<String>();
+		for(int i = 0; i < cnt; i++) {
+			set.add(strs[buf.getInt()]);
+		}
+		return set;
+	}
+
+}
@@ -0,0 +1,198 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.cfg;
+
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dk.brics.automaton.RegExp;
+import dk.brics.automaton.RunAutomaton;
+
+/**
+ * 
+ * A compiled regular expression. Regular expressions that only use the 
+ * syntax that is shared by java.util.regex and dk.brics are compiled to 
+ * a deterministic automaton that matches in linear time. All other regular
+ * expressions are compiled to a java.util.regex pattern. This class uses 
+ * http://www.brics.dk/automaton/.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzRexpMatcher {
+	
+	final static Logger logger = LoggerFactory.getLogger(BioFuzzRexpMatcher.class);
+	
+	private final String rexp;
+	private final RunAutomaton automaton;
+	private final Pattern pattern;
+	
+	/**
+	 * 
+	 * Constructor.
+	 * 
+	 * @param rexp a regular expression (java.util.regex syntax).
+	 * 
+	 */
+	public BioFuzzRexpMatcher(String rexp) {
+		this.rexp = rexp;
+		
+		RunAutomaton ra = null;
+		if(isBricsCompatible(rexp)) {
+			try {
+				ra = new RunAutomaton(new RegExp(rexp, RegExp.NONE).toAutomaton());
+			} catch (IllegalArgumentException e) {
+				logger.debug("cannot compile " + rexp + " to an automaton: " + e.getMessage());
+			}
+		}
+		
+		this.automaton = ra;
+		this.pattern = ra == null ? Pattern.compile(rexp) : null;
+	}
+	
+	/**
+	 * 
+	 * Constructor for a regular expression that was already compiled.
+	 * 
+	 * @param rexp a regular expression (java.util.regex syntax).
+	 * @param automaton the automaton of rexp or null if rexp cannot be
+	 * compiled to an automaton.
+	 * 
+	 */
+	BioFuzzRexpMatcher(String rexp, RunAutomaton automaton) {
+		this.rexp = rexp;
+		this.automaton = automaton;
+		this.pattern = automaton == null ? Pattern.compile(rexp) : null;
+	}
+	
+	/**
+	 * 
+	 * Checks whether the whole string matches the regular expression.
+	 * 
+	 * @param s the string to check.
+	 * @return true if s matches.
+	 * 
+	 */
+	public boolean matches(String s) {
+		if(this.automaton != null)
+			return this.automaton.run(s);
+		return this.pattern.matcher(s).matches();
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return true if the regular expression was compiled to an automaton.
+	 * 
+	 */
+	public boolean isAutomaton() {
+		return this.automaton != null;
+	}
+	
+	public String getRexp() {
+		return this.rexp;
+	}
+	
+	/**
+	 * 
+	 * Checks whether a regular expression only uses syntax that has the
+	 * same meaning for java.util.regex and dk.brics: literals, escaped 
+	 * non-alphanumeric characters, character classes with ranges, groups, 
+	 * alternation and greedy quantifiers.
+	 * 
+	 * @param rexp a regular expression.
+	 * @return true if rexp can be compiled to an automaton.
+	 * 
+	 */
+	public static boolean isBricsCompatible(String rexp) {
+		boolean inClass = false;
+		
+		for(int i = 0; i < rexp.length(); i++) {
+			char c = rexp.charAt(i);
+			
+			switch(c) {
+				case '\\': {
+					// escapes like \d or \p{..} have a different meaning for dk.brics
+					if(i + 1 >= rexp.length() || Character.isLetterOrDigit(rexp.charAt(i+1)))
+						return false;
+					i++;
+				}
+				break;
+				case '[': {
+					// nested classes and unions
+					if(inClass)
+						return false;
+					inClass = true;
+					if(i + 1 < rexp.length() && rexp.charAt(i+1) == '^') {
+						i++;
+					}
+				}
+				break;
+				case ']': {
+					inClass = false;
+				}
+				break;
+				case '&': {
+					// class intersection
+					if(inClass)
+						return false;
+				}
+				break;
+				case '.':
+				case '^':
+				case '$':
+				case '"': {
+					if(!inClass)
+						return false;
+				}
+				break;
+				case '(': {
+					// special constructs like (?i) or (?=
+					if(!inClass && i + 1 < rexp.length() && rexp.charAt(i+1) == '?')
+						return false;
+				}
+				break;
+				case '*':
+				case '+':
+				case '?':
+				case '}': {
+					// possessive quantifiers
+					if(!inClass && i + 1 < rexp.length() && rexp.charAt(i+1) == '+')
+						return false;
+				}
+				break;
+				default:
+					break;
+			}
+		}
+		
+		return !inClass;
+	}
+	
+	@Override
+	public String toString() {
+		return this.rexp + (isAutomaton() ? " (automaton)" : " (pattern)");
+	}
+
+}
@@ -0,0 +1,240 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.cfg;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 
+ * Maps the terminals of a grammar to integer symbols. Terminals are
+ * compared case-insensitively, i.e. all terminals that are equal after
+ * normalize() share the same symbol. Tokens are classified once per parsing
+ * run, so matching a terminal is a simple integer comparison.
+ * 
+ * Each grammar owns its own table (see BioFuzzAttackCfgMgr), so the 
+ * symbols of terminals that are appended later on stay stable as well.
+ * Lookups do not lock, they read an immutable index that is rebuilt on
+ * the first lookup after a terminal was interned.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzSymbolTable {
+	
+	/**
+	 * 
+	 * Symbol of tokens that are not a terminal of the grammar.
+	 * 
+	 */
+	public static final int NONE = 0;
+	
+	/**
+	 * 
+	 * Open addressing hash table of the lower-cased terminals.
+	 * 
+	 */
+	private static class Index {
+		private final String [] keys;
+		private final int [] syms;
+		private final int mask;
+		
+		Index(Map<String,Integer> symbols) {
+			int cap = 16;
+			while(cap < symbols.size() * 2)
+				cap <<= 1;
+			this.keys = new String[cap];
+			this.syms = new int[cap];
+			this.mask = cap - 1;
+			
+			for(Map.Entry<String,Integer> e : symbols.entrySet()) {
+				String key = e.getKey();
+				int i = hash(key, 0, key.length()) & this.mask;
+				while(this.keys[i] != null)
+					i = (i + 1) & this.mask;
+				this.keys[i] = key;
+				this.syms[i] = e.getValue();
+			}
+		}
+		
+		int lookup(CharSequence s, int start, int end) {
+			// ASCII tokens are normalized char by char without a copy
+			if(!isAscii(s, start, end)) {
+				s = normalize(s.subSequence(start, end).toString());
+				start = 0;
+				end = s.length();
+			}
+			
+			int i = hash(s, start, end) & this.mask;
+			String key;
+			while((key = this.keys[i]) != null) {
+				if(matches(key, s, start, end))
+					return this.syms[i];
+				i = (i + 1) & this.mask;
+			}
+			return NONE;
+		}
+	}
+	
+	private final Map<String,Integer> symbols;
+	private volatile Index index;
+	
+	/**
+	 * 
+	 * Constructor. Creates an empty table.
+	 * 
+	 */
+	public BioFuzzSymbolTable() {
+		this.symbols = new HashMap<String,Integer>();
+		this.index = null;
+	}
+	
+	/**
+	 * 
+	 * Returns the symbol of a terminal. A new symbol is created if the 
+	 * terminal is not yet known.
+	 * 
+	 * @param terminal the terminal.
+	 * @return the symbol of the terminal.
+	 * 
+	 */
+	public synchronized int intern(String terminal) {
+		String key = normalize(terminal);
+		Integer sym = this.symbols.get(key);
+		
+		if(sym == null) {
+			sym = this.symbols.size() + 1;
+			this.symbols.put(key, sym);
+			this.index = null;
+		}
+		return sym;
+	}
+	
+	/**
+	 * 
+	 * Returns the symbol of a token.
+	 * 
+	 * @param tok the token.
+	 * @return the symbol of the token or NONE.
+	 * 
+	 */
+	public int lookup(String tok) {
+		return lookup(tok, 0, tok.length());
+	}
+	
+	/**
+	 * 
+	 * Returns the symbol of the token that spans the chars from start to
+	 * end (exclusive) of s. No string is created for the token.
+	 * 
+	 * @param s a char sequence.
+	 * @param start offset of the first char.
+	 * @param end offset after the last char.
+	 * @return the symbol of the token or NONE.
+	 * 
+	 */
+	public int lookup(CharSequence s, int start, int end) {
+		Index idx = this.index;
+		if(idx == null)
+			idx = rebuild();
+		return idx.lookup(s, start, end);
+	}
+	
+	private synchronized Index rebuild() {
+		if(this.index == null)
+			this.index = new Index(this.symbols);
+		return this.index;
+	}
+	
+	/**
+	 * 
+	 * Classifies all tokens of a token list.
+	 * 
+	 * @param toks the tokens.
+	 * @return an array that contains the symbol of each token.
+	 * 
+	 */
+	public int [] classify(List<String> toks) {
+		int [] syms = new int[toks.size()];
+		for(int i = 0; i < syms.length; i++) {
+			syms[i] = lookup(toks.get(i));
+		}
+		return syms;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of symbols.
+	 * 
+	 */
+	public synchronized int getSize() {
+		return this.symbols.size();
+	}
+	
+	/**
+	 * 
+	 * Normalizes a terminal or token for case-insensitive comparisons. 
+	 * The result does not depend on the default locale.
+	 * 
+	 * @param s a terminal or token.
+	 * @return the lower-cased string.
+	 * 
+	 */
+	public static String normalize(String s) {
+		return s.toLowerCase(Locale.ROOT);
+	}
+	
+	// normalize() of an ASCII char
+	private static char fold(char c) {
+		return (c >= 'A' && c <= 'Z') ? (char)(c + ('a' - 'A')) : c;
+	}
+	
+	private static boolean isAscii(CharSequence s, int start, int end) {
+		for(int i = start; i < end; i++) {
+			if(s.charAt(i) > 0x7f)
+				return false;
+		}
+		return true;
+	}
+	
+	private static int hash(CharSequence s, int start, int end) {
+		int h = 0;
+		for(int i = start; i < end; i++) {
+			h = 31 * h + fold(s.charAt(i));
+		}
+		return h ^ (h >>> 16);
+	}
+	
+	private static boolean matches(String key, CharSequence s, int start, int end) {
+		if(key.length() != end - start)
+			return false;
+		for(int i = start; i < end; i++) {
+			if(key.charAt(i - start) != fold(s.charAt(i)))
+				return false;
+		}
+		return true;
+	}
+
+}
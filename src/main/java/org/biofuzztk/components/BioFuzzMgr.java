@@ -20,8 +20,13 @@
 
 package org.biofuzztk.components;
 
+import java.io.Reader;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
 
 
 import org.slf4j.Logger;
@@ -30,14 +35,22 @@ import org.slf4j.LoggerFactory;
 import org.biofuzztk.cfg.BioFuzzAttackCfg;
 import org.biofuzztk.cfg.BioFuzzAttackCfgMgr;
 import org.biofuzztk.cfg.BioFuzzConfigReader;
+import org.biofuzztk.cfg.BioFuzzGrammarNormalizer;
 import org.biofuzztk.components.BioFuzzTracer.BioFuzzQuery;
 import org.biofuzztk.components.BioFuzzTracer.TraceType;
 import org.biofuzztk.components.modifier.BioFuzzModifier;
 import org.biofuzztk.components.modifier.BioFuzzMutator;
+import org.biofuzztk.components.parser.BioFuzzBatchParser;
+import org.biofuzztk.components.parser.BioFuzzBatchResult;
+import org.biofuzztk.components.parser.BioFuzzParseCache;
+import org.biofuzztk.components.parser.BioFuzzParseStats;
 import org.biofuzztk.components.parser.BioFuzzParser;
 import org.biofuzztk.components.parser.BioFuzzParserConfig;
 import org.biofuzztk.components.parser.BioFuzzParsingStatus;
+import org.biofuzztk.components.parser.BioFuzzStreamParser;
 import org.biofuzztk.components.tokenizer.BioFuzzTokenizer;
+import org.biofuzztk.components.tokenizer.BioFuzzTokenizerFactory;
+import org.biofuzztk.ptree.BioFuzzParseForest;
 import org.biofuzztk.ptree.BioFuzzParseNode;
 import org.biofuzztk.ptree.BioFuzzParseTree;
 import org.biofuzztk.ptree.BioFuzzTokLst;
@@ -48,12 +61,20 @@ import org.biofuzztk.ptree.BioFuzzTokLst;
  * validation, modification and extension of parse-trees.
  * It is also responsible for searching within a parse-tree.
  * 
+ * A single manager can be shared by several threads. The CFG-graph is
+ * only read after it has been loaded and every thread parses with a 
+ * parser of its own. All parsers of a manager share a single pool for
+ * concurrent stepping. shutdown() stops the pool and the batch parser
+ * and drops the parsers of all threads.
+ * 
  * @author julian
  *
  */
 public class BioFuzzMgr {
 	
-	private BioFuzzParser parser;
+	private volatile ThreadLocal<BioFuzzParser> parser;
+	private BioFuzzTokenizer tokenizer;
+	private ForkJoinPool pool;
 	private BioFuzzTokGen generator;
 	private BioFuzzValidator validator;
 	private BioFuzzModifier modifier;
@@ -63,6 +84,10 @@ public class BioFuzzMgr {
 	
 	private BioFuzzParserConfig config;
 	
+	private BioFuzzBatchParser batchParser;
+	
+	private volatile BioFuzzParseCache cache = null;
+	
 	final static Logger logger = LoggerFactory.getLogger(BioFuzzMgr.class);
 	
 	public BioFuzzMgr(String fname, BioFuzzTokenizer tokenizer, List<BioFuzzMutator> mutators) {
@@ -73,14 +98,16 @@ public class BioFuzzMgr {
 		
 		this.config = new BioFuzzParserConfig(20, BioFuzzParsingStatus.FINISHED, 400);
 		
-		this.parser = new BioFuzzParser(mgr,this.config, tokenizer);
+		this.parser = createParsers(tokenizer);
 		this.generator = new BioFuzzTokGen(mgr);
 		this.validator = new BioFuzzValidator(mgr);
 		this.modifier = new BioFuzzModifier(mgr,mutators);
 		
 		this.tracer = new BioFuzzTracer();
+		this.batchParser = null;
 		
-		logger.debug(this.mgr.toString());	
+		if(logger.isDebugEnabled())
+			logger.debug(this.mgr.toString());
 	}
 	
 	public BioFuzzMgr(String fname, BioFuzzTokenizer tokenizer) {
@@ -91,15 +118,75 @@ public class BioFuzzMgr {
 		
 		this.config = new BioFuzzParserConfig(20, BioFuzzParsingStatus.FINISHED, 400);
 		
-		this.parser = new BioFuzzParser(mgr,this.config, tokenizer);
+		this.parser = createParsers(tokenizer);
 		this.generator = new BioFuzzTokGen(mgr);
 		this.validator = new BioFuzzValidator(mgr);
 		// Simple modifer without any mutators
 		this.modifier = new BioFuzzModifier(mgr);
 		
 		this.tracer = new BioFuzzTracer();
+		this.batchParser = null;
+		
+		if(logger.isDebugEnabled())
+			logger.debug(this.mgr.toString());
+	}
+	
+	/**
+	 * 
+	 * Constructor. The tokenizer is created from the loaded grammar.
+	 * 
+	 * @param fname path to the grammar.
+	 * @param factory creates the tokenizer for the grammar.
+	 * 
+	 */
+	public BioFuzzMgr(String fname, BioFuzzTokenizerFactory factory) {
+		
+		this.mgr = BioFuzzConfigReader.readConfigFile(fname);
+		assert(this.mgr != null);
+		assert(factory != null);
+		
+		this.config = new BioFuzzParserConfig(20, BioFuzzParsingStatus.FINISHED, 400);
+		
+		this.parser = createParsers(factory.createTokenizer(this.mgr));
+		this.generator = new BioFuzzTokGen(mgr);
+		this.validator = new BioFuzzValidator(mgr);
+		this.modifier = new BioFuzzModifier(mgr);
+		
+		this.tracer = new BioFuzzTracer();
+		this.batchParser = null;
+		
+		if(logger.isDebugEnabled())
+			logger.debug(this.mgr.toString());
+	}
+	
+	/**
+	 * 
+	 * Constructor. The grammar is loaded from a snapshot if there is one
+	 * for the current content of fname (see BioFuzzGrammarSnapshot).
+	 * 
+	 * @param fname path to the grammar.
+	 * @param snapshot path to the snapshot of the grammar.
+	 * @param tokenizer the tokenizer.
+	 * 
+	 */
+	public BioFuzzMgr(String fname, String snapshot, BioFuzzTokenizer tokenizer) {
+		
+		this.mgr = BioFuzzConfigReader.readConfigFile(fname, snapshot);
+		assert(this.mgr != null);
+		assert(tokenizer != null);
+		
+		this.config = new BioFuzzParserConfig(20, BioFuzzParsingStatus.FINISHED, 400);
+		
+		this.parser = createParsers(tokenizer);
+		this.generator = new BioFuzzTokGen(mgr);
+		this.validator = new BioFuzzValidator(mgr);
+		this.modifier = new BioFuzzModifier(mgr);
+		
+		this.tracer = new BioFuzzTracer();
+		this.batchParser = null;
 		
-		logger.debug(this.mgr.toString());	
+		if(logger.isDebugEnabled())
+			logger.debug(this.mgr.toString());
 	}
 	
 	public BioFuzzMgr(String fname) {
@@ -114,18 +201,134 @@ public class BioFuzzMgr {
 		this.modifier = null;
 		
 		this.tracer = new BioFuzzTracer();
+		this.batchParser = null;
 		
-		logger.debug(this.mgr.toString());	
+		if(logger.isDebugEnabled())
+			logger.debug(this.mgr.toString());
 	}
 	
 	public BioFuzzParserConfig getParserConfig() {
 		return this.config;
 	}
 	
+	/**
+	 * 
+	 * Getter. Each thread has a parser of its own, so that the parsing
+	 * state is not shared.
+	 * 
+	 * @return the parser of the current thread or null.
+	 * 
+	 */
+	public BioFuzzParser getParser() {
+		ThreadLocal<BioFuzzParser> p = this.parser;
+		return p == null ? null : p.get();
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the counters of the last parsing run of the current thread or 
+	 * null if no metrics are set in the parser configuration.
+	 * 
+	 */
+	public BioFuzzParseStats getLastParseStats() {
+		BioFuzzParser p = getParser();
+		return p == null ? null : p.getLastStats();
+	}
+	
+	/**
+	 * 
+	 * Creates a parser for each thread on first use. The parsers share the
+	 * CFG-graph, the parser configuration, the tokenizer and the pool of 
+	 * this manager.
+	 * 
+	 * @param tokenizer the tokenizer.
+	 * @return the per-thread parsers.
+	 * 
+	 */
+	private ThreadLocal<BioFuzzParser> createParsers(final BioFuzzTokenizer tokenizer) {
+		this.tokenizer = tokenizer;
+		return new ThreadLocal<BioFuzzParser>() {
+			@Override
+			protected BioFuzzParser initialValue() {
+				return new BioFuzzParser(mgr, config, tokenizer, getPool());
+			}
+		};
+	}
+	
+	/**
+	 * 
+	 * Returns the pool that the parsers of all threads use to step stacks
+	 * concurrently. The pool is created on first use, its worker threads
+	 * are only started when stacks are stepped concurrently.
+	 * 
+	 * @return the fork/join pool of this manager.
+	 * 
+	 */
+	private synchronized ForkJoinPool getPool() {
+		if(this.pool == null)
+			this.pool = new ForkJoinPool(this.config.getParallelism());
+		return this.pool;
+	}
+	
+	/**
+	 * 
+	 * Drops the parser of the current thread, e.g. at the end of a task 
+	 * of a pooled executor. A new parser is created when the thread parses
+	 * again.
+	 * 
+	 */
+	public void releaseParser() {
+		ThreadLocal<BioFuzzParser> p = this.parser;
+		if(p != null)
+			p.remove();
+	}
+	
+	/**
+	 * 
+	 * Stops the worker threads of the pool and of the batch parser and 
+	 * drops the parsers of all threads. The manager can still be used 
+	 * afterwards, parsers and pools are created again on demand.
+	 * 
+	 */
+	public void shutdown() {
+		BioFuzzBatchParser bp;
+		ForkJoinPool fjp;
+		
+		synchronized(this) {
+			bp = this.batchParser;
+			fjp = this.pool;
+			this.batchParser = null;
+			this.pool = null;
+			if(this.parser != null)
+				this.parser = createParsers(this.tokenizer);
+		}
+		
+		if(bp != null)
+			bp.shutdown();
+		if(fjp != null)
+			fjp.shutdown();
+	}
+	
 	public BioFuzzAttackCfgMgr getAtackCfgMgr() {
 		return this.mgr;
 	}
 	
+	/**
+	 * 
+	 * Eliminates left recursion of the grammar. The parser works on a 
+	 * rewritten copy of all left recursive production rules whereas 
+	 * parse-trees are still built from the original production rules. 
+	 * Should be called before parsing.
+	 * 
+	 * @return the names of all rewritten production rules.
+	 * 
+	 */
+	public Set<String> normalizeGrammar() {
+		return BioFuzzGrammarNormalizer.normalize(this.mgr);
+	}
+	
 	public BioFuzzParseTree getNewParseTree() {
 		
 		BioFuzzAttackCfg cfg = this.mgr.getAttackCfgByKey("S");
@@ -154,7 +357,220 @@ public class BioFuzzMgr {
 			logger.debug("No parser available");
 			return null;
 		}
-		return parser.buildTrees(s);
+		
+		BioFuzzParseCache c = this.cache;
+		if(c == null)
+			return getParser().buildTrees(s);
+		
+		return getParser().buildTrees(s, c);
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the cache of parse results or null.
+	 * 
+	 */
+	public BioFuzzParseCache getParseCache() {
+		return this.cache;
+	}
+	
+	/**
+	 * 
+	 * Lets buildTrees() look up the parse-trees of token sequences that 
+	 * were parsed before. Changes of the parser configuration and 
+	 * modifications of the grammar are detected by the cache itself.
+	 * 
+	 * @param cache the cache of parse results or null to disable caching.
+	 * 
+	 */
+	public void setParseCache(BioFuzzParseCache cache) {
+		this.cache = cache;
+	}
+	
+	/**
+	 * 
+	 * Takes a string as input and returns a shared packed parse forest 
+	 * that represents all of its parse-trees.
+	 * 
+	 * @param s the string to parse.
+	 * @return a parse forest or null.
+	 * 
+	 */
+	public BioFuzzParseForest buildForest( String s ) {
+		if(this.parser == null) {
+			logger.debug("No parser available");
+			return null;
+		}
+		return getParser().buildForest(s);
+	}
+	
+	/**
+	 * 
+	 * Rebuilds a parse-tree whose token list was edited, e.g. by a mutator.
+	 * If snapshots are enabled in the parser configuration, parsing is 
+	 * resumed at the first edited token.
+	 * 
+	 * @param tree a parse-tree whose token list was edited.
+	 * @param idx index of the first edited token.
+	 * @return a list of corresponding parse-trees or null.
+	 * 
+	 */
+	public List<BioFuzzParseTree> reparse( BioFuzzParseTree tree, int idx ) {
+		if(this.parser == null) {
+			logger.debug("No parser available");
+			return null;
+		}
+		return getParser().reparse(tree, idx);
+	}
+	
+	/**
+	 * 
+	 * Creates a parser for a long input that consists of statements 
+	 * separated by del. The statements are read and parsed one by one.
+	 * 
+	 * @param reader the input.
+	 * @param del the character that separates two statements.
+	 * @return an iterator over the parse-trees of each statement or null.
+	 * 
+	 */
+	public BioFuzzStreamParser parseStream( Reader reader, char del ) {
+		if(this.parser == null) {
+			logger.debug("No parser available");
+			return null;
+		}
+		return new BioFuzzStreamParser(getParser(), reader, del);
+	}
+	
+	/**
+	 * 
+	 * Creates a parser for a long token sequence that consists of 
+	 * statements separated by the token del. 
+	 * 
+	 * @param tokens the tokens of the input.
+	 * @param del the token that separates two statements.
+	 * @return an iterator over the parse-trees of each statement or null.
+	 * 
+	 */
+	public BioFuzzStreamParser parseStream( Iterator<String> tokens, String del ) {
+		if(this.parser == null) {
+			logger.debug("No parser available");
+			return null;
+		}
+		return new BioFuzzStreamParser(getParser(), tokens, del);
+	}
+	
+	/**
+	 * 
+	 * Getter. The batch parser is created on first use with the amount of
+	 * workers of the parser configuration.
+	 * 
+	 * @return the batch parser or null.
+	 * 
+	 */
+	public synchronized BioFuzzBatchParser getBatchParser() {
+		if(this.parser == null) {
+			logger.debug("No parser available");
+			return null;
+		}
+		if(this.batchParser == null) {
+			this.batchParser = new BioFuzzBatchParser(this.mgr, this.config, 
+					getParser().getTokenizer(), this.config.getBatchWorkers(), getPool());
+		}
+		return this.batchParser;
+	}
+	
+	/**
+	 * 
+	 * Parses many strings concurrently.
+	 * 
+	 * @param inputs the strings to parse.
+	 * @return the parse-trees of each string in input order and the
+	 * statistics of the batch or null.
+	 * 
+	 */
+	public BioFuzzBatchResult buildTreesBatch( Collection<String> inputs ) {
+		BioFuzzBatchParser bp = getBatchParser();
+		return bp == null ? null : bp.parse(inputs);
+	}
+	
+	/**
+	 * 
+	 * Parses many tokenized inputs concurrently. The tokenizer is not used.
+	 * 
+	 * @param inputs the tokens of each input, the last token has to be the
+	 * end-of-input marker.
+	 * @return the parse-trees of each input in input order and the
+	 * statistics of the batch or null.
+	 * 
+	 */
+	public BioFuzzBatchResult buildTreesBatchFromTokens( Collection<String[]> inputs ) {
+		BioFuzzBatchParser bp = getBatchParser();
+		return bp == null ? null : bp.parseTokens(inputs);
+	}
+	
+	/**
+	 * 
+	 * Parses many tokenized inputs concurrently. The tokenizer is not used.
+	 * 
+	 * @param inputs the tokens of each input, the last token has to be the
+	 * end-of-input marker.
+	 * @return the parse-trees of each input in input order and the
+	 * statistics of the batch or null.
+	 * 
+	 */
+	public BioFuzzBatchResult buildTreesBatchFromTokenLists( Collection<? extends List<String>> inputs ) {
+		BioFuzzBatchParser bp = getBatchParser();
+		return bp == null ? null : bp.parseTokenLists(inputs);
+	}
+	
+	/**
+	 * 
+	 * Parses a possibly unbounded sequence of strings concurrently.
+	 * 
+	 * @param inputs the strings to parse.
+	 * @return an iterator over the parse-trees of each string in input 
+	 * order or null.
+	 * 
+	 */
+	public BioFuzzBatchParser.Stream buildTreesStream( Iterator<String> inputs ) {
+		BioFuzzBatchParser bp = getBatchParser();
+		return bp == null ? null : bp.stream(inputs);
+	}
+	
+	/**
+	 * 
+	 * Checks whether a string is a word of the language that is defined by
+	 * the user-defined CFG. No parse-trees are built.
+	 * 
+	 * @param s the string to check.
+	 * @return true if s is a word of the language.
+	 * 
+	 */
+	public boolean recognize( String s ) {
+		if(this.parser == null) {
+			logger.debug("No parser available");
+			return false;
+		}
+		return getParser().recognize(s);
+	}
+	
+	/**
+	 * 
+	 * Takes a string as input and returns a single parse-tree. Parsing
+	 * stops as soon as a complete parse-tree is found.
+	 * 
+	 * @param s the string to parse.
+	 * @return a corresponding parse-tree or null.
+	 * 
+	 */
+	public BioFuzzParseTree buildFirstTree( String s ) {
+		if(this.parser == null) {
+			logger.debug("No parser available");
+			return null;
+		}
+		return getParser().buildFirstTree(s);
 	}
 	
 	/**
@@ -22,6 +22,7 @@ package org.biofuzztk.components;
 
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import dk.brics.automaton.Automaton;
 import dk.brics.automaton.State;
@@ -39,7 +40,6 @@ import dk.brics.automaton.RegExp;
 public class BioFuzzRexpGen {
 
     private final Automaton sm;
-    private final Random rgen;
 
     /**
      * 
@@ -50,7 +50,6 @@ public class BioFuzzRexpGen {
      */
     public BioFuzzRexpGen(String regex) {
         this.sm = new RegExp(regex).toAutomaton();
-        this.rgen = new Random();
     }
 
     /**
@@ -85,7 +84,7 @@ public class BioFuzzRexpGen {
         }
         
         int choices = s.isAccept() ? transitions.size() : transitions.size() - 1;
-        int choice = getRandomInt(0, choices, rgen);
+        int choice = getRandomInt(0, choices, ThreadLocalRandom.current());
         
         
         if (s.isAccept() && choice == 0)
@@ -93,7 +92,7 @@ public class BioFuzzRexpGen {
         
         Transition t = transitions.get(choice - (s.isAccept() ? 1 : 0));
         
-        sb.append((char) getRandomInt(t.getMin(), t.getMax(), rgen));
+        sb.append((char) getRandomInt(t.getMin(), t.getMax(), ThreadLocalRandom.current()));
         
         generate(sb, t.getDest());
     }
@@ -22,6 +22,7 @@ package org.biofuzztk.components;
 
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.Vector;
 
 import org.slf4j.Logger;
@@ -46,8 +47,6 @@ public class BioFuzzTokGen {
 
 	final static Logger logger = LoggerFactory.getLogger(BioFuzzTokGen.class);
 
-	private List<BioFuzzParseNode> exPnts = null;
-
 	private BioFuzzAttackCfgMgr mgr;
 
 	/**
@@ -60,8 +59,8 @@ public class BioFuzzTokGen {
 	 */
 	public BioFuzzTokGen(BioFuzzAttackCfgMgr mgr) {
 		this.mgr = mgr;
-		logger.debug(this.mgr.toString());
-		this.exPnts = new Vector<BioFuzzParseNode> ();
+		if(logger.isDebugEnabled())
+			logger.debug(this.mgr.toString());
 	}
 
 	/**
@@ -72,14 +71,15 @@ public class BioFuzzTokGen {
 	 * multiple ones.
 	 * 
 	 * @param tree the parse-tree to extend.
+	 * @param exPnts the list that receives the extension points.
 	 */
-	private void doGetExtPt(BioFuzzParseTree tree) {
+	private void doGetExtPt(BioFuzzParseTree tree, List<BioFuzzParseNode> exPnts) {
 		if(tree.getVal()) {
 			logger.debug("Tree is valid");
-			getExtPtVal(tree.getRootNode());
+			getExtPtVal(tree.getRootNode(), exPnts);
 		} else {
 			logger.debug("Tree is invalid");
-			getExtPtInval(tree.getRootNode());
+			getExtPtInval(tree.getRootNode(), exPnts);
 		}
 	}
 
@@ -89,8 +89,9 @@ public class BioFuzzTokGen {
 	 * for an incomplete (invalid) parse-tree.
 	 * 
 	 * @param node node of a parse-tree to check.
+	 * @param exPnts the list that receives the extension points.
 	 */
-	private void getExtPtInval(BioFuzzParseNode node) {
+	private void getExtPtInval(BioFuzzParseNode node, List<BioFuzzParseNode> exPnts) {
 
 		logger.debug("inval");
 		if(node == null || node.hasChildren() == false)
@@ -98,11 +99,11 @@ public class BioFuzzTokGen {
 
 		if(node.getVal() == false && node.getAtagType() == TagType.NON_TERMINAL || 
 				node.getAtagType() == TagType.ROOT) {
-			this.exPnts.add(node);
+			exPnts.add(node);
 		}
 
 
-		getExtPtInval(node.getRoc());
+		getExtPtInval(node.getRoc(), exPnts);
 	}
 
 
@@ -112,8 +113,9 @@ public class BioFuzzTokGen {
 	 * for a complete (valid) parse-tree.
 	 * 
 	 * @param node node of a parse-tree to check.
+	 * @param exPnts the list that receives the extension points.
 	 */
-	private void getExtPtVal(BioFuzzParseNode node) {
+	private void getExtPtVal(BioFuzzParseNode node, List<BioFuzzParseNode> exPnts) {
 		logger.debug("val");
 		if(node == null)
 			return;
@@ -129,16 +131,16 @@ public class BioFuzzTokGen {
 			logger.debug(":::::::::::::::::::::::");
 			logger.debug(node.getAtagName());
 			if(node.hasParent())
-				this.exPnts.add(node.getParent());
+				exPnts.add(node.getParent());
 		}
 		
 		if(node.isRoot() && !node.hasChildren()) {
 			logger.debug("root");
-			this.exPnts.add(node);
+			exPnts.add(node);
 		}
 
 		if(node.hasChildren() == true)
-			getExtPtVal(node.getRoc());
+			getExtPtVal(node.getRoc(), exPnts);
 
 	}
 
@@ -154,18 +156,19 @@ public class BioFuzzTokGen {
 
 		logger.debug("do Extend Tree");
 
-		this.exPnts.clear();
+		// extension points are local, so that trees can be extended concurrently
+		List<BioFuzzParseNode> exPnts = new Vector<BioFuzzParseNode>();
 		//logger.debug(this.mgr.toString());
-		doGetExtPt(tree);
+		doGetExtPt(tree, exPnts);
 
-		if(this.exPnts.size() <= 0) {
+		if(exPnts.size() <= 0) {
 			logger.debug("no extension point determined");
 			return TagType.STOP;
 		}
 		
 		logger.debug("Extension Points");
 
-		for(BioFuzzParseNode n : this.exPnts) {
+		for(BioFuzzParseNode n : exPnts) {
 			logger.debug("Point: "  + n.getAtagName());
 		}
 		
@@ -173,12 +176,12 @@ public class BioFuzzTokGen {
 		
 		if(tree.getVal()) {
 			
-			Random rand = new Random();
-			int idx = rand.nextInt(this.exPnts.size());
-			lnt = this.exPnts.get(idx);
+			Random rand = ThreadLocalRandom.current();
+			int idx = rand.nextInt(exPnts.size());
+			lnt = exPnts.get(idx);
 		} else {
 			
-			lnt = this.exPnts.get(this.exPnts.size()-1);
+			lnt = exPnts.get(exPnts.size()-1);
 		}
 
 		assert(lnt != null);
@@ -231,17 +234,17 @@ public class BioFuzzTokGen {
 		int lfr = tokLst.popLfr();
 		logger.debug("Lfr: " + lfr);
 
-		List<Number> choices = cfg.getChoicesByIdx(lfr);
+		int choiceCnt = cfg.getChoiceCnt(lfr);
 
-		logger.debug("choices: " + choices);
+		logger.debug("choices: " + choiceCnt);
 
 		// Get random choice
-		Random rand = new Random();
+		Random rand = ThreadLocalRandom.current();
 		int choice = 0;
-		if(choices.size() > 1)
-			choice = rand.nextInt(choices.size());
+		if(choiceCnt > 1)
+			choice = rand.nextInt(choiceCnt);
 
-		int nxtChoice = choices.get(choice).intValue();
+		int nxtChoice = cfg.getChoice(lfr, choice);
 
 		logger.debug("nxtChoice is: " + nxtChoice);
 
@@ -57,7 +57,8 @@ public class BioFuzzValidator {
 	 */
 	public BioFuzzValidator(BioFuzzAttackCfgMgr mgr) {
 		this.mgr = mgr;
-		logger.debug(this.mgr.toString());	
+		if(logger.isDebugEnabled())
+			logger.debug(this.mgr.toString());
 	}
 	
 	/**
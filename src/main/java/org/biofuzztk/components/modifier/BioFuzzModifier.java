@@ -21,6 +21,7 @@
 package org.biofuzztk.components.modifier;
 
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.Set;
 import java.util.List;
 import java.util.Vector;
@@ -66,7 +67,8 @@ public class BioFuzzModifier {
 	public BioFuzzModifier(BioFuzzAttackCfgMgr mgr,  List<BioFuzzMutator> mutators) {
 		this.mgr = mgr;
 		this.tracer = new BioFuzzTracer();
-		logger.debug(this.mgr.toString());	
+		if(logger.isDebugEnabled())
+			logger.debug(this.mgr.toString());
 		this.mutators = mutators;
 	}
 	
@@ -82,7 +84,8 @@ public class BioFuzzModifier {
 		this.mgr = mgr;
 		this.tracer = new BioFuzzTracer();
 		this.mutators = new Vector<BioFuzzMutator>();
-		logger.debug(this.mgr.toString());	
+		if(logger.isDebugEnabled())
+			logger.debug(this.mgr.toString());
 	}
 	
 	
@@ -235,7 +238,7 @@ public class BioFuzzModifier {
 	 */
 	public BioFuzzParseTree 
 	doCrossOver(BioFuzzParseTree treeA, BioFuzzParseTree treeB) {
-		Random rand = new Random();
+		Random rand = ThreadLocalRandom.current();
 		
 		// create copies of the original trees
 		BioFuzzParseTree treeAcp = new BioFuzzParseTree(treeA);
@@ -393,7 +396,7 @@ public class BioFuzzModifier {
 	public boolean
 	mutate(BioFuzzParseTree tree, int lrange, int rrange) {
 
-		Random ridx = new Random();
+		Random ridx = ThreadLocalRandom.current();
 		BioFuzzTokLst tokLst = tree.getTokLst();
 		
 		assert(tokLst != null);
@@ -453,7 +456,7 @@ public class BioFuzzModifier {
 			return false;
 		}
 		
-		Random ridx = new Random();
+		Random ridx = ThreadLocalRandom.current();
 		int idx = ridx.nextInt(applicable.size());
 		BioFuzzMutator mutator = applicable.get(idx);
 		
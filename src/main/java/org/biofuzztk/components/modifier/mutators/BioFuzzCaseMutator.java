@@ -21,6 +21,8 @@
 package org.biofuzztk.components.modifier.mutators;
 
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import org.biofuzztk.cfg.BioFuzzRexpMatcher;
 import org.biofuzztk.components.modifier.BioFuzzMutationType;
 import org.biofuzztk.components.modifier.BioFuzzMutator;
 import org.biofuzztk.ptree.BioFuzzTokLst;
@@ -57,6 +59,8 @@ public class BioFuzzCaseMutator implements BioFuzzMutator {
 	};
 	
 	
+	private static final BioFuzzRexpMatcher WORD = new BioFuzzRexpMatcher("[a-zA-z]+");
+	
 	final static Logger logger = LoggerFactory.getLogger(BioFuzzCaseMutator.class);
 	
 	@Override
@@ -68,7 +72,7 @@ public class BioFuzzCaseMutator implements BioFuzzMutator {
 		String s = tokLst.get(tokIdx);
 
 		
-		Random rand = new Random();
+		Random rand = ThreadLocalRandom.current();
 		int idx = rand.nextInt(type.length-1);
 
 		logger.debug("Mutation Type that is being applied: " + type[idx]);
@@ -110,7 +114,7 @@ public class BioFuzzCaseMutator implements BioFuzzMutator {
 
 	@Override
 	public boolean matches(String s) {
-		if(s.matches("[a-zA-z]+"))
+		if(WORD.matches(s))
 			return true;
 		else
 			return false;
@@ -21,11 +21,13 @@
 package org.biofuzztk.components.modifier.mutators;
 
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.biofuzztk.cfg.BioFuzzRexpMatcher;
 import org.biofuzztk.components.modifier.BioFuzzMutationType;
 import org.biofuzztk.components.modifier.BioFuzzMutator;
 import org.biofuzztk.ptree.BioFuzzTokLst;
@@ -54,6 +56,8 @@ public class BioFuzzQuoteMutator implements BioFuzzMutator {
 	};
 	
 	
+	private static final BioFuzzRexpMatcher QUOTE = new BioFuzzRexpMatcher("[\"']");
+	
 	final static Logger logger = LoggerFactory.getLogger(BioFuzzQuoteMutator.class);
 	
 	@Override
@@ -66,7 +70,7 @@ public class BioFuzzQuoteMutator implements BioFuzzMutator {
 		int tokIdx = tidx;
 		String s = tokLst.get(tokIdx);
 
-		Random rand = new Random();
+		Random rand = ThreadLocalRandom.current();
 		int idx = rand.nextInt(type.length);
 
 		logger.debug("Mutation Type that is being applied: " + type[idx]);
@@ -97,7 +101,7 @@ public class BioFuzzQuoteMutator implements BioFuzzMutator {
 
 	@Override
 	public boolean matches(String s) {
-		if(s.matches("[\"']") && s.length() == 1)
+		if(QUOTE.matches(s) && s.length() == 1)
 			return true;
 		else
 			return false;
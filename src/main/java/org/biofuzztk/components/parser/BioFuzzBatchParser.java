@@ -0,0 +1,379 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfgMgr;
+import org.biofuzztk.components.tokenizer.BioFuzzTokenizer;
+import org.biofuzztk.ptree.BioFuzzParseTree;
+
+/**
+ * 
+ * Parses many inputs on a pool of worker threads. Each worker uses a 
+ * parser of its own, so the parsers do not share any parsing state. 
+ * The results are returned in the order of the inputs. Inputs that are
+ * tokenized already do not need the tokenizer.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzBatchParser {
+	
+	final static Logger logger = LoggerFactory.getLogger(BioFuzzBatchParser.class);
+	
+	private BioFuzzTokenizer tokenizer;
+	private int workers;
+	private ExecutorService executor;
+	private BlockingQueue<BioFuzzParser> parsers;
+	
+	/**
+	 * 
+	 * Constructor.
+	 * 
+	 * @param mgr the CFG-graph.
+	 * @param config the parser configuration.
+	 * @param tokenizer the tokenizer for inputs that are not tokenized yet.
+	 * @param workers the amount of worker threads.
+	 * 
+	 */
+	public BioFuzzBatchParser(BioFuzzAttackCfgMgr mgr, BioFuzzParserConfig config, 
+			BioFuzzTokenizer tokenizer, int workers) {
+		this(mgr, config, tokenizer, workers, null);
+	}
+	
+	/**
+	 * 
+	 * Constructor.
+	 * 
+	 * @param mgr the CFG-graph.
+	 * @param config the parser configuration.
+	 * @param tokenizer the tokenizer for inputs that are not tokenized yet.
+	 * @param workers the amount of worker threads.
+	 * @param pool the pool that the parsers share to step stacks concurrently
+	 * or null, see BioFuzzParser.
+	 * 
+	 */
+	public BioFuzzBatchParser(BioFuzzAttackCfgMgr mgr, BioFuzzParserConfig config, 
+			BioFuzzTokenizer tokenizer, int workers, ForkJoinPool pool) {
+		assert(workers > 0);
+		this.tokenizer = tokenizer;
+		this.workers = workers;
+		this.parsers = new ArrayBlockingQueue<BioFuzzParser>(workers);
+		
+		for(int i = 0; i < workers; i++) {
+			this.parsers.add(new BioFuzzParser(mgr, config, tokenizer, pool));
+		}
+		
+		// compute the FIRST sets before the workers need them
+		mgr.getFirstSets();
+		
+		this.executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+			private final AtomicInteger cnt = new AtomicInteger(0);
+			
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "biofuzz-batch-" + this.cnt.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+	
+	/**
+	 * 
+	 * Creates the job that parses a single input.
+	 * 
+	 * @param s the string to parse or null.
+	 * @param tokLst the tokens to parse if s is null.
+	 * @return the job.
+	 * 
+	 */
+	private Callable<List<BioFuzzParseTree>> job(final String s, final String [] tokLst) {
+		return new Callable<List<BioFuzzParseTree>>() {
+			@Override
+			public List<BioFuzzParseTree> call() throws Exception {
+				String [] toks = tokLst;
+				
+				if(toks == null)
+					toks = tokenizer.tokenize(s);
+				
+				BioFuzzParser parser = parsers.take();
+				try {
+					return parser.buildTrees(toks);
+				} finally {
+					parsers.put(parser);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * 
+	 * Parses all inputs.
+	 * 
+	 * @param jobs the jobs of the inputs in input order.
+	 * @return the batch result.
+	 * 
+	 */
+	private BioFuzzBatchResult run(Iterator<Callable<List<BioFuzzParseTree>>> jobs) {
+		Stream stream = new Stream(jobs, Integer.MAX_VALUE);
+		List<List<BioFuzzParseTree>> trees = new Vector<List<BioFuzzParseTree>>();
+		
+		while(stream.hasNext()) {
+			trees.add(stream.next());
+		}
+		
+		logger.debug("batch: " + stream.getStats());
+		return new BioFuzzBatchResult(trees, stream.getStats());
+	}
+	
+	/**
+	 * 
+	 * Parses a collection of strings.
+	 * 
+	 * @param inputs the strings to parse.
+	 * @return the parse-trees of each string in input order.
+	 * 
+	 */
+	public BioFuzzBatchResult parse(Collection<String> inputs) {
+		return run(strJobs(inputs.iterator()));
+	}
+	
+	/**
+	 * 
+	 * Parses a collection of tokenized inputs. The last token of each
+	 * input has to be the end-of-input marker.
+	 * 
+	 * @param inputs the tokens of each input.
+	 * @return the parse-trees of each input in input order.
+	 * 
+	 */
+	public BioFuzzBatchResult parseTokens(Collection<String[]> inputs) {
+		return run(tokJobs(inputs.iterator()));
+	}
+	
+	/**
+	 * 
+	 * Parses a collection of tokenized inputs. The last token of each
+	 * input has to be the end-of-input marker.
+	 * 
+	 * @param inputs the tokens of each input.
+	 * @return the parse-trees of each input in input order.
+	 * 
+	 */
+	public BioFuzzBatchResult parseTokenLists(Collection<? extends List<String>> inputs) {
+		final Iterator<? extends List<String>> it = inputs.iterator();
+		
+		return run(tokJobs(new Iterator<String[]>() {
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public String[] next() {
+				List<String> toks = it.next();
+				return toks.toArray(new String[toks.size()]);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		}));
+	}
+	
+	/**
+	 * 
+	 * Parses a possibly unbounded sequence of strings. Only a limited 
+	 * amount of inputs is parsed ahead of the consumer.
+	 * 
+	 * @param inputs the strings to parse.
+	 * @return an iterator over the parse-trees of each string in input order.
+	 * 
+	 */
+	public Stream stream(Iterator<String> inputs) {
+		return new Stream(strJobs(inputs), 2 * this.workers);
+	}
+	
+	/**
+	 * 
+	 * Parses a possibly unbounded sequence of tokenized inputs. Only a 
+	 * limited amount of inputs is parsed ahead of the consumer.
+	 * 
+	 * @param inputs the tokens of each input.
+	 * @return an iterator over the parse-trees of each input in input order.
+	 * 
+	 */
+	public Stream streamTokens(Iterator<String[]> inputs) {
+		return new Stream(tokJobs(inputs), 2 * this.workers);
+	}
+	
+	private Iterator<Callable<List<BioFuzzParseTree>>> strJobs(final Iterator<String> inputs) {
+		return new Iterator<Callable<List<BioFuzzParseTree>>>() {
+			@Override
+			public boolean hasNext() {
+				return inputs.hasNext();
+			}
+
+			@Override
+			public Callable<List<BioFuzzParseTree>> next() {
+				return job(inputs.next(), null);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	private Iterator<Callable<List<BioFuzzParseTree>>> tokJobs(final Iterator<String[]> inputs) {
+		return new Iterator<Callable<List<BioFuzzParseTree>>>() {
+			@Override
+			public boolean hasNext() {
+				return inputs.hasNext();
+			}
+
+			@Override
+			public Callable<List<BioFuzzParseTree>> next() {
+				return job(null, inputs.next());
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	/**
+	 * 
+	 * Stops the worker threads and the pools that are owned by the parsers.
+	 * 
+	 */
+	public void shutdown() {
+		this.executor.shutdown();
+		for(BioFuzzParser p : this.parsers) {
+			p.shutdown();
+		}
+	}
+	
+	public int getWorkers() {
+		return this.workers;
+	}
+	
+	/**
+	 * 
+	 * Iterates over the parse-trees of a sequence of inputs. The inputs
+	 * are submitted to the workers ahead of the consumer, but at most 
+	 * window inputs are pending at a time. The parse-trees of an input 
+	 * are null if it cannot be parsed.
+	 * 
+	 * @author julian
+	 *
+	 */
+	public class Stream implements Iterator<List<BioFuzzParseTree>> {
+		
+		private Iterator<Callable<List<BioFuzzParseTree>>> jobs;
+		private LinkedList<Future<List<BioFuzzParseTree>>> pending;
+		private int window;
+		private BioFuzzBatchStats stats;
+		
+		Stream(Iterator<Callable<List<BioFuzzParseTree>>> jobs, int window) {
+			assert(window > 0);
+			this.jobs = jobs;
+			this.pending = new LinkedList<Future<List<BioFuzzParseTree>>>();
+			this.window = window;
+			this.stats = new BioFuzzBatchStats();
+		}
+		
+		@Override
+		public boolean hasNext() {
+			while(this.pending.size() < this.window && this.jobs.hasNext()) {
+				this.pending.add(executor.submit(this.jobs.next()));
+			}
+			
+			if(this.pending.isEmpty())
+				this.stats.finish();
+			
+			return !this.pending.isEmpty();
+		}
+		
+		@Override
+		public List<BioFuzzParseTree> next() {
+			if(!hasNext())
+				throw new NoSuchElementException();
+			
+			Future<List<BioFuzzParseTree>> f = this.pending.removeFirst();
+			List<BioFuzzParseTree> trees = null;
+			
+			try {
+				trees = f.get();
+				this.stats.add(trees);
+			} catch (ExecutionException e) {
+				logger.error("parsing failed: " + e.getCause());
+				this.stats.addError();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				this.stats.addError();
+			}
+			
+			return trees;
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		/**
+		 * 
+		 * Getter.
+		 * 
+		 * @return the statistics of the inputs that were consumed so far.
+		 * 
+		 */
+		public BioFuzzBatchStats getStats() {
+			return this.stats;
+		}
+	}
+
+}
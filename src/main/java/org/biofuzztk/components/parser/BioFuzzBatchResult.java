@@ -0,0 +1,89 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+import java.util.List;
+
+import org.biofuzztk.ptree.BioFuzzParseTree;
+
+/**
+ * 
+ * The result of a batch of parsing runs. The parse-trees are kept in
+ * the order of the inputs.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzBatchResult {
+	
+	private List<List<BioFuzzParseTree>> trees;
+	private BioFuzzBatchStats stats;
+	
+	/**
+	 * 
+	 * Constructor.
+	 * 
+	 * @param trees the parse-trees of each input, null if there are none.
+	 * @param stats the statistics of the batch.
+	 * 
+	 */
+	public BioFuzzBatchResult(List<List<BioFuzzParseTree>> trees, BioFuzzBatchStats stats) {
+		this.trees = trees;
+		this.stats = stats;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the parse-trees of each input in input order.
+	 * 
+	 */
+	public List<List<BioFuzzParseTree>> getTrees() {
+		return this.trees;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @param idx index of the input.
+	 * @return the parse-trees of the input or null if there are none.
+	 * 
+	 */
+	public List<BioFuzzParseTree> getTrees(int idx) {
+		return this.trees.get(idx);
+	}
+	
+	public int getSize() {
+		return this.trees.size();
+	}
+	
+	public BioFuzzBatchStats getStats() {
+		return this.stats;
+	}
+	
+	@Override
+	public String toString() {
+		return this.stats.toString();
+	}
+
+}
@@ -0,0 +1,178 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+import java.util.List;
+
+import org.biofuzztk.ptree.BioFuzzParseTree;
+
+/**
+ * 
+ * Throughput and failure counts of a batch of parsing runs.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzBatchStats {
+	
+	private int inputCnt;
+	private int parsedCnt;
+	private int failedCnt;
+	private int errorCnt;
+	private long treeCnt;
+	private long start;
+	private long end;
+	
+	public BioFuzzBatchStats() {
+		this.inputCnt = 0;
+		this.parsedCnt = 0;
+		this.failedCnt = 0;
+		this.errorCnt = 0;
+		this.treeCnt = 0;
+		this.start = System.nanoTime();
+		this.end = -1;
+	}
+	
+	/**
+	 * 
+	 * Counts the result of a single input.
+	 * 
+	 * @param trees the parse-trees of the input or null.
+	 * 
+	 */
+	void add(List<BioFuzzParseTree> trees) {
+		this.inputCnt++;
+		if(trees == null || trees.isEmpty()) {
+			this.failedCnt++;
+		} else {
+			this.parsedCnt++;
+			this.treeCnt += trees.size();
+		}
+	}
+	
+	/**
+	 * 
+	 * Counts an input whose parsing run threw an exception.
+	 * 
+	 */
+	void addError() {
+		this.inputCnt++;
+		this.errorCnt++;
+	}
+	
+	/**
+	 * 
+	 * Stops the clock.
+	 * 
+	 */
+	void finish() {
+		this.end = System.nanoTime();
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of inputs.
+	 * 
+	 */
+	public int getInputCnt() {
+		return this.inputCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of inputs with at least one parse-tree.
+	 * 
+	 */
+	public int getParsedCnt() {
+		return this.parsedCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of inputs without a parse-tree.
+	 * 
+	 */
+	public int getFailedCnt() {
+		return this.failedCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of inputs whose parsing run threw an exception.
+	 * 
+	 */
+	public int getErrorCnt() {
+		return this.errorCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of parse-trees of all inputs.
+	 * 
+	 */
+	public long getTreeCnt() {
+		return this.treeCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the elapsed time in milliseconds.
+	 * 
+	 */
+	public long getMillis() {
+		long stop = this.end < 0 ? System.nanoTime() : this.end;
+		return (stop - this.start) / 1000000;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of inputs per second.
+	 * 
+	 */
+	public double getThroughput() {
+		long stop = this.end < 0 ? System.nanoTime() : this.end;
+		double secs = Math.max(1, stop - this.start) / 1e9;
+		return this.inputCnt / secs;
+	}
+	
+	@Override
+	public String toString() {
+		return "inputs: " + this.inputCnt + " parsed: " + this.parsedCnt + 
+				" failed: " + this.failedCnt + " errors: " + this.errorCnt + 
+				" trees: " + this.treeCnt + " time: " + getMillis() + "ms" + 
+				" throughput: " + String.format("%.1f", getThroughput()) + "/s";
+	}
+
+}
@@ -0,0 +1,115 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfg;
+
+/**
+ *
+ * The graph-structured stack (GSS) that is shared by all push-down
+ * automatons of a single parsing run. Stacks only keep a reference to
+ * their top node, so forking a stack does not copy any tuples. Nodes
+ * are hash-consed, i.e. stacks that push the same tuples on the same
+ * node end up with the same top node. Each node knows the nodes that 
+ * were pushed on it, so an existing node is found without allocating
+ * anything. Nodes can be pushed concurrently.
+ *
+ * @author julian
+ *
+ */
+public class BioFuzzGss {
+
+	private volatile BioFuzzGssNode [] roots;
+	private AtomicInteger nodeCnt;
+
+	public BioFuzzGss() {
+		this.roots = new BioFuzzGssNode[0];
+		this.nodeCnt = new AtomicInteger(0);
+	}
+
+	/**
+	 *
+	 * Returns the node that holds the tuple (cfg,lfr) on top of parent.
+	 * A new node is only created if there is none yet.
+	 *
+	 * @param parent the current top node or null.
+	 * @param cfg production rule definition.
+	 * @param lfr index of last firing rule.
+	 * @return the new top node.
+	 *
+	 */
+	public BioFuzzGssNode push(BioFuzzGssNode parent, BioFuzzAttackCfg cfg, int lfr) {
+		BioFuzzGssNode node = find(parent == null ? this.roots : parent.getChildren(), cfg, lfr);
+		if(node != null)
+			return node;
+
+		synchronized(parent == null ? this : parent) {
+			BioFuzzGssNode [] children = (parent == null ? this.roots : parent.getChildren());
+			node = find(children, cfg, lfr);
+			if(node != null)
+				return node;
+
+			node = new BioFuzzGssNode(parent, 
+					new BioFuzzParsingTuple(parent == null ? null : parent.getTuple(),cfg,lfr));
+			children = Arrays.copyOf(children, children.length + 1);
+			children[children.length - 1] = node;
+			if(parent == null)
+				this.roots = children;
+			else
+				parent.setChildren(children);
+		}
+		this.nodeCnt.incrementAndGet();
+		return node;
+	}
+
+	/**
+	 *
+	 * Looks up the node that holds the tuple (cfg,lfr).
+	 *
+	 * @param nodes the nodes that were pushed on the same node.
+	 * @param cfg production rule definition.
+	 * @param lfr index of last firing rule.
+	 * @return the node or null.
+	 *
+	 */
+	private static BioFuzzGssNode find(BioFuzzGssNode [] nodes, BioFuzzAttackCfg cfg, int lfr) {
+		for(BioFuzzGssNode node : nodes) {
+			if(node.getCfg() == cfg && node.getLfr() == lfr)
+				return node;
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * Getter.
+	 *
+	 * @return the amount of distinct nodes.
+	 *
+	 */
+	public int getNodeCnt() {
+		return this.nodeCnt.get();
+	}
+
+}
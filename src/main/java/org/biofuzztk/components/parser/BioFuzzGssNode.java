@@ -0,0 +1,135 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfg;
+
+/**
+ *
+ * A node of the graph-structured stack. Each node holds a single tuple
+ * and points to the node below. The tuple and the node below never 
+ * change. Nodes are interned by BioFuzzGss, so two stacks with the same
+ * content share the same node.
+ *
+ * @author julian
+ *
+ */
+public class BioFuzzGssNode {
+
+	private final BioFuzzGssNode parent;
+	private final BioFuzzParsingTuple tup;
+	private final int size;
+	private final int hash;
+	private volatile BioFuzzGssNode [] children;
+
+	/**
+	 *
+	 * Constructor.
+	 *
+	 * @param parent the node below or null.
+	 * @param tup the tuple that is stored in this node.
+	 *
+	 */
+	BioFuzzGssNode(BioFuzzGssNode parent, BioFuzzParsingTuple tup) {
+		this.parent = parent;
+		this.tup = tup;
+		this.size = (parent == null ? 1 : parent.size + 1);
+		this.hash = 31 * (31 * System.identityHashCode(parent) +
+				System.identityHashCode(tup.getCfg())) + tup.getLfr();
+		this.children = new BioFuzzGssNode[0];
+	}
+
+	public BioFuzzGssNode getParent() {
+		return this.parent;
+	}
+
+	/**
+	 *
+	 * Getter.
+	 *
+	 * @return the nodes that were pushed on this node.
+	 *
+	 */
+	BioFuzzGssNode [] getChildren() {
+		return this.children;
+	}
+
+	void setChildren(BioFuzzGssNode [] children) {
+		this.children = children;
+	}
+
+	public BioFuzzParsingTuple getTuple() {
+		return this.tup;
+	}
+
+	public BioFuzzAttackCfg getCfg() {
+		return this.tup.getCfg();
+	}
+
+	public int getLfr() {
+		return this.tup.getLfr();
+	}
+
+	/**
+	 *
+	 * Getter.
+	 *
+	 * @return the hash of the tuple of this node and all tuples below.
+	 *
+	 */
+	public int getPrefixHash() {
+		return this.tup.getPrefixHash();
+	}
+
+	/**
+	 *
+	 * Getter.
+	 *
+	 * @return the amount of tuples from this node down to the bottom.
+	 *
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(this == o)
+			return true;
+		if(!(o instanceof BioFuzzGssNode))
+			return false;
+		BioFuzzGssNode n = (BioFuzzGssNode)o;
+		return this.parent == n.parent &&
+				this.tup.getCfg() == n.tup.getCfg() &&
+				this.tup.getLfr() == n.tup.getLfr();
+	}
+
+	@Override
+	public String toString() {
+		return "(GSS node size: " + this.size + " lfr: " + this.tup.getLfr() + ")";
+	}
+
+}
@@ -0,0 +1,193 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfg;
+import org.biofuzztk.cfg.BioFuzzAttackTag.TagType;
+
+/**
+ *
+ * A push-down automaton whose tuples live in a graph-structured stack.
+ * Forking only copies the reference to the top node and to the
+ * derivation, i.e. it takes constant time.
+ *
+ * @author julian
+ *
+ */
+public class BioFuzzGssStack extends BioFuzzTupleStack {
+
+	private BioFuzzGss gss;
+	private BioFuzzGssNode top;
+
+	/**
+	 *
+	 * Constructor.
+	 *
+	 * @param gss the graph-structured stack that is shared by all stacks.
+	 * @param key name of attack-tag.
+	 * @param cur current index of token of token-list.
+	 *
+	 */
+	public BioFuzzGssStack(BioFuzzGss gss, String key, int cur) {
+		super(key, cur, BioFuzzParsingStatus.IN_PROGRESS);
+		this.gss = gss;
+		this.top = null;
+	}
+
+	/**
+	 *
+	 * Copy constructor.
+	 *
+	 * @param t a tuple-stack.
+	 *
+	 */
+	public BioFuzzGssStack(BioFuzzGssStack t) {
+		super(t, BioFuzzParsingStatus.IN_PROGRESS);
+		this.gss = t.gss;
+		this.top = t.top;
+	}
+
+	@Override
+	public BioFuzzTupleStack copy() {
+		return new BioFuzzGssStack(this);
+	}
+
+	@Override
+	public BioFuzzTupleStack copyInto(BioFuzzTupleStack spare) {
+		BioFuzzGssStack s = (BioFuzzGssStack)spare;
+		s.assign(this, BioFuzzParsingStatus.IN_PROGRESS);
+		s.gss = this.gss;
+		s.top = this.top;
+		return s;
+	}
+
+	@Override
+	public void pushTuple(BioFuzzAttackCfg cfg, TagType t, int lfr) {
+		this.top = this.gss.push(this.top, cfg, lfr);
+		record(cfg, t, lfr);
+	}
+
+	@Override
+	public void removeLastTuple() {
+		if(this.top != null)
+			this.top = this.top.getParent();
+	}
+
+	/**
+	 *
+	 * Walks down from the top node to the node of a tuple.
+	 *
+	 * @param idx index of the tuple from the bottom.
+	 * @return the node or null.
+	 *
+	 */
+	private BioFuzzGssNode getNode(int idx) {
+		int size = getSize();
+
+		if(idx < 0 || idx >= size)
+			return null;
+
+		BioFuzzGssNode node = this.top;
+		for(int i = size - 1; i > idx; i--) {
+			node = node.getParent();
+		}
+		return node;
+	}
+
+	@Override
+	public BioFuzzParsingTuple getTuple(int idx) {
+		BioFuzzGssNode node = getNode(idx);
+		return node == null ? null : node.getTuple();
+	}
+
+	@Override
+	public BioFuzzParsingTuple getLastTuple() {
+		return this.top == null ? null : this.top.getTuple();
+	}
+
+	@Override
+	public BioFuzzAttackCfg getCfg(int idx) {
+		assert(idx >= 0 && idx < getSize());
+		return getNode(idx).getCfg();
+	}
+
+	@Override
+	public int getLfr(int idx) {
+		assert(idx >= 0 && idx < getSize());
+		return getNode(idx).getLfr();
+	}
+
+	@Override
+	public BioFuzzAttackCfg getLastCfg() {
+		return this.top == null ? null : this.top.getCfg();
+	}
+
+	@Override
+	public int getLastLfr() {
+		return this.top == null ? -1 : this.top.getLfr();
+	}
+
+	@Override
+	protected int getPrefixHash() {
+		return this.top == null ? 0 : this.top.getPrefixHash();
+	}
+
+	@Override
+	public int getSize() {
+		return this.top == null ? 0 : this.top.getSize();
+	}
+
+	/**
+	 *
+	 * Getter.
+	 *
+	 * @return the top node of the graph-structured stack.
+	 *
+	 */
+	public BioFuzzGssNode getTop() {
+		return this.top;
+	}
+
+	@Override
+	protected boolean hasSameTuples(BioFuzzTupleStack t) {
+		return t instanceof BioFuzzGssStack && ((BioFuzzGssStack)t).top == this.top;
+	}
+
+	@Override
+	public void merge(BioFuzzTupleStack t) {
+		assert(((BioFuzzGssStack)t).top == this.top);
+		super.merge(t);
+	}
+
+	@Override
+	public String toString() {
+		String s = "GSS STACK--------------------------------\n";
+		s += "Status: " + getStatus() + "\n";
+		s += "Cur: " + getCur() + "\n";
+		s += "Tstack Size: " + getSize() + "\n";
+		s += "Top: " + this.top + "\n";
+		s += "Alternatives: " + (getDerivation() == null ? 0 : getDerivation().getAltCnt()) + "\n";
+		s += "----------------------------------------\n";
+
+		return s;
+	}
+
+}
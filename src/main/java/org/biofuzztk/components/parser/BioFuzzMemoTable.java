@@ -0,0 +1,425 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfg;
+import org.biofuzztk.ptree.BioFuzzDerivation;
+
+/**
+ * 
+ * Memo table for sub-parses. A sub-parse is identified by the production
+ * rule definition, the index of the non-terminal that is expanded and the
+ * token index where the expansion starts. Its outcomes are the token
+ * indexes where the non-terminal ends together with the corresponding
+ * derivation fragments. A sub-parse that was stopped by the iteration 
+ * limit of the parser is only reused in the same iteration.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzMemoTable {
+	
+	/**
+	 * 
+	 * The outcome of a sub-parse.
+	 * 
+	 * @author julian
+	 *
+	 */
+	public static class Outcome {
+		
+		private final int cur;
+		private final BioFuzzDerivation derivation;
+		private final boolean finished;
+		private final boolean complete;
+		private final int delay;
+		
+		/**
+		 * 
+		 * Constructor.
+		 * 
+		 * @param cur token index after the non-terminal.
+		 * @param derivation the derivation fragment of the non-terminal.
+		 * @param finished true if the end of the token list was reached
+		 * before the non-terminal was complete.
+		 * @param complete true if the non-terminal is complete or can be 
+		 * completed without consuming tokens.
+		 * @param delay the amount of iterations the sub-parse took in 
+		 * addition to the iteration of the expansion.
+		 * 
+		 */
+		public Outcome(int cur, BioFuzzDerivation derivation, boolean finished, boolean complete, int delay) {
+			this.cur = cur;
+			this.derivation = derivation;
+			this.finished = finished;
+			this.complete = complete;
+			this.delay = delay;
+		}
+		
+		public int getCur() {
+			return this.cur;
+		}
+		
+		public BioFuzzDerivation getDerivation() {
+			return this.derivation;
+		}
+		
+		public boolean isFinished() {
+			return this.finished;
+		}
+		
+		public boolean isComplete() {
+			return this.complete;
+		}
+		
+		public int getDelay() {
+			return this.delay;
+		}
+		
+		@Override
+		public String toString() {
+			return "(cur: " + this.cur + " finished: " + this.finished + " complete: " + 
+					this.complete + " delay: " + this.delay + " alternatives: " + 
+					(this.derivation == null ? 0 : this.derivation.getAltCnt()) + ")";
+		}
+	}
+	
+	/**
+	 * 
+	 * The outcomes of a sub-parse together with the iterations it took. A
+	 * sub-parse starts in the iteration of the expansion. As long as it 
+	 * was not stopped by the iteration limit of the parser, its outcomes 
+	 * are the same for every iteration that leaves enough room.
+	 * 
+	 * @author julian
+	 *
+	 */
+	public static class Entry {
+		
+		private final int depth;
+		private final int iter;
+		private List<Outcome> outcomes;
+		private int used;
+		private boolean bounded;
+		
+		/**
+		 * 
+		 * Constructor.
+		 * 
+		 * @param depth the stack size of the expanding stack.
+		 * @param iter the iteration of the expansion.
+		 * 
+		 */
+		public Entry(int depth, int iter) {
+			this(depth, iter, null);
+		}
+		
+		private Entry(int depth, int iter, List<Outcome> outcomes) {
+			this.depth = depth;
+			this.iter = iter;
+			this.outcomes = outcomes;
+			this.used = 0;
+			this.bounded = false;
+		}
+		
+		/**
+		 * 
+		 * Records the iterations that the sub-parse needed.
+		 * 
+		 * @param used an amount of iterations.
+		 * @param bounded true if the sub-parse was stopped by the iteration limit.
+		 * 
+		 */
+		public void extend(int used, boolean bounded) {
+			this.used = Math.max(this.used, used);
+			this.bounded |= bounded;
+		}
+		
+		/**
+		 * 
+		 * Checks whether the outcomes are the same for a sub-parse that 
+		 * starts in another iteration.
+		 * 
+		 * @param iter the iteration of the expansion.
+		 * @param maxIter upper bound of parsing iterations.
+		 * @return true if the outcomes can be reused.
+		 * 
+		 */
+		boolean isValid(int iter, int maxIter) {
+			return this.iter == iter || (!this.bounded && iter + this.used <= maxIter);
+		}
+		
+		/**
+		 * 
+		 * Getter.
+		 * 
+		 * @return the stack size of the expanding stack that started the 
+		 * sub-parse.
+		 * 
+		 */
+		public int getDepth() {
+			return this.depth;
+		}
+		
+		public int getIter() {
+			return this.iter;
+		}
+		
+		public List<Outcome> getOutcomes() {
+			return this.outcomes;
+		}
+		
+		public int getUsed() {
+			return this.used;
+		}
+		
+		public boolean isBounded() {
+			return this.bounded;
+		}
+	}
+	
+	private static class Key {
+		
+		private final BioFuzzAttackCfg cfg;
+		private final int choice;
+		private final int cur;
+		
+		Key(BioFuzzAttackCfg cfg, int choice, int cur) {
+			this.cfg = cfg;
+			this.choice = choice;
+			this.cur = cur;
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * (31 * System.identityHashCode(this.cfg) + this.choice) + this.cur;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Key))
+				return false;
+			Key k = (Key)o;
+			return this.cfg == k.cfg && this.choice == k.choice && this.cur == k.cur;
+		}
+	}
+	
+	// answers lookups of sub-parses that are being computed
+	private static final Entry IN_PROGRESS = new Entry(0, 0, 
+			Collections.unmodifiableList(new Vector<Outcome>()));
+	
+	private Map<Key,List<Entry>> table;
+	private Set<Key> busy;
+	private int maxIter;
+	private int entryCnt;
+	
+	private long hitCnt;
+	private long missCnt;
+	private long cycleCnt;
+	
+	/**
+	 * 
+	 * Constructor.
+	 * 
+	 * @param maxIter upper bound of parsing iterations of the parser.
+	 * 
+	 */
+	public BioFuzzMemoTable(int maxIter) {
+		this.table = new HashMap<Key,List<Entry>>();
+		this.busy = new HashSet<Key>();
+		this.maxIter = maxIter;
+		this.entryCnt = 0;
+		this.hitCnt = 0;
+		this.missCnt = 0;
+		this.cycleCnt = 0;
+	}
+	
+	/**
+	 * 
+	 * Looks up the outcomes of a sub-parse without counting the lookup. 
+	 * If the sub-parse is still being computed (left recursion), an entry 
+	 * without outcomes is returned.
+	 * 
+	 * @param cfg production rule definition.
+	 * @param choice index of the non-terminal in cfg.
+	 * @param cur token index where the expansion starts.
+	 * @param iter the iteration of the expansion.
+	 * @return the entry or null if there is none for this iteration.
+	 * 
+	 */
+	public Entry find(BioFuzzAttackCfg cfg, int choice, int cur, int iter) {
+		Key key = new Key(cfg, choice, cur);
+		
+		if(this.busy.contains(key))
+			return IN_PROGRESS;
+		
+		List<Entry> entries = this.table.get(key);
+		if(entries != null) {
+			for(Entry e : entries) {
+				if(e.isValid(iter, this.maxIter))
+					return e;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * 
+	 * Looks up the outcomes of a sub-parse. If the sub-parse is still
+	 * being computed (left recursion), an empty list is returned.
+	 * 
+	 * @param cfg production rule definition.
+	 * @param choice index of the non-terminal in cfg.
+	 * @param cur token index where the expansion starts.
+	 * @param iter the iteration of the expansion.
+	 * @return the list of outcomes or null if the sub-parse is unknown.
+	 * 
+	 */
+	public List<Outcome> lookup(BioFuzzAttackCfg cfg, int choice, int cur, int iter) {
+		Entry e = find(cfg, choice, cur, iter);
+		
+		if(e == null) {
+			this.missCnt++;
+			return null;
+		} 
+		
+		if (e == IN_PROGRESS) {
+			this.cycleCnt++;
+		} else {
+			this.hitCnt++;
+		}
+		return e.outcomes;
+	}
+	
+	/**
+	 * 
+	 * Marks a sub-parse as being computed. Counts as a lookup that was not
+	 * answered from the table.
+	 * 
+	 * @param cfg production rule definition.
+	 * @param choice index of the non-terminal in cfg.
+	 * @param cur token index where the expansion starts.
+	 * @param depth the stack size of the expanding stack.
+	 * @param iter the iteration of the expansion.
+	 * @return the entry that receives the outcomes.
+	 * 
+	 */
+	public Entry start(BioFuzzAttackCfg cfg, int choice, int cur, int depth, int iter) {
+		this.busy.add(new Key(cfg, choice, cur));
+		this.missCnt++;
+		return new Entry(depth, iter);
+	}
+	
+	/**
+	 * 
+	 * Stores the outcomes of a sub-parse.
+	 * 
+	 * @param cfg production rule definition.
+	 * @param choice index of the non-terminal in cfg.
+	 * @param cur token index where the expansion starts.
+	 * @param entry the entry returned by start().
+	 * @param outcomes the outcomes of the sub-parse.
+	 * 
+	 */
+	public void put(BioFuzzAttackCfg cfg, int choice, int cur, Entry entry, List<Outcome> outcomes) {
+		Key key = new Key(cfg, choice, cur);
+		
+		entry.outcomes = outcomes;
+		this.busy.remove(key);
+		
+		List<Entry> entries = this.table.get(key);
+		if(entries == null) {
+			entries = new Vector<Entry>();
+			this.table.put(key, entries);
+		}
+		entries.add(entry);
+		this.entryCnt++;
+	}
+	
+	/**
+	 * 
+	 * Removes all entries. Has to be called before a new token list
+	 * is parsed. The counters are not reset.
+	 * 
+	 */
+	public void clear() {
+		this.table.clear();
+		this.busy.clear();
+		this.entryCnt = 0;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of entries.
+	 * 
+	 */
+	public int getSize() {
+		return this.entryCnt;
+	}
+	
+	public long getHitCnt() {
+		return this.hitCnt;
+	}
+	
+	public long getMissCnt() {
+		return this.missCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of lookups of sub-parses that were still being computed.
+	 * 
+	 */
+	public long getCycleCnt() {
+		return this.cycleCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the ratio of lookups that were answered from the table.
+	 * 
+	 */
+	public double getHitRate() {
+		long total = this.hitCnt + this.missCnt + this.cycleCnt;
+		return total == 0 ? 0.0 : (double)this.hitCnt / total;
+	}
+	
+	@Override
+	public String toString() {
+		return "entries: " + getSize() + " hits: " + this.hitCnt + " misses: " + 
+				this.missCnt + " cycles: " + this.cycleCnt;
+	}
+
+}
@@ -0,0 +1,59 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+/**
+ * 
+ * What reduce() does with stacks that have the same configuration as
+ * an earlier stack of the same parsing iteration.
+ * 
+ * @author julian
+ *
+ */
+public enum BioFuzzMergeMode {
+	
+	/**
+	 * stacks are never merged.
+	 */
+	OFF("OFF"),
+	
+	/**
+	 * the stack is merged into the earlier one, its parse-trees are kept
+	 * as alternatives.
+	 */
+	MERGE("MERGE"),
+	
+	/**
+	 * the stack is dropped together with its parse-trees.
+	 */
+	DROP("DROP");
+	
+	private String desc;
+
+	BioFuzzMergeMode(String desc) {
+		this.desc = desc;
+	}
+
+	@Override
+	public String toString() {
+		return this.desc;
+	}
+}
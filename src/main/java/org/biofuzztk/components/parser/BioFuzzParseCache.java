@@ -0,0 +1,319 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import org.biofuzztk.ptree.BioFuzzParseTree;
+
+/**
+ * 
+ * A size-bounded cache of parse results that is keyed by the token 
+ * sequence and the fingerprint of the parser settings (see 
+ * BioFuzzParser.getFingerprint()). The cache keeps copies of the parse-trees and hands out 
+ * copies on every hit, so callers can modify the returned trees without
+ * corrupting the cached ones. An entry that was stored for an older 
+ * version of the grammar is treated as a miss. The cache can be shared
+ * by several threads.
+ * 
+ * If the parse-trees were built with snapshots, the parser state is 
+ * stored as well, so that the copies handed out on a hit can be 
+ * reparsed from the first edited token. The state stays alive as long
+ * as the entry is cached.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzParseCache {
+	
+	/**
+	 * 
+	 * Decides which entry is evicted if the cache is full.
+	 * 
+	 */
+	public enum Policy {
+		// the least recently used entry
+		LRU,
+		// the oldest entry
+		FIFO
+	};
+	
+	private static class Key {
+		
+		private final String [] tokLst;
+		private final String fingerprint;
+		private final int hash;
+		
+		Key(String [] tokLst, String fingerprint) {
+			this.tokLst = tokLst;
+			this.fingerprint = fingerprint;
+			this.hash = 31 * Arrays.hashCode(tokLst) + fingerprint.hashCode();
+		}
+		
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Key))
+				return false;
+			Key k = (Key)o;
+			return this.hash == k.hash && this.fingerprint.equals(k.fingerprint) && 
+					Arrays.equals(this.tokLst, k.tokLst);
+		}
+	}
+	
+	private static class Entry {
+		
+		private final long version;
+		private final List<BioFuzzParseTree> trees;
+		private final BioFuzzParseState state;
+		
+		Entry(long version, List<BioFuzzParseTree> trees, BioFuzzParseState state) {
+			this.version = version;
+			this.trees = trees;
+			this.state = state;
+		}
+	}
+	
+	private final int capacity;
+	private final Policy policy;
+	private Map<Key,Entry> entries;
+	
+	private long hitCnt;
+	private long missCnt;
+	private long evictCnt;
+	
+	/**
+	 * 
+	 * Constructor.
+	 * 
+	 * @param capacity the maximum amount of cached token sequences.
+	 * @param policy the eviction policy.
+	 * 
+	 */
+	public BioFuzzParseCache(final int capacity, Policy policy) {
+		assert(capacity > 0);
+		assert(policy != null);
+		this.capacity = capacity;
+		this.policy = policy;
+		this.entries = new LinkedHashMap<Key,Entry>(16, 0.75f, policy == Policy.LRU) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key,Entry> eldest) {
+				if(size() > capacity) {
+					evictCnt++;
+					return true;
+				}
+				return false;
+			}
+		};
+		this.hitCnt = 0;
+		this.missCnt = 0;
+		this.evictCnt = 0;
+	}
+	
+	/**
+	 * 
+	 * Constructor. Least recently used entries are evicted first.
+	 * 
+	 * @param capacity the maximum amount of cached token sequences.
+	 * 
+	 */
+	public BioFuzzParseCache(int capacity) {
+		this(capacity, Policy.LRU);
+	}
+	
+	/**
+	 * 
+	 * Looks up the parse-trees of a token sequence.
+	 * 
+	 * @param tokLst the tokens that were parsed.
+	 * @param fingerprint the settings of the parser.
+	 * @param version the current version of the grammar.
+	 * @return copies of the cached parse-trees, an empty list if the tokens
+	 * could not be parsed or null if there is no valid entry.
+	 * 
+	 */
+	public List<BioFuzzParseTree> get(String [] tokLst, String fingerprint, long version) {
+		return get(tokLst, fingerprint, version, null);
+	}
+	
+	/**
+	 * 
+	 * Like get(String [], String, long), but registers the parser state
+	 * of the entry for every returned parse-tree.
+	 * 
+	 * @param tokLst the tokens that were parsed.
+	 * @param fingerprint the settings of the parser.
+	 * @param version the current version of the grammar.
+	 * @param states the parser states of the parse-trees or null.
+	 * @return copies of the cached parse-trees, an empty list if the tokens
+	 * could not be parsed or null if there is no valid entry.
+	 * 
+	 */
+	synchronized List<BioFuzzParseTree> get(String [] tokLst, String fingerprint, long version,
+			Map<BioFuzzParseTree,BioFuzzParseState> states) {
+		Key key = new Key(tokLst, fingerprint);
+		Entry e = this.entries.get(key);
+		
+		if(e == null || e.version != version) {
+			if(e != null)
+				this.entries.remove(key);
+			this.missCnt++;
+			return null;
+		}
+		this.hitCnt++;
+		List<BioFuzzParseTree> cpy = copy(e.trees);
+		if(states != null && e.state != null) {
+			for(BioFuzzParseTree tree : cpy) {
+				states.put(tree, e.state);
+			}
+		}
+		return cpy;
+	}
+	
+	/**
+	 * 
+	 * Stores copies of the parse-trees of a token sequence.
+	 * 
+	 * @param tokLst the tokens that were parsed.
+	 * @param fingerprint the settings of the parser.
+	 * @param version the current version of the grammar.
+	 * @param trees the parse-trees or null if the tokens could not be parsed.
+	 * 
+	 */
+	public void put(String [] tokLst, String fingerprint, long version, List<BioFuzzParseTree> trees) {
+		put(tokLst, fingerprint, version, trees, null);
+	}
+	
+	/**
+	 * 
+	 * Like put(String [], String, long, List), but stores the parser 
+	 * state of the parse-trees as well.
+	 * 
+	 * @param tokLst the tokens that were parsed.
+	 * @param fingerprint the settings of the parser.
+	 * @param version the current version of the grammar.
+	 * @param trees the parse-trees or null if the tokens could not be parsed.
+	 * @param state the parser state of the parse-trees or null.
+	 * 
+	 */
+	void put(String [] tokLst, String fingerprint, long version, List<BioFuzzParseTree> trees, 
+			BioFuzzParseState state) {
+		// copying is done outside of the lock
+		List<BioFuzzParseTree> cpy = copy(trees);
+		Key key = new Key(tokLst.clone(), fingerprint);
+		
+		synchronized(this) {
+			this.entries.put(key, new Entry(version, cpy, state));
+		}
+	}
+	
+	/**
+	 * 
+	 * Removes all entries, e.g. to free the parse-trees of settings that 
+	 * are no longer used. The counters are not reset.
+	 * 
+	 */
+	public synchronized void clear() {
+		this.entries.clear();
+	}
+	
+	/**
+	 * 
+	 * Sets all counters to zero.
+	 * 
+	 */
+	public synchronized void resetCounters() {
+		this.hitCnt = 0;
+		this.missCnt = 0;
+		this.evictCnt = 0;
+	}
+	
+	private static List<BioFuzzParseTree> copy(List<BioFuzzParseTree> trees) {
+		List<BioFuzzParseTree> cpy = new Vector<BioFuzzParseTree>();
+		if(trees != null) {
+			for(BioFuzzParseTree tree : trees) {
+				cpy.add(new BioFuzzParseTree(tree));
+			}
+		}
+		return cpy;
+	}
+	
+	public int getCapacity() {
+		return this.capacity;
+	}
+	
+	public Policy getPolicy() {
+		return this.policy;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of cached token sequences.
+	 * 
+	 */
+	public synchronized int getSize() {
+		return this.entries.size();
+	}
+	
+	public synchronized long getHitCnt() {
+		return this.hitCnt;
+	}
+	
+	public synchronized long getMissCnt() {
+		return this.missCnt;
+	}
+	
+	public synchronized long getEvictCnt() {
+		return this.evictCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the ratio of hits and lookups or 0 if there was no lookup.
+	 * 
+	 */
+	public synchronized double getHitRatio() {
+		long total = this.hitCnt + this.missCnt;
+		return total == 0 ? 0.0 : (double)this.hitCnt / total;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "parse cache: capacity: " + this.capacity + " policy: " + this.policy + 
+				" size: " + this.entries.size() + " hits: " + this.hitCnt + 
+				" misses: " + this.missCnt + " evictions: " + this.evictCnt;
+	}
+
+}
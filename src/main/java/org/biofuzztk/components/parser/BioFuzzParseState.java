@@ -0,0 +1,202 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * 
+ * Keeps the stacks of a parsing run at every token index. A snapshot
+ * is taken whenever a stack has consumed a token, i.e. the snapshots 
+ * at index k are the parser state after the first k tokens. If the 
+ * token list is edited at index k, parsing can be resumed from these
+ * snapshots instead of starting from scratch. 
+ * 
+ * A state only keeps the snapshots and the token list. It does not refer
+ * to the stack manager of the parsing run, whose stacks cache the 
+ * parse-trees that were built. The snapshots are graph-structured stacks,
+ * i.e. a snapshot shares its tuples with the stack it was taken from.
+ * 
+ * The iteration in which a snapshot was taken is stored as well, so 
+ * that a resumed parsing run steps every stack in the same iteration as
+ * a full one and is bounded by the same maximal amount of iterations.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzParseState {
+	
+	private List<String> tokLst;
+	private BioFuzzGss gss;
+	private Map<Integer,List<BioFuzzTupleStack>> snapshots;
+	private Map<Integer,List<Integer>> iters;
+	private int snapshotCnt;
+	
+	/**
+	 * 
+	 * Constructor.
+	 * 
+	 * @param tokLst the token list that is parsed.
+	 * @param smgr the stack manager of the parsing run, only its 
+	 * graph-structured stack is kept.
+	 * 
+	 */
+	public BioFuzzParseState(List<String> tokLst, BioFuzzStackMgr smgr) {
+		this.tokLst = Collections.unmodifiableList(new ArrayList<String>(tokLst));
+		this.gss = smgr.getGss();
+		this.snapshots = new HashMap<Integer,List<BioFuzzTupleStack>>();
+		this.iters = new HashMap<Integer,List<Integer>>();
+		this.snapshotCnt = 0;
+	}
+	
+	/**
+	 * 
+	 * Stores a copy of a stack at its current token index.
+	 * 
+	 * @param tstack a stack that is in progress.
+	 * @param iter the iteration of the parsing run.
+	 * 
+	 */
+	public synchronized void record(BioFuzzTupleStack tstack, int iter) {
+		assert(tstack instanceof BioFuzzGssStack);
+		List<BioFuzzTupleStack> lst = this.snapshots.get(tstack.getCur());
+		
+		if(lst == null) {
+			lst = new Vector<BioFuzzTupleStack>();
+			this.snapshots.put(tstack.getCur(), lst);
+			this.iters.put(tstack.getCur(), new Vector<Integer>());
+		}
+		
+		lst.add(tstack.copy());
+		this.iters.get(tstack.getCur()).add(iter);
+		this.snapshotCnt++;
+	}
+	
+	/**
+	 * 
+	 * Takes over the snapshots of another state up to and including 
+	 * index cur.
+	 * 
+	 * @param state the state of a previous parsing run.
+	 * @param cur the last token index to take over.
+	 * 
+	 */
+	public synchronized void inherit(BioFuzzParseState state, int cur) {
+		for(int i = 0; i <= cur; i++) {
+			List<BioFuzzTupleStack> lst = state.getSnapshots(i);
+			if(lst.size() > 0) {
+				this.snapshots.put(i, lst);
+				this.iters.put(i, state.getIters(i));
+				this.snapshotCnt += lst.size();
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * Getter. The returned stacks must not be modified.
+	 * 
+	 * @param cur a token index.
+	 * @return the stacks that reached token index cur.
+	 * 
+	 */
+	public synchronized List<BioFuzzTupleStack> getSnapshots(int cur) {
+		List<BioFuzzTupleStack> lst = this.snapshots.get(cur);
+		return lst == null ? new Vector<BioFuzzTupleStack>() : lst;
+	}
+	
+	/**
+	 * 
+	 * Getter. The iterations are in ascending order.
+	 * 
+	 * @param cur a token index.
+	 * @return the iterations in which the stacks of getSnapshots(cur)
+	 * reached token index cur.
+	 * 
+	 */
+	public synchronized List<Integer> getIters(int cur) {
+		List<Integer> lst = this.iters.get(cur);
+		return lst == null ? new Vector<Integer>() : lst;
+	}
+	
+	/**
+	 * 
+	 * Computes the amount of leading tokens that are equal in tokLst and
+	 * the token list of this state.
+	 * 
+	 * @param tokLst a token list.
+	 * @return the length of the common prefix.
+	 * 
+	 */
+	public int getCommonPrefix(List<String> tokLst) {
+		int len = Math.min(tokLst.size(), this.tokLst.size());
+		int i = 0;
+		while(i < len && tokLst.get(i).equals(this.tokLst.get(i))) {
+			i++;
+		}
+		return i;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the token list that was parsed.
+	 * 
+	 */
+	public List<String> getTokLst() {
+		return this.tokLst;
+	}
+	
+	/**
+	 * 
+	 * Creates an empty stack manager for resuming the parsing run. Its
+	 * stacks share the graph-structured stack of the snapshots.
+	 * 
+	 * @return an empty stack manager.
+	 * 
+	 */
+	public BioFuzzStackMgr createStackMgr() {
+		return new BioFuzzStackMgr(this.gss);
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of stored stacks.
+	 * 
+	 */
+	public synchronized int getSnapshotCnt() {
+		return this.snapshotCnt;
+	}
+	
+	@Override
+	public String toString() {
+		return "(parse state tokens: " + this.tokLst.size() + " snapshots: " + getSnapshotCnt() + ")";
+	}
+
+}
@@ -0,0 +1,277 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+/**
+ * 
+ * Counters of a single parsing run. Sub-parses of memoized non-terminals
+ * are included. A run whose parse-trees were taken from a parse cache 
+ * only counts the cache hit and the trees. Only collected if the parser 
+ * configuration has metrics.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzParseStats {
+	
+	private long iterCnt;
+	private long forkCnt;
+	private long invalidCnt;
+	private long mergedCnt;
+	private long droppedCnt;
+	private int peakCnt;
+	private int maxIterCnt;
+	private long maxSsizeCnt;
+	private long treeCnt;
+	private long reuseCnt;
+	private int cacheHitCnt;
+	private int cacheMissCnt;
+	private long start;
+	private long end;
+	
+	public BioFuzzParseStats() {
+		this.iterCnt = 0;
+		this.forkCnt = 0;
+		this.invalidCnt = 0;
+		this.mergedCnt = 0;
+		this.droppedCnt = 0;
+		this.peakCnt = 0;
+		this.maxIterCnt = 0;
+		this.maxSsizeCnt = 0;
+		this.treeCnt = 0;
+		this.reuseCnt = 0;
+		this.cacheHitCnt = 0;
+		this.cacheMissCnt = 0;
+		this.start = System.nanoTime();
+		this.end = -1;
+	}
+	
+	/**
+	 * 
+	 * Adds the counters of a stack manager after it has been used for 
+	 * parsing.
+	 * 
+	 * @param smgr the stack manager.
+	 * @param iter the amount of iterations.
+	 * @param cutoff true if parsing was stopped because of maxIter.
+	 * 
+	 */
+	void add(BioFuzzStackMgr smgr, int iter, boolean cutoff) {
+		this.iterCnt += iter;
+		this.forkCnt += smgr.getForkCnt();
+		this.invalidCnt += smgr.getInvalidCnt();
+		this.mergedCnt += smgr.getMergedCnt();
+		this.droppedCnt += smgr.getDroppedCnt();
+		this.peakCnt = Math.max(this.peakCnt, smgr.getPeakCnt());
+		this.maxSsizeCnt += smgr.getSsizeCnt();
+		this.reuseCnt += smgr.getReuseCnt();
+		if(cutoff)
+			this.maxIterCnt++;
+	}
+	
+	/**
+	 * 
+	 * Counts a lookup of the parse cache that returned the parse-trees.
+	 * 
+	 */
+	void addCacheHit() {
+		this.cacheHitCnt++;
+	}
+	
+	/**
+	 * 
+	 * Counts a lookup of the parse cache that was followed by parsing.
+	 * 
+	 */
+	void addCacheMiss() {
+		this.cacheMissCnt++;
+	}
+	
+	/**
+	 * 
+	 * Stops the clock.
+	 * 
+	 * @param treeCnt the amount of parse-trees that were returned.
+	 * 
+	 */
+	void finish(long treeCnt) {
+		this.treeCnt = treeCnt;
+		this.end = System.nanoTime();
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of parsing iterations.
+	 * 
+	 */
+	public long getIterCnt() {
+		return this.iterCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of forked stacks.
+	 * 
+	 */
+	public long getForkCnt() {
+		return this.forkCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of stacks that became INVALID.
+	 * 
+	 */
+	public long getInvalidCnt() {
+		return this.invalidCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of stacks that were merged into a stack with the
+	 * same configuration.
+	 * 
+	 */
+	public long getMergedCnt() {
+		return this.mergedCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of stacks that were dropped because of the beam width.
+	 * 
+	 */
+	public long getDroppedCnt() {
+		return this.droppedCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the maximal amount of live stacks.
+	 * 
+	 */
+	public int getPeakCnt() {
+		return this.peakCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return how often parsing was stopped because maxIter was exceeded.
+	 * 
+	 */
+	public int getMaxIterCnt() {
+		return this.maxIterCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of stacks that were invalidated because maxSsize 
+	 * was exceeded.
+	 * 
+	 */
+	public long getMaxSsizeCnt() {
+		return this.maxSsizeCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of parse-trees that were returned.
+	 * 
+	 */
+	public long getTreeCnt() {
+		return this.treeCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the elapsed time in nanoseconds.
+	 * 
+	 */
+	public long getNanos() {
+		long stop = this.end < 0 ? System.nanoTime() : this.end;
+		return stop - this.start;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of forks that reused a discarded stack.
+	 * 
+	 */
+	public long getReuseCnt() {
+		return this.reuseCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return 1 if the parse-trees were taken from a parse cache, else 0.
+	 * 
+	 */
+	public int getCacheHitCnt() {
+		return this.cacheHitCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return 1 if the parse-trees were not found in a parse cache, else 0.
+	 * 
+	 */
+	public int getCacheMissCnt() {
+		return this.cacheMissCnt;
+	}
+	
+	@Override
+	public String toString() {
+		return "iterations: " + this.iterCnt + " forks: " + this.forkCnt + 
+				" invalid: " + this.invalidCnt + " merged: " + this.mergedCnt + 
+				" dropped: " + this.droppedCnt + " peak: " + this.peakCnt + 
+				" maxIter cutoffs: " + this.maxIterCnt + " maxSsize cutoffs: " + 
+				this.maxSsizeCnt + " trees: " + this.treeCnt + " reused: " + this.reuseCnt + 
+				" cache hits: " + this.cacheHitCnt + " cache misses: " + this.cacheMissCnt + 
+				" time: " + getNanos() / 1000 + "us";
+	}
+
+}
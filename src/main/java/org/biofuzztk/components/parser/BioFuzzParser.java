@@ -21,7 +21,15 @@
 package org.biofuzztk.components.parser;
 
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.TreeMap;
+import java.util.Vector;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,9 +38,15 @@ import org.biofuzztk.cfg.BioFuzzAttackCfg;
 import org.biofuzztk.cfg.BioFuzzAttackCfgMgr;
 import org.biofuzztk.cfg.BioFuzzAttackTag;
 import org.biofuzztk.cfg.BioFuzzAttackTag.TagType;
+import org.biofuzztk.cfg.BioFuzzFirstSets;
+import org.biofuzztk.cfg.BioFuzzSymbolTable;
+import org.biofuzztk.components.tokenizer.BioFuzzOffsetTokenizer;
 import org.biofuzztk.components.tokenizer.BioFuzzTokenizer;
+import org.biofuzztk.ptree.BioFuzzDerivation;
+import org.biofuzztk.ptree.BioFuzzParseForest;
 import org.biofuzztk.ptree.BioFuzzParseTree;
 import org.biofuzztk.ptree.BioFuzzTokLst;
+import org.biofuzztk.ptree.BioFuzzTokStream;
 
 /**
  * 
@@ -52,6 +66,16 @@ public class BioFuzzParser {
 	private int maxIter;
 	private int maxSSize;
 	private BioFuzzTokenizer tokenizer;
+	private BioFuzzMemoTable memo;
+	private BioFuzzFirstSets firstSets;
+	private BioFuzzSymbolTable symbols;
+	private boolean complete;
+	private ForkJoinPool pool;
+	private ForkJoinPool sharedPool;
+	private long droppedCnt;
+	private Map<BioFuzzParseTree,BioFuzzParseState> states;
+	private BioFuzzParseStats stats;
+	private boolean cacheMiss;
 	
 	BioFuzzParserConfig config = null;
 	
@@ -65,6 +89,23 @@ public class BioFuzzParser {
 	 * 
 	 */
 	public BioFuzzParser(BioFuzzAttackCfgMgr mgr, BioFuzzParserConfig config, BioFuzzTokenizer tokenizer) {
+		this(mgr, config, tokenizer, null);
+	}
+	
+	/**
+	 * 
+	 * Constructor.
+	 * 
+	 * @param mgr the CFG-graph.
+	 * @param config the parser configuration.
+	 * @param tokenizer the tokenizer to tokenize the string before parsing it.
+	 * @param pool the pool that steps stacks concurrently if the parser 
+	 * configuration has none. It is shared, i.e. it is not stopped by 
+	 * shutdown(). If null, the parser creates a pool of its own.
+	 * 
+	 */
+	public BioFuzzParser(BioFuzzAttackCfgMgr mgr, BioFuzzParserConfig config, BioFuzzTokenizer tokenizer, 
+			ForkJoinPool pool) {
 		this.mgr = mgr;
 		this.config = config;
 		
@@ -73,11 +114,72 @@ public class BioFuzzParser {
 		this.maxSSize = config.getMaxSsize();
 		this.maxIter = config.getMaxIter();
 		this.tokenizer = tokenizer;
+		this.memo = new BioFuzzMemoTable(this.maxIter);
+		this.states = Collections.synchronizedMap(new WeakHashMap<BioFuzzParseTree,BioFuzzParseState>());
+		this.stats = null;
+		this.sharedPool = pool;
 		
 		logger.debug("Parser Config :" + this.config.toString());
 		//logger.debug(this.mgr.toString());	
 	}
 	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the tokenizer of this parser.
+	 * 
+	 */
+	public BioFuzzTokenizer getTokenizer() {
+		return this.tokenizer;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the memo table that is used if memoization is enabled.
+	 * 
+	 */
+	public BioFuzzMemoTable getMemoTable() {
+		return this.memo;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of stacks that were dropped because the beam width was exceeded.
+	 * 
+	 */
+	public long getDroppedCnt() {
+		return this.droppedCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of parse-trees that are still referenced and can be
+	 * reparsed from snapshots.
+	 * 
+	 */
+	public int getStateCnt() {
+		return this.states.size();
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the counters of the last parsing run or null if the parser 
+	 * configuration has no metrics.
+	 * 
+	 */
+	public BioFuzzParseStats getLastStats() {
+		return this.stats;
+	}
+	
 	/**
 	 * 
 	 * Tokenize the given string.
@@ -93,6 +195,45 @@ public class BioFuzzParser {
 		return this.tokenizer.tokenize(s);
 	}
 	
+	/**
+	 * 
+	 * Tokenize the given string. The tokens keep their offsets into s. If
+	 * the tokenizer does not report offsets, they are looked up in s.
+	 * 
+	 * @param s the string to tokenize.
+	 * @return the tokens of s.
+	 * 
+	 */
+	public BioFuzzTokStream tokenizeStream(String s) {
+		
+		logger.debug(s);
+		
+		if(this.tokenizer instanceof BioFuzzOffsetTokenizer)
+			return ((BioFuzzOffsetTokenizer)this.tokenizer).tokenizeStream(s);
+		
+		return BioFuzzTokStream.locate(s, this.tokenizer.tokenize(s));
+	}
+	
+	/**
+	 * 
+	 * Tokenizes a string. The tokens only refer to the input if the 
+	 * tokenizer reports offsets or if the parser configuration asks for
+	 * them, otherwise the tokens are not looked up in the input.
+	 * 
+	 * @param s the string to tokenize.
+	 * @return the token list of s.
+	 * 
+	 */
+	private BioFuzzTokLst createTokLst(String s) {
+		BioFuzzTokLst tokLst;
+		if(this.tokenizer instanceof BioFuzzOffsetTokenizer || this.config.isOffsets())
+			tokLst = new BioFuzzTokLst(tokenizeStream(s));
+		else
+			tokLst = new BioFuzzTokLst(tokenize(s));
+		assert(tokLst.getSize() > 0);
+		return tokLst;
+	}
+	
 	/**
 	 * 
 	 * Takes a string and creates a list of parse-trees from it. It might
@@ -105,14 +246,239 @@ public class BioFuzzParser {
 	 * 
 	 */
 	public List<BioFuzzParseTree> buildTrees(String s) {
-		String tokLst[] = tokenize(s);
-		assert(tokLst.length > 0);
+		BioFuzzTokLst tokLst = createTokLst(s);
 		logger.debug("build trees: " + s);
 		//logger.debug("tokLst: " + BioFuzzUtils.strArrayToStr(tokLst));
 		
 		return intialize(tokLst);
 	}
 	
+	/**
+	 * 
+	 * Creates a list of parse-trees from a list of tokens that was
+	 * already tokenized. The last token has to be the end-of-input 
+	 * marker.
+	 * 
+	 * @param tokLst the tokens to parse.
+	 * @return a list of parse-trees that represent the tokens.
+	 * 
+	 */
+	public List<BioFuzzParseTree> buildTrees(String [] tokLst) {
+		assert(tokLst.length > 0);
+		logger.debug("build trees from " + tokLst.length + " tokens");
+		
+		return intialize(new BioFuzzTokLst(tokLst));
+	}
+	
+	/**
+	 * 
+	 * Creates a list of parse-trees from a token stream. The last token 
+	 * has to be the end-of-input marker.
+	 * 
+	 * @param tokLst the tokens to parse.
+	 * @return a list of parse-trees that represent the tokens.
+	 * 
+	 */
+	public List<BioFuzzParseTree> buildTrees(BioFuzzTokStream tokLst) {
+		assert(tokLst.size() > 0);
+		logger.debug("build trees from " + tokLst.size() + " tokens");
+		
+		return intialize(new BioFuzzTokLst(tokLst));
+	}
+	
+	/**
+	 * 
+	 * Like buildTrees(String), but looks up the parse-trees in a cache 
+	 * first and stores them there after parsing. The entries are keyed by
+	 * the tokens and the settings of this parser that influence the 
+	 * parse-trees, so parsers with different settings or grammars can share
+	 * the cache. Hits and misses are counted in the stats of this run. If
+	 * snapshots are enabled, the parse-trees of a hit can be reparsed like
+	 * the parse-trees of a miss.
+	 * 
+	 * @param s the string to parse.
+	 * @param cache the cache of parse results.
+	 * @return a list of parse-trees that represent the string s or null.
+	 * 
+	 */
+	public List<BioFuzzParseTree> buildTrees(String s, BioFuzzParseCache cache) {
+		String [] tokLst = tokenize(s);
+		String fingerprint = getFingerprint();
+		long version = this.mgr.getVersion();
+		List<BioFuzzParseTree> trees = cache.get(tokLst, fingerprint, version, this.states);
+		
+		if(trees != null) {
+			if(this.config.getMetrics() != null) {
+				this.stats = new BioFuzzParseStats();
+				this.stats.addCacheHit();
+				publish(trees.size());
+			}
+			return trees.isEmpty() ? null : trees;
+		}
+		
+		this.cacheMiss = true;
+		try {
+			trees = buildTrees(tokLst);
+		} finally {
+			this.cacheMiss = false;
+		}
+		BioFuzzParseState state = trees == null ? null : this.states.get(trees.get(0));
+		cache.put(tokLst, fingerprint, version, trees, state);
+		return trees;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the grammar and the settings of this parser that influence 
+	 * the parse-trees.
+	 * 
+	 */
+	public String getFingerprint() {
+		return this.mgr.getDigest() + ";" + 
+				this.minQual + ";" + this.maxIter + ";" + this.maxSSize + ";" + 
+				this.config.isGss() + ";" + this.config.isMemo() + ";" + 
+				this.config.isLookahead() + ";" + this.config.getBeamWidth() + ";" + 
+				this.config.getScorer().getKey() + ";" + 
+				this.config.getMergeMode();
+	}
+	
+	/**
+	 * 
+	 * Takes a string and creates a shared packed parse forest from it. 
+	 * Unlike buildTrees(), common subtrees of ambiguous parse-trees are
+	 * only stored once and the parse-trees are built on demand.
+	 * 
+	 * @param s the string to parse.
+	 * @return a parse forest that represents the string s.
+	 * 
+	 */
+	public BioFuzzParseForest buildForest(String s) {
+		BioFuzzTokLst tokLst = createTokLst(s);
+		logger.debug("build forest: " + s);
+		
+		BioFuzzStackMgr smgr = run(tokLst, true, false);
+		BioFuzzParseForest forest = smgr.getForest(this.minQual);
+		logger.debug(forest.toString());
+		publish(forest.getTreeCnt());
+		return forest;
+	}
+	
+	/**
+	 * 
+	 * Rebuilds the parse-trees of a parse-tree whose token list was edited.
+	 * If the parse-tree was built with snapshots enabled, only the tokens
+	 * from the first edited token onwards are parsed again. Otherwise, 
+	 * the whole token list is parsed.
+	 * 
+	 * @param tree a parse-tree whose token list was edited.
+	 * @param idx index of the first edited token.
+	 * @return a list of parse-trees that represent the edited token list.
+	 * 
+	 */
+	public List<BioFuzzParseTree> reparse(BioFuzzParseTree tree, int idx) {
+		List<String> toks = tree.getTokLst().getTokLst();
+		String [] tokLst = toks.toArray(new String[toks.size()]);
+		assert(tokLst.length > 0);
+		
+		BioFuzzParseState state = this.states.get(tree);
+		
+		if(state == null) {
+			logger.debug("no parser state - reparse all tokens");
+			return intialize(new BioFuzzTokLst(tokLst));
+		}
+		
+		// the caller might have edited tokens before idx
+		int cur = Math.max(0, Math.min(idx, state.getCommonPrefix(toks)));
+		logger.debug("reparse from token " + cur + " of " + tokLst.length);
+		
+		BioFuzzStackMgr smgr = state.createStackMgr();
+		smgr.setBeam(this.config.getBeamWidth(), this.config.getScorer());
+		smgr.setMergeMode(this.config.getMergeMode());
+		
+		BioFuzzTokLst btokLst = new BioFuzzTokLst(tokLst);
+		BioFuzzParseState next = new BioFuzzParseState(btokLst.getTokLst(), smgr);
+		next.inherit(state, cur);
+		smgr.setState(next);
+		
+		// every stack is resumed in the iteration in which it reached cur
+		List<BioFuzzTupleStack> snapshots = state.getSnapshots(cur);
+		List<Integer> iters = state.getIters(cur);
+		int start = iters.isEmpty() ? 0 : iters.get(0);
+		for(int i = 0; i < snapshots.size(); i++) {
+			int delay = iters.get(i) - start;
+			if(delay > 0)
+				smgr.copyAndParkStack(snapshots.get(i), delay);
+			else
+				smgr.copyAndGetStack(snapshots.get(i));
+		}
+		
+		parse(smgr, btokLst, false, start);
+		
+		return collect(smgr);
+	}
+	
+	/**
+	 * 
+	 * Checks whether a string can be derived from the start symbol of the
+	 * CFG. No parse-trees are built and parsing stops as soon as a valid
+	 * derivation is found.
+	 * 
+	 * @param s the string to check.
+	 * @return true if s is a word of the language.
+	 * 
+	 */
+	public boolean recognize(String s) {
+		BioFuzzTokLst tokLst = createTokLst(s);
+		logger.debug("recognize: " + s);
+		
+		BioFuzzStackMgr smgr = run(tokLst, false, true);
+		publish(0);
+		return smgr.getValidCnt() > 0;
+	}
+	
+	/**
+	 * 
+	 * Returns a single parse-tree for a string. Parsing stops as soon as a
+	 * valid derivation is found. If there is none, the first parse-tree 
+	 * that satisfies the minimal parsing status is returned.
+	 * 
+	 * @param s the string to parse.
+	 * @return a parse-tree that represents s or null.
+	 * 
+	 */
+	public BioFuzzParseTree buildFirstTree(String s) {
+		BioFuzzTokLst tokLst = createTokLst(s);
+		logger.debug("build first tree: " + s);
+		
+		BioFuzzStackMgr smgr = run(tokLst, true, true);
+		BioFuzzParseTree tree = smgr.getFirstTree(this.minQual);
+		publish(tree == null ? 0 : 1);
+		return tree;
+	}
+	
+	/**
+	 * 
+	 * Finishes the counters of the last parsing run and adds them to the
+	 * metrics of the parser configuration.
+	 * 
+	 * @param treeCnt the amount of parse-trees that are returned.
+	 * 
+	 */
+	private void publish(long treeCnt) {
+		if(this.stats == null)
+			return;
+		
+		if(this.cacheMiss)
+			this.stats.addCacheMiss();
+		this.stats.finish(treeCnt);
+		
+		BioFuzzParserMetrics metrics = this.config.getMetrics();
+		if(metrics != null)
+			metrics.add(this.stats);
+	}
+	
 	/**
 	 * 
 	 * Adds the initial production rule S on a tuple stack and 
@@ -123,9 +489,61 @@ public class BioFuzzParser {
 	 * @return a list of parse-trees that produce tokLst.
 	 * 
 	 */
-	private List<BioFuzzParseTree> intialize(String[] tokLst) {
+	private List<BioFuzzParseTree> intialize(BioFuzzTokLst tokLst) {
+		
+		BioFuzzStackMgr smgr = run(tokLst, true, false);
+		
+		return collect(smgr);
+	}
+	
+	/**
+	 * 
+	 * Builds the parse-trees of a stack manager. If the parser state was
+	 * kept, it is attached to each parse-tree.
+	 * 
+	 * @param smgr the stack manager of a parsing run.
+	 * @return a list of parse-trees or null.
+	 * 
+	 */
+	private List<BioFuzzParseTree> collect(BioFuzzStackMgr smgr) {
+		
+		List<BioFuzzParseTree> list =  smgr.getGeneratedTrees(this.minQual);
+		
+		publish(list == null ? 0 : list.size());
+		
+		if(list == null || list.size() <= 0) { 
+			logger.debug("list is null");
+			return null;
+		}
+		
+		assert(list != null);
+		
+		if(smgr.getState() != null) {
+			for(BioFuzzParseTree tree : list) {
+				this.states.put(tree, smgr.getState());
+			}
+		}
+		
+		return list;
+	}
+	
+	/**
+	 * 
+	 * Parses a token list.
+	 * 
+	 * @param btokLst the token list to check.
+	 * @param record if false, no derivations are recorded, i.e. no parse-trees can be built.
+	 * @param first if true, parsing stops as soon as a stack is VALID.
+	 * @return the stack manager that contains the resulting stacks.
+	 * 
+	 */
+	private BioFuzzStackMgr run(BioFuzzTokLst btokLst, boolean record, boolean first) {
+		// snapshots share their tuples with the stacks they were taken from
+		boolean snapshots = record && !first && this.config.isSnapshots();
 		BioFuzzStackMgr smgr = null;
-		smgr = new BioFuzzStackMgr();
+		smgr = new BioFuzzStackMgr(this.config.isGss() || snapshots);
+		smgr.setBeam(this.config.getBeamWidth(), this.config.getScorer());
+		smgr.setMergeMode(this.config.getMergeMode());
 		// Iterate over all configurations
 		
 		//for ( String key: this.mgr.getKeys()) {
@@ -146,24 +564,55 @@ public class BioFuzzParser {
 		assert(this.mgr.getKeys().contains("S"));
 		BioFuzzAttackCfg cfg = this.mgr.getAttackCfgByKey("S");
 		BioFuzzTupleStack tstack = smgr.createAndGetStack("S", 0);
+		tstack.setRecording(record);
 		tstack.pushTuple(cfg, TagType.ROOT, 0);
 		
+		if(snapshots) {
+			BioFuzzParseState state = new BioFuzzParseState(btokLst.getTokLst(), smgr);
+			smgr.setState(state);
+			state.record(tstack, 0);
+		}
 		
+		parse(smgr, btokLst, first, 0);
 		
-		BioFuzzTokLst btokLst = new BioFuzzTokLst(tokLst);
+		return smgr;
+	}
+	
+	/**
+	 * 
+	 * Parses a token list with the stacks of smgr.
+	 * 
+	 * @param smgr the stack manager with the initial stacks.
+	 * @param btokLst the token list.
+	 * @param first if true, parsing stops as soon as a stack is VALID.
+	 * @param iter the amount of iterations that were already performed.
+	 * 
+	 */
+	private void parse(BioFuzzStackMgr smgr, BioFuzzTokLst btokLst, boolean first, int iter) {
+		this.stats = this.config.getMetrics() != null ? new BioFuzzParseStats() : null;
 		
-		traversePaths(smgr, btokLst);
+		// memoized sub-parses are only valid for a single token list
+		this.memo.clear();
+		this.firstSets = this.mgr.getFirstSets();
+		this.symbols = this.mgr.getSymbolTable();
+		// only recognize() and buildFirstTree() accept stacks that can be
+		// completed without further tokens
+		this.complete = first;
 		
-		List<BioFuzzParseTree> list =  smgr.getGeneratedTrees(this.minQual);
+		// classify the tokens once so that terminals can be matched by their symbol
+		List<String> toks = btokLst.getTokLst();
+		int [] syms = toks instanceof BioFuzzTokStream ? ((BioFuzzTokStream)toks).getSymbols(this.symbols) :
+			this.symbols.classify(toks);
 		
-		if(list == null || list.size() <= 0) { 
-			logger.debug("list is null");
-			return null;
-		}
+		traversePaths(smgr, btokLst, syms, first, iter);
 		
-		assert(list != null);
+		// do not keep the sub-parses of this token list alive
+		this.memo.clear();
 		
-		return list;
+		if(smgr.getDroppedCnt() > 0) {
+			logger.debug("beam width exceeded - dropped stacks: " + smgr.getDroppedCnt());
+			this.droppedCnt += smgr.getDroppedCnt();
+		}
 	}
 	
 	/**
@@ -172,55 +621,40 @@ public class BioFuzzParser {
 	 * 
 	 * @param smgr the set of stacks, each of them representing a different ruleset that might produce tokLst.
 	 * @param tokLst the token list.
+	 * @param syms the symbols of the tokens.
+	 * @param first if true, parsing stops as soon as a stack is VALID.
+	 * @param start the amount of iterations that were already performed.
 	 * @return type of the lastly added tag.
 	 * 
 	 */
-	private TagType traversePaths(BioFuzzStackMgr smgr, BioFuzzTokLst tokLst) {
+	private TagType traversePaths(BioFuzzStackMgr smgr, BioFuzzTokLst tokLst, int [] syms, boolean first, int start) {
 		
 		logger.debug("TokLst: " + tokLst.toString());
 		logger.debug("TokLst cursor: " + tokLst.getCursor());
 		
 		//logger.debug(smgr.toString());
-		int iter = 0;
+		int iter = start;
 
-		while(smgr.getSize() > 0) {
+		while(smgr.getSize() > 0 || smgr.getWaitingCnt() > 0) {
 			//logger.debug(">>" + smgr.getSize());
 			//logger.debug("TokLst: " + tokLst.toString());
 			iter ++;
 			int ub = smgr.getSize();
 			//logger.debug("START=======================================================");
-			for (int i = 0; i < ub; i++ ) {
-				int ret = 0;
-				BioFuzzTupleStack tstack = smgr.getTupleStack(i);
-				assert(tstack != null);
-				
-				if(tstack.getCur() <= tokLst.getSize() - 2) {
-					//logger.debug("match");
-					ret = match(tokLst, smgr, tstack);
-				} else if (tstack.getStatus() == BioFuzzParsingStatus.IN_PROGRESS) {
-					tstack.changeStatus(BioFuzzParsingStatus.FINISHED);
-					tstack.setTokLst(tokLst);
-				}
-				
-				
-				// stack succesfully reduced - word is valid according to the grammar
-				if(tstack.getStatus() == BioFuzzParsingStatus.FINISHED && tstack.getSize() == 0) {
-					tstack.changeStatus(BioFuzzParsingStatus.VALID);
-				}
-
-					
-				//logger.debug("Return value: " + ret);
-				
-				if((ret == 0 || tstack.getSize() <= 0) ||  tstack.getSize() > this.maxSSize) {
-					//logger.debug("invalidate");
-					//logger.debug("invalidate :" + tstack.toString());
-					if(tstack.getStatus() != BioFuzzParsingStatus.FINISHED && 
-							tstack.getStatus() != BioFuzzParsingStatus.VALID) {
-						tstack.changeStatus(BioFuzzParsingStatus.INVALID);
-					}
+			
+			// stacks are stepped concurrently if there are enough of them
+			if(this.config.getParallelThreshold() > 0 && ub >= this.config.getParallelThreshold()) {
+				int grain = Math.max(1, ub / (4 * this.config.getParallelism()));
+				BioFuzzStackMgr forks = getPool().invoke(new StepTask(tokLst, syms, smgr, 0, ub, grain));
+				smgr.addAll(forks);
+			} else {
+				// the sub-parses of this iteration are computed beforehand, so 
+				// that match never recurses
+				if(this.config.isMemo())
+					prepare(tokLst, syms, smgr, 0, iter);
+				for (int i = 0; i < ub; i++ ) {
+					step(tokLst, syms, smgr, smgr.getTupleStack(i), 0, iter);
 				}
-
-				
 			}
 			
 			//logger.debug(smgr.toString());
@@ -238,6 +672,11 @@ public class BioFuzzParser {
 				break;
 			}
 			
+			if(first && smgr.getValidCnt() > 0) {
+				logger.debug("valid stack found");
+				break;
+			}
+			
 //			if (iter == 32)
 //				break;
 			//logger.debug("END========================================================");
@@ -245,6 +684,9 @@ public class BioFuzzParser {
 			//logger.debug("reduce");
 
 		}
+		if(this.stats != null)
+			this.stats.add(smgr, iter, iter > this.maxIter);
+		
 		logger.debug("show" );
 		//logger.debug(smgr.toString());
 		//logger.debug("size: " + smgr.getSize());
@@ -255,6 +697,139 @@ public class BioFuzzParser {
 		
 	}
 
+	/**
+	 * 
+	 * Performs a single parsing step on a push-down automaton. New forks are
+	 * added to smgr.
+	 * 
+	 * @param tokLst the token list.
+	 * @param syms the symbols of the tokens.
+	 * @param smgr the stack manager that receives the forks.
+	 * @param tstack the currently active stack.
+	 * @param depth the amount of tuples below tstack, i.e. the stack size of 
+	 * the stack that started a sub-parse.
+	 * @param iter the current iteration.
+	 * 
+	 */
+	private void step(BioFuzzTokLst tokLst, int [] syms, BioFuzzStackMgr smgr, BioFuzzTupleStack tstack, 
+			int depth, int iter) {
+		int ret = 0;
+		assert(tstack != null);
+		
+		if(tstack.getCur() <= tokLst.getSize() - 2) {
+			//logger.debug("match");
+			ret = match(tokLst, syms, smgr, tstack, depth, iter);
+		} else if (tstack.getStatus() == BioFuzzParsingStatus.IN_PROGRESS) {
+			tstack.changeStatus(BioFuzzParsingStatus.FINISHED);
+			tstack.setTokLst(tokLst);
+			
+			// stack succesfully reduced - word is valid according to the grammar
+			if(tstack.getSize() == 0 || (this.complete && !tstack.isIncomplete() && isComplete(tstack, 0))) {
+				tstack.changeStatus(BioFuzzParsingStatus.VALID);
+			}
+		}
+		
+
+			
+		//logger.debug("Return value: " + ret);
+		
+		if((ret == 0 || tstack.getSize() <= 0) ||  depth + tstack.getSize() > this.maxSSize) {
+			//logger.debug("invalidate");
+			//logger.debug("invalidate :" + tstack.toString());
+			if(tstack.getStatus() != BioFuzzParsingStatus.FINISHED && 
+					tstack.getStatus() != BioFuzzParsingStatus.VALID) {
+				tstack.changeStatus(BioFuzzParsingStatus.INVALID);
+				if(depth + tstack.getSize() > this.maxSSize)
+					smgr.countSsizeCutoff();
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * Task that steps a range of stacks concurrently. Each task collects
+	 * its forks in a separate sink that reuses discarded stacks of the 
+	 * stack manager. The sinks are merged in order, so the order of the 
+	 * stacks is the same as for the sequential step.
+	 * 
+	 * @author julian
+	 *
+	 */
+	private class StepTask extends RecursiveTask<BioFuzzStackMgr> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final BioFuzzTokLst tokLst;
+		private final int [] syms;
+		private final BioFuzzStackMgr smgr;
+		private final int lo;
+		private final int hi;
+		private final int grain;
+		
+		StepTask(BioFuzzTokLst tokLst, int [] syms, BioFuzzStackMgr smgr, int lo, int hi, int grain) {
+			this.tokLst = tokLst;
+			this.syms = syms;
+			this.smgr = smgr;
+			this.lo = lo;
+			this.hi = hi;
+			this.grain = grain;
+		}
+		
+		@Override
+		protected BioFuzzStackMgr compute() {
+			if(this.hi - this.lo <= this.grain) {
+				BioFuzzStackMgr sink = this.smgr.createSink(this.hi - this.lo);
+				for(int i = this.lo; i < this.hi; i++) {
+					step(this.tokLst, this.syms, sink, this.smgr.getTupleStack(i), 0, 0);
+				}
+				return sink;
+			}
+			
+			int mid = (this.lo + this.hi) >>> 1;
+			StepTask left = new StepTask(this.tokLst, this.syms, this.smgr, this.lo, mid, this.grain);
+			StepTask right = new StepTask(this.tokLst, this.syms, this.smgr, mid, this.hi, this.grain);
+			left.fork();
+			BioFuzzStackMgr r = right.compute();
+			BioFuzzStackMgr l = left.join();
+			l.addAll(r);
+			return l;
+		}
+	}
+	
+	/**
+	 * 
+	 * Returns the pool that is used to step stacks concurrently. This is 
+	 * the pool of the parser configuration, the pool that was passed to
+	 * the constructor or, if there is none, a pool that is owned by this 
+	 * parser.
+	 * 
+	 * @return the fork/join pool.
+	 * 
+	 */
+	private synchronized ForkJoinPool getPool() {
+		if(this.config.getPool() != null)
+			return this.config.getPool();
+		if(this.sharedPool != null)
+			return this.sharedPool;
+		if(this.pool == null) 
+			this.pool = new ForkJoinPool(this.config.getParallelism());
+		return this.pool;
+	}
+	
+	/**
+	 * 
+	 * Stops the worker threads of the pool that is owned by this parser. 
+	 * Shared pools are not stopped. The parser can 
+	 * still be used afterwards, a new pool is created if needed.
+	 * 
+	 */
+	public synchronized void shutdown() {
+		if(this.pool != null) {
+			this.pool.shutdown();
+			this.pool = null;
+		}
+	}
+	
 	/**
 	 * 
 	 * Creates a copy of tstack and adds it to the stack manager. This function is called
@@ -278,26 +853,27 @@ public class BioFuzzParser {
 	 * This function matches tokens to the CFG-definition.
 	 * 
 	 * @param tokLst the token-list.
+	 * @param syms the symbols of the tokens.
 	 * @param smgr the stack manager.
 	 * @param tstack the currently active stack.
+	 * @param depth the amount of tuples below tstack.
+	 * @param iter the current iteration.
 	 * @return the number of matches.
 	 * 
 	 */
 	@SuppressWarnings("incomplete-switch")
-	private int match(BioFuzzTokLst tokLst, BioFuzzStackMgr smgr, BioFuzzTupleStack tstack) {
+	private int match(BioFuzzTokLst tokLst, int [] syms, BioFuzzStackMgr smgr, BioFuzzTupleStack tstack, 
+			int depth, int iter) {
 		
 		int matchCnt = 0;
 
 		BioFuzzTupleStack myTstack = null;
 		
-		BioFuzzParsingTuple tup = tstack.getLastTuple();
-		if(tup == null)
+		BioFuzzAttackCfg cfg = tstack.getLastCfg();
+		if(cfg == null)
 			return 0;
 
-		
-		BioFuzzAttackCfg cfg = tup.getCfg();
-		assert(cfg != null);
-		int lfr = tup.getLfr();
+		int lfr = tstack.getLastLfr();
 		
 		//logger.debug("LFR is " + lfr);
 		
@@ -305,15 +881,13 @@ public class BioFuzzParser {
 		
 		//logger.debug("CUR is " + cur);
 		
-		List<Number> choices = cfg.getChoicesByIdx(lfr);
+		int choiceCnt = cfg.getParseChoiceCnt(lfr);
 		
-		//logger.debug("CHOICES: " + choices);
+		assert(choiceCnt > 0);
 		
-		assert(choices != null);
-		
-		for(int i = 0; i < choices.size(); i++)  {
+		for(int i = 0; i < choiceCnt; i++)  {
 			myTstack = null;
-			int choice = choices.get(i).intValue();
+			int choice = cfg.getParseChoice(lfr, i);
 			
 			BioFuzzAttackTag atag = cfg.getAtagByIdx(choice);
 			
@@ -324,20 +898,28 @@ public class BioFuzzParser {
 				case NON_TERMINAL: {
 					BioFuzzAttackCfg ntCfg = this.mgr.getAttackCfgByKey(atag.getName());
 					
+					if(!isExpandable(tokLst, syms, tstack, choice, ntCfg))
+						continue;
 					
-					// this block avoid loops - it avoids that the same non-terminal is
-					// being added to the stack over and over again
-					if(tstack != null && tstack.getSize() > 2) {
-						BioFuzzParsingTuple lastTup = tstack.getTuple(tstack.getSize()-2);
-						if(tstack.getTuple(tstack.getSize()-1).getLfr() == 0 
-								&& lastTup.getLfr() == choice &&
-								lastTup.getCfg() == ntCfg) {
-							//logger.debug("loop detected");
-							continue;
+					if(this.config.isMemo()) {
+						// the sub-parse has been computed by prepare()
+						List<BioFuzzMemoTable.Outcome> outcomes = this.memo.lookup(cfg, choice, cur, iter);
+						assert(outcomes != null);
+						for(BioFuzzMemoTable.Outcome o : outcomes) {
+							myTstack = forkTupleStack(smgr, tstack, true);
+							myTstack.pushTuple(cfg, TagType.NON_TERMINAL, choice);
+							myTstack.graft(o.getDerivation());
+							myTstack.setCur(o.getCur());
+							// continue in the iteration the classic mode would
+							myTstack.setDelay(o.getDelay());
+							// the tuples of the sub-parse are not on this stack
+							if(!o.isComplete())
+								myTstack.setIncomplete(true);
+							matchCnt++;
 						}
+						continue;
 					}
 					
-					assert(ntCfg != null);
 					myTstack = forkTupleStack(smgr, tstack, true);
 					assert(myTstack != null);
 					myTstack.pushTuple(cfg, TagType.NON_TERMINAL, choice);
@@ -349,14 +931,13 @@ public class BioFuzzParser {
 				
 				case TERMINAL: {
 					
-					String as = atag.getName().toLowerCase();
-					String tok = tokLst.get(cur).toLowerCase();
-					//logger.debug("Terminal match : " + as + " vs. " + tok);
-					if(as.equals(tok)) {
+					// terminals are compared case-insensitively by their symbol
+					if(atag.getSymbol(this.symbols) == syms[cur]) {
 						myTstack = forkTupleStack(smgr, tstack, true);
 						assert(myTstack != null);
 						myTstack.pushTuple(cfg, TagType.TERMINAL, choice);
 						myTstack.nxtCur();
+						smgr.snapshot(myTstack, iter);
 	
 						matchCnt+=1;
 						//logger.debug("Terminal match " + atag.getName());
@@ -369,15 +950,15 @@ public class BioFuzzParser {
 				}
 				
 				case REGEXP : {
-					String rexp = atag.getName();
 					String tok = tokLst.get(cur);
 					
-					if(tok.matches(rexp)) {
+					if(atag.getMatcher().matches(tok)) {
 						myTstack = forkTupleStack(smgr, tstack, true);
 						assert(myTstack != null);
 						assert(myTstack != null);
 						myTstack.pushTuple(cfg,TagType.REGEXP, choice);
 						myTstack.nxtCur();
+						smgr.snapshot(myTstack, iter);
 						
 						matchCnt+=1;
 						
@@ -413,5 +994,340 @@ public class BioFuzzParser {
 		
 	}
 	
+	/**
+	 * 
+	 * Checks whether a stack may expand a non-terminal.
+	 * 
+	 * @param tokLst the token-list.
+	 * @param syms the symbols of the tokens.
+	 * @param tstack the currently active stack.
+	 * @param choice index of the non-terminal in the production rule 
+	 * definition on top of tstack.
+	 * @param ntCfg production rule definition of the non-terminal.
+	 * @return false if the expansion would loop or cannot match the current token.
+	 * 
+	 */
+	private boolean isExpandable(BioFuzzTokLst tokLst, int [] syms, BioFuzzTupleStack tstack, int choice, 
+			BioFuzzAttackCfg ntCfg) {
+		
+		// this block avoid loops - it avoids that the same non-terminal is
+		// being added to the stack over and over again. The stack of a 
+		// sub-parse only holds the tuple of the expanding stack below.
+		if(tstack != null && tstack.getSize() >= 2) {
+			int below = tstack.getSize()-2;
+			if(tstack.getLastLfr() == 0 
+					&& tstack.getLfr(below) == choice &&
+					tstack.getCfg(below) == ntCfg) {
+				//logger.debug("loop detected");
+				return false;
+			}
+		}
+		
+		assert(ntCfg != null);
+		
+		// skip non-terminals that cannot start with the current token
+		int cur = tstack.getCur();
+		if(this.config.isLookahead() && !this.firstSets.isNullable(ntCfg) &&
+				!this.firstSets.canStartWith(ntCfg, syms[cur], tokLst.get(cur))) {
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * 
+	 * A sub-parse of a non-terminal with index choice of cfg at token index
+	 * cur. Its stacks start with the tuple of the expanding stack, so that 
+	 * the loop detection works like for the expanding stack, and the 
+	 * non-terminal is complete once this tuple is on top again. The stack
+	 * size limit applies to the stacks together with the tuples of the 
+	 * expanding stack, and the iterations are counted from the iteration
+	 * of the expansion.
+	 * 
+	 * @author julian
+	 *
+	 */
+	private class SubParse {
+		
+		private final BioFuzzAttackCfg cfg;
+		private final int choice;
+		private final int cur;
+		private final BioFuzzMemoTable.Entry entry;
+		private final BioFuzzStackMgr smgr;
+		private final List<BioFuzzMemoTable.Outcome> outcomes;
+		private int iter;
+		
+		SubParse(BioFuzzAttackCfg cfg, int choice, BioFuzzAttackCfg ntCfg, String name, int cur, 
+				int depth, int iter, boolean record) {
+			this.cfg = cfg;
+			this.choice = choice;
+			this.cur = cur;
+			this.entry = BioFuzzParser.this.memo.start(cfg, choice, cur, depth, iter);
+			this.smgr = new BioFuzzStackMgr(BioFuzzParser.this.config.isGss());
+			this.smgr.setBeam(BioFuzzParser.this.config.getBeamWidth(), BioFuzzParser.this.config.getScorer());
+			this.smgr.setMergeMode(BioFuzzParser.this.config.getMergeMode());
+			this.outcomes = new Vector<BioFuzzMemoTable.Outcome>();
+			this.iter = 0;
+			
+			BioFuzzTupleStack sub = this.smgr.createAndGetStack(name, cur);
+			sub.setRecording(record);
+			if(record)
+				sub.setDerivation(BioFuzzDerivation.base());
+			sub.pushTuple(cfg, TagType.START, choice);
+			sub.pushTuple(ntCfg, TagType.START, 0);
+		}
+		
+		/**
+		 * 
+		 * Performs a single iteration. The sub-parses the stacks need have to
+		 * be computed beforehand.
+		 * 
+		 * @param tokLst the token-list.
+		 * @param syms the symbols of the tokens.
+		 * @return false if the sub-parse is complete.
+		 * 
+		 */
+		boolean advance(BioFuzzTokLst tokLst, int [] syms) {
+			// skip the iterations in which all stacks wait for their sub-parses
+			int wait = this.smgr.resume();
+			if(wait > 0) {
+				this.iter += wait;
+				return !isBounded();
+			}
+			
+			int ub = this.smgr.getSize();
+			this.iter++;
+			
+			Map<Integer,BioFuzzDerivation> done = new TreeMap<Integer,BioFuzzDerivation>();
+			// derivations that reached the end of the token list, with and without
+			// a nullable tail
+			BioFuzzDerivation [] finished = new BioFuzzDerivation[2];
+			boolean [] hasFinished = new boolean[2];
+			
+			for (int i = 0; i < ub; i++ ) {
+				BioFuzzTupleStack tstack = this.smgr.getTupleStack(i);
+				
+				if(tstack.getSize() < 2) {
+					// the non-terminal is complete
+					done.put(tstack.getCur(), join(done.get(tstack.getCur()), tstack.getDerivation()));
+				} else if(tstack.getCur() > tokLst.getSize() - 2) {
+					int k = (BioFuzzParser.this.complete && !tstack.isIncomplete() && isComplete(tstack, 1)) ? 1 : 0;
+					finished[k] = join(finished[k], tstack.getDerivation());
+					hasFinished[k] = true;
+				} else {
+					step(tokLst, syms, this.smgr, tstack, this.entry.getDepth(), this.entry.getIter() + this.iter);
+				}
+				tstack.changeStatus(BioFuzzParsingStatus.INVALID);
+			}
+			
+			// the expanding stack continues in the iteration after this one
+			for(Map.Entry<Integer,BioFuzzDerivation> e : done.entrySet()) {
+				this.outcomes.add(new BioFuzzMemoTable.Outcome(e.getKey(), e.getValue(), false, true, this.iter - 1));
+			}
+			for(int k = 0; k < 2; k++) {
+				if(hasFinished[k]) 
+					this.outcomes.add(new BioFuzzMemoTable.Outcome(tokLst.getSize() - 1, finished[k], true, 
+							k == 1, this.iter - 1));
+			}
+			
+			this.smgr.reduce();
+			
+			return !isBounded() && (this.smgr.getSize() > 0 || this.smgr.getWaitingCnt() > 0);
+		}
+		
+		/**
+		 * 
+		 * Checks the iteration limit.
+		 * 
+		 * @return true if the sub-parse has to be stopped.
+		 * 
+		 */
+		private boolean isBounded() {
+			if(this.entry.getIter() + this.iter <= BioFuzzParser.this.maxIter)
+				return false;
+			
+			logger.debug("too many iterations");
+			this.entry.extend(this.iter, true);
+			return true;
+		}
+		
+		/**
+		 * 
+		 * Stores the outcomes in the memo table.
+		 * 
+		 */
+		void finish() {
+			this.entry.extend(this.iter, false);
+			
+			BioFuzzParser.this.droppedCnt += this.smgr.getDroppedCnt();
+			if(BioFuzzParser.this.stats != null)
+				BioFuzzParser.this.stats.add(this.smgr, this.iter, this.entry.isBounded());
+			
+			BioFuzzParser.this.memo.put(this.cfg, this.choice, this.cur, this.entry, this.outcomes);
+		}
+	}
+	
+	/**
+	 * 
+	 * Computes the sub-parses the stacks of smgr need in the current 
+	 * iteration and stores them in the memo table. Sub-parses that need 
+	 * further sub-parses are suspended on a work stack, so the depth of 
+	 * the Java stack does not depend on the input.
+	 * 
+	 * @param tokLst the token-list.
+	 * @param syms the symbols of the tokens.
+	 * @param smgr the stack manager.
+	 * @param depth the amount of tuples below the stacks of smgr.
+	 * @param iter the current iteration.
+	 * 
+	 */
+	private void prepare(BioFuzzTokLst tokLst, int [] syms, BioFuzzStackMgr smgr, int depth, int iter) {
+		Stack<SubParse> work = new Stack<SubParse>();
+		SubParse next = request(tokLst, syms, smgr, depth, iter, null);
+		
+		while(next != null) {
+			work.push(next);
+			
+			while(!work.isEmpty()) {
+				SubParse sub = work.peek();
+				SubParse child = request(tokLst, syms, sub.smgr, sub.entry.getDepth(), 
+						sub.entry.getIter() + sub.iter + 1, sub);
+				
+				if(child != null) {
+					work.push(child);
+				} else if(!sub.advance(tokLst, syms)) {
+					sub.finish();
+					work.pop();
+				}
+			}
+			
+			next = request(tokLst, syms, smgr, depth, iter, null);
+		}
+	}
+	
+	/**
+	 * 
+	 * Looks for a non-terminal that a stack of smgr expands in the current
+	 * iteration and whose sub-parse is not in the memo table.
+	 * 
+	 * @param tokLst the token-list.
+	 * @param syms the symbols of the tokens.
+	 * @param smgr the stack manager.
+	 * @param depth the amount of tuples below the stacks of smgr.
+	 * @param iter the current iteration.
+	 * @param parent the sub-parse of smgr or null. The iterations the known 
+	 * sub-parses need are added to its memo table entry.
+	 * @return a new sub-parse or null if all sub-parses are known.
+	 * 
+	 */
+	private SubParse request(BioFuzzTokLst tokLst, int [] syms, BioFuzzStackMgr smgr, int depth, int iter, 
+			SubParse parent) {
+		for(int i = 0; i < smgr.getSize(); i++) {
+			BioFuzzTupleStack tstack = smgr.getTupleStack(i);
+			
+			// complete stacks of sub-parses are not stepped
+			if(tstack.getSize() < (parent == null ? 1 : 2) || 
+					tstack.getCur() > tokLst.getSize() - 2)
+				continue;
+			
+			BioFuzzAttackCfg cfg = tstack.getLastCfg();
+			int lfr = tstack.getLastLfr();
+			int cur = tstack.getCur();
+			
+			for(int j = 0; j < cfg.getParseChoiceCnt(lfr); j++) {
+				int choice = cfg.getParseChoice(lfr, j);
+				BioFuzzAttackTag atag = cfg.getAtagByIdx(choice);
+				
+				if(atag.getTagType() != TagType.NON_TERMINAL)
+					continue;
+				
+				BioFuzzAttackCfg ntCfg = this.mgr.getAttackCfgByKey(atag.getName());
+				if(!isExpandable(tokLst, syms, tstack, choice, ntCfg))
+					continue;
+				
+				BioFuzzMemoTable.Entry e = this.memo.find(cfg, choice, cur, iter);
+				if(e == null)
+					return new SubParse(cfg, choice, ntCfg, atag.getName(), cur, depth + tstack.getSize(), 
+							iter, tstack.isRecording());
+				
+				if(parent != null)
+					parent.entry.extend(parent.iter + 1 + e.getUsed(), e.isBounded());
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * 
+	 * Joins two derivations. Derivations are null if they are not recorded.
+	 * 
+	 * @param a a derivation or null.
+	 * @param b a derivation or null.
+	 * @return the joined derivation.
+	 * 
+	 */
+	private static BioFuzzDerivation join(BioFuzzDerivation a, BioFuzzDerivation b) {
+		if(a == null)
+			return b;
+		if(b == null)
+			return a;
+		return BioFuzzDerivation.join(a, b);
+	}
+	
+	/**
+	 * 
+	 * Checks whether all production rules on a stack can be completed 
+	 * without consuming further tokens.
+	 * 
+	 * @param tstack a stack.
+	 * @param bottom index of the lowest tuple to consider.
+	 * @return true if the stack can be completed.
+	 * 
+	 */
+	private boolean isComplete(BioFuzzTupleStack tstack, int bottom) {
+		if(tstack instanceof BioFuzzGssStack)
+			return isComplete(((BioFuzzGssStack)tstack).getTop(), bottom);
+		
+		int i = tstack.getSize() - 1;
+		
+		while(i >= bottom) {
+			// the topmost tuple of a production rule is its current position
+			if(!this.firstSets.canComplete(tstack.getCfg(i), tstack.getLfr(i)))
+				return false;
+			
+			// skip the remaining tuples of this production rule
+			while(i >= bottom && tstack.getLfr(i) != 0)
+				i--;
+			i--;
+		}
+		return true;
+	}
+	
+	/**
+	 * 
+	 * Checks whether all production rules of a graph-structured stack can
+	 * be completed without consuming further tokens. The nodes are only 
+	 * walked once from the top down.
+	 * 
+	 * @param top the top node of the stack.
+	 * @param bottom index of the lowest tuple to consider.
+	 * @return true if the stack can be completed.
+	 * 
+	 */
+	private boolean isComplete(BioFuzzGssNode top, int bottom) {
+		BioFuzzGssNode node = top;
+		
+		while(node != null && node.getSize() > bottom) {
+			if(!this.firstSets.canComplete(node.getCfg(), node.getLfr()))
+				return false;
+			
+			// skip the remaining tuples of this production rule
+			while(node != null && node.getSize() > bottom && node.getLfr() != 0)
+				node = node.getParent();
+			if(node != null)
+				node = node.getParent();
+		}
+		return true;
+	}
 	
 }
@@ -20,6 +20,8 @@
 
 package org.biofuzztk.components.parser;
 
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * 
  * The parser configuration.
@@ -32,6 +34,19 @@ public class BioFuzzParserConfig {
 	private BioFuzzParsingStatus minQual = BioFuzzParsingStatus.INVALID;
 	private int maxIter = 0;
 	private int maxSsize = 0;
+	private boolean gss = false;
+	private boolean memo = false;
+	private boolean lookahead = true;
+	private int parallelThreshold = 0;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private ForkJoinPool pool = null;
+	private int beamWidth = 0;
+	private BioFuzzStackScorer scorer = new BioFuzzProgressScorer();
+	private BioFuzzMergeMode mergeMode = BioFuzzMergeMode.MERGE;
+	private boolean snapshots = false;
+	private boolean offsets = false;
+	private int batchWorkers = Runtime.getRuntime().availableProcessors();
+	private BioFuzzParserMetrics metrics = null;
 	
 	/**
 	 * 
@@ -48,6 +63,17 @@ public class BioFuzzParserConfig {
 		this.maxSsize = maxSsize;
 		this.maxIter = maxIter;
 	}
+	
+	@Override
+	public String toString() {
+		return "maxSsize: " + this.maxSsize + " minQual: " + this.minQual + 
+				" maxIter: " + this.maxIter + " gss: " + this.gss + " memo: " + this.memo + 
+				" lookahead: " + this.lookahead + " parallelThreshold: " + 
+				this.parallelThreshold + " parallelism: " + this.parallelism + 
+				" beamWidth: " + this.beamWidth + " mergeMode: " + this.mergeMode + 
+				" snapshots: " + this.snapshots + " offsets: " + this.offsets + 
+				" batchWorkers: " + this.batchWorkers + " metrics: " + (this.metrics != null);
+	}
 
 	public BioFuzzParsingStatus getMinQual() {
 		return minQual;
@@ -72,6 +98,249 @@ public class BioFuzzParserConfig {
 	public void setMaxSsize(int maxSsize) {
 		this.maxSsize = maxSsize;
 	}
+
+	public boolean isGss() {
+		return gss;
+	}
+
+	/**
+	 * 
+	 * If enabled, all stacks share a single graph-structured stack. Forking
+	 * a stack takes constant time, stacks with the same configuration are
+	 * merged and parse-trees are only built for the resulting stacks.
+	 * 
+	 * @param gss true to enable the graph-structured stack.
+	 * 
+	 */
+	public void setGss(boolean gss) {
+		this.gss = gss;
+	}
+	
+	public boolean isMemo() {
+		return memo;
+	}
+
+	/**
+	 * 
+	 * If enabled, a non-terminal that is expanded at a given token index is
+	 * only parsed once. The outcomes are stored in the memo table of the
+	 * parser and reused by all stacks that expand the same non-terminal at
+	 * the same token index. The sub-parses of a parsing run share the memo
+	 * table, i.e. memoization cannot be combined with concurrent stepping.
+	 * Memoized sub-parses skip tokens, i.e. memoization cannot be combined
+	 * with snapshots either.
+	 * 
+	 * @param memo true to enable memoization of sub-parses.
+	 * @throws IllegalStateException if concurrent stepping or snapshots are enabled.
+	 * 
+	 */
+	public void setMemo(boolean memo) {
+		if(memo && this.parallelThreshold > 0)
+			throw new IllegalStateException("memoization cannot be combined with concurrent stepping");
+		if(memo && this.snapshots)
+			throw new IllegalStateException("memoization cannot be combined with snapshots");
+		this.memo = memo;
+	}
+	
+	public boolean isLookahead() {
+		return lookahead;
+	}
+
+	/**
+	 * 
+	 * If enabled (default), a non-terminal is only expanded if it is nullable 
+	 * or if its FIRST set matches the current token.
+	 * 
+	 * @param lookahead true to enable FIRST set lookahead.
+	 * 
+	 */
+	public void setLookahead(boolean lookahead) {
+		this.lookahead = lookahead;
+	}
+	
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/**
+	 * 
+	 * If the amount of stacks of a parsing iteration reaches this threshold,
+	 * the stacks are stepped concurrently.
+	 * 
+	 * @param parallelThreshold minimal amount of stacks or 0 to disable concurrent stepping.
+	 * @throws IllegalStateException if memoization is enabled.
+	 * 
+	 */
+	public void setParallelThreshold(int parallelThreshold) {
+		if(parallelThreshold > 0 && this.memo)
+			throw new IllegalStateException("concurrent stepping cannot be combined with memoization");
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * 
+	 * Sets the amount of worker threads that step stacks concurrently. Has
+	 * to be set before the first parsing run that uses concurrent stepping.
+	 * Not used if a pool is set.
+	 * 
+	 * @param parallelism the amount of worker threads.
+	 * 
+	 */
+	public void setParallelism(int parallelism) {
+		assert(parallelism > 0);
+		this.parallelism = parallelism;
+	}
+	
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * 
+	 * Sets the pool that steps stacks concurrently. Parsers that share 
+	 * this configuration share the pool, the owner of the pool has to shut
+	 * it down. If no pool is set, the parsers of a BioFuzzMgr share the pool
+	 * of the manager that is stopped by BioFuzzMgr.shutdown(), other parsers
+	 * create a pool of their own on first use that is stopped by
+	 * BioFuzzParser.shutdown().
+	 * 
+	 * @param pool the fork/join pool or null.
+	 * 
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	public int getBeamWidth() {
+		return beamWidth;
+	}
+
+	/**
+	 * 
+	 * Limits the amount of stacks that are in progress at the same time. 
+	 * Only the stacks with the highest scores are kept.
+	 * 
+	 * @param beamWidth the maximal amount of stacks in progress or 0 for no limit.
+	 * 
+	 */
+	public void setBeamWidth(int beamWidth) {
+		this.beamWidth = beamWidth;
+	}
+
+	public BioFuzzStackScorer getScorer() {
+		return scorer;
+	}
+
+	/**
+	 * 
+	 * Sets the function that scores the stacks if the beam width is exceeded.
+	 * 
+	 * @param scorer the stack scorer.
+	 * 
+	 */
+	public void setScorer(BioFuzzStackScorer scorer) {
+		assert(scorer != null);
+		this.scorer = scorer;
+	}
+	
+	public BioFuzzMergeMode getMergeMode() {
+		return mergeMode;
+	}
+
+	/**
+	 * 
+	 * Sets what happens to stacks with the same configuration as an earlier
+	 * stack. MERGE (default) keeps all parse-trees, DROP keeps only the 
+	 * parse-trees of the earlier stack and OFF keeps every stack.
+	 * 
+	 * @param mergeMode the merge mode.
+	 * 
+	 */
+	public void setMergeMode(BioFuzzMergeMode mergeMode) {
+		assert(mergeMode != null);
+		this.mergeMode = mergeMode;
+	}
+	
+	public boolean isSnapshots() {
+		return snapshots;
+	}
+
+	/**
+	 * 
+	 * If enabled, the parser keeps the stacks at every token index of the
+	 * parse-trees built by buildTrees(), so that they can be reparsed 
+	 * from the first edited token. Snapshots are taken from graph-structured
+	 * stacks, which are used regardless of setGss(). A snapshot shares its 
+	 * tuples with the stack it was taken from, i.e. it costs a constant
+	 * amount of memory, but the parser state of a parse-tree holds one 
+	 * snapshot per stack and consumed token and keeps the nodes of the 
+	 * graph-structured stack alive until the parse-tree is collected.
+	 * 
+	 * @param snapshots true to keep the parser state.
+	 * @throws IllegalStateException if memoization is enabled.
+	 * 
+	 */
+	public void setSnapshots(boolean snapshots) {
+		if(snapshots && this.memo)
+			throw new IllegalStateException("snapshots cannot be combined with memoization");
+		this.snapshots = snapshots;
+	}
+	
+	public boolean isOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * 
+	 * If enabled, the tokens of a tokenizer that does not report offsets
+	 * are looked up in the input, so that the nodes of the parse-trees 
+	 * know their offsets. Tokenizers that implement BioFuzzOffsetTokenizer
+	 * always report offsets.
+	 * 
+	 * @param offsets true to look up the offsets of the tokens.
+	 * 
+	 */
+	public void setOffsets(boolean offsets) {
+		this.offsets = offsets;
+	}
+	
+	public int getBatchWorkers() {
+		return batchWorkers;
+	}
+
+	/**
+	 * 
+	 * Sets the amount of worker threads that parse the inputs of a batch.
+	 * Has to be set before the first batch is parsed.
+	 * 
+	 * @param batchWorkers the amount of worker threads.
+	 * 
+	 */
+	public void setBatchWorkers(int batchWorkers) {
+		assert(batchWorkers > 0);
+		this.batchWorkers = batchWorkers;
+	}
+	
+	public BioFuzzParserMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * 
+	 * If set, the parsers count iterations, forks, cutoffs etc. of each 
+	 * parsing run and add them to metrics. Parsers that share this 
+	 * configuration share the metrics.
+	 * 
+	 * @param metrics the aggregated counters or null to disable instrumentation.
+	 * 
+	 */
+	public void setMetrics(BioFuzzParserMetrics metrics) {
+		this.metrics = metrics;
+	}
 	
 	
 
@@ -0,0 +1,244 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 
+ * Counters that are aggregated over all parsing runs of all parsers that
+ * share a parser configuration. Each parser adds the counters of a run
+ * once the run is done, so the counters are only touched once per run.
+ * The counters can be published as MBean.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzParserMetrics implements BioFuzzParserMetricsMBean {
+	
+	final static Logger logger = LoggerFactory.getLogger(BioFuzzParserMetrics.class);
+	
+	private final AtomicLong parseCnt = new AtomicLong();
+	private final AtomicLong iterCnt = new AtomicLong();
+	private final AtomicLong forkCnt = new AtomicLong();
+	private final AtomicLong invalidCnt = new AtomicLong();
+	private final AtomicLong mergedCnt = new AtomicLong();
+	private final AtomicLong droppedCnt = new AtomicLong();
+	private final AtomicLong peakCnt = new AtomicLong();
+	private final AtomicLong maxIterCnt = new AtomicLong();
+	private final AtomicLong maxSsizeCnt = new AtomicLong();
+	private final AtomicLong treeCnt = new AtomicLong();
+	private final AtomicLong cacheHitCnt = new AtomicLong();
+	private final AtomicLong cacheMissCnt = new AtomicLong();
+	private final AtomicLong nanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+	
+	private ObjectName name = null;
+	
+	/**
+	 * 
+	 * Adds the counters of a parsing run.
+	 * 
+	 * @param stats the counters of a parsing run.
+	 * 
+	 */
+	public void add(BioFuzzParseStats stats) {
+		this.parseCnt.incrementAndGet();
+		this.iterCnt.addAndGet(stats.getIterCnt());
+		this.forkCnt.addAndGet(stats.getForkCnt());
+		this.invalidCnt.addAndGet(stats.getInvalidCnt());
+		this.mergedCnt.addAndGet(stats.getMergedCnt());
+		this.droppedCnt.addAndGet(stats.getDroppedCnt());
+		this.maxIterCnt.addAndGet(stats.getMaxIterCnt());
+		this.maxSsizeCnt.addAndGet(stats.getMaxSsizeCnt());
+		this.treeCnt.addAndGet(stats.getTreeCnt());
+		this.cacheHitCnt.addAndGet(stats.getCacheHitCnt());
+		this.cacheMissCnt.addAndGet(stats.getCacheMissCnt());
+		this.nanos.addAndGet(stats.getNanos());
+		max(this.peakCnt, stats.getPeakCnt());
+		max(this.maxNanos, stats.getNanos());
+	}
+	
+	private static void max(AtomicLong a, long v) {
+		long cur = a.get();
+		while(v > cur && !a.compareAndSet(cur, v)) {
+			cur = a.get();
+		}
+	}
+	
+	/**
+	 * 
+	 * Publishes the counters on the platform MBean server.
+	 * 
+	 * @param id a name that distinguishes this instance from others.
+	 * @return true if the counters have been published.
+	 * 
+	 */
+	public synchronized boolean register(String id) {
+		unregister();
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName on = new ObjectName("org.biofuzztk:type=BioFuzzParserMetrics,name=" + 
+					ObjectName.quote(id));
+			server.registerMBean(this, on);
+			this.name = on;
+			return true;
+		} catch (JMException e) {
+			logger.error("cannot register metrics " + id + ": " + e.getMessage());
+			return false;
+		}
+	}
+	
+	/**
+	 * 
+	 * Removes the counters from the platform MBean server.
+	 * 
+	 */
+	public synchronized void unregister() {
+		if(this.name == null)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.name);
+		} catch (JMException e) {
+			logger.error("cannot unregister metrics " + this.name + ": " + e.getMessage());
+		}
+		this.name = null;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the name on the MBean server or null if not registered.
+	 * 
+	 */
+	public synchronized ObjectName getObjectName() {
+		return this.name;
+	}
+	
+	@Override
+	public long getParseCnt() {
+		return this.parseCnt.get();
+	}
+	
+	@Override
+	public long getIterCnt() {
+		return this.iterCnt.get();
+	}
+	
+	@Override
+	public long getForkCnt() {
+		return this.forkCnt.get();
+	}
+	
+	@Override
+	public long getInvalidCnt() {
+		return this.invalidCnt.get();
+	}
+	
+	@Override
+	public long getMergedCnt() {
+		return this.mergedCnt.get();
+	}
+	
+	@Override
+	public long getDroppedCnt() {
+		return this.droppedCnt.get();
+	}
+	
+	@Override
+	public long getPeakCnt() {
+		return this.peakCnt.get();
+	}
+	
+	@Override
+	public long getMaxIterCnt() {
+		return this.maxIterCnt.get();
+	}
+	
+	@Override
+	public long getMaxSsizeCnt() {
+		return this.maxSsizeCnt.get();
+	}
+	
+	@Override
+	public long getTreeCnt() {
+		return this.treeCnt.get();
+	}
+	
+	@Override
+	public long getCacheHitCnt() {
+		return this.cacheHitCnt.get();
+	}
+	
+	@Override
+	public long getCacheMissCnt() {
+		return this.cacheMissCnt.get();
+	}
+	
+	@Override
+	public long getNanos() {
+		return this.nanos.get();
+	}
+	
+	@Override
+	public long getMaxNanos() {
+		return this.maxNanos.get();
+	}
+	
+	@Override
+	public void reset() {
+		this.parseCnt.set(0);
+		this.iterCnt.set(0);
+		this.forkCnt.set(0);
+		this.invalidCnt.set(0);
+		this.mergedCnt.set(0);
+		this.droppedCnt.set(0);
+		this.peakCnt.set(0);
+		this.maxIterCnt.set(0);
+		this.maxSsizeCnt.set(0);
+		this.treeCnt.set(0);
+		this.cacheHitCnt.set(0);
+		this.cacheMissCnt.set(0);
+		this.nanos.set(0);
+		this.maxNanos.set(0);
+	}
+	
+	@Override
+	public String toString() {
+		return "parses: " + getParseCnt() + " iterations: " + getIterCnt() + 
+				" forks: " + getForkCnt() + " invalid: " + getInvalidCnt() + 
+				" merged: " + getMergedCnt() + " dropped: " + getDroppedCnt() + 
+				" peak: " + getPeakCnt() + " maxIter cutoffs: " + getMaxIterCnt() + 
+				" maxSsize cutoffs: " + getMaxSsizeCnt() + " trees: " + getTreeCnt() + 
+				" cache hits: " + getCacheHitCnt() + " cache misses: " + getCacheMissCnt() + 
+				" time: " + getNanos() / 1000000 + "ms";
+	}
+
+}
@@ -0,0 +1,63 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+/**
+ * 
+ * Management interface of the aggregated parser counters (see 
+ * BioFuzzParserMetrics).
+ * 
+ * @author julian
+ *
+ */
+public interface BioFuzzParserMetricsMBean {
+	
+	public long getParseCnt();
+	
+	public long getIterCnt();
+	
+	public long getForkCnt();
+	
+	public long getInvalidCnt();
+	
+	public long getMergedCnt();
+	
+	public long getDroppedCnt();
+	
+	public long getPeakCnt();
+	
+	public long getMaxIterCnt();
+	
+	public long getMaxSsizeCnt();
+	
+	public long getTreeCnt();
+	
+	public long getCacheHitCnt();
+	
+	public long getCacheMissCnt();
+	
+	public long getNanos();
+	
+	public long getMaxNanos();
+	
+	public void reset();
+
+}
@@ -41,9 +41,55 @@ public class BioFuzzParsingTuple {
 	 */
 	private int lfr;
 	
+	/**
+	 * hash of this tuple and all tuples below.
+	 */
+	private int prefixHash;
+	
 	public BioFuzzParsingTuple(BioFuzzAttackCfg cfg, int lfr) {
+		this(null, cfg, lfr);
+	}
+	
+	/**
+	 * 
+	 * Constructor. The hash of the tuples below is extended by this tuple.
+	 * 
+	 * @param below the tuple below or null.
+	 * @param cfg production rule definition.
+	 * @param lfr last fired rule.
+	 * 
+	 */
+	public BioFuzzParsingTuple(BioFuzzParsingTuple below, BioFuzzAttackCfg cfg, int lfr) {
+		this(cfg, lfr, hash(below == null ? 1 : below.prefixHash, cfg, lfr));
+	}
+	
+	/**
+	 * 
+	 * Constructor for tuples whose prefix hash is already known.
+	 * 
+	 * @param cfg production rule definition.
+	 * @param lfr last fired rule.
+	 * @param prefixHash hash of this tuple and all tuples below.
+	 * 
+	 */
+	BioFuzzParsingTuple(BioFuzzAttackCfg cfg, int lfr, int prefixHash) {
 		this.cfg = cfg;
 		this.lfr = lfr;
+		this.prefixHash = prefixHash;
+	}
+	
+	/**
+	 * 
+	 * Extends the hash of the tuples below by a tuple.
+	 * 
+	 * @param below hash of the tuples below or 1 for the bottom tuple.
+	 * @param cfg production rule definition.
+	 * @param lfr last fired rule.
+	 * @return the prefix hash of the tuple.
+	 * 
+	 */
+	static int hash(int below, BioFuzzAttackCfg cfg, int lfr) {
+		return 31 * (31 * below + System.identityHashCode(cfg)) + lfr;
 	}
 	
 	public int getLfr() {
@@ -55,12 +101,36 @@ public class BioFuzzParsingTuple {
 		return this.cfg;
 	}
 	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the hash of this tuple and all tuples below.
+	 * 
+	 */
+	public int getPrefixHash() {
+		return this.prefixHash;
+	}
+	
 	@Override 
 	public String toString() {
+		return toString(this.cfg, this.lfr);
+	}
+	
+	/**
+	 * 
+	 * Prints a tuple without creating a tuple object.
+	 * 
+	 * @param cfg production rule definition.
+	 * @param lfr last fired rule.
+	 * @return the string representation of the tuple.
+	 * 
+	 */
+	static String toString(BioFuzzAttackCfg cfg, int lfr) {
 		String s = "";
 		s += "Tuple---------------------------------------\n";
-		s += "LFR: " + this.lfr + "\n";
-		s += "CFG: " + this.cfg.toString() + "\n";
+		s += "LFR: " + lfr + "\n";
+		s += "CFG: " + cfg.toString() + "\n";
 		s += "---------------------------------------------\n";
 		
 		return s;
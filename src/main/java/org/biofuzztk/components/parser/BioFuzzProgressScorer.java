@@ -0,0 +1,60 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+/**
+ * 
+ * Default stack scorer. Stacks that consumed more tokens are preferred. 
+ * Among stacks with the same progress, shallower stacks are preferred.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzProgressScorer implements BioFuzzStackScorer {
+	
+	private double depthWeight;
+	
+	public BioFuzzProgressScorer() {
+		this(0.001);
+	}
+	
+	/**
+	 * 
+	 * Constructor.
+	 * 
+	 * @param depthWeight penalty per tuple on the stack.
+	 * 
+	 */
+	public BioFuzzProgressScorer(double depthWeight) {
+		this.depthWeight = depthWeight;
+	}
+
+	@Override
+	public double score(BioFuzzTupleStack tstack) {
+		return tstack.getCur() - this.depthWeight * tstack.getSize();
+	}
+	
+	@Override
+	public String getKey() {
+		return "progress:" + this.depthWeight;
+	}
+
+}
@@ -20,9 +20,15 @@
 
 package org.biofuzztk.components.parser;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.Vector;
 
+import org.biofuzztk.ptree.BioFuzzParseForest;
 import org.biofuzztk.ptree.BioFuzzParseTree;
 
 
@@ -35,17 +41,284 @@ import org.biofuzztk.ptree.BioFuzzParseTree;
  */
 public class BioFuzzStackMgr {
 	
+	// upper bound for discarded stacks that are kept for reuse
+	private static final int MAX_SPARES = 1024;
+	
 	private List<BioFuzzTupleStack> stackLst;
+	private List<BioFuzzTupleStack> spares;
+	private Map<Integer,BioFuzzTupleStack> merged;
+	// delayed stacks by the iteration after which they are stepped again
+	private TreeMap<Integer,List<BioFuzzTupleStack>> waiting;
+	private int waitingCnt;
+	private int clock;
 	private int progressCnt;
 	private int finishCnt;
 	private int validCnt;
+	private BioFuzzGss gss;
+	private int beamWidth;
+	private BioFuzzStackScorer scorer;
+	private BioFuzzMergeMode mergeMode;
+	private int droppedCnt;
+	private int mergedCnt;
+	private int forkCnt;
+	private int invalidCnt;
+	private int peakCnt;
+	private int ssizeCnt;
+	private int reuseCnt;
+	private BioFuzzParseState state;
 	
 	public BioFuzzStackMgr() {
+		this(false);
+	}
+	
+	/**
+	 * 
+	 * Constructor.
+	 * 
+	 * @param gss if true all stacks share a single graph-structured stack.
+	 * 
+	 */
+	public BioFuzzStackMgr(boolean gss) {
+		this(gss ? new BioFuzzGss() : null);
+	}
+	
+	BioFuzzStackMgr(BioFuzzGss gss) {
 		this.stackLst = new Vector<BioFuzzTupleStack>();
+		this.spares = new Vector<BioFuzzTupleStack>();
+		this.merged = new HashMap<Integer,BioFuzzTupleStack>();
+		this.waiting = new TreeMap<Integer,List<BioFuzzTupleStack>>();
+		this.waitingCnt = 0;
+		this.clock = 0;
 		this.progressCnt = 0;
 		this.finishCnt = 0;
 		this.validCnt = 0;
+		this.gss = gss;
+		this.beamWidth = 0;
+		this.scorer = null;
+		this.mergeMode = BioFuzzMergeMode.MERGE;
+		this.droppedCnt = 0;
+		this.mergedCnt = 0;
+		this.forkCnt = 0;
+		this.invalidCnt = 0;
+		this.peakCnt = 0;
+		this.ssizeCnt = 0;
+		this.reuseCnt = 0;
+		this.state = null;
+	}
+	
+	/**
+	 * 
+	 * Limits the amount of stacks that are in progress. If there are more
+	 * stacks, only the stacks with the highest scores are kept by reduce().
+	 * 
+	 * @param beamWidth the maximal amount of stacks in progress or 0 for no limit.
+	 * @param scorer the function that scores the stacks.
+	 * 
+	 */
+	public void setBeam(int beamWidth, BioFuzzStackScorer scorer) {
+		assert(beamWidth <= 0 || scorer != null);
+		this.beamWidth = beamWidth;
+		this.scorer = scorer;
+	}
+	
+	/**
+	 * 
+	 * Sets what reduce() does with stacks that have the same configuration
+	 * as an earlier stack.
+	 * 
+	 * @param mergeMode the merge mode.
+	 * 
+	 */
+	public void setMergeMode(BioFuzzMergeMode mergeMode) {
+		assert(mergeMode != null);
+		this.mergeMode = mergeMode;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of stacks that were dropped because of the beam width.
+	 * 
+	 */
+	public int getDroppedCnt() {
+		return this.droppedCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of stacks that were merged into or dropped in favour
+	 * of a stack with the same configuration.
+	 * 
+	 */
+	public int getMergedCnt() {
+		return this.mergedCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of stacks that were created by copying a stack.
+	 * 
+	 */
+	public int getForkCnt() {
+		return this.forkCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of INVALID stacks that were removed by reduce().
+	 * 
+	 */
+	public int getInvalidCnt() {
+		return this.invalidCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the maximal amount of stacks before a call of reduce().
+	 * 
+	 */
+	public int getPeakCnt() {
+		return this.peakCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of stacks that were invalidated because they 
+	 * exceeded the maximal stack size.
+	 * 
+	 */
+	public int getSsizeCnt() {
+		return this.ssizeCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of forks that reused a discarded stack.
+	 * 
+	 */
+	public int getReuseCnt() {
+		return this.reuseCnt;
+	}
+	
+	/**
+	 * 
+	 * Counts a stack that exceeded the maximal stack size.
+	 * 
+	 */
+	void countSsizeCutoff() {
+		this.ssizeCnt++;
+	}
+	
+	/**
+	 * 
+	 * Setter. If set, a copy of every stack that consumes a token is
+	 * stored in state.
+	 * 
+	 * @param state the parser state that receives the snapshots or null.
+	 * 
+	 */
+	public void setState(BioFuzzParseState state) {
+		this.state = state;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the parser state that receives the snapshots or null.
+	 * 
+	 */
+	public BioFuzzParseState getState() {
+		return this.state;
+	}
+	
+	/**
+	 * 
+	 * Stores a snapshot of a stack that has just consumed a token.
+	 * 
+	 * @param tstack a tuple stack.
+	 * @param iter the current iteration.
+	 * 
+	 */
+	public void snapshot(BioFuzzTupleStack tstack, int iter) {
+		if(this.state != null)
+			this.state.record(tstack, iter);
+	}
+	
+	/**
+	 * 
+	 * Creates an empty stack manager that shares the graph-structured 
+	 * stack and the parser state with this one. Used to collect the 
+	 * forks of a concurrent parsing step and to resume parsing.
+	 * 
+	 * @return an empty stack manager.
+	 * 
+	 */
+	public BioFuzzStackMgr createSink() {
+		return createSink(0);
+	}
+	
+	/**
+	 * 
+	 * Creates an empty stack manager that shares the graph-structured 
+	 * stack and the parser state with this one and takes over some of the
+	 * discarded stacks of this one for its forks. May be called by several
+	 * threads at the same time. 
+	 * 
+	 * @param spareCnt the maximal amount of discarded stacks to take over.
+	 * @return an empty stack manager.
+	 * 
+	 */
+	public BioFuzzStackMgr createSink(int spareCnt) {
+		BioFuzzStackMgr sink = new BioFuzzStackMgr(this.gss);
+		sink.state = this.state;
 		
+		synchronized(this.spares) {
+			int n = this.spares.size();
+			int lo = Math.max(0, n - spareCnt);
+			if(lo < n) {
+				List<BioFuzzTupleStack> taken = this.spares.subList(lo, n);
+				sink.spares.addAll(taken);
+				taken.clear();
+			}
+		}
+		return sink;
+	}
+	
+	/**
+	 * 
+	 * Appends all stacks of sink to this stack manager. The discarded 
+	 * stacks that the sink did not use are taken back.
+	 * 
+	 * @param sink a stack manager created by createSink().
+	 * 
+	 */
+	public void addAll(BioFuzzStackMgr sink) {
+		assert(sink.gss == this.gss);
+		this.stackLst.addAll(sink.stackLst);
+		this.forkCnt += sink.forkCnt;
+		this.ssizeCnt += sink.ssizeCnt;
+		this.reuseCnt += sink.reuseCnt;
+		
+		synchronized(this.spares) {
+			int n = Math.min(sink.spares.size(), MAX_SPARES - this.spares.size());
+			if(n > 0)
+				this.spares.addAll(sink.spares.subList(0, n));
+		}
+		sink.spares.clear();
 	}
 	
 	/**
@@ -58,21 +331,35 @@ public class BioFuzzStackMgr {
 	 * 
 	 */
 	public BioFuzzTupleStack createAndGetStack(String key, int cur) {
-		BioFuzzTupleStack tupStack = new BioFuzzTupleStack(key, cur);
+		BioFuzzTupleStack tupStack = null;
+		if(this.gss != null) {
+			tupStack = new BioFuzzGssStack(this.gss, key, cur);
+		} else {
+			tupStack = new BioFuzzTupleStack(key, cur);
+		}
 		this.stackLst.add(tupStack);
 		return tupStack;
 	}
 	
 	/**
 	 * 
-	 * Creates a copy of the tuple stack and returns it.
+	 * Creates a copy of the tuple stack and returns it. Stacks that were
+	 * discarded by reduce() are reused for the copy.
 	 * 
 	 * @param t a tuple stack.
 	 * @return a copy of the tuple stack t.
 	 */
 	public BioFuzzTupleStack copyAndGetStack(BioFuzzTupleStack t) {
-		BioFuzzTupleStack tupStack = new BioFuzzTupleStack(t);
+		BioFuzzTupleStack tupStack = null;
+		int n = this.spares.size();
+		if(n > 0) {
+			tupStack = t.copyInto(this.spares.remove(n - 1));
+			this.reuseCnt++;
+		} else {
+			tupStack = t.copy();
+		}
 		this.stackLst.add(tupStack);
+		this.forkCnt++;
 		return tupStack;
 	}
 	
@@ -99,54 +386,316 @@ public class BioFuzzStackMgr {
 		return stackLst.get(idx);
 	}
 	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the graph-structured stack or null.
+	 * 
+	 */
+	BioFuzzGss getGss() {
+		return this.gss;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return true if the stacks share a graph-structured stack.
+	 * 
+	 */
+	public boolean isGss() {
+		return this.gss != null;
+	}
+	
 	/**
 	 * 
 	 * The reduce method removes all push-down automatons with
-	 * status INVALID from the stack manager.
+	 * status INVALID from the stack manager. Stacks with the same
+	 * configuration would advance in lockstep. Depending on the merge
+	 * mode, they are merged into the first one, whose derivation keeps 
+	 * the parse-trees of the merged stacks as alternatives, or they are
+	 * dropped. The list of stacks is compacted in place and the removed
+	 * stacks are kept for reuse. Delayed stacks wait outside of the list
+	 * until their delay is over.
 	 * 
 	 */
 	public void reduce() {
-		List<BioFuzzTupleStack> stackLstTmp = new Vector<BioFuzzTupleStack>();
+		this.clock++;
+		wake();
+		
+		int size = this.stackLst.size();
+		int kept = 0;
 		
 		this.progressCnt = 0;
 		this.finishCnt = 0;
 		this.validCnt = 0;
+		this.peakCnt = Math.max(this.peakCnt, size);
+		this.merged.clear();
 		
-		for(int i = 0; i < this.stackLst.size(); i++) {
+		for(int i = 0; i < size; i++) {
 			BioFuzzTupleStack tstack = this.stackLst.get(i);
 			
+			if(this.mergeMode != BioFuzzMergeMode.OFF && 
+					tstack.getStatus() != BioFuzzParsingStatus.INVALID &&
+					doMerge(tstack, kept)) {
+				release(tstack);
+				continue;
+			}
+			
 			switch(tstack.getStatus()) {
 				case IN_PROGRESS:
+					if(tstack.getDelay() > 0) {
+						park(tstack);
+						break;
+					}
 					this.progressCnt++;
-					stackLstTmp.add(tstack);
+					this.stackLst.set(kept++, tstack);
 					break;
 				case VALID:
 					this.validCnt ++;
-					stackLstTmp.add(tstack);
+					this.stackLst.set(kept++, tstack);
 					break;
 				case FINISHED:
 					this.finishCnt ++;
-					stackLstTmp.add(tstack);
+					this.stackLst.set(kept++, tstack);
 					break;
 				case INVALID:
+					this.invalidCnt++;
+					release(tstack);
 					break;
 			}
 		}
 		
-		this.stackLst = stackLstTmp;
+		this.stackLst.subList(kept, size).clear();
+		this.merged.clear();
 		
-
+		if(this.beamWidth > 0 && this.progressCnt > this.beamWidth)
+			applyBeam();
+	}
+	
+	/**
+	 * 
+	 * Creates a copy of the tuple stack that is added to the list once
+	 * reduce() was called delay times.
+	 * 
+	 * @param t the stack to copy.
+	 * @param delay the amount of iterations to wait.
+	 * @return the copy.
+	 * 
+	 */
+	public BioFuzzTupleStack copyAndParkStack(BioFuzzTupleStack t, int delay) {
+		assert(delay > 0);
+		BioFuzzTupleStack tupStack = t.copy();
+		tupStack.setDelay(delay);
+		park(tupStack);
+		this.forkCnt++;
+		return tupStack;
+	}
+	
+	/**
+	 * 
+	 * Drops the stacks in progress with the lowest scores until the beam
+	 * width is reached. The order of the remaining stacks is preserved.
+	 * 
+	 */
+	private void applyBeam() {
+		final BioFuzzTupleStack [] prog = new BioFuzzTupleStack[this.progressCnt];
+		final double [] scores = new double[this.progressCnt];
+		Integer [] order = new Integer[this.progressCnt];
+		
+		int k = 0;
+		for(BioFuzzTupleStack tstack : this.stackLst) {
+			if(tstack.getStatus() == BioFuzzParsingStatus.IN_PROGRESS) {
+				prog[k] = tstack;
+				scores[k] = this.scorer.score(tstack);
+				order[k] = k;
+				k++;
+			}
+		}
+		assert(k == this.progressCnt);
+		
+		// stable sort, i.e. stacks with the same score keep their order
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(scores[b], scores[a]);
+			}
+		});
+		
+		for(int i = this.beamWidth; i < order.length; i++) {
+			prog[order[i]].changeStatus(BioFuzzParsingStatus.INVALID);
+		}
+		
+		int size = this.stackLst.size();
+		int kept = 0;
+		for(int i = 0; i < size; i++) {
+			BioFuzzTupleStack tstack = this.stackLst.get(i);
+			if(tstack.getStatus() != BioFuzzParsingStatus.INVALID)
+				this.stackLst.set(kept++, tstack);
+			else
+				release(tstack);
+		}
+		this.stackLst.subList(kept, size).clear();
+		
+		this.droppedCnt += this.progressCnt - this.beamWidth;
+		this.progressCnt = this.beamWidth;
+	}
+	
+	/**
+	 * 
+	 * Keeps a stack that was removed by reduce() for reuse. The stack
+	 * must not be referenced anywhere else.
+	 * 
+	 * @param tstack a removed stack.
+	 * 
+	 */
+	private void release(BioFuzzTupleStack tstack) {
+		if(this.spares.size() < MAX_SPARES)
+			this.spares.add(tstack);
+	}
+	
+	/**
+	 * 
+	 * Removes a delayed stack from the list until its delay is over.
+	 * 
+	 * @param tstack a delayed stack.
+	 * 
+	 */
+	private void park(BioFuzzTupleStack tstack) {
+		int due = this.clock + tstack.getDelay();
+		List<BioFuzzTupleStack> lst = this.waiting.get(due);
+		if(lst == null) {
+			lst = new Vector<BioFuzzTupleStack>();
+			this.waiting.put(due, lst);
+		}
+		tstack.setDelay(0);
+		lst.add(tstack);
+		this.waitingCnt++;
+	}
+	
+	/**
+	 * 
+	 * Puts the stacks whose delay is over back to the list.
+	 * 
+	 */
+	private void wake() {
+		List<BioFuzzTupleStack> lst = this.waiting.remove(this.clock);
+		if(lst != null) {
+			this.stackLst.addAll(lst);
+			this.waitingCnt -= lst.size();
+		}
+	}
+	
+	/**
+	 * 
+	 * Skips the iterations in which all stacks are delayed.
+	 * 
+	 * @return the amount of skipped iterations.
+	 * 
+	 */
+	public int resume() {
+		if(!this.stackLst.isEmpty() || this.waiting.isEmpty())
+			return 0;
+		int skipped = this.waiting.firstKey() - this.clock;
+		this.clock += skipped;
+		wake();
+		return skipped;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of delayed stacks.
+	 * 
+	 */
+	public int getWaitingCnt() {
+		return this.waitingCnt;
+	}
+	
+	/**
+	 * 
+	 * Merges tstack into a previously seen stack with the same 
+	 * configuration or drops it if the merge mode is DROP.
+	 * 
+	 * @param tstack the stack to merge.
+	 * @param kept the amount of stacks that were kept so far.
+	 * @return true if tstack was merged or dropped, false if it has to be kept.
+	 * 
+	 */
+	private boolean doMerge(BioFuzzTupleStack tstack, int kept) {
+		int hash = tstack.getConfigHash();
+		BioFuzzTupleStack first = this.merged.get(hash);
+		
+		if(first == null) {
+			this.merged.put(hash, tstack);
+			return false;
+		}
+		
+		if(first.hasSameConfig(tstack)) {
+			if(this.mergeMode == BioFuzzMergeMode.MERGE)
+				first.merge(tstack);
+			this.mergedCnt++;
+			return true;
+		}
+		
+		// hash collision, i.e. look at all kept stacks
+		for(int i = 0; i < kept; i++) {
+			BioFuzzTupleStack s = this.stackLst.get(i);
+			if(s != first && s.getConfigHash() == hash && s.hasSameConfig(tstack)) {
+				if(this.mergeMode == BioFuzzMergeMode.MERGE)
+					s.merge(tstack);
+				this.mergedCnt++;
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/**
 	 * 
 	 * Getter.
 	 * 
-	 * @return the amount of push-down automatons that are IN_PROGRESS.
+	 * @return the amount of push-down automatons that are IN_PROGRESS, 
+	 * including the delayed ones.
 	 * 
 	 */
 	public int getInProgress() {
-		return this.progressCnt;
+		return this.progressCnt + this.waitingCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of push-down automatons that are VALID.
+	 * 
+	 */
+	public int getValidCnt() {
+		return this.validCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @param minQual all parse trees with this parsing status are considered.
+	 * @return the first parse tree of the best stack or null.
+	 * 
+	 */
+	public BioFuzzParseTree getFirstTree(BioFuzzParsingStatus minQual) {
+		BioFuzzTupleStack best = null;
+		
+		for(int i = 0; i < this.stackLst.size(); i++) {
+			BioFuzzTupleStack tstack = this.stackLst.get(i);
+			if(tstack.getStatus().ordinal() >= minQual.ordinal() && 
+					(best == null || tstack.getStatus().ordinal() > best.getStatus().ordinal())) {
+				best = tstack;
+			}
+		}
+		
+		return best == null ? null : best.getFirstParseTree();
 	}
 	
 	/**
@@ -165,14 +714,37 @@ public class BioFuzzStackMgr {
 			BioFuzzTupleStack tstack = this.stackLst.get(i);
 			assert(tstack != null);
 			if(tstack.getStatus().ordinal() >= minQual.ordinal()) {
-				assert(tstack.getParseTree() != null);
-				trees.add(tstack.getParseTree());
+				List<BioFuzzParseTree> stackTrees = tstack.getParseTrees();
+				assert(stackTrees.size() > 0);
+				trees.addAll(stackTrees);
 			}
 		}
 		
 		return trees;
 	}
 	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @param minQual all parse trees with this parsing status are considered.
+	 * @return a parse forest that shares the common subtrees of all parse trees.
+	 * 
+	 */
+	public BioFuzzParseForest getForest(BioFuzzParsingStatus minQual) {
+		
+		BioFuzzParseForest forest = new BioFuzzParseForest();
+		
+		for(int i = 0; i < this.stackLst.size(); i++) {
+			BioFuzzTupleStack tstack = this.stackLst.get(i);
+			if(tstack.getStatus().ordinal() >= minQual.ordinal()) {
+				tstack.addToForest(forest);
+			}
+		}
+		
+		return forest;
+	}
+	
 	@Override 
 	public String toString() {
 		String s = "STACK LIST\n";
@@ -0,0 +1,55 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+/**
+ * 
+ * Interface that has to be implemented by any stack scorer. If the
+ * amount of stacks that are in progress exceeds the beam width, only 
+ * the stacks with the highest scores are kept.
+ * 
+ * @author julian
+ *
+ */
+public interface BioFuzzStackScorer {
+	
+	/**
+	 * 
+	 * Computes the score of a stack.
+	 * 
+	 * @param tstack the stack to score.
+	 * @return the score - higher is better.
+	 * 
+	 */
+	public double score(BioFuzzTupleStack tstack);
+	
+	/**
+	 * 
+	 * Getter. Two scorers with the same key must score all stacks alike,
+	 * since the key is part of the fingerprint of a parser (see 
+	 * BioFuzzParser.getFingerprint()).
+	 * 
+	 * @return a string that identifies the scoring function.
+	 * 
+	 */
+	public String getKey();
+
+}
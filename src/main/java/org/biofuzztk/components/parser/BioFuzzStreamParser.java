@@ -0,0 +1,290 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Vector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.ptree.BioFuzzParseTree;
+
+/**
+ * 
+ * Parses a long sequence of delimiter-chained statements, e.g. a script
+ * of SQL statements separated by ';'. Tokens are pulled one by one from
+ * a token iterator or a reader. Whenever a top-level delimiter is seen,
+ * the buffered statement is parsed and its parse-trees are released. 
+ * Only a single statement is kept in memory at a time, no matter how 
+ * long the input is.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzStreamParser implements Iterator<List<BioFuzzParseTree>> {
+	
+	final static Logger logger = LoggerFactory.getLogger(BioFuzzStreamParser.class);
+	
+	private static final String END = "$";
+	
+	private BioFuzzParser parser;
+	private Iterator<String> tokens;
+	private String del;
+	private List<String> stmt;
+	private List<String> lastStmt;
+	private boolean done;
+	private int stmtCnt;
+	private long tokCnt;
+	
+	/**
+	 * 
+	 * Constructor.
+	 * 
+	 * @param parser the parser that parses the single statements.
+	 * @param tokens the tokens of the input. A token that equals the
+	 * end-of-input marker '$' ends the input.
+	 * @param del the token that separates two statements.
+	 * 
+	 */
+	public BioFuzzStreamParser(BioFuzzParser parser, Iterator<String> tokens, String del) {
+		assert(parser != null && tokens != null && del != null);
+		this.parser = parser;
+		this.tokens = tokens;
+		this.del = del;
+		this.stmt = new Vector<String>();
+		this.lastStmt = null;
+		this.done = false;
+		this.stmtCnt = 0;
+		this.tokCnt = 0;
+	}
+	
+	/**
+	 * 
+	 * Constructor. The input is split into statements at each delimiter
+	 * that is not quoted. Each statement is tokenized by the tokenizer of
+	 * the parser when it is read.
+	 * 
+	 * @param parser the parser that parses the single statements.
+	 * @param reader the input.
+	 * @param del the character that separates two statements.
+	 * 
+	 */
+	public BioFuzzStreamParser(BioFuzzParser parser, Reader reader, char del) {
+		this(parser, new ReaderTokens(parser, reader, del), String.valueOf(del));
+	}
+	
+	/**
+	 * 
+	 * Pulls the tokens of the next statement.
+	 * 
+	 * @return false if there are no further tokens.
+	 * 
+	 */
+	private boolean fill() {
+		while(this.stmt.isEmpty()) {
+			if(this.done || !this.tokens.hasNext()) {
+				this.done = true;
+				return false;
+			}
+			
+			while(this.tokens.hasNext()) {
+				String tok = this.tokens.next().trim();
+				this.tokCnt++;
+				
+				if(tok.equals(END)) {
+					this.done = true;
+					break;
+				}
+				
+				if(tok.equals(this.del))
+					break;
+				
+				if(tok.length() > 0)
+					this.stmt.add(tok);
+			}
+		}
+		return true;
+	}
+	
+	@Override
+	public boolean hasNext() {
+		return fill();
+	}
+	
+	/**
+	 * 
+	 * Parses the next statement.
+	 * 
+	 * @return the parse-trees of the next statement, the list is empty if
+	 * the statement cannot be parsed.
+	 * 
+	 */
+	@Override
+	public List<BioFuzzParseTree> next() {
+		if(!fill())
+			throw new NoSuchElementException();
+		
+		this.stmt.add(END);
+		String [] tokLst = this.stmt.toArray(new String[this.stmt.size()]);
+		
+		this.lastStmt = this.stmt;
+		this.stmt = new Vector<String>();
+		this.stmtCnt++;
+		
+		logger.debug("parse statement " + this.stmtCnt + " with " + tokLst.length + " tokens");
+		
+		List<BioFuzzParseTree> trees = this.parser.buildTrees(tokLst);
+		return trees == null ? new Vector<BioFuzzParseTree>() : trees;
+	}
+	
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the tokens of the statement that was parsed last or null.
+	 * 
+	 */
+	public List<String> getLastStmt() {
+		return this.lastStmt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of statements that were parsed.
+	 * 
+	 */
+	public int getStmtCnt() {
+		return this.stmtCnt;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the amount of tokens that were read.
+	 * 
+	 */
+	public long getTokCnt() {
+		return this.tokCnt;
+	}
+	
+	/**
+	 * 
+	 * Reads a statement at a time from a reader and returns its tokens,
+	 * followed by the delimiter.
+	 * 
+	 * @author julian
+	 *
+	 */
+	private static class ReaderTokens implements Iterator<String> {
+		
+		private BioFuzzParser parser;
+		private Reader reader;
+		private char del;
+		private LinkedList<String> buf;
+		private boolean eof;
+		
+		ReaderTokens(BioFuzzParser parser, Reader reader, char del) {
+			this.parser = parser;
+			this.reader = reader;
+			this.del = del;
+			this.buf = new LinkedList<String>();
+			this.eof = false;
+		}
+		
+		/**
+		 * 
+		 * Reads characters up to the next delimiter that is not quoted.
+		 * 
+		 * @return the statement or null at the end of the input.
+		 * 
+		 */
+		private String readStmt() {
+			StringBuilder sb = new StringBuilder();
+			char quote = 0;
+			
+			try {
+				int c;
+				while((c = this.reader.read()) >= 0) {
+					char ch = (char)c;
+					
+					if(quote != 0) {
+						if(ch == quote)
+							quote = 0;
+					} else if(ch == '\'' || ch == '"' || ch == '`') {
+						quote = ch;
+					} else if(ch == this.del) {
+						return sb.toString();
+					}
+					sb.append(ch);
+				}
+			} catch (IOException e) {
+				logger.error("cannot read input: " + e.getMessage());
+			}
+			
+			this.eof = true;
+			return sb.length() > 0 ? sb.toString() : null;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			while(this.buf.isEmpty() && !this.eof) {
+				String s = readStmt();
+				
+				if(s == null || s.trim().length() == 0)
+					continue;
+				
+				for(String tok : this.parser.tokenize(s)) {
+					if(!tok.trim().equals(END))
+						this.buf.add(tok);
+				}
+				this.buf.add(String.valueOf(this.del));
+			}
+			return !this.buf.isEmpty();
+		}
+		
+		@Override
+		public String next() {
+			if(!hasNext())
+				throw new NoSuchElementException();
+			return this.buf.removeFirst();
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
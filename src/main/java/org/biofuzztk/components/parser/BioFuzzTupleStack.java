@@ -20,31 +20,48 @@
 
 package org.biofuzztk.components.parser;
 
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.biofuzztk.cfg.BioFuzzAttackCfg;
 import org.biofuzztk.cfg.BioFuzzAttackTag.TagType;
-import org.biofuzztk.ptree.BioFuzzParseNode;
+import org.biofuzztk.ptree.BioFuzzDerivation;
+import org.biofuzztk.ptree.BioFuzzParseForest;
 import org.biofuzztk.ptree.BioFuzzParseTree;
 import org.biofuzztk.ptree.BioFuzzTokLst;
 
 /**
  * 
- * A push-down automaton.
+ * A push-down automaton. The parse-tree is kept as a persistent derivation
+ * that is shared with all forks of this stack. The parse-tree itself is
+ * only built when it is requested. The tuples are kept in parallel arrays
+ * of production rules, last firing rules and prefix hashes, i.e. pushing
+ * a tuple does not allocate an object.
  * 
  * @author julian
  *
  */
 public class BioFuzzTupleStack {
-    private Stack<BioFuzzParsingTuple> tstack;
+	
+	private static final int INITIAL_CAPACITY = 16;
+	
+    private BioFuzzAttackCfg [] cfgs;
+    private int [] lfrs;
+    private int [] hashes;
+    private int size;
     private BioFuzzParsingStatus status;
     private int cur;
-    private BioFuzzParseTree tree;
-    private BioFuzzParseNode ptr;
-    private int nodeCnt;
+    private BioFuzzDerivation derivation;
+    private BioFuzzTokLst tokLst;
+    private int tokCur;
+    private List<BioFuzzParseTree> trees;
+    private boolean recording;
+    private boolean incomplete;
+    private int delay;
     private String key;
     
     final static Logger logger = LoggerFactory.getLogger(BioFuzzTupleStack.class);
@@ -58,42 +75,130 @@ public class BioFuzzTupleStack {
      * 
      */
     public BioFuzzTupleStack(String key, int cur) {
-    	this.tstack = new Stack<BioFuzzParsingTuple>();
-    	this.status = BioFuzzParsingStatus.IN_PROGRESS;
+    	this(key, cur, BioFuzzParsingStatus.IN_PROGRESS);
+    	allocate(INITIAL_CAPACITY);
+    }
+    
+    /**
+     * 
+     * Constructor for subclasses that keep their tuples in a different
+     * representation. No tuple arrays are allocated.
+     * 
+     * @param key name of attack-tag.
+     * @param cur current index of token of token-list.
+     * @param status the parsing status.
+     * 
+     */
+    protected BioFuzzTupleStack(String key, int cur, BioFuzzParsingStatus status) {
+    	this.cfgs = null;
+    	this.lfrs = null;
+    	this.hashes = null;
+    	this.size = 0;
+    	this.status = status;
     	this.cur = cur;
-    	this.tree = null;
-    	this.ptr = null;
+    	this.derivation = null;
+    	this.tokLst = null;
+    	this.tokCur = 0;
+    	this.trees = null;
+    	this.recording = true;
+    	this.incomplete = false;
+    	this.delay = 0;
     	this.key = key;
-    	
-    	
-    	this.nodeCnt = 1;
     }
     
+    /**
+     * 
+     * Constructor for subclasses that keep their tuples in a different
+     * representation. The derivation of t is shared.
+     * 
+     * @param t a tuple-stack.
+     * @param status the parsing status.
+     * 
+     */
+    protected BioFuzzTupleStack(BioFuzzTupleStack t, BioFuzzParsingStatus status) {
+    	this(t.key, t.cur, status);
+    	assign(t, status);
+    }
     
     /**
      * 
-     * Copy constructor.
+     * Takes over everything but the tuples from t.
+     * 
+     * @param t a tuple-stack.
+     * @param status the parsing status.
+     * 
+     */
+    protected void assign(BioFuzzTupleStack t, BioFuzzParsingStatus status) {
+    	this.key = t.key;
+    	this.cur = t.cur;
+    	this.status = status;
+    	this.derivation = t.derivation;
+    	this.tokLst = t.tokLst;
+    	this.tokCur = t.tokCur;
+    	this.trees = null;
+    	this.recording = t.recording;
+    	this.incomplete = t.incomplete;
+    	this.delay = t.delay;
+    }
+    
+    /**
+     * 
+     * Copy constructor. The copy shares the derivation with t and
+     * only records the nodes that are added afterwards.
      * 
      * @param t a tuple-stack.
      * 
      */
     public BioFuzzTupleStack(BioFuzzTupleStack t) {	    	
-    	this(t.key, t.cur);
-    	assert(t.ptr != null);
-    	assert(t.tree != null);
-    	
-    	this.tstack.addAll(t.tstack);
-    	
-    	//slogger.debug("Tree to copy :" + t.toString());
-    	
-    	this.tree = new BioFuzzParseTree(t.tree);
-    	
-    	//ogger.debug("CP: " + tree.toString());
-    	
-    	//logger.debug("search node with id " + t.ptr.getId());
-    	this.ptr = this.tree.doGetNodeById(t.ptr.getId());
-    	this.nodeCnt = t.nodeCnt;
-    	assert(this.ptr != null);
+    	this(t, BioFuzzParsingStatus.IN_PROGRESS);
+    	allocate(Math.max(INITIAL_CAPACITY, t.size + (t.size >> 1)));
+    	copyTuples(t);
+    }
+    
+    private void allocate(int capacity) {
+    	this.cfgs = new BioFuzzAttackCfg[capacity];
+    	this.lfrs = new int[capacity];
+    	this.hashes = new int[capacity];
+    }
+    
+    private void copyTuples(BioFuzzTupleStack t) {
+    	if(this.cfgs.length < t.size)
+    		allocate(Math.max(t.cfgs.length, t.size));
+    	System.arraycopy(t.cfgs, 0, this.cfgs, 0, t.size);
+    	System.arraycopy(t.lfrs, 0, this.lfrs, 0, t.size);
+    	System.arraycopy(t.hashes, 0, this.hashes, 0, t.size);
+    	// do not keep production rules of the previous use alive
+    	if(this.size > t.size)
+    		Arrays.fill(this.cfgs, t.size, this.size, null);
+    	this.size = t.size;
+    }
+    
+    /**
+     * 
+     * Creates a fork of this stack.
+     * 
+     * @return a copy of this stack.
+     * 
+     */
+    public BioFuzzTupleStack copy() {
+    	return new BioFuzzTupleStack(this);
+    }
+    
+    /**
+     * 
+     * Turns a stack that is not used anymore into a fork of this stack. 
+     * Its tuple arrays are reused, i.e. nothing is allocated unless this
+     * stack is larger.
+     * 
+     * @param spare a discarded stack of the same type.
+     * @return spare as a copy of this stack.
+     * 
+     */
+    public BioFuzzTupleStack copyInto(BioFuzzTupleStack spare) {
+    	assert(spare.getClass() == BioFuzzTupleStack.class);
+    	spare.assign(this, BioFuzzParsingStatus.IN_PROGRESS);
+    	spare.copyTuples(this);
+    	return spare;
     }
     
     /**
@@ -106,42 +211,52 @@ public class BioFuzzTupleStack {
      * 
      */
     public void pushTuple(BioFuzzAttackCfg cfg, TagType t, int lfr) {
-    	BioFuzzParsingTuple tup = new BioFuzzParsingTuple(cfg,lfr);
-    	this.tstack.push(tup);
+    	if(this.size == this.cfgs.length) {
+    		int capacity = this.size << 1;
+    		this.cfgs = Arrays.copyOf(this.cfgs, capacity);
+    		this.lfrs = Arrays.copyOf(this.lfrs, capacity);
+    		this.hashes = Arrays.copyOf(this.hashes, capacity);
+    	}
+    	this.cfgs[this.size] = cfg;
+    	this.lfrs[this.size] = lfr;
+    	this.hashes[this.size] = BioFuzzParsingTuple.hash(
+    			this.size == 0 ? 1 : this.hashes[this.size - 1], cfg, lfr);
+    	this.size++;
+    	record(cfg, t, lfr);
+    }
+    
+    /**
+     * 
+     * Records the parse-tree node that corresponds to a pushed tuple.
+     * 
+     * @param cfg production rule defintion.
+     * @param t tag type.
+     * @param lfr index of last firing rule.
+     * 
+     */
+    protected void record(BioFuzzAttackCfg cfg, TagType t, int lfr) {
+    	this.trees = null;
     	
+    	if(!this.recording)
+    		return;
     	
     	switch(t) {
 	    	case START:
 	    		//logger.debug("start - nothing to do");
 	    		break;
-	    	case NON_TERMINAL: { 
-	    		//logger.debug("add non terminal to tree");
-	    		BioFuzzParseNode nt = new BioFuzzParseNode(this.tree,cfg,lfr,this.cur, this.nodeCnt++);
-	    		ptr.addChild(nt);
-	    		this.ptr = nt;
-	    	}
-	    	break;
+	    	case NON_TERMINAL:
+	    		this.derivation = this.derivation.nonTerminal(cfg, lfr, this.cur);
+	    		break;
 	    	case TERMINAL:
-	    	case REGEXP:{
-	    		//logger.debug("add terminal to tree");
-	    		BioFuzzParseNode term = new BioFuzzParseNode(this.tree,cfg,lfr,this.cur, this.nodeCnt++);
-	    		this.ptr.addChild(term);
-	    	}
-	    	break;
-	    	case ROOT: {
-	    		//logger.debug("add root to tree");
-	    		this.tree = new BioFuzzParseTree();
-	    		this.ptr = this.tree.getRootNode();
-	    		this.ptr.setCfg(cfg);
-	    		this.ptr.setAtagName(key);
-	    		//logger.debug(this.tree.toString());
-	    	}
-	    	break;
+	    	case REGEXP:
+	    		this.derivation = this.derivation.terminal(cfg, lfr, this.cur);
+	    		break;
+	    	case ROOT:
+	    		this.derivation = BioFuzzDerivation.root(cfg, this.key);
+	    		break;
 		default:
 			break;
     	}
-    	
-    	
     }
     
     /**
@@ -151,62 +266,146 @@ public class BioFuzzTupleStack {
      * 
      */
     public void rollback() {
-		BioFuzzParsingTuple tmp = this.popTuple();
-
-		assert(tmp != null);
-		
-		//logger.debug("tmp " + tmp.toString());
+		assert(getSize() > 0);
 		
-		while(tmp != null) {
-			
-			if(tmp != null && tmp.getLfr() == 0) {
+		while(getSize() > 0) {
+			int lfr = getLastLfr();
+			removeLastTuple();
+			if(lfr == 0) {
 				break;
 			}
-			tmp = this.popTuple();
-			
 		}
 
-		if(ptr.hasParent())
-			ptr = ptr.getParent();
-
+		if(this.derivation != null)
+			this.derivation = this.derivation.up();
+		this.trees = null;
     }
     
-    public BioFuzzParsingTuple popTuple() {
-    	if(this.tstack.size() > 0) {
-    		//logger.debug("pop it");
-    		return this.tstack.pop();
-    	} else {
-    		return null;
+    /**
+     * 
+     * Removes the topmost tuple without returning it.
+     * 
+     */
+    public void removeLastTuple() {
+    	if(this.size > 0) {
+    		this.size--;
+    		this.cfgs[this.size] = null;
     	}
     }
     
+    /**
+     * 
+     * Removes the topmost tuple. A tuple object is created for the
+     * caller, the parser itself uses removeLastTuple().
+     * 
+     * @return the removed tuple or null.
+     * 
+     */
+    public BioFuzzParsingTuple popTuple() {
+    	BioFuzzParsingTuple tup = getLastTuple();
+    	removeLastTuple();
+    	return tup;
+    }
+    
+    /**
+     * 
+     * Getter. A tuple object is created for the caller, the parser itself 
+     * uses getCfg() and getLfr().
+     * 
+     * @param idx index of the tuple from the bottom.
+     * @return the tuple or null.
+     * 
+     */
     public BioFuzzParsingTuple getTuple(int idx) {
-    	if(this.tstack.size() > idx && idx >= 0)
-    		return this.tstack.get(idx);
+    	if(this.size > idx && idx >= 0)
+    		return new BioFuzzParsingTuple(this.cfgs[idx], this.lfrs[idx], this.hashes[idx]);
     	else
     		return null;
     }
     
     public BioFuzzParsingTuple getLastTuple() {
-    	//return getTuple(this.tstack.size()-1);
-    	if(this.tstack.size() > 0)
-    		return this.tstack.lastElement();
-    	else
-    		return null;
+    	return getTuple(getSize() - 1);
+    }
+    
+    /**
+     * 
+     * Getter.
+     * 
+     * @param idx index of the tuple from the bottom.
+     * @return the production rule definition of the tuple.
+     * 
+     */
+    public BioFuzzAttackCfg getCfg(int idx) {
+    	assert(idx >= 0 && idx < this.size);
+    	return this.cfgs[idx];
+    }
+    
+    /**
+     * 
+     * Getter.
+     * 
+     * @param idx index of the tuple from the bottom.
+     * @return the last firing rule of the tuple.
+     * 
+     */
+    public int getLfr(int idx) {
+    	assert(idx >= 0 && idx < this.size);
+    	return this.lfrs[idx];
+    }
+    
+    /**
+     * 
+     * Getter.
+     * 
+     * @return the production rule definition of the topmost tuple or null.
+     * 
+     */
+    public BioFuzzAttackCfg getLastCfg() {
+    	return this.size > 0 ? this.cfgs[this.size - 1] : null;
+    }
+    
+    /**
+     * 
+     * Getter.
+     * 
+     * @return the last firing rule of the topmost tuple or -1.
+     * 
+     */
+    public int getLastLfr() {
+    	return this.size > 0 ? this.lfrs[this.size - 1] : -1;
+    }
+    
+    /**
+     * 
+     * Getter.
+     * 
+     * @return the hash of all tuples or 0 if the stack is empty.
+     * 
+     */
+    protected int getPrefixHash() {
+    	return this.size > 0 ? this.hashes[this.size - 1] : 0;
     }
     
     public int getSize() {
-    	return this.tstack.size();
+    	return this.size;
     }
     
     public void changeStatus(BioFuzzParsingStatus status) {
     	this.status = status;
     }
     
+    /**
+     * 
+     * Attaches the token list to the parse-tree. The token list is
+     * only copied when the parse-tree is built.
+     * 
+     * @param tokLst the token list.
+     * 
+     */
     public void setTokLst(BioFuzzTokLst tokLst) {
-    	BioFuzzTokLst t = new BioFuzzTokLst(tokLst);
-    	t.setCursor(this.cur);
-    	this.tree.setTokLst(t);
+    	this.tokLst = tokLst;
+    	this.tokCur = this.cur;
+    	this.trees = null;
     }
     
     public BioFuzzParsingStatus getStatus() {
@@ -225,25 +424,233 @@ public class BioFuzzTupleStack {
     	this.cur++;
     }
     
+    /**
+     * 
+     * Getter.
+     * 
+     * @return the derivation of this stack.
+     * 
+     */
+    public BioFuzzDerivation getDerivation() {
+    	return this.derivation;
+    }
+    
+    /**
+     * 
+     * Setter. Used to start a derivation fragment.
+     * 
+     * @param derivation the new derivation of this stack.
+     * 
+     */
+    public void setDerivation(BioFuzzDerivation derivation) {
+    	this.derivation = derivation;
+    	this.trees = null;
+    }
+    
+    /**
+     * 
+     * Appends the derivation fragment of a memoized sub-parse.
+     * 
+     * @param fragment a derivation fragment.
+     * 
+     */
+    public void graft(BioFuzzDerivation fragment) {
+    	if(this.derivation == null)
+    		return;
+    	this.derivation = this.derivation.graft(fragment);
+    	this.trees = null;
+    }
+    
+    /**
+     * 
+     * Getter. Stacks with the same configuration have the same hash. The
+     * hash of the tuples is maintained incrementally on every push.
+     * 
+     * @return the hash of the tuples and the cursor.
+     * 
+     */
+    public int getConfigHash() {
+    	return 31 * getPrefixHash() + this.cur;
+    }
+    
+    /**
+     * 
+     * Checks if t has the same configuration as this stack, i.e. the
+     * same tuples, cursor and status.
+     * 
+     * @param t a tuple-stack.
+     * @return true if both stacks would advance in lockstep.
+     * 
+     */
+    public boolean hasSameConfig(BioFuzzTupleStack t) {
+    	if(this.cur != t.cur || this.status != t.status || 
+    			this.incomplete != t.incomplete || this.delay != t.delay)
+    		return false;
+    	return hasSameTuples(t);
+    }
+    
+    /**
+     * 
+     * Compares the tuples of this stack and t from the top down.
+     * 
+     * @param t a tuple-stack.
+     * @return true if both stacks contain the same tuples.
+     * 
+     */
+    protected boolean hasSameTuples(BioFuzzTupleStack t) {
+    	if(this.size != t.size)
+    		return false;
+    	
+    	for(int i = this.size - 1; i >= 0; i--) {
+    		if(this.hashes[i] != t.hashes[i] || this.cfgs[i] != t.cfgs[i] || 
+    				this.lfrs[i] != t.lfrs[i])
+    			return false;
+    	}
+    	return true;
+    }
+    
+    /**
+     * 
+     * Merges a stack with the same configuration into this one. The
+     * derivation of t is kept as an alternative.
+     * 
+     * @param t a stack with the same configuration.
+     * 
+     */
+    public void merge(BioFuzzTupleStack t) {
+    	assert(t.cur == this.cur);
+    	if(this.derivation == null || t.derivation == null)
+    		return;
+    	this.derivation = BioFuzzDerivation.join(this.derivation, t.derivation);
+    	this.trees = null;
+    }
+    
+    /**
+     * 
+     * Getter.
+     * 
+     * @return the parse-tree of this stack or null.
+     * 
+     */
     public BioFuzzParseTree getParseTree() {
-    	return this.tree;
+    	List<BioFuzzParseTree> lst = getParseTrees();
+    	return lst.size() > 0 ? lst.get(0) : null;
+    }
+    
+    /**
+     * 
+     * Getter. Only the first alternative is built.
+     * 
+     * @return the first parse-tree that is represented by this stack or null.
+     * 
+     */
+    public BioFuzzParseTree getFirstParseTree() {
+    	if(this.derivation == null)
+    		return null;
+    	if(this.trees != null)
+    		return this.trees.get(0);
+    	return this.derivation.materializeFirst(this.tokLst, this.tokCur);
+    }
+    
+    /**
+     * 
+     * Adds all parse-trees that are represented by this stack to a parse
+     * forest without materializing them.
+     * 
+     * @param forest the parse forest.
+     * 
+     */
+    public void addToForest(BioFuzzParseForest forest) {
+    	if(this.derivation != null)
+    		forest.add(this.derivation, this.tokLst, this.tokCur);
+    }
+    
+    /**
+     * 
+     * If disabled, the stack and its forks do not record a derivation,
+     * i.e. no parse-trees can be built. Has to be set before the root
+     * tuple is pushed.
+     * 
+     * @param recording false to disable recording.
+     * 
+     */
+    public void setRecording(boolean recording) {
+    	this.recording = recording;
+    }
+    
+    public boolean isRecording() {
+    	return this.recording;
+    }
+    
+    /**
+     * 
+     * Marks a stack whose grafted sub-parse reached the end of the token
+     * list and cannot be completed without consuming further tokens. 
+     * 
+     * @param incomplete true if the stack cannot be completed.
+     * 
+     */
+    public void setIncomplete(boolean incomplete) {
+    	this.incomplete = incomplete;
+    }
+    
+    public boolean isIncomplete() {
+    	return this.incomplete;
+    }
+    
+    /**
+     * 
+     * Delays a stack whose grafted sub-parse took several iterations, so 
+     * that it continues in the same iteration as without memoization. The
+     * stack manager keeps delayed stacks aside until the delay is over.
+     * 
+     * @param delay the amount of iterations to skip.
+     * 
+     */
+    public void setDelay(int delay) {
+    	this.delay = delay;
+    }
+    
+    public int getDelay() {
+    	return this.delay;
+    }
+    
+    /**
+     * 
+     * Getter.
+     * 
+     * @return all parse-trees that are represented by this stack.
+     * 
+     */
+    public List<BioFuzzParseTree> getParseTrees() {
+    	if(this.derivation == null)
+    		return new Vector<BioFuzzParseTree>();
+    	
+    	if(this.trees == null)
+    		this.trees = this.derivation.materialize(this.tokLst, this.tokCur);
+    	
+    	return this.trees;
+    }
+    
+    public String getKey() {
+    	return this.key;
     }
     
 	@Override 
 	public String toString() {
 		String s = "TUPLE STACK------------------------------\n";
 		
-		for(int i = 0; i < this.tstack.size(); i++) {
-			s += this.tstack.get(i).toString();
+		for(int i = 0; i < getSize(); i++) {
+			s += BioFuzzParsingTuple.toString(getCfg(i), getLfr(i));
 		}
-		s += tree.toString();
+		if(this.derivation != null)
+			s += getParseTree().toString();
 		s += "Status: " + this.status + "\n";
 		s += "Cur: " + this.cur + "\n";
-		s += "Tstack Size: " + this.tstack.size() + "\n";
-		s += "Node Cnt " + this.nodeCnt + "\n";
-		s += "ptr " + this.ptr.getId() + "\n";
+		s += "Tstack Size: " + getSize() + "\n";
+		s += "Derivation " + this.derivation + "\n";
 		s += "----------------------------------------\n";
 		
 		return s;
 	}
-}
\ No newline at end of file
+}
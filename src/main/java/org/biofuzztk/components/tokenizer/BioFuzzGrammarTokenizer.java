@@ -0,0 +1,354 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.tokenizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dk.brics.automaton.Automaton;
+import dk.brics.automaton.RegExp;
+import dk.brics.automaton.RunAutomaton;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfg;
+import org.biofuzztk.cfg.BioFuzzAttackCfgMgr;
+import org.biofuzztk.cfg.BioFuzzAttackTag;
+import org.biofuzztk.cfg.BioFuzzAttackTag.TagType;
+import org.biofuzztk.cfg.BioFuzzRexpMatcher;
+import org.biofuzztk.ptree.BioFuzzTokStream;
+
+/**
+ * 
+ * A tokenizer that is derived from a grammar. All terminals (compared 
+ * case-insensitively) and regular expressions of the grammar are compiled 
+ * into a single deterministic automaton. The input is scanned once and 
+ * at each position the longest token is taken. Whitespace separates
+ * tokens and is dropped. A quote is followed by a single token up to the 
+ * next quote of the same kind. Characters that do not start a token 
+ * become tokens of their own.
+ * 
+ * A run of whitespace inside a terminal, e.g. ORDER BY, matches any run
+ * of whitespace in the input. The token is normalized to a single blank
+ * in between, so such terminals have to be written with a single blank 
+ * in the grammar. The token keeps its offsets into the input.
+ * 
+ * Tokens of regular expressions cannot contain whitespace. Regular 
+ * expressions that are not supported by dk.brics (see BioFuzzRexpMatcher)
+ * are left out. If the regular expressions of a grammar overlap with its 
+ * terminals, e.g. a class that contains parentheses, the longest match 
+ * may join tokens that the grammar expects to be separate. 
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzGrammarTokenizer implements BioFuzzOffsetTokenizer {
+	
+	final static Logger logger = LoggerFactory.getLogger(BioFuzzGrammarTokenizer.class);
+	
+	public static final String WHITESPACE = " \t\r\n";
+	
+	/**
+	 * 
+	 * Creates grammar tokenizers with the same whitespace and quote rules.
+	 * 
+	 * @author julian
+	 *
+	 */
+	public static class Factory implements BioFuzzTokenizerFactory {
+		
+		private final String whitespace;
+		private final String quotes;
+		
+		/**
+		 * 
+		 * Constructor.
+		 * 
+		 * @param whitespace characters that separate tokens.
+		 * @param quotes characters that enclose a single token.
+		 * 
+		 */
+		public Factory(String whitespace, String quotes) {
+			this.whitespace = whitespace;
+			this.quotes = quotes;
+		}
+		
+		/**
+		 * 
+		 * Constructor. Blanks, tabs and line breaks separate tokens, 
+		 * there are no quotes.
+		 * 
+		 */
+		public Factory() {
+			this(WHITESPACE, "");
+		}
+		
+		@Override
+		public BioFuzzTokenizer createTokenizer(BioFuzzAttackCfgMgr mgr) {
+			return new BioFuzzGrammarTokenizer(mgr, this.whitespace, this.quotes);
+		}
+	}
+	
+	private final String whitespace;
+	private final String quotes;
+	private final RunAutomaton automaton;
+	private final Set<String> skipped;
+	private final int terminalCnt;
+	private final int rexpCnt;
+	
+	/**
+	 * 
+	 * Constructor.
+	 * 
+	 * @param mgr the grammar.
+	 * @param whitespace characters that separate tokens.
+	 * @param quotes characters that enclose a single token.
+	 * 
+	 */
+	public BioFuzzGrammarTokenizer(BioFuzzAttackCfgMgr mgr, String whitespace, String quotes) {
+		assert(mgr != null && whitespace != null && quotes != null);
+		this.whitespace = whitespace;
+		this.quotes = quotes;
+		
+		Set<String> terminals = new TreeSet<String>();
+		Set<String> rexps = new TreeSet<String>();
+		Set<String> skipped = new TreeSet<String>();
+		
+		for(String key : mgr.getKeys()) {
+			BioFuzzAttackCfg cfg = mgr.getAttackCfgByKey(key);
+			for(int i = 0; i < cfg.getDescNrs(); i++) {
+				BioFuzzAttackTag atag = cfg.getAtagByIdx(i);
+				if(atag.getTagType() == TagType.TERMINAL && atag.getName().length() > 0) {
+					terminals.add(atag.getName());
+				} else if(atag.getTagType() == TagType.REGEXP) {
+					BioFuzzRexpMatcher m = atag.getMatcher();
+					if(m.isAutomaton())
+						rexps.add(m.getRexp());
+					else
+						skipped.add(m.getRexp());
+				}
+			}
+		}
+		
+		// tokens of regular expressions end at whitespace
+		Automaton noWs = Automaton.makeAnyChar().minus(Automaton.makeCharSet(whitespace)).repeat();
+		
+		List<Automaton> langs = new ArrayList<Automaton>();
+		for(String t : terminals) {
+			langs.add(makeTerminal(t, whitespace));
+		}
+		for(String r : rexps) {
+			langs.add(new RegExp(r, RegExp.NONE).toAutomaton().intersection(noWs));
+		}
+		
+		Automaton lang = Automaton.union(langs);
+		lang.minimize();
+		this.automaton = new RunAutomaton(lang);
+		this.skipped = Collections.unmodifiableSet(skipped);
+		this.terminalCnt = terminals.size();
+		this.rexpCnt = rexps.size();
+		
+		if(!skipped.isEmpty())
+			logger.warn("regular expressions without automaton are not tokenized: " + skipped);
+	}
+	
+	/**
+	 * 
+	 * Constructor. Blanks, tabs and line breaks separate tokens, there
+	 * are no quotes.
+	 * 
+	 * @param mgr the grammar.
+	 * 
+	 */
+	public BioFuzzGrammarTokenizer(BioFuzzAttackCfgMgr mgr) {
+		this(mgr, WHITESPACE, "");
+	}
+	
+	/**
+	 * 
+	 * Creates an automaton that accepts a terminal in any case. A run of
+	 * whitespace in the terminal accepts any run of whitespace.
+	 * 
+	 * @param t the terminal.
+	 * @param whitespace characters that separate tokens.
+	 * @return the automaton.
+	 * 
+	 */
+	private static Automaton makeTerminal(String t, String whitespace) {
+		Automaton ws = Automaton.makeCharSet(whitespace).repeat(1);
+		Automaton a = Automaton.makeEmptyString();
+		for(int i = 0; i < t.length(); i++) {
+			char c = t.charAt(i);
+			if(whitespace.indexOf(c) >= 0) {
+				while(i + 1 < t.length() && whitespace.indexOf(t.charAt(i + 1)) >= 0)
+					i++;
+				a = a.concatenate(ws);
+				continue;
+			}
+			Automaton ch = Automaton.makeChar(c);
+			char l = Character.toLowerCase(c);
+			char u = Character.toUpperCase(c);
+			if(l != c)
+				ch = ch.union(Automaton.makeChar(l));
+			if(u != c)
+				ch = ch.union(Automaton.makeChar(u));
+			a = a.concatenate(ch);
+		}
+		return a;
+	}
+	
+	@Override
+	public String[] tokenize(String s) {
+		BioFuzzTokStream t = tokenizeStream(s);
+		return t.toArray(new String[t.size()]);
+	}
+	
+	@Override
+	public BioFuzzTokStream tokenizeStream(CharSequence s) {
+		BioFuzzTokStream t = new BioFuzzTokStream(s);
+		int len = s.length();
+		int i = 0;
+		
+		while(i < len) {
+			char c = s.charAt(i);
+			
+			if(this.whitespace.indexOf(c) >= 0) {
+				i++;
+				continue;
+			}
+			
+			if(this.quotes.indexOf(c) >= 0) {
+				int j = i + 1;
+				while(j < len && s.charAt(j) != c)
+					j++;
+				if(j < len) {
+					t.addRange(i, i + 1);
+					if(j > i + 1)
+						t.addRange(i + 1, j);
+					t.addRange(j, j + 1);
+					i = j + 1;
+					continue;
+				}
+			}
+			
+			int end = match(s, i);
+			if(end <= i)
+				end = i + 1;
+			addToken(t, s, i, end);
+			i = end;
+		}
+		
+		t.add("$");
+		return t;
+	}
+	
+	/**
+	 * 
+	 * Appends a token. Runs of whitespace inside the token, which can 
+	 * only stem from terminals, are replaced by a single blank.
+	 * 
+	 * @param t the token stream.
+	 * @param s the input.
+	 * @param start index of the first character.
+	 * @param end index after the last character.
+	 * 
+	 */
+	private void addToken(BioFuzzTokStream t, CharSequence s, int start, int end) {
+		int j = start;
+		while(j < end && this.whitespace.indexOf(s.charAt(j)) < 0)
+			j++;
+		
+		if(j == end) {
+			t.addRange(start, end);
+			return;
+		}
+		
+		StringBuilder tok = new StringBuilder(end - start);
+		boolean ws = false;
+		for(j = start; j < end; j++) {
+			char c = s.charAt(j);
+			if(this.whitespace.indexOf(c) >= 0) {
+				ws = true;
+				continue;
+			}
+			if(ws)
+				tok.append(' ');
+			ws = false;
+			tok.append(c);
+		}
+		t.addRange(start, end, tok.toString());
+	}
+	
+	/**
+	 * 
+	 * Runs the automaton from index start as long as possible.
+	 * 
+	 * @param s the input.
+	 * @param start index of the first character.
+	 * @return the index after the longest token or -1.
+	 * 
+	 */
+	private int match(CharSequence s, int start) {
+		int state = this.automaton.getInitialState();
+		int last = -1;
+		
+		for(int j = start; j < s.length(); j++) {
+			state = this.automaton.step(state, s.charAt(j));
+			if(state < 0)
+				break;
+			if(this.automaton.isAccept(state))
+				last = j + 1;
+		}
+		return last;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @return the regular expressions that could not be compiled into the
+	 * automaton.
+	 * 
+	 */
+	public Set<String> getSkipped() {
+		return this.skipped;
+	}
+	
+	public int getTerminalCnt() {
+		return this.terminalCnt;
+	}
+	
+	public int getRexpCnt() {
+		return this.rexpCnt;
+	}
+	
+	@Override
+	public String toString() {
+		return "grammar tokenizer: terminals: " + this.terminalCnt + " regular expressions: " + 
+				this.rexpCnt + " skipped: " + this.skipped.size() + " states: " + 
+				this.automaton.getSize();
+	}
+
+}
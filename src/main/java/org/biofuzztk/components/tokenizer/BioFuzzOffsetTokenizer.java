@@ -0,0 +1,47 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.tokenizer;
+
+import org.biofuzztk.ptree.BioFuzzTokStream;
+
+/**
+ * 
+ * A tokenizer that reports where its tokens are located in the input.
+ * The parser prefers tokenizeStream() over tokenize() if a tokenizer 
+ * implements this interface.
+ * 
+ * @author julian
+ *
+ */
+public interface BioFuzzOffsetTokenizer extends BioFuzzTokenizer {
+	
+	/**
+	 * 
+	 * Tokenizes a string without copying its tokens. The last token is
+	 * the end-of-input marker.
+	 * 
+	 * @param s a string.
+	 * @return the tokens as ranges of s.
+	 * 
+	 */
+	public BioFuzzTokStream tokenizeStream(CharSequence s);
+
+}
@@ -0,0 +1,159 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.components.tokenizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 
+ * Tokenizer for SQL that is based on a cascade of regular expressions. 
+ * BioFuzzSQLTokenizer produces the same tokens in a single pass, this
+ * tokenizer is kept as a reference.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzRegexSQLTokenizer implements BioFuzzTokenizer {
+	
+	final static Logger logger = LoggerFactory.getLogger(BioFuzzRegexSQLTokenizer.class);
+	
+	private static final String grpStr = "([\"'`][^\"'`]*[\"'`])";
+	
+	public BioFuzzRegexSQLTokenizer() {
+	}
+	
+	
+	private static void applyRegexp(List<String> tokens, String rx, String rep) {
+		for(int i = 0; i < tokens.size(); i++) {
+			String s = tokens.get(i);
+			
+			if(s.matches(grpStr)) {
+				//logger.debug("MATCH" + s);
+				
+				continue;
+			}
+			//logger.debug("replace " + rx + " by " +rep + " for " + s);
+			s = s.replaceAll(rx, rep).trim();
+			
+			//logger.debug("done" + s);
+			
+			tokens.set(i, s);
+		}
+	}
+	
+	
+	private static void complete(List<String> tokens) {
+		for(int i = 0; i < tokens.size(); i++) {
+			String s = tokens.get(i);
+			s = s.replaceAll("\'", "\n\'\n").trim();
+			s = s.replaceAll("\"", "\n\"\n").trim();
+			s = s.replaceAll("`", "\n`\n").trim();
+			tokens.set(i, s);
+		}
+	}
+	
+	
+	private static void delimit(List<String> tokens) {
+		for(int i = 0; i < tokens.size(); i++) {
+			String s = tokens.get(i);
+
+			if(s.matches(grpStr)) {
+				//logger.debug("MATCH" + s);
+				continue;
+			}
+			s = s.replaceAll(", *","\n,\n");
+			s = s.replaceAll(" ","\n");
+			tokens.set(i, s);
+		}
+	}
+	
+	private static String generateResult(List<String> tokens) {
+		String s = "";
+		
+		for(int i = 0; i < tokens.size(); i++) {
+			s += tokens.get(i).trim() + "\n";
+		}
+		
+		return s;
+		
+	}
+
+	
+	public String[] tokenize(String s) {
+		List<String> tokens = new ArrayList<String>();
+		s = s.replaceAll(grpStr,"\n$1\n");
+		
+		
+		logger.debug(" >> " + s);
+		
+		String [] sl = s.split("\n");
+
+		
+		for(int i = 0; i < sl.length; i++) {
+			logger.debug("token add " + sl[i]);
+			tokens.add(sl[i]);
+		}
+		
+		delimit(tokens);
+		
+		
+		
+		applyRegexp(tokens, "[ \n]*\\([ \n]*", "\n\\(\n");
+		applyRegexp(tokens, "[ \n]*\\)[ \n]*", "\n\\)\n");
+		
+		//logger.debug(" # " + this.tokens.toString());
+
+		applyRegexp(tokens, "[ \n]*=[ \n]*", "\n=\n");
+		applyRegexp(tokens, "[ \n]*>[ \n]*", "\n>\n");
+		applyRegexp(tokens, "[ \n]*<[ \n]*", "\n<\n");
+
+		applyRegexp(tokens, " *[Nn][Oo][Ww][ \n]*\\([ \n]*\\)[ +\n]", "\nNOW\\(\\)\n");
+		
+		applyRegexp(tokens, " *[Cc][Hh][Aa][Rr][\n]*\\([\n]*([0-9]*)[\n]*\\)", "\nCHAR\\($1\\)\n");
+		applyRegexp(tokens, " *[Cc][Oo][Nn][Cc][Aa][Tt][ \n]*\\([ \n]", "\nCONCAT\\(\n");
+		applyRegexp(tokens, " *[Mm][Dd]5[ \n]*\\([ \n]", "\nMD5\\(\n");
+		
+		applyRegexp(tokens, "\n<\n+>\n", "\n<>\n");
+		applyRegexp(tokens, "[ +\n][Cc][Oo][Uu][Nn][Tt][ \n]*\\([ \n]*\\*[ \n]\\)[ +\n]", "\nCOUNT\\(\\*\\)\n");
+		applyRegexp(tokens, "<[\n ]*>", "\n<>\n");
+		applyRegexp(tokens, "[ \n]*[Oo][Rr][Dd][Ee][Rr][\n ]*[Bb][Yy][ \n]*", "\nORDER BY\n");
+		applyRegexp(tokens, " *[Dd][Ee][Ss][Cc] *", "\nDESC\n");
+		
+		applyRegexp(tokens, " *", "");
+		applyRegexp(tokens, " *\n+", "\n");
+		applyRegexp(tokens, " *\n *", "\n");
+		applyRegexp(tokens, ", \n", ",");
+		applyRegexp(tokens, ";", "\n;\n");
+		
+		
+		complete(tokens);
+		
+		String ret = generateResult(tokens);
+		ret += "\n$";
+		logger.debug("RETURN : "+ ret);
+		return ret.split("\n");
+	}
+	
+}
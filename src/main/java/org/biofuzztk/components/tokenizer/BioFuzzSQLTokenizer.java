@@ -21,161 +21,543 @@
 package org.biofuzztk.components.tokenizer;
 
 import java.util.ArrayList;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * 
- * Tokenizer for SQL.
+ * Tokenizer for SQL. The input is scanned once and the tokens are cut out
+ * of it, i.e. no intermediate strings are built. A quoted string becomes
+ * its quotes and its content. Blanks separate tokens and the characters 
+ * , ( ) = &lt; &gt; ; ' " ` are tokens of their own. Function calls and 
+ * keywords such as NOW(), COUNT(*), CHAR(34), CONCAT(, MD5(, ORDERBY, DESC 
+ * and &lt;&gt; are joined into single tokens.
+ * 
+ * The tokens are the same as the ones of BioFuzzRegexSQLTokenizer, 
+ * including the empty tokens that it produces. The tokenizer keeps no
+ * state, so it can be used by several threads.
  * 
  * @author julian
  *
  */
 public class BioFuzzSQLTokenizer implements BioFuzzTokenizer {
 	
-	final static Logger logger = LoggerFactory.getLogger(BioFuzzSQLTokenizer.class);
-	
-	private static ArrayList<String> tokens = null;
-	//private static BioFuzzTokenizer tokenizer = null;
-
-	private static final String grpStr = "([\"'`][^\"'`]*[\"'`])";
-	
 	public BioFuzzSQLTokenizer() {
-		tokens = new ArrayList<String>();
 	}
 	
-	
-	private void applyRegexp(String rx, String rep) {
-		for(int i = 0; i < tokens.size(); i++) {
-			String s = tokens.get(i);
-			
-			if(s.matches(grpStr)) {
-				//logger.debug("MATCH" + s);
-				
-				continue;
-			}
-			//logger.debug("replace " + rx + " by " +rep + " for " + s);
-			s = s.replaceAll(rx, rep).trim();
-			
-			//logger.debug("done" + s);
-			
-			tokens.set(i, s);
-		}
+	public String[] tokenize(String s) {
+		return new Lexer(s).run();
 	}
 	
-	
-	private void complete() {
-		for(int i = 0; i < tokens.size(); i++) {
-			String s = tokens.get(i);
-			s = s.replaceAll("\'", "\n\'\n").trim();
-			s = s.replaceAll("\"", "\n\"\n").trim();
-			s = s.replaceAll("`", "\n`\n").trim();
-			tokens.set(i, s);
-		}
+	private static boolean isQuote(char c) {
+		return c == '\'' || c == '"' || c == '`';
 	}
 	
+	private static boolean isPunct(char c) {
+		return c == ',' || c == '(' || c == ')' || c == '=' || c == '<' || c == '>';
+	}
 	
-	private void delimit() {
-		for(int i = 0; i < tokens.size(); i++) {
-			String s = tokens.get(i);
-
-			if(s.matches(grpStr)) {
-				//logger.debug("MATCH" + s);
-				continue;
-			}
-			s = s.replaceAll(", *","\n,\n");
-			s = s.replaceAll(" ","\n");
-			tokens.set(i, s);
+	private static String charToken(char c) {
+		switch(c) {
+			case ',': return ",";
+			case '(': return "(";
+			case ')': return ")";
+			case '=': return "=";
+			case '<': return "<";
+			case '>': return ">";
+			case ';': return ";";
+			case '\'': return "'";
+			case '"': return "\"";
+			case '`': return "`";
+			default: return String.valueOf(c);
 		}
 	}
 	
-	@Override 
-	public String toString() {
-		String s = "";
+	/**
+	 * 
+	 * The state of a single call of tokenize(). The input is cut into 
+	 * pieces at quoted strings and line breaks. The blank-separated atoms
+	 * of a piece are kept as ranges of the input (or as constants once 
+	 * they were joined) and rewritten by a few linear sweeps.
+	 * 
+	 */
+	private static class Lexer {
+		
+		private final String s;
+		private final List<String> tokens;
+		
+		// atoms of the current piece
+		private int [] st;
+		private int [] en;
+		private String [] cst;
+		private int n;
+		
+		// target of a rewriting sweep
+		private int [] st2;
+		private int [] en2;
+		private String [] cst2;
+		private int n2;
 		
-		for(int i = 0; i < tokens.size(); i++) {
-			s += "["+ tokens.get(i) +"]\n";
+		// empty pieces that have not been emitted yet
+		private int pending;
+		// separators in front of the next token of the current piece
+		private int seps;
+		private boolean started;
+		
+		Lexer(String s) {
+			this.s = s;
+			this.tokens = new ArrayList<String>();
+			this.st = new int[16];
+			this.en = new int[16];
+			this.cst = new String[16];
+			this.st2 = new int[16];
+			this.en2 = new int[16];
+			this.cst2 = new String[16];
 		}
 		
-		return s;
+		String [] run() {
+			int len = this.s.length();
+			int start = 0;
+			boolean delim = false;
+			boolean groups = true;
+			
+			for(int i = 0; i < len; i++) {
+				char c = this.s.charAt(i);
+				
+				if(c == '\n') {
+					piece(start, i);
+					delim = true;
+					start = i + 1;
+				} else if(groups && isQuote(c)) {
+					int j = i + 1;
+					while(j < len && !isQuote(this.s.charAt(j)))
+						j++;
+					
+					// an unmatched quote is part of the surrounding text
+					if(j == len) {
+						groups = false;
+						continue;
+					}
+					
+					piece(start, i);
+					delim = true;
+					
+					// a line break between the quotes breaks up the quoted string
+					int k = i;
+					for(int m = i + 1; m < j; m++) {
+						if(this.s.charAt(m) == '\n') {
+							piece(k, m);
+							k = m + 1;
+						}
+					}
+					if(k > i) {
+						piece(k, j + 1);
+					} else {
+						flush();
+						this.tokens.add(charToken(c));
+						this.tokens.add(this.s.substring(i + 1, j));
+						this.tokens.add(charToken(this.s.charAt(j)));
+					}
+					start = j + 1;
+					i = j;
+				}
+			}
+			piece(start, len);
+			
+			// trailing empty pieces are dropped unless the input is a single piece
+			if(!delim)
+				flush();
+			
+			this.tokens.add("");
+			this.tokens.add("$");
+			return this.tokens.toArray(new String[this.tokens.size()]);
+		}
 		
-	}
-	
-	public String generateResult() {
-		String s = "";
+		private void flush() {
+			for(; this.pending > 0; this.pending--) {
+				this.tokens.add("");
+			}
+		}
 		
-		for(int i = 0; i < tokens.size(); i++) {
-			s += tokens.get(i).trim() + "\n";
+		/**
+		 * 
+		 * Tokenizes the text between two quoted strings or line breaks.
+		 * 
+		 * @param a index of the first character.
+		 * @param b index after the last character.
+		 * 
+		 */
+		private void piece(int a, int b) {
+			if(a == b) {
+				this.pending++;
+				return;
+			}
+			flush();
+			
+			split(a, b);
+			trim();
+			
+			joinSuffix("now", "NOW()");
+			joinChar();
+			joinSuffix("concat", "CONCAT(");
+			joinSuffix("md5", "MD5(");
+			joinNotEqual();
+			joinCount();
+			joinOrderBy();
+			splitDesc();
+			
+			emit();
 		}
 		
-		return s;
+		private void split(int a, int b) {
+			this.n = 0;
+			int w = -1;
+			for(int i = a; i < b; i++) {
+				char c = this.s.charAt(i);
+				if(c == ' ' || isPunct(c)) {
+					if(w >= 0) {
+						add(w, i, null);
+						w = -1;
+					}
+					if(c != ' ')
+						add(i, i + 1, null);
+				} else if(w < 0) {
+					w = i;
+				}
+			}
+			if(w >= 0)
+				add(w, b, null);
+		}
 		
-	}
-
-	public void log() {
+		/**
+		 * 
+		 * Removes control characters from both ends of the piece.
+		 * 
+		 */
+		private void trim() {
+			int lo = 0;
+			while(lo < this.n && isWord(lo)) {
+				while(this.st[lo] < this.en[lo] && this.s.charAt(this.st[lo]) <= ' ')
+					this.st[lo]++;
+				if(this.st[lo] < this.en[lo])
+					break;
+				lo++;
+			}
+			int hi = this.n - 1;
+			while(hi >= lo && isWord(hi)) {
+				while(this.st[hi] < this.en[hi] && this.s.charAt(this.en[hi] - 1) <= ' ')
+					this.en[hi]--;
+				if(this.st[hi] < this.en[hi])
+					break;
+				hi--;
+			}
+			if(lo > 0 || hi < this.n - 1) {
+				int cnt = Math.max(hi - lo + 1, 0);
+				System.arraycopy(this.st, lo, this.st, 0, cnt);
+				System.arraycopy(this.en, lo, this.en, 0, cnt);
+				this.n = cnt;
+			}
+		}
 		
-		for(int i = 0; i < tokens.size(); i++) {
-			logger.debug("i: " + tokens.get(i).trim());
+		/**
+		 * 
+		 * Joins a word that ends with fn, an opening parenthesis and, for
+		 * NOW(), a closing one. The parentheses must not end the piece.
+		 * 
+		 */
+		private void joinSuffix(String fn, String joined) {
+			boolean closed = joined.endsWith(")");
+			int span = closed ? 2 : 1;
+			this.n2 = 0;
+			for(int k = 0; k < this.n; k++) {
+				if(k + span + 1 < this.n && endsWith(k, fn) && 
+						isChar(k + 1, '(') && (!closed || isChar(k + 2, ')'))) {
+					prefix(k, fn.length());
+					add2(0, 0, joined);
+					k += span;
+				} else {
+					copy(k);
+				}
+			}
+			swap();
 		}
 		
+		private void joinChar() {
+			this.n2 = 0;
+			for(int k = 0; k < this.n; k++) {
+				if(k + 2 < this.n && endsWith(k, "char") && isChar(k + 1, '(')) {
+					if(isChar(k + 2, ')')) {
+						prefix(k, 4);
+						add2(0, 0, "CHAR()");
+						k += 2;
+						continue;
+					}
+					if(k + 3 < this.n && isDigits(k + 2) && isChar(k + 3, ')')) {
+						prefix(k, 4);
+						add2(0, 0, "CHAR(" + this.s.substring(this.st[k + 2], this.en[k + 2]) + ")");
+						k += 3;
+						continue;
+					}
+				}
+				copy(k);
+			}
+			swap();
+		}
 		
-	}
-
-	
-	public String[] tokenize(String s) {
-		tokens.clear();
-		s = s.replaceAll(grpStr,"\n$1\n");
+		private void joinNotEqual() {
+			this.n2 = 0;
+			for(int k = 0; k < this.n; k++) {
+				if(k + 1 < this.n && isChar(k, '<') && isChar(k + 1, '>')) {
+					add2(0, 0, "<>");
+					k++;
+				} else {
+					copy(k);
+				}
+			}
+			swap();
+		}
 		
+		/**
+		 * 
+		 * Joins COUNT(*). The word count has to follow a separator that
+		 * was not used by the previous COUNT(*) or a '+' which is dropped.
+		 * 
+		 */
+		private void joinCount() {
+			boolean used = false;
+			this.n2 = 0;
+			for(int k = 0; k < this.n; k++) {
+				int cut = 0;
+				if(k + 4 < this.n && isWord(k) && isChar(k + 1, '(') && 
+						isChar(k + 2, '*') && isChar(k + 3, ')')) {
+					int len = this.en[k] - this.st[k];
+					if(len == 5 && k > 0 && !used && at(this.st[k], "count"))
+						cut = 5;
+					else if(len >= 6 && at(this.en[k] - 6, "+count"))
+						cut = 6;
+				}
+				if(cut > 0) {
+					prefix(k, cut);
+					add2(0, 0, "COUNT(*)");
+					k += 3;
+					used = true;
+				} else {
+					copy(k);
+					used = false;
+				}
+			}
+			swap();
+		}
 		
-		logger.debug(" >> " + s);
+		/**
+		 * 
+		 * Joins ORDER BY to the token ORDERBY. Both words may be part of 
+		 * other words and the blank between them is optional.
+		 * 
+		 */
+		private void joinOrderBy() {
+			this.n2 = 0;
+			for(int k = 0; k < this.n; k++) {
+				if(!isWord(k)) {
+					copy(k);
+					continue;
+				}
+				int p = this.st[k];
+				int e = this.en[k];
+				int q = p;
+				while(q + 5 <= e) {
+					if(at(q, "order")) {
+						if(q + 7 <= e && at(q + 5, "by")) {
+							if(q > p)
+								add2(p, q, null);
+							add2(0, 0, "ORDERBY");
+							p = q = q + 7;
+							continue;
+						}
+						if(q + 5 == e && k + 1 < this.n && isWord(k + 1) && 
+								this.en[k + 1] - this.st[k + 1] >= 2 && at(this.st[k + 1], "by")) {
+							if(q > p)
+								add2(p, q, null);
+							add2(0, 0, "ORDERBY");
+							k++;
+							p = q = this.st[k] + 2;
+							e = this.en[k];
+							continue;
+						}
+					}
+					q++;
+				}
+				if(p < e)
+					add2(p, e, null);
+			}
+			swap();
+		}
 		
-		String [] sl = s.split("\n");
-
+		private void splitDesc() {
+			this.n2 = 0;
+			for(int k = 0; k < this.n; k++) {
+				if(!isWord(k)) {
+					copy(k);
+					continue;
+				}
+				int p = this.st[k];
+				int e = this.en[k];
+				int q = p;
+				while(q + 4 <= e) {
+					if(at(q, "desc")) {
+						if(q > p)
+							add2(p, q, null);
+						add2(0, 0, "DESC");
+						p = q = q + 4;
+					} else {
+						q++;
+					}
+				}
+				if(p < e)
+					add2(p, e, null);
+			}
+			swap();
+		}
 		
-		for(int i = 0; i < sl.length; i++) {
-			logger.debug("token add " + sl[i]);
-			tokens.add(sl[i]);
+		/**
+		 * 
+		 * Adds the atoms of the piece to the tokens. Semicolons and quotes
+		 * are cut out of the words.
+		 * 
+		 */
+		private void emit() {
+			this.seps = 0;
+			this.started = false;
+			
+			for(int k = 0; k < this.n; k++) {
+				if(k > 0)
+					this.seps++;
+				
+				if(this.cst[k] != null) {
+					token(this.cst[k]);
+				} else if(!isWord(k)) {
+					token(charToken(this.s.charAt(this.st[k])));
+				} else {
+					int p = this.st[k];
+					for(int i = p; i < this.en[k]; i++) {
+						char c = this.s.charAt(i);
+						if(c == ';' || isQuote(c)) {
+							if(i > p)
+								token(this.s.substring(p, i));
+							this.seps++;
+							token(charToken(c));
+							this.seps++;
+							p = i + 1;
+						}
+					}
+					if(p < this.en[k])
+						token(this.s.substring(p, this.en[k]));
+				}
+			}
+			
+			if(!this.started)
+				this.tokens.add("");
 		}
 		
-		delimit();
+		private void token(String t) {
+			// two adjacent separators enclose an empty token
+			if(this.started) {
+				for(int i = 1; i < this.seps; i++) {
+					this.tokens.add("");
+				}
+			}
+			this.tokens.add(t);
+			this.started = true;
+			this.seps = 0;
+		}
 		
+		private boolean isWord(int k) {
+			return this.cst[k] == null && 
+					!(this.en[k] - this.st[k] == 1 && isPunct(this.s.charAt(this.st[k])));
+		}
 		
+		private boolean isChar(int k, char c) {
+			return this.cst[k] == null && this.en[k] - this.st[k] == 1 && 
+					this.s.charAt(this.st[k]) == c;
+		}
 		
-		applyRegexp("[ \n]*\\([ \n]*", "\n\\(\n");
-		applyRegexp("[ \n]*\\)[ \n]*", "\n\\)\n");
+		private boolean isDigits(int k) {
+			if(!isWord(k))
+				return false;
+			for(int i = this.st[k]; i < this.en[k]; i++) {
+				char c = this.s.charAt(i);
+				if(c < '0' || c > '9')
+					return false;
+			}
+			return true;
+		}
 		
-		//logger.debug(" # " + this.tokens.toString());
-
-		applyRegexp("[ \n]*=[ \n]*", "\n=\n");
-		applyRegexp("[ \n]*>[ \n]*", "\n>\n");
-		applyRegexp("[ \n]*<[ \n]*", "\n<\n");
-
-		applyRegexp(" *[Nn][Oo][Ww][ \n]*\\([ \n]*\\)[ +\n]", "\nNOW\\(\\)\n");
+		private boolean endsWith(int k, String w) {
+			return isWord(k) && this.en[k] - this.st[k] >= w.length() && 
+					at(this.en[k] - w.length(), w);
+		}
 		
-		applyRegexp(" *[Cc][Hh][Aa][Rr][\n]*\\([\n]*([0-9]*)[\n]*\\)", "\nCHAR\\($1\\)\n");
-		applyRegexp(" *[Cc][Oo][Nn][Cc][Aa][Tt][ \n]*\\([ \n]", "\nCONCAT\\(\n");
-		applyRegexp(" *[Mm][Dd]5[ \n]*\\([ \n]", "\nMD5\\(\n");
+		/**
+		 * 
+		 * Compares the input at pos with a lower case word. Only ASCII 
+		 * letters are compared case-insensitively.
+		 * 
+		 */
+		private boolean at(int pos, String w) {
+			for(int i = 0; i < w.length(); i++) {
+				char c = this.s.charAt(pos + i);
+				char l = w.charAt(i);
+				if(c != l && !(l >= 'a' && l <= 'z' && c == l - 'a' + 'A'))
+					return false;
+			}
+			return true;
+		}
 		
-		applyRegexp("\n<\n+>\n", "\n<>\n");
-		applyRegexp("[ +\n][Cc][Oo][Uu][Nn][Tt][ \n]*\\([ \n]*\\*[ \n]\\)[ +\n]", "\nCOUNT\\(\\*\\)\n");
-		applyRegexp("<[\n ]*>", "\n<>\n");
-		applyRegexp("[ \n]*[Oo][Rr][Dd][Ee][Rr][\n ]*[Bb][Yy][ \n]*", "\nORDER BY\n");
-		applyRegexp(" *[Dd][Ee][Ss][Cc] *", "\nDESC\n");
+		private void prefix(int k, int cut) {
+			if(this.en[k] - this.st[k] > cut)
+				add2(this.st[k], this.en[k] - cut, null);
+		}
 		
-		applyRegexp(" *", "");
-		applyRegexp(" *\n+", "\n");
-		applyRegexp(" *\n *", "\n");
-		applyRegexp(", \n", ",");
-		applyRegexp(";", "\n;\n");
+		private void copy(int k) {
+			add2(this.st[k], this.en[k], this.cst[k]);
+		}
 		
+		private void add(int a, int b, String c) {
+			if(this.n == this.st.length) {
+				this.st = Arrays.copyOf(this.st, this.n << 1);
+				this.en = Arrays.copyOf(this.en, this.n << 1);
+				this.cst = Arrays.copyOf(this.cst, this.n << 1);
+			}
+			this.st[this.n] = a;
+			this.en[this.n] = b;
+			this.cst[this.n] = c;
+			this.n++;
+		}
 		
-		complete();
+		private void add2(int a, int b, String c) {
+			if(this.n2 == this.st2.length) {
+				this.st2 = Arrays.copyOf(this.st2, this.n2 << 1);
+				this.en2 = Arrays.copyOf(this.en2, this.n2 << 1);
+				this.cst2 = Arrays.copyOf(this.cst2, this.n2 << 1);
+			}
+			this.st2[this.n2] = a;
+			this.en2[this.n2] = b;
+			this.cst2[this.n2] = c;
+			this.n2++;
+		}
 		
-		String ret = this.generateResult();
-		ret += "\n$";
-		logger.debug("RETURN : "+ ret);
-		return ret.split("\n");
+		private void swap() {
+			int [] t = this.st;
+			this.st = this.st2;
+			this.st2 = t;
+			t = this.en;
+			this.en = this.en2;
+			this.en2 = t;
+			String [] c = this.cst;
+			this.cst = this.cst2;
+			this.cst2 = c;
+			this.n = this.n2;
+		}
 	}
 	
 }
@@ -2,7 +2,9 @@ package org.biofuzztk.components.tokenizer;
 
 /**
  * 
- * Interface that all tokenizers have to implement.
+ * Interface that all tokenizers have to implement. A tokenizer must not
+ * keep any state between two calls, because a manager and its tokenizer
+ * can be shared by several threads.
  * 
  * @author julian
  *
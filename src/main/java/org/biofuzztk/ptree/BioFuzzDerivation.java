@@ -0,0 +1,702 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.ptree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.Vector;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfg;
+import org.biofuzztk.cfg.BioFuzzCfgRewrite;
+
+/**
+ *
+ * An immutable, append-only record of the steps that were taken by
+ * the parser in order to build a parse-tree. Every step points to its
+ * predecessor, so forked parsers share the steps they have in common
+ * and only record the steps they add. A parse-tree is only materialized
+ * on demand.
+ *
+ * Two derivations that lead to the same parser configuration can be
+ * joined. A joined derivation represents all of its alternatives.
+ * Fragments that start with a base step can be grafted onto any
+ * derivation, which allows to reuse the derivation of a sub-parse.
+ *
+ * @author julian
+ *
+ */
+public class BioFuzzDerivation {
+
+	/**
+	 *
+	 * Different step types.
+	 *
+	 * @author julian
+	 *
+	 */
+	public enum StepType {
+		/**
+		 * the root node of a parse-tree.
+		 */
+		ROOT,
+
+		/**
+		 * a non-terminal node - subsequent nodes are its children.
+		 */
+		NON_TERMINAL,
+
+		/**
+		 * a terminal node (terminal or regular expression).
+		 */
+		TERMINAL,
+
+		/**
+		 * end of a production rule - go back to the parent node.
+		 */
+		UP,
+
+		/**
+		 * meta step that joins alternative derivations.
+		 */
+		JOIN,
+
+		/**
+		 * first step of a derivation fragment that can be grafted.
+		 */
+		BASE,
+
+		/**
+		 * meta step that appends a derivation fragment.
+		 */
+		GRAFT;
+	};
+
+	/**
+	 *
+	 * An open node while a path is translated back to the original
+	 * production rules. A group is a non-terminal that has been inlined
+	 * by the grammar normalizer.
+	 *
+	 */
+	private static class Level {
+		private final BioFuzzAttackCfg cfg;
+		private final int site;
+		private final int start;
+		private int last;
+
+		Level(BioFuzzAttackCfg cfg, int site, int start) {
+			this.cfg = cfg;
+			this.site = site;
+			this.start = start;
+			this.last = 0;
+		}
+
+		boolean isGroup() {
+			return this.site >= 0;
+		}
+	}
+
+	private final StepType type;
+	private final BioFuzzAttackCfg cfg;
+	private final int descIdx;
+	private final int tokIdx;
+	private final String key;
+	private final BioFuzzDerivation prev;
+	private final BioFuzzDerivation [] alts;
+	// number of parse-trees of a meta step, 0 if not computed yet
+	private int altCnt;
+
+	private BioFuzzDerivation(StepType type, BioFuzzAttackCfg cfg, int descIdx,
+			int tokIdx, String key, BioFuzzDerivation prev, BioFuzzDerivation [] alts) {
+		this.type = type;
+		this.cfg = cfg;
+		this.descIdx = descIdx;
+		this.tokIdx = tokIdx;
+		this.key = key;
+		this.prev = prev;
+		this.alts = alts;
+		this.altCnt = 0;
+	}
+
+	/**
+	 *
+	 * Creates the first step of a derivation.
+	 *
+	 * @param cfg production rule definition of the start symbol.
+	 * @param key name of the start symbol.
+	 * @return the root step.
+	 *
+	 */
+	public static BioFuzzDerivation root(BioFuzzAttackCfg cfg, String key) {
+		return new BioFuzzDerivation(StepType.ROOT, cfg, 0, 0, key, null, null);
+	}
+
+	/**
+	 *
+	 * Appends a non-terminal node.
+	 *
+	 * @param cfg production rule definition where this node corresponds to.
+	 * @param descIdx idx of node in production rule definition.
+	 * @param tokIdx idx of token in token-list.
+	 * @return the new step.
+	 *
+	 */
+	public BioFuzzDerivation nonTerminal(BioFuzzAttackCfg cfg, int descIdx, int tokIdx) {
+		return new BioFuzzDerivation(StepType.NON_TERMINAL, cfg, descIdx, tokIdx, null, this, null);
+	}
+
+	/**
+	 *
+	 * Appends a terminal node.
+	 *
+	 * @param cfg production rule definition where this node corresponds to.
+	 * @param descIdx idx of node in production rule definition.
+	 * @param tokIdx idx of token in token-list.
+	 * @return the new step.
+	 *
+	 */
+	public BioFuzzDerivation terminal(BioFuzzAttackCfg cfg, int descIdx, int tokIdx) {
+		return new BioFuzzDerivation(StepType.TERMINAL, cfg, descIdx, tokIdx, null, this, null);
+	}
+
+	/**
+	 *
+	 * Appends the end of a production rule.
+	 *
+	 * @return the new step.
+	 *
+	 */
+	public BioFuzzDerivation up() {
+		return new BioFuzzDerivation(StepType.UP, null, 0, 0, null, this, null);
+	}
+
+	/**
+	 *
+	 * Joins two derivations that lead to the same parser configuration.
+	 *
+	 * @param a a derivation.
+	 * @param b an alternative derivation.
+	 * @return a derivation that represents both alternatives.
+	 *
+	 */
+	public static BioFuzzDerivation join(BioFuzzDerivation a, BioFuzzDerivation b) {
+		assert(a != null && b != null);
+		return new BioFuzzDerivation(StepType.JOIN, null, 0, 0, null, null,
+				new BioFuzzDerivation [] {a, b});
+	}
+
+	/**
+	 *
+	 * Creates the first step of a derivation fragment.
+	 *
+	 * @return the base step.
+	 *
+	 */
+	public static BioFuzzDerivation base() {
+		return new BioFuzzDerivation(StepType.BASE, null, 0, 0, null, null, null);
+	}
+
+	/**
+	 *
+	 * Appends a derivation fragment. The fragment is shared, not copied.
+	 *
+	 * @param fragment a derivation that starts with a base step.
+	 * @return the new step.
+	 *
+	 */
+	public BioFuzzDerivation graft(BioFuzzDerivation fragment) {
+		assert(fragment != null);
+		return new BioFuzzDerivation(StepType.GRAFT, null, 0, 0, null, this,
+				new BioFuzzDerivation [] {fragment});
+	}
+
+	public StepType getType() {
+		return this.type;
+	}
+
+	public BioFuzzAttackCfg getCfg() {
+		return this.cfg;
+	}
+
+	public int getDescIdx() {
+		return this.descIdx;
+	}
+
+	public int getTokIdx() {
+		return this.tokIdx;
+	}
+
+	public String getKey() {
+		return this.key;
+	}
+
+	public BioFuzzDerivation getPrev() {
+		return this.prev;
+	}
+
+	/**
+	 *
+	 * Getter. Used to build a parse forest without materializing the
+	 * parse-trees.
+	 *
+	 * @return the alternatives of a join step, the fragment of a graft
+	 * step or null. The array must not be modified.
+	 *
+	 */
+	BioFuzzDerivation [] getAlts() {
+		return this.alts;
+	}
+
+	/**
+	 *
+	 * Getter. The count of a meta step is computed once and cached, so
+	 * shared derivations are only walked once.
+	 *
+	 * @return the number of parse-trees this derivation represents or 
+	 * Integer.MAX_VALUE if there are more.
+	 *
+	 */
+	public int getAltCnt() {
+		BioFuzzDerivation d = skip(this);
+
+		if(d == null || d.type == StepType.BASE)
+			return 1;
+
+		Stack<BioFuzzDerivation> todo = new Stack<BioFuzzDerivation>();
+		todo.push(d);
+
+		while(!todo.isEmpty()) {
+			BioFuzzDerivation meta = todo.peek();
+			if(meta.altCnt > 0) {
+				todo.pop();
+				continue;
+			}
+
+			BioFuzzDerivation [] deps = getDeps(meta);
+			boolean ready = true;
+			for(BioFuzzDerivation dep : deps) {
+				if(dep != null && dep.altCnt == 0) {
+					todo.push(dep);
+					ready = false;
+				}
+			}
+			if(!ready)
+				continue;
+
+			long cnt = (meta.type == StepType.GRAFT) ? 1 : 0;
+			for(BioFuzzDerivation dep : deps) {
+				long c = (dep == null ? 1 : dep.altCnt);
+				cnt = (meta.type == StepType.GRAFT) ? cnt * c : cnt + c;
+				cnt = Math.min(cnt, Integer.MAX_VALUE);
+			}
+			meta.altCnt = (int)cnt;
+			todo.pop();
+		}
+		return d.altCnt;
+	}
+
+	/**
+	 *
+	 * Collects the meta steps a meta step depends on.
+	 *
+	 * @param meta a join or graft step.
+	 * @return the first meta step of each alternative, or of the prefix
+	 * and the fragment, null stands for a derivation without alternatives.
+	 *
+	 */
+	private static BioFuzzDerivation [] getDeps(BioFuzzDerivation meta) {
+		BioFuzzDerivation [] deps = (meta.type == StepType.GRAFT) ? 
+				new BioFuzzDerivation [] {meta.prev, meta.alts[0]} : meta.alts.clone();
+
+		for(int i = 0; i < deps.length; i++) {
+			BioFuzzDerivation dep = skip(deps[i]);
+			deps[i] = (dep == null || dep.type == StepType.BASE) ? null : dep;
+		}
+		return deps;
+	}
+
+	/**
+	 *
+	 * Skips all plain steps.
+	 *
+	 * @param d a step.
+	 * @return the first meta or base step that precedes d or null.
+	 *
+	 */
+	private static BioFuzzDerivation skip(BioFuzzDerivation d) {
+		while(d != null && (d.type != StepType.JOIN && d.type != StepType.BASE &&
+				d.type != StepType.GRAFT)) {
+			d = d.prev;
+		}
+		return d;
+	}
+
+	/**
+	 *
+	 * Materializes all parse-trees that are represented by this
+	 * derivation.
+	 *
+	 * @param tokLst the token list to attach or null.
+	 * @param cursor cursor position of the token list.
+	 * @return a list of parse-trees.
+	 *
+	 */
+	public List<BioFuzzParseTree> materialize(BioFuzzTokLst tokLst, int cursor) {
+		List<List<BioFuzzDerivation>> paths = expand(this);
+
+		List<BioFuzzParseTree> trees = new Vector<BioFuzzParseTree>();
+
+		for(List<BioFuzzDerivation> path : paths) {
+			BioFuzzParseTree tree = build(restore(path));
+			if(tokLst != null) {
+				BioFuzzTokLst t = new BioFuzzTokLst(tokLst);
+				t.setCursor(cursor);
+				tree.setTokLst(t);
+			}
+			trees.add(tree);
+		}
+
+		return trees;
+	}
+
+	/**
+	 *
+	 * Materializes the parse-tree of the first alternative only.
+	 *
+	 * @param tokLst the token list to attach or null.
+	 * @param cursor cursor position of the token list.
+	 * @return a parse-tree.
+	 *
+	 */
+	public BioFuzzParseTree materializeFirst(BioFuzzTokLst tokLst, int cursor) {
+		BioFuzzParseTree tree = build(restore(expandFirst(this)));
+		if(tokLst != null) {
+			BioFuzzTokLst t = new BioFuzzTokLst(tokLst);
+			t.setCursor(cursor);
+			tree.setTokLst(t);
+		}
+		return tree;
+	}
+
+	/**
+	 *
+	 * Collects the steps of the first alternative. The steps are walked
+	 * backwards, the prefix of a graft step is walked after its fragment.
+	 *
+	 * @param d the last step.
+	 * @return the step sequence in order.
+	 *
+	 */
+	private static List<BioFuzzDerivation> expandFirst(BioFuzzDerivation d) {
+		List<BioFuzzDerivation> path = new ArrayList<BioFuzzDerivation>();
+		Stack<BioFuzzDerivation> todo = new Stack<BioFuzzDerivation>();
+		todo.push(d);
+
+		while(!todo.isEmpty()) {
+			BioFuzzDerivation step = todo.pop();
+			while(step != null && step.type != StepType.BASE) {
+				if(step.type == StepType.JOIN) {
+					step = step.alts[0];
+				} else if(step.type == StepType.GRAFT) {
+					todo.push(step.prev);
+					step = step.alts[0];
+				} else {
+					path.add(step);
+					step = step.prev;
+				}
+			}
+		}
+
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 *
+	 * Collects the steps of all alternatives. The alternatives of each 
+	 * step that is referred to by a meta step are only collected once.
+	 *
+	 * @param d the last step.
+	 * @return a list of step sequences in order.
+	 *
+	 */
+	private static List<List<BioFuzzDerivation>> expand(BioFuzzDerivation d) {
+		Map<BioFuzzDerivation,List<List<BioFuzzDerivation>>> done = 
+				new IdentityHashMap<BioFuzzDerivation,List<List<BioFuzzDerivation>>>();
+		Stack<BioFuzzDerivation> todo = new Stack<BioFuzzDerivation>();
+		todo.push(d);
+
+		while(!todo.isEmpty()) {
+			BioFuzzDerivation last = todo.peek();
+			if(done.containsKey(last)) {
+				todo.pop();
+				continue;
+			}
+
+			BioFuzzDerivation meta = skip(last);
+			List<BioFuzzDerivation> deps = new ArrayList<BioFuzzDerivation>();
+			if(meta != null && meta.type == StepType.JOIN) {
+				deps.addAll(Arrays.asList(meta.alts));
+			} else if(meta != null && meta.type == StepType.GRAFT) {
+				deps.add(meta.prev);
+				deps.add(meta.alts[0]);
+			}
+
+			boolean ready = true;
+			for(BioFuzzDerivation dep : deps) {
+				if(!done.containsKey(dep)) {
+					todo.push(dep);
+					ready = false;
+				}
+			}
+			if(!ready)
+				continue;
+
+			List<List<BioFuzzDerivation>> heads = new ArrayList<List<BioFuzzDerivation>>();
+
+			if(meta == null || meta.type == StepType.BASE) {
+				heads.add(new ArrayList<BioFuzzDerivation>());
+			} else if(meta.type == StepType.JOIN) {
+				for(BioFuzzDerivation alt : meta.alts) {
+					heads.addAll(done.get(alt));
+				}
+			} else {
+				List<List<BioFuzzDerivation>> frags = done.get(meta.alts[0]);
+				for(List<BioFuzzDerivation> pfx : done.get(meta.prev)) {
+					for(List<BioFuzzDerivation> frag : frags) {
+						List<BioFuzzDerivation> path = new ArrayList<BioFuzzDerivation>(pfx);
+						path.addAll(frag);
+						heads.add(path);
+					}
+				}
+			}
+
+			List<BioFuzzDerivation> tail = new ArrayList<BioFuzzDerivation>();
+			for(BioFuzzDerivation step = last; step != meta; step = step.prev) {
+				tail.add(step);
+			}
+			Collections.reverse(tail);
+
+			// the sequences of the dependencies are shared, so they are copied
+			List<List<BioFuzzDerivation>> paths = new ArrayList<List<BioFuzzDerivation>>(heads.size());
+			for(List<BioFuzzDerivation> head : heads) {
+				List<BioFuzzDerivation> path = new ArrayList<BioFuzzDerivation>(head.size() + tail.size());
+				path.addAll(head);
+				path.addAll(tail);
+				paths.add(path);
+			}
+			done.put(last, paths);
+			todo.pop();
+		}
+
+		return done.get(d);
+	}
+
+	/**
+	 *
+	 * Translates a sequence of steps of production rules that have been
+	 * rewritten by the grammar normalizer back to the original production
+	 * rules. Non-terminals that have been eliminated are re-inserted, i.e.
+	 * the result is the sequence of steps the parser would have taken on
+	 * the original grammar.
+	 *
+	 * @param path the steps in order.
+	 * @return the translated steps or path if no rewritten production rule
+	 * is involved.
+	 *
+	 */
+	private static List<BioFuzzDerivation> restore(List<BioFuzzDerivation> path) {
+		boolean rewritten = false;
+		for(BioFuzzDerivation step : path) {
+			if(step.cfg != null && step.cfg.getRewrite() != null) {
+				rewritten = true;
+				break;
+			}
+		}
+		if(!rewritten)
+			return path;
+
+		List<BioFuzzDerivation> out = new ArrayList<BioFuzzDerivation>(path.size());
+		Stack<Level> levels = new Stack<Level>();
+
+		for(BioFuzzDerivation step : path) {
+			switch(step.type) {
+				case ROOT:
+					out.add(step);
+					levels.push(new Level(step.cfg, -1, out.size()));
+					break;
+				case NON_TERMINAL:
+				case TERMINAL: {
+					int d = levels.size() - 1;
+					while(levels.get(d).isGroup())
+						d--;
+					place(out, levels, d, step.cfg, step.descIdx, step.tokIdx, step);
+					if(step.type == StepType.NON_TERMINAL)
+						levels.push(new Level(null, -1, out.size()));
+				}
+				break;
+				case UP: {
+					while(levels.size() > 1 && levels.peek().isGroup()) {
+						levels.pop();
+						out.add(new BioFuzzDerivation(StepType.UP, null, 0, 0, null, null, null));
+					}
+					if(levels.size() > 1)
+						levels.pop();
+					out.add(step);
+				}
+				break;
+				default:
+					out.add(step);
+					break;
+			}
+		}
+		return out;
+	}
+
+	/**
+	 *
+	 * Adds a node of a possibly rewritten production rule to an open node.
+	 *
+	 * @param out the translated steps.
+	 * @param levels the open nodes.
+	 * @param d index of the open node the node is added to.
+	 * @param cfg production rule definition of the node.
+	 * @param idx index of the node in cfg.
+	 * @param tokIdx idx of token in token-list.
+	 * @param step the step to add, i.e. a non-terminal or terminal step.
+	 *
+	 */
+	private static void place(List<BioFuzzDerivation> out, Stack<Level> levels, int d,
+			BioFuzzAttackCfg cfg, int idx, int tokIdx, BioFuzzDerivation step) {
+		Level level = levels.get(d);
+		BioFuzzCfgRewrite rw = cfg.getRewrite();
+
+		if(rw != null && step != null) {
+			int n = rw.getFold(level.last, idx);
+			if(n >= 0) {
+				// all nodes so far are children of the eliminated node n
+				close(out, levels, d);
+				List<BioFuzzDerivation> children = new ArrayList<BioFuzzDerivation>(
+						out.subList(level.start, out.size()));
+				out.subList(level.start, out.size()).clear();
+				level.last = 0;
+				place(out, levels, d, cfg, n, children.isEmpty() ? tokIdx : children.get(0).tokIdx, null);
+				out.addAll(children);
+				out.add(new BioFuzzDerivation(StepType.UP, null, 0, 0, null, null, null));
+			}
+		}
+
+		if(rw != null && rw.isCopy(idx)) {
+			int site = rw.getSite(idx);
+			if(d + 1 >= levels.size() || levels.get(d + 1).site != site ||
+					!rw.isInternal(level.last, idx)) {
+				close(out, levels, d);
+				out.add(new BioFuzzDerivation(StepType.NON_TERMINAL, cfg, site, tokIdx, null, null, null));
+				levels.push(new Level(rw.getOriginCfg(idx), site, out.size()));
+			}
+			level.last = idx;
+			place(out, levels, d + 1, rw.getOriginCfg(idx), rw.getOriginIdx(idx), tokIdx,
+					step == null ? null : step);
+			return;
+		}
+
+		close(out, levels, d);
+		level.last = idx;
+
+		StepType type = (step == null) ? StepType.NON_TERMINAL : step.type;
+		if(step != null && step.cfg == cfg && step.descIdx == idx)
+			out.add(step);
+		else
+			out.add(new BioFuzzDerivation(type, cfg, idx, tokIdx, null, null, null));
+	}
+
+	/**
+	 *
+	 * Closes all groups above the open node with index d.
+	 *
+	 */
+	private static void close(List<BioFuzzDerivation> out, Stack<Level> levels, int d) {
+		while(levels.size() > d + 1) {
+			levels.pop();
+			out.add(new BioFuzzDerivation(StepType.UP, null, 0, 0, null, null, null));
+		}
+	}
+
+	/**
+	 *
+	 * Replays a sequence of steps and builds the corresponding parse-tree.
+	 *
+	 * @param path the steps in order.
+	 * @return the parse-tree.
+	 *
+	 */
+	private static BioFuzzParseTree build(List<BioFuzzDerivation> path) {
+		BioFuzzParseTree tree = null;
+		BioFuzzParseNode ptr = null;
+		int nodeCnt = 1;
+
+		for(BioFuzzDerivation step : path) {
+			switch(step.type) {
+				case ROOT: {
+					tree = new BioFuzzParseTree();
+					ptr = tree.getRootNode();
+					ptr.setCfg(step.cfg);
+					ptr.setAtagName(step.key);
+				}
+				break;
+				case NON_TERMINAL: {
+					BioFuzzParseNode nt = new BioFuzzParseNode(tree, step.cfg,
+							step.descIdx, step.tokIdx, nodeCnt++);
+					ptr.addChild(nt);
+					ptr = nt;
+				}
+				break;
+				case TERMINAL: {
+					BioFuzzParseNode term = new BioFuzzParseNode(tree, step.cfg,
+							step.descIdx, step.tokIdx, nodeCnt++);
+					ptr.addChild(term);
+				}
+				break;
+				case UP: {
+					if(ptr.hasParent())
+						ptr = ptr.getParent();
+				}
+				break;
+				default:
+					break;
+			}
+		}
+
+		assert(tree != null);
+		return tree;
+	}
+
+	@Override
+	public String toString() {
+		return "(" + this.type + " descIdx: " + this.descIdx + " tok_idx: " + this.tokIdx + ")";
+	}
+
+}
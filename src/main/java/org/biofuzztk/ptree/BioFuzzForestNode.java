@@ -0,0 +1,213 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.ptree;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfg;
+import org.biofuzztk.ptree.BioFuzzDerivation.StepType;
+
+/**
+ *
+ * A symbol node of a shared packed parse forest. It stands for all
+ * subtrees that derive the same symbol over the same token range. Each
+ * way to derive it is kept as a packed node, so a symbol node with more
+ * than one packed node marks an ambiguity. Symbol nodes are interned by
+ * BioFuzzParseForest, i.e. common subtrees are only stored once.
+ *
+ * @author julian
+ *
+ */
+public class BioFuzzForestNode {
+
+	/**
+	 *
+	 * A single way to derive a symbol node, i.e. its children in order.
+	 *
+	 * @author julian
+	 *
+	 */
+	public static class Packed {
+
+		private final List<BioFuzzForestNode> children;
+
+		Packed(List<BioFuzzForestNode> children) {
+			this.children = Collections.unmodifiableList(children);
+		}
+
+		public List<BioFuzzForestNode> getChildren() {
+			return this.children;
+		}
+
+		@Override
+		public String toString() {
+			return "(packed children: " + this.children.size() + ")";
+		}
+	}
+
+	private final StepType type;
+	private final BioFuzzAttackCfg cfg;
+	private final int descIdx;
+	private final int tokIdx;
+	private final int end;
+	private final boolean closed;
+	private final String key;
+	private final int hash;
+	private List<Packed> packed;
+
+	/**
+	 *
+	 * Constructor.
+	 *
+	 * @param type ROOT, NON_TERMINAL or TERMINAL.
+	 * @param cfg production rule definition where this node corresponds to.
+	 * @param descIdx idx of node in production rule definition.
+	 * @param tokIdx idx of the first token in token-list.
+	 * @param end idx of the token after the last token.
+	 * @param closed true if the end of the production rule was reached.
+	 * @param key name of the start symbol or null.
+	 *
+	 */
+	BioFuzzForestNode(StepType type, BioFuzzAttackCfg cfg, int descIdx,
+			int tokIdx, int end, boolean closed, String key) {
+		this.type = type;
+		this.cfg = cfg;
+		this.descIdx = descIdx;
+		this.tokIdx = tokIdx;
+		this.end = end;
+		this.closed = closed;
+		this.key = key;
+		this.packed = new Vector<Packed>();
+
+		int h = 31 * type.hashCode() + System.identityHashCode(cfg);
+		h = 31 * (31 * (31 * h + descIdx) + tokIdx) + end;
+		h = 31 * h + (closed ? 1 : 0);
+		this.hash = 31 * h + (key == null ? 0 : key.hashCode());
+	}
+
+	/**
+	 *
+	 * Adds a way to derive this node unless it is already known.
+	 *
+	 * @param children the children in order.
+	 * @return true if the packed node was added.
+	 *
+	 */
+	boolean addPacked(List<BioFuzzForestNode> children) {
+		for(Packed p : this.packed) {
+			if(p.getChildren().equals(children))
+				return false;
+		}
+		this.packed.add(new Packed(children));
+		return true;
+	}
+
+	public StepType getType() {
+		return this.type;
+	}
+
+	public BioFuzzAttackCfg getCfg() {
+		return this.cfg;
+	}
+
+	public int getDescIdx() {
+		return this.descIdx;
+	}
+
+	public int getTokIdx() {
+		return this.tokIdx;
+	}
+
+	/**
+	 *
+	 * Getter.
+	 *
+	 * @return the idx of the token after the last token of this node.
+	 *
+	 */
+	public int getEnd() {
+		return this.end;
+	}
+
+	public String getKey() {
+		return this.key;
+	}
+
+	/**
+	 *
+	 * Getter.
+	 *
+	 * @return true if the end of the production rule was reached.
+	 *
+	 */
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	/**
+	 *
+	 * Getter.
+	 *
+	 * @return all ways to derive this node.
+	 *
+	 */
+	public List<Packed> getPacked() {
+		return Collections.unmodifiableList(this.packed);
+	}
+
+	/**
+	 *
+	 * Getter.
+	 *
+	 * @return true if there is more than one way to derive this node.
+	 *
+	 */
+	public boolean isAmbiguous() {
+		return this.packed.size() > 1;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(this == o)
+			return true;
+		if(!(o instanceof BioFuzzForestNode))
+			return false;
+		BioFuzzForestNode n = (BioFuzzForestNode)o;
+		return this.type == n.type && this.cfg == n.cfg &&
+				this.descIdx == n.descIdx && this.tokIdx == n.tokIdx &&
+				this.end == n.end && this.closed == n.closed &&
+				(this.key == null ? n.key == null : this.key.equals(n.key));
+	}
+
+	@Override
+	public String toString() {
+		return "(" + this.type + " descIdx: " + this.descIdx + " span: " + 
+				this.tokIdx + "-" + this.end + " packed: " + this.packed.size() + ")";
+	}
+
+}
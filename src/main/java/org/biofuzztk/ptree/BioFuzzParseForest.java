@@ -0,0 +1,865 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.ptree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Stack;
+import java.util.Vector;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfg;
+import org.biofuzztk.cfg.BioFuzzCfgRewrite;
+import org.biofuzztk.ptree.BioFuzzDerivation.StepType;
+import org.biofuzztk.ptree.BioFuzzForestNode.Packed;
+
+/**
+ *
+ * A shared packed parse forest (SPPF) that represents all parse-trees
+ * of an input. Subtrees that derive the same symbol over the same token
+ * range are stored once and ambiguities are kept as packed nodes. The
+ * forest is built from the shared steps of the derivations without 
+ * enumerating their alternatives, and the parse-trees themselves are
+ * only built when they are iterated.
+ *
+ * @author julian
+ *
+ */
+public class BioFuzzParseForest implements Iterable<BioFuzzParseTree> {
+
+	/**
+	 *
+	 * The children of an open non-terminal in reverse order. Sequences
+	 * are interned, i.e. equal sequences are the same object.
+	 *
+	 */
+	private static class Seq {
+		private final BioFuzzForestNode node;
+		private final Seq rest;
+		private final int hash;
+
+		Seq(BioFuzzForestNode node, Seq rest) {
+			this.node = node;
+			this.rest = rest;
+			this.hash = 31 * System.identityHashCode(node) + System.identityHashCode(rest);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Seq))
+				return false;
+			Seq q = (Seq)o;
+			return this.node == q.node && this.rest == q.rest;
+		}
+	}
+
+	/**
+	 *
+	 * The open non-terminals after a sequence of steps, i.e. the top 
+	 * non-terminal whose children are still collected and the open 
+	 * non-terminals below. Frames are interned as well, so alternatives 
+	 * that lead to the same frames are only continued once.
+	 *
+	 */
+	private static class Frame {
+		private final BioFuzzAttackCfg cfg;
+		private final int descIdx;
+		private final int tokIdx;
+		private final String key;
+		private final int end;
+		private final Seq children;
+		private final Frame below;
+		private final int depth;
+		private final int hash;
+
+		Frame(BioFuzzAttackCfg cfg, int descIdx, int tokIdx, String key, int end,
+				Seq children, Frame below) {
+			this.cfg = cfg;
+			this.descIdx = descIdx;
+			this.tokIdx = tokIdx;
+			this.key = key;
+			this.end = end;
+			this.children = children;
+			this.below = below;
+			this.depth = (below == null) ? 0 : below.depth + 1;
+
+			int h = 31 * System.identityHashCode(cfg) + descIdx;
+			h = 31 * (31 * h + tokIdx) + end;
+			h = 31 * h + (key == null ? 0 : key.hashCode());
+			h = 31 * h + System.identityHashCode(children);
+			this.hash = 31 * h + System.identityHashCode(below);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Frame))
+				return false;
+			Frame f = (Frame)o;
+			return this.cfg == f.cfg && this.descIdx == f.descIdx &&
+					this.tokIdx == f.tokIdx && this.end == f.end &&
+					this.children == f.children && this.below == f.below &&
+					(this.key == null ? f.key == null : this.key.equals(f.key));
+		}
+	}
+
+	// the frames before the first step
+	private static final Frame EMPTY = new Frame(null, 0, 0, null, 0, null, null);
+
+	private Map<BioFuzzForestNode,BioFuzzForestNode> nodes;
+	private List<BioFuzzForestNode> roots;
+	private Map<BioFuzzForestNode,Long> counts;
+	private Map<Seq,Seq> seqs;
+	private Map<Frame,Frame> frames;
+	private Map<BioFuzzForestNode,BioFuzzForestNode> raw;
+	private BioFuzzTokLst tokLst;
+	private int cursor;
+	private int packedCnt;
+
+	public BioFuzzParseForest() {
+		this.nodes = new HashMap<BioFuzzForestNode,BioFuzzForestNode>();
+		this.roots = new Vector<BioFuzzForestNode>();
+		this.counts = new HashMap<BioFuzzForestNode,Long>();
+		this.seqs = new HashMap<Seq,Seq>();
+		this.frames = new HashMap<Frame,Frame>();
+		this.raw = null;
+		this.tokLst = null;
+		this.cursor = 0;
+		this.packedCnt = 0;
+	}
+
+	/**
+	 *
+	 * Adds all parse-trees of a derivation to the forest. The steps are
+	 * replayed the same way as a parse-tree is built. Each step that 
+	 * several steps or meta steps refer to is replayed once per distinct
+	 * frame, so the alternatives of a derivation are never enumerated.
+	 *
+	 * @param derivation a derivation that starts with a root step.
+	 * @param tokLst the token list to attach to the parse-trees or null.
+	 * @param cursor cursor position of the token list.
+	 *
+	 */
+	public void add(BioFuzzDerivation derivation, BioFuzzTokLst tokLst, int cursor) {
+		assert(derivation != null);
+
+		if(this.tokLst == null) {
+			this.tokLst = tokLst;
+			this.cursor = cursor;
+		}
+
+		Map<BioFuzzDerivation,Integer> refs = countRefs(derivation);
+		for(BioFuzzDerivation d : refs.keySet()) {
+			if(d.getCfg() != null && d.getCfg().getRewrite() != null) {
+				this.raw = new HashMap<BioFuzzForestNode,BioFuzzForestNode>();
+				break;
+			}
+		}
+
+		List<BioFuzzForestNode> roots = new ArrayList<BioFuzzForestNode>();
+		for(Frame f : replay(derivation, refs)) {
+			assert(f != EMPTY);
+			while(f.depth > 1) {
+				f = close(f, false);
+			}
+			roots.add(intern(new BioFuzzForestNode(StepType.ROOT, f.cfg,
+					0, 0, f.end, false, f.key), toList(f.children)));
+		}
+		if(this.raw != null)
+			roots = translate(roots);
+
+		for(BioFuzzForestNode root : roots) {
+			if(!this.roots.contains(root))
+				this.roots.add(root);
+		}
+
+		this.counts.clear();
+		this.seqs.clear();
+		this.frames.clear();
+	}
+
+	/**
+	 *
+	 * Computes the frames after the last step of a derivation. The frames
+	 * after a shared step are computed once for every distinct frame the 
+	 * replay of the step starts with and are kept until the replay is done.
+	 *
+	 * @param derivation the last step.
+	 * @param refs the amount of references of each step.
+	 * @return the distinct frames after the last step.
+	 *
+	 */
+	private List<Frame> replay(BioFuzzDerivation derivation, Map<BioFuzzDerivation,Integer> refs) {
+		Map<BioFuzzDerivation,Map<Frame,List<Frame>>> done =
+				new IdentityHashMap<BioFuzzDerivation,Map<Frame,List<Frame>>>();
+
+		Stack<BioFuzzDerivation> todo = new Stack<BioFuzzDerivation>();
+		Stack<Frame> from = new Stack<Frame>();
+		todo.push(derivation);
+		from.push(EMPTY);
+
+		while(!todo.isEmpty()) {
+			BioFuzzDerivation last = todo.peek();
+			Frame start = from.peek();
+
+			if(lookup(done, last, start) != null) {
+				todo.pop();
+				from.pop();
+				continue;
+			}
+
+			// the plain steps after the last shared or meta step
+			List<BioFuzzDerivation> tail = new ArrayList<BioFuzzDerivation>();
+			BioFuzzDerivation head = last;
+			while(head != null && isPlain(head) && (head == last || refs.get(head) < 2)) {
+				tail.add(head);
+				head = head.getPrev();
+			}
+
+			// the frames after head, missing ones are computed first
+			List<Frame> heads = new ArrayList<Frame>();
+			boolean ready = true;
+			if(head == null || head.getType() == StepType.BASE) {
+				heads.add(start);
+			} else if(isPlain(head)) {
+				ready = need(done, head, start, heads, todo, from);
+			} else if(head.getType() == StepType.JOIN) {
+				for(BioFuzzDerivation alt : head.getAlts()) {
+					ready &= need(done, alt, start, heads, todo, from);
+				}
+			} else {
+				List<Frame> pfx = new ArrayList<Frame>();
+				if(need(done, head.getPrev(), start, pfx, todo, from)) {
+					for(Frame f : pfx) {
+						ready &= need(done, head.getAlts()[0], f, heads, todo, from);
+					}
+				} else {
+					ready = false;
+				}
+			}
+			if(!ready)
+				continue;
+
+			Set<Frame> out = new LinkedHashSet<Frame>();
+			for(Frame f : heads) {
+				for(int i = tail.size() - 1; i >= 0; i--) {
+					f = step(f, tail.get(i));
+				}
+				out.add(f);
+			}
+
+			Map<Frame,List<Frame>> byStart = done.get(last);
+			if(byStart == null) {
+				byStart = new HashMap<Frame,List<Frame>>();
+				done.put(last, byStart);
+			}
+			byStart.put(start, new ArrayList<Frame>(out));
+			todo.pop();
+			from.pop();
+		}
+
+		return lookup(done, derivation, EMPTY);
+	}
+
+	/**
+	 *
+	 * Appends the frames after a step to heads or schedules the replay of
+	 * the step if they are not known yet.
+	 *
+	 * @return false if the replay of the step was scheduled.
+	 *
+	 */
+	private static boolean need(Map<BioFuzzDerivation,Map<Frame,List<Frame>>> done,
+			BioFuzzDerivation d, Frame start, List<Frame> heads,
+			Stack<BioFuzzDerivation> todo, Stack<Frame> from) {
+		List<Frame> known = lookup(done, d, start);
+		if(known == null) {
+			todo.push(d);
+			from.push(start);
+			return false;
+		}
+		heads.addAll(known);
+		return true;
+	}
+
+	private static List<Frame> lookup(Map<BioFuzzDerivation,Map<Frame,List<Frame>>> done,
+			BioFuzzDerivation d, Frame start) {
+		Map<Frame,List<Frame>> byStart = done.get(d);
+		return byStart == null ? null : byStart.get(start);
+	}
+
+	private static boolean isPlain(BioFuzzDerivation d) {
+		return d.getType() != StepType.JOIN && d.getType() != StepType.GRAFT &&
+				d.getType() != StepType.BASE;
+	}
+
+	/**
+	 *
+	 * Counts how many steps and meta steps refer to each step.
+	 *
+	 * @param derivation the last step.
+	 * @return the amount of references of each step.
+	 *
+	 */
+	private static Map<BioFuzzDerivation,Integer> countRefs(BioFuzzDerivation derivation) {
+		Map<BioFuzzDerivation,Integer> refs = new IdentityHashMap<BioFuzzDerivation,Integer>();
+		Stack<BioFuzzDerivation> todo = new Stack<BioFuzzDerivation>();
+		refs.put(derivation, 1);
+		todo.push(derivation);
+
+		while(!todo.isEmpty()) {
+			BioFuzzDerivation d = todo.pop();
+			List<BioFuzzDerivation> next = new ArrayList<BioFuzzDerivation>();
+			if(d.getType() == StepType.JOIN) {
+				next.addAll(Arrays.asList(d.getAlts()));
+			} else if(d.getType() == StepType.GRAFT) {
+				next.add(d.getPrev());
+				next.add(d.getAlts()[0]);
+			} else if(d.getPrev() != null) {
+				next.add(d.getPrev());
+			}
+
+			for(BioFuzzDerivation n : next) {
+				Integer cnt = refs.get(n);
+				refs.put(n, cnt == null ? 1 : cnt + 1);
+				if(cnt == null)
+					todo.push(n);
+			}
+		}
+		return refs;
+	}
+
+	/**
+	 *
+	 * Replays a single step.
+	 *
+	 * @param f the frames before the step.
+	 * @param step a plain step.
+	 * @return the frames after the step.
+	 *
+	 */
+	private Frame step(Frame f, BioFuzzDerivation step) {
+		switch(step.getType()) {
+			case ROOT:
+			case NON_TERMINAL:
+				return frame(step.getCfg(), step.getDescIdx(), step.getTokIdx(), step.getKey(),
+						step.getTokIdx(), null, f);
+			case TERMINAL: {
+				assert(f != EMPTY);
+				BioFuzzForestNode term = intern(new BioFuzzForestNode(StepType.TERMINAL,
+						step.getCfg(), step.getDescIdx(), step.getTokIdx(),
+						step.getTokIdx() + 1, true, null), new ArrayList<BioFuzzForestNode>());
+				return frame(f.cfg, f.descIdx, f.tokIdx, f.key, term.getEnd(), 
+						seq(term, f.children), f.below);
+			}
+			case UP:
+				return (f.depth > 1) ? close(f, true) : f;
+			default:
+				return f;
+		}
+	}
+
+	/**
+	 *
+	 * Closes the top non-terminal and adds its node to the frame below.
+	 *
+	 * @param f the open non-terminals.
+	 * @param closed true if the end of the production rule was reached.
+	 * @return the remaining open non-terminals.
+	 *
+	 */
+	private Frame close(Frame f, boolean closed) {
+		BioFuzzForestNode nt = intern(new BioFuzzForestNode(StepType.NON_TERMINAL,
+				f.cfg, f.descIdx, f.tokIdx, f.end, closed, null), toList(f.children));
+		Frame b = f.below;
+		return frame(b.cfg, b.descIdx, b.tokIdx, b.key, Math.max(b.end, nt.getEnd()),
+				seq(nt, b.children), b.below);
+	}
+
+	private Frame frame(BioFuzzAttackCfg cfg, int descIdx, int tokIdx, String key, int end,
+			Seq children, Frame below) {
+		Frame f = new Frame(cfg, descIdx, tokIdx, key, end, children, below);
+		Frame known = this.frames.get(f);
+		if(known != null)
+			return known;
+		this.frames.put(f, f);
+		return f;
+	}
+
+	private Seq seq(BioFuzzForestNode node, Seq rest) {
+		Seq q = new Seq(node, rest);
+		Seq known = this.seqs.get(q);
+		if(known != null)
+			return known;
+		this.seqs.put(q, q);
+		return q;
+	}
+
+	private static List<BioFuzzForestNode> toList(Seq q) {
+		List<BioFuzzForestNode> children = new ArrayList<BioFuzzForestNode>();
+		for(; q != null; q = q.rest) {
+			children.add(q.node);
+		}
+		Collections.reverse(children);
+		return children;
+	}
+
+	/**
+	 *
+	 * An open node while the children of a node are translated back to 
+	 * the original production rules. A group is a non-terminal that has 
+	 * been inlined by the grammar normalizer.
+	 *
+	 */
+	private static class Level {
+		private final BioFuzzAttackCfg cfg;
+		private final int site;
+		private final int tokIdx;
+		private final List<BioFuzzForestNode> children;
+		private int last;
+
+		Level(BioFuzzAttackCfg cfg, int site, int tokIdx) {
+			this.cfg = cfg;
+			this.site = site;
+			this.tokIdx = tokIdx;
+			this.children = new ArrayList<BioFuzzForestNode>();
+			this.last = 0;
+		}
+	}
+
+	/**
+	 *
+	 * Translates nodes of production rules that have been rewritten by 
+	 * the grammar normalizer back to the original production rules, the
+	 * same way as BioFuzzDerivation does it for a single parse-tree. The 
+	 * children of each node are translated once.
+	 *
+	 * @param roots the root nodes with rewritten production rules.
+	 * @return the translated root nodes.
+	 *
+	 */
+	private List<BioFuzzForestNode> translate(List<BioFuzzForestNode> roots) {
+		Map<BioFuzzForestNode,List<List<BioFuzzForestNode>>> done =
+				new IdentityHashMap<BioFuzzForestNode,List<List<BioFuzzForestNode>>>();
+		Map<BioFuzzForestNode,BioFuzzForestNode> raw = this.raw;
+		this.raw = null;
+
+		Stack<BioFuzzForestNode> todo = new Stack<BioFuzzForestNode>();
+		for(BioFuzzForestNode root : roots) {
+			todo.push(root);
+		}
+
+		while(!todo.isEmpty()) {
+			BioFuzzForestNode node = todo.peek();
+			if(done.containsKey(node)) {
+				todo.pop();
+				continue;
+			}
+
+			boolean ready = true;
+			for(Packed p : node.getPacked()) {
+				for(BioFuzzForestNode child : p.getChildren()) {
+					if(child.getType() == StepType.NON_TERMINAL && !done.containsKey(child)) {
+						todo.push(child);
+						ready = false;
+					}
+				}
+			}
+			if(!ready)
+				continue;
+
+			List<List<BioFuzzForestNode>> packs = new ArrayList<List<BioFuzzForestNode>>();
+			for(Packed p : node.getPacked()) {
+				packs.add(translate(p.getChildren(), node.isClosed(), done));
+			}
+			done.put(node, packs);
+			todo.pop();
+		}
+
+		List<BioFuzzForestNode> translated = new ArrayList<BioFuzzForestNode>();
+		for(BioFuzzForestNode root : roots) {
+			BioFuzzForestNode t = new BioFuzzForestNode(StepType.ROOT, root.getCfg(),
+					0, 0, root.getEnd(), false, root.getKey());
+			for(List<BioFuzzForestNode> children : done.get(root)) {
+				t = intern(t, children);
+			}
+			translated.add(t);
+		}
+		raw.clear();
+		return translated;
+	}
+
+	/**
+	 *
+	 * Translates the children of a node.
+	 *
+	 * @param children the children with rewritten production rules.
+	 * @param closed true if the end of the production rule was reached.
+	 * @param done the translated children of the non-terminals.
+	 * @return the translated children.
+	 *
+	 */
+	private List<BioFuzzForestNode> translate(List<BioFuzzForestNode> children, boolean closed,
+			Map<BioFuzzForestNode,List<List<BioFuzzForestNode>>> done) {
+		Stack<Level> levels = new Stack<Level>();
+		levels.push(new Level(null, -1, 0));
+
+		for(BioFuzzForestNode child : children) {
+			place(levels, 0, child.getCfg(), child.getDescIdx(), child.getTokIdx(), child, null, done);
+		}
+		close(levels, 0, closed);
+		return levels.peek().children;
+	}
+
+	/**
+	 *
+	 * Adds a node of a possibly rewritten production rule to an open node.
+	 *
+	 * @param levels the open nodes.
+	 * @param d index of the open node the node is added to.
+	 * @param cfg production rule definition of the node.
+	 * @param idx index of the node in cfg.
+	 * @param tokIdx idx of token in token-list.
+	 * @param child the node to add or null for a node that is re-inserted.
+	 * @param folded the children of a re-inserted node.
+	 * @param done the translated children of the non-terminals.
+	 *
+	 */
+	private void place(Stack<Level> levels, int d, BioFuzzAttackCfg cfg, int idx, int tokIdx,
+			BioFuzzForestNode child, List<BioFuzzForestNode> folded,
+			Map<BioFuzzForestNode,List<List<BioFuzzForestNode>>> done) {
+		Level level = levels.get(d);
+		BioFuzzCfgRewrite rw = cfg.getRewrite();
+
+		if(rw != null && child != null) {
+			int n = rw.getFold(level.last, idx);
+			if(n >= 0) {
+				// all nodes so far are children of the eliminated node n
+				close(levels, d, true);
+				List<BioFuzzForestNode> moved = new ArrayList<BioFuzzForestNode>(level.children);
+				level.children.clear();
+				level.last = 0;
+				place(levels, d, cfg, n, moved.isEmpty() ? tokIdx : moved.get(0).getTokIdx(), 
+						null, moved, done);
+			}
+		}
+
+		if(rw != null && rw.isCopy(idx)) {
+			int site = rw.getSite(idx);
+			if(d + 1 >= levels.size() || levels.get(d + 1).site != site ||
+					!rw.isInternal(level.last, idx)) {
+				close(levels, d, true);
+				levels.push(new Level(cfg, site, tokIdx));
+			}
+			level.last = idx;
+			place(levels, d + 1, rw.getOriginCfg(idx), rw.getOriginIdx(idx), tokIdx, child, folded, done);
+			return;
+		}
+
+		close(levels, d, true);
+		level.last = idx;
+
+		BioFuzzForestNode node;
+		if(child == null) {
+			node = intern(new BioFuzzForestNode(StepType.NON_TERMINAL, cfg, idx, tokIdx,
+					getEnd(tokIdx, folded), true, null), folded);
+		} else if(child.getType() == StepType.TERMINAL) {
+			node = intern(new BioFuzzForestNode(StepType.TERMINAL, cfg, idx, child.getTokIdx(),
+					child.getEnd(), true, null), new ArrayList<BioFuzzForestNode>());
+		} else {
+			node = new BioFuzzForestNode(StepType.NON_TERMINAL, cfg, idx, child.getTokIdx(),
+					child.getEnd(), child.isClosed(), null);
+			for(List<BioFuzzForestNode> pack : done.get(child)) {
+				node = intern(node, pack);
+			}
+		}
+		level.children.add(node);
+	}
+
+	/**
+	 *
+	 * Closes all groups above the open node with index d.
+	 *
+	 */
+	private void close(Stack<Level> levels, int d, boolean closed) {
+		while(levels.size() > d + 1) {
+			Level g = levels.pop();
+			levels.peek().children.add(intern(new BioFuzzForestNode(StepType.NON_TERMINAL, 
+					g.cfg, g.site, g.tokIdx, getEnd(g.tokIdx, g.children), closed, null), g.children));
+		}
+	}
+
+	/**
+	 *
+	 * Computes the end of a node the same way as it is done when the 
+	 * steps are replayed.
+	 *
+	 */
+	private static int getEnd(int tokIdx, List<BioFuzzForestNode> children) {
+		int end = tokIdx;
+		for(BioFuzzForestNode child : children) {
+			end = (child.getType() == StepType.TERMINAL) ? child.getEnd() : Math.max(end, child.getEnd());
+		}
+		return end;
+	}
+
+	/**
+	 *
+	 * Returns the known node that is equal to node and adds the packed
+	 * node that consists of children. Nodes of rewritten production rules
+	 * are kept aside until they are translated.
+	 *
+	 * @param node a symbol node.
+	 * @param children the children of the symbol node.
+	 * @return the interned symbol node.
+	 *
+	 */
+	private BioFuzzForestNode intern(BioFuzzForestNode node, List<BioFuzzForestNode> children) {
+		Map<BioFuzzForestNode,BioFuzzForestNode> table = (this.raw == null) ? this.nodes : this.raw;
+		BioFuzzForestNode known = table.get(node);
+
+		if(known == null) {
+			table.put(node, node);
+			known = node;
+		}
+
+		if(known.addPacked(children) && table == this.nodes)
+			this.packedCnt++;
+
+		return known;
+	}
+
+	/**
+	 *
+	 * Getter.
+	 *
+	 * @return the root nodes of the forest.
+	 *
+	 */
+	public List<BioFuzzForestNode> getRoots() {
+		return this.roots;
+	}
+
+	/**
+	 *
+	 * Getter.
+	 *
+	 * @return the amount of distinct symbol nodes.
+	 *
+	 */
+	public int getNodeCnt() {
+		return this.nodes.size();
+	}
+
+	/**
+	 *
+	 * Getter.
+	 *
+	 * @return the amount of packed nodes.
+	 *
+	 */
+	public int getPackedCnt() {
+		return this.packedCnt;
+	}
+
+	/**
+	 *
+	 * Getter.
+	 *
+	 * @return the amount of symbol nodes with more than one packed node.
+	 *
+	 */
+	public int getAmbiguityCnt() {
+		int cnt = 0;
+		for(BioFuzzForestNode node : this.nodes.keySet()) {
+			if(node.isAmbiguous())
+				cnt++;
+		}
+		return cnt;
+	}
+
+	/**
+	 *
+	 * Getter.
+	 *
+	 * @return the amount of parse-trees that are represented by the forest.
+	 *
+	 */
+	public long getTreeCnt() {
+		long cnt = 0;
+		for(BioFuzzForestNode root : this.roots) {
+			cnt += count(root);
+		}
+		return cnt;
+	}
+
+	private long count(BioFuzzForestNode node) {
+		Long cnt = this.counts.get(node);
+		if(cnt != null)
+			return cnt;
+
+		long sum = 0;
+		for(Packed p : node.getPacked()) {
+			sum += count(p);
+		}
+		this.counts.put(node, sum);
+		return sum;
+	}
+
+	private long count(Packed p) {
+		long prod = 1;
+		for(BioFuzzForestNode child : p.getChildren()) {
+			prod *= count(child);
+		}
+		return prod;
+	}
+
+	/**
+	 *
+	 * Builds a single parse-tree of the forest.
+	 *
+	 * @param idx the index of the parse-tree between 0 and getTreeCnt()-1.
+	 * @return the parse-tree.
+	 *
+	 */
+	public BioFuzzParseTree getTree(long idx) {
+		assert(idx >= 0);
+
+		for(BioFuzzForestNode root : this.roots) {
+			long cnt = count(root);
+			if(idx >= cnt) {
+				idx -= cnt;
+				continue;
+			}
+
+			BioFuzzParseTree tree = new BioFuzzParseTree();
+			BioFuzzParseNode ptr = tree.getRootNode();
+			ptr.setCfg(root.getCfg());
+			ptr.setAtagName(root.getKey());
+
+			build(tree, ptr, root, idx, new int [] {1});
+
+			if(this.tokLst != null) {
+				BioFuzzTokLst t = new BioFuzzTokLst(this.tokLst);
+				t.setCursor(this.cursor);
+				tree.setTokLst(t);
+			}
+			return tree;
+		}
+
+		throw new IndexOutOfBoundsException("no parse-tree with index " + idx);
+	}
+
+	/**
+	 *
+	 * Adds the children of the idx-th alternative of node to ptr. Nodes
+	 * are numbered in pre-order, i.e. in the same way as they are numbered
+	 * when a derivation is materialized.
+	 *
+	 * @param tree the parse-tree that is built.
+	 * @param ptr the parse-tree node that corresponds to node.
+	 * @param node a symbol node.
+	 * @param idx the index of the alternative.
+	 * @param nodeCnt the next node id.
+	 *
+	 */
+	private void build(BioFuzzParseTree tree, BioFuzzParseNode ptr,
+			BioFuzzForestNode node, long idx, int [] nodeCnt) {
+		Packed packed = null;
+
+		for(Packed p : node.getPacked()) {
+			long cnt = count(p);
+			if(idx < cnt) {
+				packed = p;
+				break;
+			}
+			idx -= cnt;
+		}
+		assert(packed != null);
+
+		for(BioFuzzForestNode child : packed.getChildren()) {
+			long cnt = count(child);
+			BioFuzzParseNode pn = new BioFuzzParseNode(tree, child.getCfg(),
+					child.getDescIdx(), child.getTokIdx(), nodeCnt[0]++);
+			ptr.addChild(pn);
+			build(tree, pn, child, idx % cnt, nodeCnt);
+			idx /= cnt;
+		}
+	}
+
+	/**
+	 *
+	 * Iterates over all parse-trees of the forest. Each parse-tree is
+	 * built when it is requested.
+	 *
+	 * @return an iterator over all parse-trees.
+	 *
+	 */
+	@Override
+	public Iterator<BioFuzzParseTree> iterator() {
+		final long size = getTreeCnt();
+
+		return new Iterator<BioFuzzParseTree>() {
+			private long idx = 0;
+
+			@Override
+			public boolean hasNext() {
+				return this.idx < size;
+			}
+
+			@Override
+			public BioFuzzParseTree next() {
+				if(!hasNext())
+					throw new NoSuchElementException();
+				return getTree(this.idx++);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return "(forest roots: " + this.roots.size() + " nodes: " + this.nodes.size() + 
+				" packed: " + this.packedCnt + " trees: " + getTreeCnt() + ")";
+	}
+
+}
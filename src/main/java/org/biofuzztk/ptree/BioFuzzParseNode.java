@@ -308,6 +308,59 @@ public class BioFuzzParseNode {
 		return s;
 	}
 	
+	/**
+	 * 
+	 * Returns the offset of the first char of the input that is covered
+	 * by this node.
+	 * 
+	 * @return the offset or BioFuzzTokStream.NO_OFFSET if the tokens of 
+	 * this node do not refer to the input.
+	 * 
+	 */
+	public int getStart() {
+		if (this.hasChildren()) {
+			int start = BioFuzzTokStream.NO_OFFSET;
+			for(BioFuzzParseNode child : this.children) {
+				int s = child.getStart();
+				if(s != BioFuzzTokStream.NO_OFFSET && (start == BioFuzzTokStream.NO_OFFSET || s < start))
+					start = s;
+			}
+			return start;
+		}
+		return getLeafOffset(true);
+	}
+	
+	/**
+	 * 
+	 * Returns the offset after the last char of the input that is covered
+	 * by this node.
+	 * 
+	 * @return the offset or BioFuzzTokStream.NO_OFFSET if the tokens of 
+	 * this node do not refer to the input.
+	 * 
+	 */
+	public int getEnd() {
+		if (this.hasChildren()) {
+			int end = BioFuzzTokStream.NO_OFFSET;
+			for(BioFuzzParseNode child : this.children) {
+				end = Math.max(end, child.getEnd());
+			}
+			return end;
+		}
+		return getLeafOffset(false);
+	}
+	
+	private int getLeafOffset(boolean start) {
+		assert(this.myTree != null);
+		BioFuzzTokLst tokLst = this.myTree.getTokLst();
+		TagType t = this.atag.getTagType();
+		// only terminals and regular expressions consume a token
+		if(tokLst == null || (t != TagType.TERMINAL && t != TagType.REGEXP) ||
+				this.tokIdx < 0 || this.tokIdx >= tokLst.getSize() - 1)
+			return BioFuzzTokStream.NO_OFFSET;
+		return start ? tokLst.getStart(this.tokIdx) : tokLst.getEnd(this.tokIdx);
+	}
+	
 	public BioFuzzParseTree getMyTree() {
 		return myTree;
 	}
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 import org.apache.commons.lang3.StringUtils;
@@ -245,7 +246,7 @@ public class BioFuzzParseTree {
 
 	public BioFuzzParseNode getNtByName(String name) {
 		List<BioFuzzParseNode> lst = getNtsByName(name);
-		Random rand = new Random();
+		Random rand = ThreadLocalRandom.current();
 
 		if (lst != null) {
 			BioFuzzParseNode rnode = lst.get(rand.nextInt(lst.size()));
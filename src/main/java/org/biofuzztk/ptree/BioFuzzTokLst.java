@@ -58,6 +58,24 @@ public class BioFuzzTokLst {
 		this.del = " ";
 	}
 	
+	/**
+	 * 
+	 * Constructor. The tokens keep their offsets into the input.
+	 * 
+	 * @param stream the tokens of an input.
+	 * 
+	 */
+	public BioFuzzTokLst(BioFuzzTokStream stream) {
+		this.cursor = 0;
+		this.tokLst = stream;
+		stream.removeBlank();
+		this.lfr = new Stack<Number>();
+		this.cstack = new Stack<Number>();
+		this.ack = new Stack<Number>();
+		this.checkpoints = new HashSet<Integer>();
+		this.del = " ";
+	}
+	
 	public BioFuzzTokLst() {
 		this.cursor = 0;
 		this.tokLst = new ArrayList<String>();
@@ -76,8 +94,12 @@ public class BioFuzzTokLst {
 		this.cstack = new Stack<Number>();
 		this.ack = new Stack<Number>();
 		
-		this.tokLst = new ArrayList<String>();
-		this.tokLst.addAll(t.tokLst);
+		if(t.tokLst instanceof BioFuzzTokStream) {
+			this.tokLst = new BioFuzzTokStream((BioFuzzTokStream)t.tokLst);
+		} else {
+			this.tokLst = new ArrayList<String>();
+			this.tokLst.addAll(t.tokLst);
+		}
 		
 		// leave the list of checkpoints as they are
 		this.checkpoints = new HashSet<Integer>();
@@ -259,6 +281,36 @@ public class BioFuzzTokLst {
 		return str;
 	}
 	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @param idx index of a token.
+	 * @return offset of the first char of the token in the input or 
+	 * BioFuzzTokStream.NO_OFFSET.
+	 * 
+	 */
+	public int getStart(int idx) {
+		if(this.tokLst instanceof BioFuzzTokStream)
+			return ((BioFuzzTokStream)this.tokLst).getStart(idx);
+		return BioFuzzTokStream.NO_OFFSET;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @param idx index of a token.
+	 * @return offset after the last char of the token in the input or 
+	 * BioFuzzTokStream.NO_OFFSET.
+	 * 
+	 */
+	public int getEnd(int idx) {
+		if(this.tokLst instanceof BioFuzzTokStream)
+			return ((BioFuzzTokStream)this.tokLst).getEnd(idx);
+		return BioFuzzTokStream.NO_OFFSET;
+	}
+	
 	public int getLength() {
 		return this.tokLst.size();
 	}
@@ -0,0 +1,352 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.ptree;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import org.biofuzztk.cfg.BioFuzzSymbolTable;
+
+/**
+ * 
+ * A list of tokens that refer to ranges of the original input. A token
+ * only stores its start and end offset (in chars) and its symbol, the
+ * string of a token is created on first access. Tokens that were 
+ * inserted or replaced later on do not belong to the input and have no
+ * offsets.
+ * 
+ * @author julian
+ *
+ */
+public class BioFuzzTokStream extends AbstractList<String> implements RandomAccess {
+	
+	/**
+	 * 
+	 * Offset of tokens that do not belong to the input.
+	 * 
+	 */
+	public static final int NO_OFFSET = -1;
+	
+	// the symbol of a token was not looked up yet
+	private static final int UNKNOWN = -1;
+	
+	private final CharSequence input;
+	private int [] starts;
+	private int [] ends;
+	private int [] syms;
+	private BioFuzzSymbolTable table;
+	private String [] toks;
+	private int size;
+	
+	/**
+	 * 
+	 * Constructor.
+	 * 
+	 * @param input the input the tokens refer to.
+	 * 
+	 */
+	public BioFuzzTokStream(CharSequence input) {
+		assert(input != null);
+		this.input = input;
+		this.starts = new int[16];
+		this.ends = new int[16];
+		this.syms = new int[16];
+		this.toks = new String[16];
+		this.table = null;
+		this.size = 0;
+	}
+	
+	/**
+	 * 
+	 * Copy constructor. The input and the strings that were already 
+	 * created are shared.
+	 * 
+	 * @param t a token stream.
+	 * 
+	 */
+	public BioFuzzTokStream(BioFuzzTokStream t) {
+		int cap = Math.max(16, t.size);
+		this.input = t.input;
+		this.starts = Arrays.copyOf(t.starts, cap);
+		this.ends = Arrays.copyOf(t.ends, cap);
+		this.syms = Arrays.copyOf(t.syms, cap);
+		this.table = t.table;
+		this.toks = Arrays.copyOf(t.toks, cap);
+		this.size = t.size;
+	}
+	
+	/**
+	 * 
+	 * Creates a token stream from tokens that were produced by a tokenizer
+	 * which does not report offsets. Each token is looked up in the input
+	 * right after the previous one, only whitespace may be in between. 
+	 * Tokens that cannot be found, e.g. because the tokenizer rewrote 
+	 * them, are kept without offsets. The last token is the end-of-input
+	 * marker and has no offsets either.
+	 * 
+	 * @param input the input that was tokenized.
+	 * @param tokLst the tokens of the input.
+	 * @return a token stream.
+	 * 
+	 */
+	public static BioFuzzTokStream locate(CharSequence input, String [] tokLst) {
+		BioFuzzTokStream t = new BioFuzzTokStream(input);
+		String s = input.toString();
+		int len = s.length();
+		int pos = 0;
+		
+		for(int i = 0; i < tokLst.length; i++) {
+			String tok = tokLst[i];
+			
+			int at = pos;
+			while(at < len && Character.isWhitespace(s.charAt(at)))
+				at++;
+			
+			if(i < tokLst.length - 1 && tok.length() > 0 && s.startsWith(tok, at)) {
+				t.addRange(at, at + tok.length());
+				t.toks[t.size - 1] = tok;
+				pos = at + tok.length();
+			} else {
+				t.add(tok);
+			}
+		}
+		return t;
+	}
+	
+	private void grow() {
+		if(this.size < this.starts.length)
+			return;
+		int cap = this.starts.length * 2;
+		this.starts = Arrays.copyOf(this.starts, cap);
+		this.ends = Arrays.copyOf(this.ends, cap);
+		this.syms = Arrays.copyOf(this.syms, cap);
+		this.toks = Arrays.copyOf(this.toks, cap);
+	}
+	
+	/**
+	 * 
+	 * Appends the token that spans the chars from start to end (exclusive)
+	 * of the input.
+	 * 
+	 * @param start offset of the first char.
+	 * @param end offset after the last char.
+	 * 
+	 */
+	public void addRange(int start, int end) {
+		assert(start >= 0 && start <= end && end <= this.input.length());
+		grow();
+		this.starts[this.size] = start;
+		this.ends[this.size] = end;
+		this.syms[this.size] = UNKNOWN;
+		this.toks[this.size] = null;
+		this.size++;
+		this.modCount++;
+	}
+	
+	/**
+	 * 
+	 * Appends a token that spans the chars from start to end (exclusive)
+	 * of the input but is spelled differently, e.g. because the tokenizer
+	 * normalized it.
+	 * 
+	 * @param start offset of the first char.
+	 * @param end offset after the last char.
+	 * @param tok the token.
+	 * 
+	 */
+	public void addRange(int start, int end, String tok) {
+		assert(tok != null);
+		addRange(start, end);
+		this.toks[this.size - 1] = tok;
+	}
+	
+	@Override
+	public void add(int idx, String tok) {
+		if(idx < 0 || idx > this.size)
+			throw new IndexOutOfBoundsException("index: " + idx + " size: " + this.size);
+		assert(tok != null);
+		grow();
+		int n = this.size - idx;
+		System.arraycopy(this.starts, idx, this.starts, idx + 1, n);
+		System.arraycopy(this.ends, idx, this.ends, idx + 1, n);
+		System.arraycopy(this.syms, idx, this.syms, idx + 1, n);
+		System.arraycopy(this.toks, idx, this.toks, idx + 1, n);
+		this.starts[idx] = NO_OFFSET;
+		this.ends[idx] = NO_OFFSET;
+		this.syms[idx] = UNKNOWN;
+		this.toks[idx] = tok;
+		this.size++;
+		this.modCount++;
+	}
+	
+	@Override
+	public String set(int idx, String tok) {
+		String old = get(idx);
+		assert(tok != null);
+		this.starts[idx] = NO_OFFSET;
+		this.ends[idx] = NO_OFFSET;
+		this.syms[idx] = UNKNOWN;
+		this.toks[idx] = tok;
+		return old;
+	}
+	
+	@Override
+	public String remove(int idx) {
+		String old = get(idx);
+		int n = this.size - idx - 1;
+		System.arraycopy(this.starts, idx + 1, this.starts, idx, n);
+		System.arraycopy(this.ends, idx + 1, this.ends, idx, n);
+		System.arraycopy(this.syms, idx + 1, this.syms, idx, n);
+		System.arraycopy(this.toks, idx + 1, this.toks, idx, n);
+		this.size--;
+		this.toks[this.size] = null;
+		this.modCount++;
+		return old;
+	}
+	
+	@Override
+	public String get(int idx) {
+		if(idx < 0 || idx >= this.size)
+			throw new IndexOutOfBoundsException("index: " + idx + " size: " + this.size);
+		
+		String tok = this.toks[idx];
+		if(tok == null) {
+			tok = this.input.subSequence(this.starts[idx], this.ends[idx]).toString();
+			this.toks[idx] = tok;
+		}
+		return tok;
+	}
+	
+	@Override
+	public int size() {
+		return this.size;
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @param idx index of a token.
+	 * @return offset of the first char of the token or NO_OFFSET.
+	 * 
+	 */
+	public int getStart(int idx) {
+		assert(idx >= 0 && idx < this.size);
+		return this.starts[idx];
+	}
+	
+	/**
+	 * 
+	 * Getter.
+	 * 
+	 * @param idx index of a token.
+	 * @return offset after the last char of the token or NO_OFFSET.
+	 * 
+	 */
+	public int getEnd(int idx) {
+		assert(idx >= 0 && idx < this.size);
+		return this.ends[idx];
+	}
+	
+	/**
+	 * 
+	 * Removes all tokens that are empty or only consist of whitespace. 
+	 * Tokens that refer to the input are checked in place, i.e. no 
+	 * strings are created for them.
+	 * 
+	 */
+	public void removeBlank() {
+		int kept = 0;
+		for(int i = 0; i < this.size; i++) {
+			if(isBlank(i))
+				continue;
+			this.starts[kept] = this.starts[i];
+			this.ends[kept] = this.ends[i];
+			this.syms[kept] = this.syms[i];
+			this.toks[kept] = this.toks[i];
+			kept++;
+		}
+		if(kept < this.size) {
+			Arrays.fill(this.toks, kept, this.size, null);
+			this.size = kept;
+			this.modCount++;
+		}
+	}
+	
+	private boolean isBlank(int idx) {
+		if(this.toks[idx] != null)
+			return this.toks[idx].trim().length() == 0;
+		// same notion of whitespace as String.trim()
+		for(int i = this.starts[idx]; i < this.ends[idx]; i++) {
+			if(this.input.charAt(i) > ' ')
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * 
+	 * Returns the symbol of a token, see BioFuzzSymbolTable.
+	 * 
+	 * @param table the symbol table of a grammar.
+	 * @param idx index of a token.
+	 * @return the symbol of the token or BioFuzzSymbolTable.NONE.
+	 * 
+	 */
+	public int getSymbol(BioFuzzSymbolTable table, int idx) {
+		assert(idx >= 0 && idx < this.size);
+		if(this.table != table) {
+			// symbols of another grammar
+			Arrays.fill(this.syms, 0, this.size, UNKNOWN);
+			this.table = table;
+		}
+		if(this.syms[idx] == UNKNOWN) {
+			// tokens that were not materialized are looked up in the input
+			if(this.toks[idx] == null)
+				this.syms[idx] = table.lookup(this.input, this.starts[idx], this.ends[idx]);
+			else
+				this.syms[idx] = table.lookup(this.toks[idx]);
+		}
+		return this.syms[idx];
+	}
+	
+	/**
+	 * 
+	 * Classifies all tokens, see BioFuzzSymbolTable.classify().
+	 * 
+	 * @param table the symbol table of a grammar.
+	 * @return an array that contains the symbol of each token.
+	 * 
+	 */
+	public int [] getSymbols(BioFuzzSymbolTable table) {
+		int [] ret = new int[this.size];
+		for(int i = 0; i < this.size; i++) {
+			ret[i] = getSymbol(table, i);
+		}
+		return ret;
+	}
+	
+	public CharSequence getInput() {
+		return this.input;
+	}
+
+}
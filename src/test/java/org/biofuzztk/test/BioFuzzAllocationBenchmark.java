@@ -0,0 +1,106 @@
+/**
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import java.lang.management.ManagementFactory;
+
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.components.parser.BioFuzzParseStats;
+import org.biofuzztk.components.parser.BioFuzzParser;
+import org.biofuzztk.components.parser.BioFuzzParserConfig;
+import org.biofuzztk.components.parser.BioFuzzParserMetrics;
+import org.biofuzztk.components.tokenizer.BioFuzzSQLTokenizer;
+
+/**
+ *
+ * Manual benchmark that prints the bytes that are allocated by the
+ * current thread per parsing run, with and without the graph-structured
+ * stack and with concurrent stepping. It is not run by the test suite,
+ * start it with
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.biofuzztk.test.BioFuzzAllocationBenchmark
+ *
+ * Only HotSpot compatible JVMs report allocated bytes. The bytes that
+ * are allocated by worker threads are not included.
+ *
+ * @author julian
+ *
+ */
+public class BioFuzzAllocationBenchmark {
+
+	private static final int WARMUP = 200;
+	private static final int RUNS = 1000;
+
+	private static long allocated() {
+		return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static void measure(String name, BioFuzzMgr mgr) {
+		BioFuzzParser parser = mgr.getParser();
+
+		for(int i = 0; i < WARMUP; i++) {
+			for(String s : BioFuzzTestUtils.sqlQueries) {
+				parser.buildTrees(s);
+			}
+		}
+
+		long reused = 0;
+		long forks = 0;
+		long bytes = allocated();
+		long start = System.nanoTime();
+		for(int i = 0; i < RUNS; i++) {
+			for(String s : BioFuzzTestUtils.sqlQueries) {
+				parser.buildTrees(s);
+				BioFuzzParseStats stats = parser.getLastStats();
+				reused += stats.getReuseCnt();
+				forks += stats.getForkCnt();
+			}
+		}
+		long nanos = System.nanoTime() - start;
+		bytes = allocated() - bytes;
+
+		int parses = RUNS * BioFuzzTestUtils.sqlQueries.length;
+		System.out.println(name + ": " + bytes / parses + " bytes/parse, " +
+				nanos / parses / 1000 + " us/parse, " + forks / parses + " forks/parse, " +
+				reused / parses + " reused/parse");
+	}
+
+	private static BioFuzzMgr createMgr(boolean gss, int parallelThreshold) {
+		BioFuzzMgr mgr = new BioFuzzMgr("src/main/resources/cfg.xml", new BioFuzzSQLTokenizer());
+		BioFuzzParserConfig config = mgr.getParserConfig();
+		config.setGss(gss);
+		config.setParallelThreshold(parallelThreshold);
+		config.setMetrics(new BioFuzzParserMetrics());
+		return mgr;
+	}
+
+	public static void main(String [] args) {
+		measure("arrays", createMgr(false, 0));
+		measure("gss", createMgr(true, 0));
+
+		BioFuzzMgr mgr = createMgr(false, 2);
+		measure("arrays, concurrent", mgr);
+		mgr.shutdown();
+	}
+
+}
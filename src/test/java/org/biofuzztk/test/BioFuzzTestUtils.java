@@ -0,0 +1,123 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.components.tokenizer.BioFuzzSQLTokenizer;
+import org.biofuzztk.components.tokenizer.BioFuzzTokenizer;
+import org.biofuzztk.ptree.BioFuzzParseTree;
+
+/**
+ * 
+ * Inputs and helpers that are shared by the tests of the parser 
+ * components.
+ * 
+ * @author julian
+ *
+ */
+final class BioFuzzTestUtils {
+
+	static final String [] sqlQueries = {
+		"SELECT * from tab_user",
+		"SELECT * from tab WHERE 1 = 1",
+		"SELECT nick FROM players,games WHERE playerID=blackPlayer AND gameID=204398",
+		"INSERT INTO tab_test VALUES('a',4)",
+		"DELETE FROM posts WHERE id = 1",
+		"UPDATE schoolinfo SET"
+	};
+
+	static final String [] mathExprs = {
+		"1+4*(5+2)/10-4",
+		"1+4*(5+2)/10-4+",
+		"5-2/(1+3)-4"
+	};
+
+	private BioFuzzTestUtils() {
+	}
+
+	/**
+	 * 
+	 * Creates a manager for the SQL grammar.
+	 * 
+	 */
+	static BioFuzzMgr createSqlMgr() {
+		return new BioFuzzMgr("src/main/resources/cfg.xml", new BioFuzzSQLTokenizer());
+	}
+
+	/**
+	 * 
+	 * Creates a tokenizer for arithmetic expressions.
+	 * 
+	 */
+	static BioFuzzTokenizer createMathTokenizer() {
+		return new BioFuzzTokenizer() {
+
+			@Override
+			public String[] tokenize(String s) {
+				List<String> matches = new ArrayList<String>();
+				Pattern pattern = Pattern.compile("((\\d*\\.\\d+)|(\\d+)|([\\+\\-\\*/\\(\\)]))");
+				Matcher m = pattern.matcher(s);
+
+				while (m.find()) {
+				   matches.add(m.group());
+				}
+
+				String [] ret = matches.toArray(new String[matches.size()+1]);
+				ret[ret.length-1] = "$";
+				return ret;
+			}
+
+		};
+	}
+
+	/**
+	 * 
+	 * Creates a manager for the grammar of arithmetic expressions.
+	 * 
+	 */
+	static BioFuzzMgr createMathMgr() {
+		return new BioFuzzMgr("src/main/resources/math.xml", createMathTokenizer());
+	}
+
+	/**
+	 * 
+	 * Returns a sorted list of the string representation of all trees
+	 * so that results of different parser modes can be compared.
+	 * 
+	 */
+	static List<String> render(List<BioFuzzParseTree> tLst) {
+		List<String> res = new ArrayList<String>();
+		if(tLst == null)
+			return res;
+		for(BioFuzzParseTree t : tLst) {
+			res.add(t.toString());
+		}
+		Collections.sort(res);
+		return res;
+	}
+
+}
@@ -0,0 +1,92 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.biofuzztk.test.BioFuzzTestUtils.render;
+import static org.biofuzztk.test.BioFuzzTestUtils.sqlQueries;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.components.parser.BioFuzzBatchParser;
+import org.biofuzztk.components.parser.BioFuzzBatchResult;
+import org.biofuzztk.ptree.BioFuzzParseTree;
+
+public class TestBioFuzzBatch {
+
+	private static BioFuzzMgr sqlMgr;
+	final static Logger logger = LoggerFactory.getLogger(TestBioFuzzBatch.class);
+
+	@BeforeClass
+	public static void testParser() {
+		sqlMgr = BioFuzzTestUtils.createSqlMgr();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		sqlMgr.shutdown();
+	}
+
+	@Test
+	public void testBatch() {
+		List<String> inputs = new ArrayList<String>();
+		List<String[]> toks = new ArrayList<String[]>();
+		for(int i = 0; i < 4; i++) {
+			for(String s : sqlQueries) {
+				inputs.add(s);
+				toks.add(sqlMgr.getParser().tokenize(s));
+			}
+		}
+
+		BioFuzzBatchResult res = sqlMgr.buildTreesBatch(inputs);
+		BioFuzzBatchResult tokRes = sqlMgr.buildTreesBatchFromTokens(toks);
+
+		// the tokenizer is not used concurrently while the stream is consumed
+		BioFuzzBatchParser.Stream stream = sqlMgr.buildTreesStream(inputs.iterator());
+		List<List<BioFuzzParseTree>> streamed = new ArrayList<List<BioFuzzParseTree>>();
+		while(stream.hasNext()) {
+			streamed.add(stream.next());
+		}
+
+		logger.debug("batch: " + res.getStats());
+		assertEquals(inputs.size(), res.getSize());
+		assertEquals(inputs.size(), streamed.size());
+		assertEquals(0, res.getStats().getErrorCnt());
+		assertEquals(inputs.size(), res.getStats().getParsedCnt() + res.getStats().getFailedCnt());
+
+		for(int i = 0; i < inputs.size(); i++) {
+			List<String> expected = render(sqlMgr.buildTrees(inputs.get(i)));
+			assertEquals(expected, render(res.getTrees(i)));
+			assertEquals(expected, render(tokRes.getTrees(i)));
+			assertEquals(expected, render(streamed.get(i)));
+		}
+		assertEquals(inputs.size(), stream.getStats().getInputCnt());
+	}
+
+}
@@ -0,0 +1,77 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.biofuzztk.test.BioFuzzTestUtils.render;
+import static org.biofuzztk.test.BioFuzzTestUtils.sqlQueries;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.components.BioFuzzMgr;
+
+public class TestBioFuzzBeam {
+
+	private static BioFuzzMgr sqlMgr;
+	final static Logger logger = LoggerFactory.getLogger(TestBioFuzzBeam.class);
+
+	@BeforeClass
+	public static void testParser() {
+		sqlMgr = BioFuzzTestUtils.createSqlMgr();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		sqlMgr.shutdown();
+	}
+
+	@Test
+	public void testBeam() {
+		long dropped = sqlMgr.getParser().getDroppedCnt();
+
+		for(String s : sqlQueries) {
+			long before = sqlMgr.getParser().getDroppedCnt();
+			List<String> full = render(sqlMgr.buildTrees(s));
+			sqlMgr.getParserConfig().setBeamWidth(100000);
+			List<String> wide = render(sqlMgr.buildTrees(s));
+			assertEquals(full, wide);
+			assertEquals(before, sqlMgr.getParser().getDroppedCnt());
+
+			sqlMgr.getParserConfig().setBeamWidth(1);
+			List<String> narrow = render(sqlMgr.buildTrees(s));
+			sqlMgr.getParserConfig().setBeamWidth(0);
+
+			// the beam only drops stacks, it does not create new trees
+			assertTrue(full.containsAll(narrow));
+			logger.debug("beam 1: " + narrow.size() + " of " + full.size() + " trees for " + s);
+		}
+
+		assertTrue(sqlMgr.getParser().getDroppedCnt() > dropped);
+	}
+
+}
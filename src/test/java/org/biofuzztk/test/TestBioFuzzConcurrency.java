@@ -0,0 +1,227 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.biofuzztk.test.BioFuzzTestUtils.render;
+import static org.biofuzztk.test.BioFuzzTestUtils.sqlQueries;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.ptree.BioFuzzParseTree;
+
+public class TestBioFuzzConcurrency {
+
+	private static BioFuzzMgr sqlMgr;
+	final static Logger logger = LoggerFactory.getLogger(TestBioFuzzConcurrency.class);
+
+	@BeforeClass
+	public static void testParser() {
+		sqlMgr = BioFuzzTestUtils.createSqlMgr();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		sqlMgr.shutdown();
+	}
+
+	@Test
+	public void testParallel() {
+		for(String s : sqlQueries) {
+			List<BioFuzzParseTree> seq = sqlMgr.buildTrees(s);
+			sqlMgr.getParserConfig().setParallelThreshold(1);
+			List<BioFuzzParseTree> par = sqlMgr.buildTrees(s);
+			sqlMgr.getParserConfig().setGss(true);
+			List<String> parGss = render(sqlMgr.buildTrees(s));
+			sqlMgr.getParserConfig().setGss(false);
+			sqlMgr.getParserConfig().setParallelThreshold(0);
+
+			// forks are merged in order, so even the order of the trees is the same
+			assertEquals(seq.size(), par.size());
+			for(int i = 0; i < seq.size(); i++) {
+				assertEquals(seq.get(i).toString(), par.get(i).toString());
+			}
+			assertEquals(render(seq), parGss);
+		}
+		// the parser owns the pool it created
+		sqlMgr.getParser().shutdown();
+		
+		// a pool of the configuration is shared and not stopped by the parser
+		ForkJoinPool pool = new ForkJoinPool(2);
+		sqlMgr.getParserConfig().setPool(pool);
+		sqlMgr.getParserConfig().setParallelThreshold(1);
+		for(String s : sqlQueries) {
+			List<String> par = render(sqlMgr.buildTrees(s));
+			sqlMgr.getParserConfig().setParallelThreshold(0);
+			assertEquals(render(sqlMgr.buildTrees(s)), par);
+			sqlMgr.getParserConfig().setParallelThreshold(1);
+		}
+		sqlMgr.getParser().shutdown();
+		assertFalse(pool.isShutdown());
+		sqlMgr.getParserConfig().setParallelThreshold(0);
+		sqlMgr.getParserConfig().setPool(null);
+		pool.shutdown();
+		
+		// memoized sub-parses share a single memo table
+		sqlMgr.getParserConfig().setMemo(true);
+		try {
+			sqlMgr.getParserConfig().setParallelThreshold(1);
+			fail();
+		} catch(IllegalStateException e) {
+			assertEquals(0, sqlMgr.getParserConfig().getParallelThreshold());
+		}
+		sqlMgr.getParserConfig().setMemo(false);
+		sqlMgr.getParserConfig().setParallelThreshold(1);
+		try {
+			sqlMgr.getParserConfig().setMemo(true);
+			fail();
+		} catch(IllegalStateException e) {
+			assertFalse(sqlMgr.getParserConfig().isMemo());
+		}
+		sqlMgr.getParserConfig().setParallelThreshold(0);
+	}
+
+	@Test
+	public void testSharedMgr() throws InterruptedException {
+		final List<List<String>> expected = new ArrayList<List<String>>();
+		for(String s : sqlQueries) {
+			expected.add(render(sqlMgr.buildTrees(s)));
+		}
+
+		final List<Throwable> errors = new Vector<Throwable>();
+		Thread [] threads = new Thread[4];
+
+		for(int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for(int k = 0; k < 3; k++) {
+							for(int i = 0; i < sqlQueries.length; i++) {
+								if(!render(sqlMgr.buildTrees(sqlQueries[i])).equals(expected.get(i)))
+									throw new AssertionError("different trees for " + sqlQueries[i]);
+							}
+
+							BioFuzzParseTree a = sqlMgr.buildTrees(sqlQueries[0]).get(0);
+							BioFuzzParseTree b = sqlMgr.buildTrees(sqlQueries[1]).get(0);
+							sqlMgr.validate(a);
+							sqlMgr.validate(b);
+							if(sqlMgr.crossover(a, b) == null)
+								throw new AssertionError("crossover failed");
+							sqlMgr.extend(a);
+						}
+					} catch (Throwable e) {
+						errors.add(e);
+					}
+				}
+			};
+			threads[t].start();
+		}
+
+		for(Thread t : threads) {
+			t.join();
+		}
+
+		for(Throwable e : errors) {
+			logger.debug("shared manager: " + e);
+		}
+		assertTrue(errors.isEmpty());
+	}
+
+	private static Set<String> forkJoinPools() {
+		Set<String> ids = new TreeSet<String>();
+		for(Thread t : Thread.getAllStackTraces().keySet()) {
+			String [] parts = t.getName().split("-");
+			if(t.isAlive() && parts.length == 4 && parts[0].equals("ForkJoinPool") && parts[2].equals("worker"))
+				ids.add(parts[1]);
+		}
+		return ids;
+	}
+
+	/**
+	 * 
+	 * The parsers of all threads share the pool of the manager, and 
+	 * shutdown() stops it.
+	 * 
+	 */
+	@Test
+	public void testSharedMgrPool() throws Exception {
+		final BioFuzzMgr mgr = BioFuzzTestUtils.createSqlMgr();
+		mgr.getParserConfig().setParallelThreshold(1);
+		mgr.getParserConfig().setParallelism(2);
+		
+		Set<String> before = forkJoinPools();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<List<String>>> results = new Vector<Future<List<String>>>();
+		for(int k = 0; k < 3; k++) {
+			for(final String s : sqlQueries) {
+				results.add(executor.submit(new Callable<List<String>>() {
+					@Override
+					public List<String> call() {
+						try {
+							return render(mgr.buildTrees(s));
+						} finally {
+							mgr.releaseParser();
+						}
+					}
+				}));
+			}
+		}
+		for(int i = 0; i < results.size(); i++) {
+			assertEquals(render(sqlMgr.buildTrees(sqlQueries[i % sqlQueries.length])), results.get(i).get());
+		}
+		executor.shutdown();
+		
+		Set<String> pools = forkJoinPools();
+		pools.removeAll(before);
+		assertEquals(1, pools.size());
+		
+		mgr.shutdown();
+		for(int i = 0; i < 100 && forkJoinPools().containsAll(pools); i++) {
+			Thread.sleep(20);
+		}
+		assertFalse(forkJoinPools().containsAll(pools));
+		
+		// parsers and pool are created again on demand
+		assertEquals(render(sqlMgr.buildTrees(sqlQueries[0])), render(mgr.buildTrees(sqlQueries[0])));
+		mgr.shutdown();
+	}
+
+}
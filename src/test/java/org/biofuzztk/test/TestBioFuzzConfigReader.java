@@ -0,0 +1,107 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfgMgr;
+import org.biofuzztk.cfg.BioFuzzConfigException;
+import org.biofuzztk.cfg.BioFuzzConfigReader;
+
+public class TestBioFuzzConfigReader {
+
+	final static Logger logger = LoggerFactory.getLogger(TestBioFuzzConfigReader.class);
+
+	static String [] grammars = {
+		"src/main/resources/cfg.xml",
+		"src/main/resources/math.xml",
+		"src/main/resources/leftrec.xml",
+		"src/main/resources/recursion.xml"
+	};
+
+	private static BioFuzzConfigException read(String xml) {
+		try {
+			BioFuzzConfigReader.streamConfig(new ByteArrayInputStream(xml.getBytes()), "test.xml");
+		} catch (BioFuzzConfigException e) {
+			logger.debug(e.getMessage());
+			return e;
+		}
+		return null;
+	}
+
+	@Test
+	public void testSameGrammar() throws BioFuzzConfigException {
+		for(String g : grammars) {
+			BioFuzzAttackCfgMgr dom = BioFuzzConfigReader.readConfigFile(g);
+			BioFuzzAttackCfgMgr stax = BioFuzzConfigReader.streamConfigFile(g);
+			
+			assertEquals(dom.getKeys(), stax.getKeys());
+			for(String key : dom.getKeys()) {
+				assertEquals(dom.getAttackCfgByKey(key).toString(), stax.getAttackCfgByKey(key).toString());
+				assertEquals(dom.getFirstSets().getTerminals(dom.getAttackCfgByKey(key)), 
+						stax.getFirstSets().getTerminals(stax.getAttackCfgByKey(key)));
+			}
+		}
+	}
+
+	@Test
+	public void testErrors() {
+		BioFuzzConfigException e = read("<attackcfg>\n  <rule>\n    <key label=\"S\" />\n    <val>\n      <start />\n      <const />\n");
+		assertNotNull(e);
+		assertEquals(6, e.getLine());
+		assertEquals("test.xml", e.getFile());
+		assertTrue(e.getMessage().contains("without label"));
+		
+		e = read("<attackcfg>\n  <rule>\n    <key label=\"S\">\n  </rule>\n</attackcfg>\n");
+		assertNotNull(e);
+		assertEquals(4, e.getLine());
+		assertTrue(e.getColumn() > 0);
+		
+		e = read("<attackcfg>\n  <rule>\n    <val />\n    <key label=\"S\" />\n  </rule>\n</attackcfg>\n");
+		assertNotNull(e);
+		assertEquals(3, e.getLine());
+		
+		e = read("<attackcfg>\n  <rule>\n    <key label=\"S\" />\n  </rule>\n</attackcfg>\n");
+		assertNotNull(e);
+		assertEquals(4, e.getLine());
+		assertTrue(e.getMessage().contains("without <val>"));
+		
+		try {
+			BioFuzzConfigReader.streamConfigFile("src/main/resources/missing.xml");
+			fail();
+		} catch (BioFuzzConfigException ex) {
+			assertEquals(-1, ex.getLine());
+		}
+		
+		assertNull(BioFuzzConfigReader.readConfigFile("src/main/resources/missing.xml"));
+	}
+
+}
@@ -0,0 +1,83 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfg;
+import org.biofuzztk.cfg.BioFuzzAttackCfgMgr;
+import org.biofuzztk.cfg.BioFuzzAttackTag;
+import org.biofuzztk.cfg.BioFuzzAttackTag.TagType;
+import org.biofuzztk.cfg.BioFuzzConfigReader;
+import org.biofuzztk.components.BioFuzzMgr;
+
+public class TestBioFuzzCsr {
+
+	private static void compareCsr(BioFuzzAttackCfg cfg, int n) {
+		for(int i = 0; i < n; i++) {
+			List<Number> choices = cfg.getChoicesByIdx(i);
+			assertEquals(choices == null ? 0 : choices.size(), cfg.getChoiceCnt(i));
+			for(int k = 0; k < cfg.getChoiceCnt(i); k++) {
+				assertEquals(choices.get(k).intValue(), cfg.getChoice(i, k));
+			}
+			
+			choices = cfg.getParseChoicesByIdx(i);
+			assertEquals(choices == null ? 0 : choices.size(), cfg.getParseChoiceCnt(i));
+			for(int k = 0; k < cfg.getParseChoiceCnt(i); k++) {
+				assertEquals(choices.get(k).intValue(), cfg.getParseChoice(i, k));
+			}
+		}
+	}
+
+	@Test
+	public void testCsr() {
+		BioFuzzAttackCfgMgr sql = BioFuzzTestUtils.createSqlMgr().getAtackCfgMgr();
+		BioFuzzAttackCfgMgr leftrec = BioFuzzConfigReader.readConfigFile("src/main/resources/leftrec.xml", true);
+		
+		for(BioFuzzAttackCfgMgr mgr : Arrays.asList(sql, leftrec)) {
+			for(String key : mgr.getKeys()) {
+				BioFuzzAttackCfg cfg = mgr.getAttackCfgByKey(key);
+				int n = cfg.getRewrite() == null ? cfg.getDescNrs() : cfg.getRewrite().getDescNrs();
+				compareCsr(cfg, n + 1);
+				assertEquals(0, cfg.getChoiceCnt(-1));
+				assertEquals(0, cfg.getParseChoiceCnt(n + 1));
+			}
+		}
+		
+		// the frozen CFG-graph follows modifications
+		BioFuzzMgr mgr = new BioFuzzMgr("src/main/resources/math.xml");
+		BioFuzzAttackCfg cfg = mgr.getAtackCfgMgr().getAttackCfgByKey("operator");
+		int stop = cfg.getDescNrs() - 1;
+		int cnt = cfg.getChoiceCnt(0);
+		cfg.appendAtag(new BioFuzzAttackTag(null, "%", TagType.TERMINAL));
+		assertEquals(cnt + 1, cfg.getChoiceCnt(0));
+		assertEquals(stop, cfg.getChoice(0, cnt));
+		assertEquals(1, cfg.getChoiceCnt(stop));
+		assertEquals(stop + 1, cfg.getChoice(stop, 0));
+		compareCsr(cfg, cfg.getDescNrs());
+	}
+
+}
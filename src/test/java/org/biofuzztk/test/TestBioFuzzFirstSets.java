@@ -0,0 +1,96 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.biofuzztk.test.BioFuzzTestUtils.render;
+import static org.biofuzztk.test.BioFuzzTestUtils.sqlQueries;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfg;
+import org.biofuzztk.cfg.BioFuzzAttackCfgMgr;
+import org.biofuzztk.cfg.BioFuzzAttackTag;
+import org.biofuzztk.cfg.BioFuzzAttackTag.TagType;
+import org.biofuzztk.cfg.BioFuzzConfigReader;
+import org.biofuzztk.cfg.BioFuzzFirstSets;
+import org.biofuzztk.components.BioFuzzMgr;
+
+public class TestBioFuzzFirstSets {
+
+	private static BioFuzzMgr sqlMgr;
+
+	@BeforeClass
+	public static void testParser() {
+		sqlMgr = BioFuzzTestUtils.createSqlMgr();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		sqlMgr.shutdown();
+	}
+
+	@Test
+	public void testFirstSets() {
+		BioFuzzAttackCfgMgr mgr = BioFuzzConfigReader.readConfigFile("src/main/resources/cfg.xml");
+		BioFuzzFirstSets first = mgr.getFirstSets();
+
+		BioFuzzAttackCfg sel = mgr.getAttackCfgByKey("sel_stmt");
+		BioFuzzAttackCfg stmt = mgr.getAttackCfgByKey("stmt");
+
+		assertFalse(first.isNullable(sel));
+		assertTrue(first.canStartWith(sel, "SELECT"));
+		assertFalse(first.canStartWith(sel, "DELETE"));
+
+		assertFalse(first.isNullable(stmt));
+		assertTrue(first.canStartWith(stmt, "select"));
+		assertTrue(first.canStartWith(stmt, "delete"));
+		assertTrue(first.canStartWith(stmt, "update"));
+		assertFalse(first.canStartWith(stmt, "from"));
+
+		// FIRST sets are recomputed after the grammar was modified
+		BioFuzzAttackCfg del = mgr.getAttackCfgByKey("del_stmt");
+		assertFalse(first.canStartWith(stmt, "truncate"));
+		del.appendAtag(new BioFuzzAttackTag(null, "truncate", TagType.TERMINAL, 0));
+		assertNotSame(first, mgr.getFirstSets());
+		assertTrue(mgr.getFirstSets().canStartWith(stmt, "truncate"));
+	}
+
+	@Test
+	public void testLookahead() {
+		for(String s : sqlQueries) {
+			List<String> pruned = render(sqlMgr.buildTrees(s));
+			sqlMgr.getParserConfig().setLookahead(false);
+			List<String> full = render(sqlMgr.buildTrees(s));
+			sqlMgr.getParserConfig().setLookahead(true);
+
+			assertEquals(full, pruned);
+		}
+	}
+
+}
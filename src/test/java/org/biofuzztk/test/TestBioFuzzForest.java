@@ -0,0 +1,121 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.biofuzztk.test.BioFuzzTestUtils.mathExprs;
+import static org.biofuzztk.test.BioFuzzTestUtils.render;
+import static org.biofuzztk.test.BioFuzzTestUtils.sqlQueries;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfg;
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.ptree.BioFuzzDerivation;
+import org.biofuzztk.ptree.BioFuzzParseForest;
+import org.biofuzztk.ptree.BioFuzzParseTree;
+
+public class TestBioFuzzForest {
+
+	private static BioFuzzMgr sqlMgr;
+	private static BioFuzzMgr mathMgr;
+	final static Logger logger = LoggerFactory.getLogger(TestBioFuzzForest.class);
+
+	@BeforeClass
+	public static void testParser() {
+		sqlMgr = BioFuzzTestUtils.createSqlMgr();
+		mathMgr = BioFuzzTestUtils.createMathMgr();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		sqlMgr.shutdown();
+		mathMgr.shutdown();
+	}
+
+	private static void compareForest(BioFuzzMgr mgr, String [] inputs) {
+		for(String s : inputs) {
+			List<String> trees = new ArrayList<String>(new TreeSet<String>(render(mgr.buildTrees(s))));
+			BioFuzzParseForest forest = mgr.buildForest(s);
+
+			List<BioFuzzParseTree> expanded = new ArrayList<BioFuzzParseTree>();
+			for(BioFuzzParseTree t : forest) {
+				expanded.add(t);
+			}
+
+			logger.debug(forest + " for " + s);
+			assertEquals(expanded.size(), forest.getTreeCnt());
+			assertEquals(trees, render(expanded));
+		}
+	}
+
+	@Test
+	public void testForest() {
+		compareForest(sqlMgr, sqlQueries);
+		compareForest(mathMgr, mathExprs);
+	}
+
+	@Test
+	public void testAmbiguous() {
+		// every non-terminal can be derived in two ways
+		BioFuzzAttackCfg cfg = new BioFuzzAttackCfg();
+		BioFuzzDerivation d = BioFuzzDerivation.root(cfg, "S");
+		for(int i = 0; i < 40; i++) {
+			BioFuzzDerivation nt = d.nonTerminal(cfg, 1, i);
+			d = BioFuzzDerivation.join(nt.terminal(cfg, 2, i).up(), nt.terminal(cfg, 3, i).up());
+		}
+		BioFuzzParseForest forest = new BioFuzzParseForest();
+		forest.add(d, null, 0);
+
+		assertEquals(1L << 40, forest.getTreeCnt());
+		assertEquals(40, forest.getAmbiguityCnt());
+		assertEquals(1 + 40 * 3, forest.getNodeCnt());
+		assertEquals(1 + 40 * 4, forest.getPackedCnt());
+
+		// the forest of the parser grows linearly with the statements
+		String stmt = "DELETE FROM posts WHERE id = 1";
+		int [] nodes = new int[2];
+		int [] packed = new int[2];
+		for(int k = 0; k < 2; k++) {
+			StringBuilder sb = new StringBuilder(stmt);
+			for(int i = 1; i < 8 * (k + 1); i++) {
+				sb.append(" ; ").append(stmt);
+			}
+			forest = sqlMgr.buildForest(sb.toString());
+			assertEquals(1L << (8 * (k + 1)), forest.getTreeCnt());
+			assertNotNull(forest.getTree(forest.getTreeCnt() - 1));
+			nodes[k] = forest.getNodeCnt();
+			packed[k] = forest.getPackedCnt();
+		}
+		assertEquals(2 * nodes[0], nodes[1]);
+		assertEquals(2 * packed[0], packed[1]);
+	}
+
+}
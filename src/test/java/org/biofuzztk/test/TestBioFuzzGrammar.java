@@ -0,0 +1,125 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfg;
+import org.biofuzztk.cfg.BioFuzzAttackCfgMgr;
+import org.biofuzztk.cfg.BioFuzzAttackTag;
+import org.biofuzztk.cfg.BioFuzzAttackTag.TagType;
+import org.biofuzztk.cfg.BioFuzzConfigReader;
+import org.biofuzztk.cfg.BioFuzzRexpMatcher;
+import org.biofuzztk.cfg.BioFuzzSymbolTable;
+
+public class TestBioFuzzGrammar {
+
+	private static BioFuzzAttackCfgMgr mgr;
+	final static Logger logger = LoggerFactory.getLogger(TestBioFuzzGrammar.class);
+
+	@BeforeClass
+	public static void testParser() {
+		mgr = BioFuzzConfigReader.readConfigFile("src/main/resources/cfg.xml");
+		assertNotNull(mgr);
+	}
+
+	@Test
+	public void testRexpMatcher() {
+		String [] rexps = {
+			"[\\-a-zA-Z0-9 ,\\.\\(\\)-_/]*",
+			"[0-9a-zA-Z_]{1,20}",
+			"[a-zA-Z_\\.\\*0-9]{1,50}",
+			"[0-9]{1,25}",
+			"(ab|c)+d?",
+			"\\d+",
+			"a.b",
+			"[a-z&&[^e]]+"
+		};
+		String [] toks = {
+			"", "a", "abc", "tab_user", "1", "204398", "a.b", "axb", "e", "ab c",
+			"(x)", "ababcd", "x/y", "*", "'", "-", "\\"
+		};
+
+		for(String rexp : rexps) {
+			BioFuzzRexpMatcher m = new BioFuzzRexpMatcher(rexp);
+			logger.debug(m.toString());
+			for(String tok : toks) {
+				assertEquals(tok.matches(rexp), m.matches(tok));
+			}
+		}
+
+		assertTrue(new BioFuzzRexpMatcher("[0-9a-zA-Z_]{1,20}").isAutomaton());
+		assertFalse(new BioFuzzRexpMatcher("\\d+").isAutomaton());
+		assertFalse(new BioFuzzRexpMatcher("[a-z&&[^e]]+").isAutomaton());
+	}
+
+	@Test
+	public void testSymbols() {
+		BioFuzzSymbolTable table = mgr.getSymbolTable();
+		int sel = table.lookup("SELECT");
+		assertTrue(sel != BioFuzzSymbolTable.NONE);
+		assertEquals(sel, table.lookup("select"));
+		assertEquals(sel, table.lookup("SeLeCt"));
+		assertEquals(sel, table.lookup("x SELECT y", 2, 8));
+		assertEquals(BioFuzzSymbolTable.NONE, table.lookup("no_terminal_of_the_grammar"));
+
+		BioFuzzAttackTag atag = new BioFuzzAttackTag(null, "Select", TagType.TERMINAL);
+		assertEquals(sel, atag.getSymbol(table));
+		atag.setTagType(TagType.REGEXP);
+		assertEquals(BioFuzzSymbolTable.NONE, atag.getSymbol(table));
+
+		// each grammar has its own symbols
+		BioFuzzAttackCfgMgr math = BioFuzzConfigReader.readConfigFile("src/main/resources/math.xml");
+		assertEquals(BioFuzzSymbolTable.NONE, math.getSymbolTable().lookup("SELECT"));
+		assertTrue(math.getSymbolTable().lookup("+") != BioFuzzSymbolTable.NONE);
+		assertEquals(BioFuzzSymbolTable.NONE, table.lookup("+"));
+		
+		// normalization does not depend on the default locale
+		Locale locale = Locale.getDefault();
+		try {
+			Locale.setDefault(new Locale("tr", "TR"));
+			assertEquals("insert", BioFuzzSymbolTable.normalize("INSERT"));
+			assertEquals(table.lookup("insert"), table.lookup("INSERT"));
+		} finally {
+			Locale.setDefault(locale);
+		}
+		
+		// terminals appended to a frozen grammar are interned right away
+		int size = math.getSymbolTable().getSize();
+		BioFuzzAttackCfg cfg = math.getAttackCfgByKey(math.getKeys().iterator().next());
+		cfg.appendAtag(new BioFuzzAttackTag(null, "\u00c4\u00d6", TagType.TERMINAL));
+		assertEquals(size + 1, math.getSymbolTable().getSize());
+		int sym = math.getSymbolTable().lookup("\u00e4\u00f6");
+		assertTrue(sym != BioFuzzSymbolTable.NONE);
+		assertEquals(sym, math.getSymbolTable().lookup("x \u00c4\u00d6", 2, 4));
+	}
+
+}
@@ -0,0 +1,104 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.biofuzztk.test.BioFuzzTestUtils.render;
+import static org.biofuzztk.test.BioFuzzTestUtils.sqlQueries;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfgMgr;
+import org.biofuzztk.cfg.BioFuzzConfigReader;
+import org.biofuzztk.cfg.BioFuzzGrammarSnapshot;
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.components.tokenizer.BioFuzzSQLTokenizer;
+
+public class TestBioFuzzGrammarSnapshot {
+
+	private static BioFuzzMgr sqlMgr;
+
+	@BeforeClass
+	public static void testParser() {
+		sqlMgr = BioFuzzTestUtils.createSqlMgr();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		sqlMgr.shutdown();
+	}
+
+	@Test
+	public void testGrammarSnapshot() throws Exception {
+		Path dir = Files.createTempDirectory("biofuzz");
+		String xml = dir.resolve("cfg.xml").toString();
+		String snap = dir.resolve("cfg.bin").toString();
+		Files.copy(Paths.get("src/main/resources/cfg.xml"), Paths.get(xml));
+		
+		try {
+			BioFuzzAttackCfgMgr read = BioFuzzConfigReader.readConfigFile(xml, snap);
+			assertTrue(Files.exists(Paths.get(snap)));
+			assertNotNull(read.getAttackCfgByKey("S").getAtagByIdx(0).getNode());
+			
+			BioFuzzAttackCfgMgr loaded = BioFuzzGrammarSnapshot.read(snap, BioFuzzGrammarSnapshot.digest(xml));
+			assertNotNull(loaded);
+			assertEquals(read.getKeys(), loaded.getKeys());
+			for(String key : read.getKeys()) {
+				assertEquals(read.getAttackCfgByKey(key).toString(), loaded.getAttackCfgByKey(key).toString());
+			}
+			
+			BioFuzzMgr mgr = new BioFuzzMgr(xml, snap, new BioFuzzSQLTokenizer());
+			assertNull(mgr.getAtackCfgMgr().getAttackCfgByKey("S").getAtagByIdx(0).getNode());
+			for(String q : sqlQueries) {
+				assertEquals(render(sqlMgr.buildTrees(q)), render(mgr.buildTrees(q)));
+			}
+			
+			// a modified configuration file invalidates the snapshot
+			Files.write(Paths.get(xml), "<!-- modified -->".getBytes("UTF-8"), StandardOpenOption.APPEND);
+			assertNull(BioFuzzGrammarSnapshot.read(snap, BioFuzzGrammarSnapshot.digest(xml)));
+			read = BioFuzzConfigReader.readConfigFile(xml, snap);
+			assertNotNull(read.getAttackCfgByKey("S").getAtagByIdx(0).getNode());
+			assertNotNull(BioFuzzGrammarSnapshot.read(snap, BioFuzzGrammarSnapshot.digest(xml)));
+			
+			// a corrupt snapshot is replaced
+			byte [] b = Files.readAllBytes(Paths.get(snap));
+			Files.write(Paths.get(snap), Arrays.copyOf(b, b.length / 2));
+			assertNotNull(BioFuzzConfigReader.readConfigFile(xml, snap));
+			assertEquals(b.length, Files.size(Paths.get(snap)));
+		} finally {
+			Files.deleteIfExists(Paths.get(snap));
+			Files.deleteIfExists(Paths.get(xml));
+			Files.deleteIfExists(dir);
+		}
+	}
+
+}
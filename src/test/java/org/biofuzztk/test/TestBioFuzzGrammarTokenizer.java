@@ -0,0 +1,75 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.biofuzztk.test.BioFuzzTestUtils.mathExprs;
+import static org.biofuzztk.test.BioFuzzTestUtils.render;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.components.tokenizer.BioFuzzGrammarTokenizer;
+import org.biofuzztk.ptree.BioFuzzTokStream;
+
+public class TestBioFuzzGrammarTokenizer {
+
+	private static BioFuzzMgr mathMgr;
+
+	@BeforeClass
+	public static void testParser() {
+		mathMgr = BioFuzzTestUtils.createMathMgr();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		mathMgr.shutdown();
+	}
+
+	@Test
+	public void testGrammarTokenizer() {
+		BioFuzzMgr mgr = new BioFuzzMgr("src/main/resources/math.xml", new BioFuzzGrammarTokenizer.Factory());
+		
+		for(String s : mathExprs) {
+			assertEquals(render(mathMgr.buildTrees(s)), render(mgr.buildTrees(s)));
+		}
+		assertEquals(render(mathMgr.buildTrees("1+4*(5+2)")), render(mgr.buildTrees("1 + 4 *(5+2)")));
+		
+		BioFuzzMgr sql = new BioFuzzMgr("src/main/resources/cfg.xml", 
+				new BioFuzzGrammarTokenizer.Factory(BioFuzzGrammarTokenizer.WHITESPACE, "'\"`"));
+		assertFalse(sql.buildTrees("select * from tab where 1 = 1").isEmpty());
+		assertFalse(sql.buildTrees("SELECT nick FROM players WHERE id = 'a b'").isEmpty());
+		
+		// whitespace inside a terminal matches any run of whitespace
+		String s = "SELECT a FROM t ORDER \t\n BY a";
+		BioFuzzTokStream t = sql.getParser().tokenizeStream(s);
+		assertEquals(Arrays.asList("SELECT", "a", "FROM", "t", "ORDER BY", "a", "$"), t);
+		assertEquals(16, t.getStart(4));
+		assertEquals(27, t.getEnd(4));
+		assertEquals(render(sql.buildTrees("SELECT a FROM t ORDER BY a")), render(sql.buildTrees(s)));
+	}
+
+}
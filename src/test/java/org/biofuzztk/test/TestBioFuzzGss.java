@@ -0,0 +1,229 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.biofuzztk.test.BioFuzzTestUtils.mathExprs;
+import static org.biofuzztk.test.BioFuzzTestUtils.render;
+import static org.biofuzztk.test.BioFuzzTestUtils.sqlQueries;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.cfg.BioFuzzAttackCfg;
+import org.biofuzztk.cfg.BioFuzzAttackTag.TagType;
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.components.parser.BioFuzzMergeMode;
+import org.biofuzztk.components.parser.BioFuzzParserConfig;
+import org.biofuzztk.components.parser.BioFuzzParsingStatus;
+import org.biofuzztk.components.parser.BioFuzzStackMgr;
+import org.biofuzztk.components.parser.BioFuzzTupleStack;
+import org.biofuzztk.ptree.BioFuzzDerivation;
+
+public class TestBioFuzzGss {
+
+	private static BioFuzzMgr sqlMgr;
+	private static BioFuzzMgr mathMgr;
+	final static Logger logger = LoggerFactory.getLogger(TestBioFuzzGss.class);
+
+	@BeforeClass
+	public static void testParser() {
+		sqlMgr = BioFuzzTestUtils.createSqlMgr();
+		mathMgr = BioFuzzTestUtils.createMathMgr();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		sqlMgr.shutdown();
+		mathMgr.shutdown();
+	}
+
+	private static void compareGss(BioFuzzMgr mgr, String [] inputs) {
+		for(String s : inputs) {
+			mgr.getParserConfig().setGss(false);
+			List<String> classic = render(mgr.buildTrees(s));
+			mgr.getParserConfig().setGss(true);
+			List<String> gss = render(mgr.buildTrees(s));
+			mgr.getParserConfig().setGss(false);
+
+			logger.debug("classic: " + classic.size() + " gss: " + gss.size() + " for " + s);
+			assertEquals(classic, gss);
+		}
+	}
+
+	@Test
+	public void testGss() {
+		compareGss(sqlMgr, sqlQueries);
+		compareGss(mathMgr, mathExprs);
+	}
+
+	@Test
+	public void testSharedDerivation() {
+		BioFuzzAttackCfg start = sqlMgr.getAtackCfgMgr().getAttackCfgByKey("S");
+		assertNotNull(start);
+
+		BioFuzzTupleStack a = new BioFuzzTupleStack("S", 0);
+		a.pushTuple(start, TagType.ROOT, 0);
+
+		BioFuzzTupleStack b = a.copy();
+		assertSame(a.getDerivation(), b.getDerivation());
+
+		b.pushTuple(start, TagType.TERMINAL, 1);
+		assertSame(a.getDerivation(), b.getDerivation().getPrev());
+
+		// the fork must not change the tree of the original stack
+		assertEquals(1, a.getParseTree().doGetNodeCnt());
+		assertEquals(2, b.getParseTree().doGetNodeCnt());
+	}
+
+	@Test
+	public void testAltCnt() {
+		BioFuzzAttackCfg start = sqlMgr.getAtackCfgMgr().getAttackCfgByKey("S");
+		assertNotNull(start);
+
+		// every join doubles the number of parse-trees, but shares its prefix
+		BioFuzzDerivation d = BioFuzzDerivation.root(start, "S");
+		for(int i = 0; i < 30; i++) {
+			d = BioFuzzDerivation.join(d.terminal(start, 1, i), d.terminal(start, 2, i));
+		}
+		assertEquals(1 << 30, d.getAltCnt());
+		assertEquals(1 << 30, d.up().getAltCnt());
+		assertEquals(31, d.materializeFirst(null, 0).doGetNodeCnt());
+
+		d = BioFuzzDerivation.root(start, "S");
+		for(int i = 0; i < 8; i++) {
+			d = BioFuzzDerivation.join(d.terminal(start, 1, i), d.terminal(start, 2, i));
+		}
+		List<String> trees = render(d.materialize(null, 0));
+		assertEquals(256, trees.size());
+		assertEquals(256, new HashSet<String>(trees).size());
+
+		// long derivations are walked without recursion
+		d = BioFuzzDerivation.root(start, "S");
+		for(int i = 0; i < 100000; i++) {
+			d = d.terminal(start, 1, i);
+		}
+		d = BioFuzzDerivation.join(d, d.up());
+		assertEquals(2, d.getAltCnt());
+		assertEquals(100001, d.materializeFirst(null, 0).doGetNodeCnt());
+		assertEquals(2, d.materialize(null, 0).size());
+	}
+
+	@Test
+	public void testMerge() {
+		BioFuzzAttackCfg start = sqlMgr.getAtackCfgMgr().getAttackCfgByKey("S");
+		assertNotNull(start);
+
+		for(boolean gss : new boolean [] {false, true}) {
+			BioFuzzStackMgr smgr = new BioFuzzStackMgr(gss);
+			BioFuzzTupleStack a = smgr.createAndGetStack("S", 0);
+			a.pushTuple(start, TagType.ROOT, 0);
+
+			BioFuzzTupleStack b = smgr.copyAndGetStack(a);
+			BioFuzzTupleStack c = smgr.copyAndGetStack(a);
+			b.pushTuple(start, TagType.TERMINAL, 1);
+			c.pushTuple(start, TagType.TERMINAL, 1);
+
+			assertEquals(b.getConfigHash(), c.getConfigHash());
+			assertTrue(b.hasSameConfig(c));
+			assertFalse(a.hasSameConfig(b));
+
+			c.nxtCur();
+			assertFalse(b.hasSameConfig(c));
+			c.setCur(b.getCur());
+
+			// c converged with b, so it is merged and its tree is kept
+			smgr.reduce();
+			assertEquals(2, smgr.getSize());
+			assertEquals(1, smgr.getMergedCnt());
+			assertEquals(2, b.getParseTrees().size());
+
+			// the merged stack is reused for the next fork
+			BioFuzzTupleStack d = smgr.copyAndGetStack(b);
+			assertSame(c, d);
+			assertEquals(1, smgr.getReuseCnt());
+			assertTrue(d.hasSameConfig(b));
+			assertEquals(2, d.getParseTrees().size());
+			d.rollback();
+			assertEquals(0, d.getSize());
+			assertEquals(2, b.getSize());
+			
+			// a sink takes over discarded stacks and gives back unused ones
+			d.changeStatus(BioFuzzParsingStatus.INVALID);
+			smgr.reduce();
+			smgr.addAll(smgr.createSink(4));
+			BioFuzzStackMgr sink = smgr.createSink(4);
+			assertSame(d, sink.copyAndGetStack(b));
+			assertEquals(1, sink.getReuseCnt());
+			assertNotSame(d, smgr.createSink(4).copyAndGetStack(b));
+			smgr.addAll(sink);
+			assertEquals(2, smgr.getReuseCnt());
+			assertEquals(b.getCfg(1), d.getCfg(1));
+			assertEquals(b.getLfr(1), d.getLfr(1));
+		}
+	}
+
+	private static boolean compareMergeModes(BioFuzzMgr mgr, String [] inputs) {
+		BioFuzzParserConfig config = mgr.getParserConfig();
+		boolean dropped = false;
+		
+		for(boolean gss : new boolean [] {false, true}) {
+			config.setGss(gss);
+			for(String s : inputs) {
+				config.setMergeMode(BioFuzzMergeMode.OFF);
+				List<String> off = render(mgr.buildTrees(s));
+				config.setMergeMode(BioFuzzMergeMode.DROP);
+				List<String> drop = render(mgr.buildTrees(s));
+				config.setMergeMode(BioFuzzMergeMode.MERGE);
+				List<String> merge = render(mgr.buildTrees(s));
+				
+				// merging only changes the order of the trees
+				assertEquals(off, merge);
+				
+				// dropping keeps at least one tree of each configuration
+				assertEquals(off.isEmpty(), drop.isEmpty());
+				assertTrue(off.containsAll(drop));
+				assertTrue(drop.size() <= off.size());
+				dropped |= drop.size() < off.size();
+			}
+		}
+		config.setGss(false);
+		return dropped;
+	}
+
+	@Test
+	public void testMergeModes() {
+		assertTrue(compareMergeModes(sqlMgr, sqlQueries));
+		compareMergeModes(mathMgr, mathExprs);
+	}
+
+}
@@ -0,0 +1,131 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.cfg.BioFuzzAttackTag.TagType;
+import org.biofuzztk.cfg.BioFuzzGrammarNormalizer;
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.components.tokenizer.BioFuzzTokenizer;
+import org.biofuzztk.ptree.BioFuzzParseNode;
+import org.biofuzztk.ptree.BioFuzzParseTree;
+
+public class TestBioFuzzLeftRecursion {
+
+	final static Logger logger = LoggerFactory.getLogger(TestBioFuzzLeftRecursion.class);
+
+	/**
+	 * 
+	 * Returns the structure of a parse-tree, e.g. A(B(w) x).
+	 * 
+	 */
+	private static String shape(BioFuzzParseTree tree, BioFuzzParseNode node) {
+		if(node.getAtagType() != TagType.NON_TERMINAL && node.getAtagType() != TagType.ROOT)
+			return tree.getTokLst().get(node.getTokIdx());
+
+		String s = node.getAtagName() + "(";
+		for(int i = 0; i < node.getChildCnt(); i++) {
+			s += (i > 0 ? " " : "") + shape(tree, node.getChildren().get(i));
+		}
+		return s + ")";
+	}
+
+	/**
+	 * 
+	 * Returns the structure of all complete parse-trees of s.
+	 * 
+	 */
+	private static List<String> shapes(BioFuzzMgr mgr, String s) {
+		return shapes(mgr, mgr.buildTrees(s));
+	}
+	
+	private static List<String> shapes(BioFuzzMgr mgr, Iterable<BioFuzzParseTree> trees) {
+		List<String> res = new ArrayList<String>();
+		for(BioFuzzParseTree t : trees) {
+			mgr.validate(t);
+			if(t.getVal())
+				res.add(shape(t, t.getRootNode()));
+		}
+		Collections.sort(res);
+		return res;
+	}
+
+	@Test
+	public void testLeftRecursion() {
+		BioFuzzMgr mgr = new BioFuzzMgr("src/main/resources/leftrec.xml", new BioFuzzTokenizer() {
+			@Override
+			public String[] tokenize(String s) {
+				return (s + " $").split(" ");
+			}
+		});
+
+		assertEquals(new TreeSet<String>(Arrays.asList("A", "B")), 
+				BioFuzzGrammarNormalizer.getLeftRecursiveRules(mgr.getAtackCfgMgr()));
+		assertTrue(mgr.normalizeGrammar().contains("B"));
+		assertTrue(BioFuzzGrammarNormalizer.getLeftRecursiveRules(mgr.getAtackCfgMgr()).isEmpty());
+
+		assertEquals(Arrays.asList("S(A(y))"), shapes(mgr, "y"));
+		assertEquals(Arrays.asList("S(A(B(w) x))"), shapes(mgr, "w x"));
+		assertEquals(Arrays.asList("S(A(B(A(y) z) x))"), shapes(mgr, "y z x"));
+		assertEquals(Arrays.asList("S(A(B(A(B(A(B(w) x) z) x) z) x))"), shapes(mgr, "w x z x z x"));
+		assertTrue(shapes(mgr, "w x z").isEmpty());
+		assertEquals(mgr.buildTrees("w x z x").size(), mgr.buildForest("w x z x").getTreeCnt());
+		assertEquals(shapes(mgr, "w x z x z x"), shapes(mgr, mgr.buildForest("w x z x z x")));
+
+		// term -> term operator term is directly left recursive
+		BioFuzzMgr math = new BioFuzzMgr("src/main/resources/math.xml", new BioFuzzTokenizer() {
+			@Override
+			public String[] tokenize(String s) {
+				return (s.replaceAll("(.)", "$1 ") + "$").split(" ");
+			}
+		});
+
+		assertTrue(math.normalizeGrammar().contains("term"));
+		List<String> trees = shapes(math, "1+2+3");
+		logger.debug("left recursion: " + trees);
+		assertEquals(Arrays.asList(
+				"S(term(term(number(1)) operator(+) term(term(number(2)) operator(+) term(number(3)))))",
+				"S(term(term(term(number(1)) operator(+) term(number(2))) operator(+) term(number(3))))"), trees);
+		assertEquals(1, shapes(math, "(1-2)*3").size());
+		assertEquals(trees, shapes(math, math.buildForest("1+2+3")));
+
+		// the rewritten production rules work in all parser modes
+		math.getParserConfig().setMemo(true);
+		assertEquals(trees, shapes(math, "1+2+3"));
+		math.getParserConfig().setMemo(false);
+		math.getParserConfig().setGss(true);
+		assertEquals(trees, shapes(math, "1+2+3"));
+		math.getParserConfig().setGss(false);
+	}
+
+}
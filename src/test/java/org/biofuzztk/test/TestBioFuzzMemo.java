@@ -0,0 +1,161 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.biofuzztk.test.BioFuzzTestUtils.mathExprs;
+import static org.biofuzztk.test.BioFuzzTestUtils.render;
+import static org.biofuzztk.test.BioFuzzTestUtils.sqlQueries;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Vector;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.components.parser.BioFuzzMemoTable;
+import org.biofuzztk.components.parser.BioFuzzParser;
+import org.biofuzztk.components.parser.BioFuzzParserConfig;
+import org.biofuzztk.components.parser.BioFuzzParsingStatus;
+import org.biofuzztk.components.tokenizer.BioFuzzSQLTokenizer;
+import org.biofuzztk.components.tokenizer.BioFuzzTokenizer;
+
+public class TestBioFuzzMemo {
+
+	private static BioFuzzMgr sqlMgr;
+	private static BioFuzzMgr mathMgr;
+	final static Logger logger = LoggerFactory.getLogger(TestBioFuzzMemo.class);
+
+	@BeforeClass
+	public static void testParser() {
+		sqlMgr = BioFuzzTestUtils.createSqlMgr();
+		mathMgr = BioFuzzTestUtils.createMathMgr();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		sqlMgr.shutdown();
+		mathMgr.shutdown();
+	}
+
+	private static void compareMemo(BioFuzzMgr mgr, String [] inputs) {
+		for(String s : inputs) {
+			List<String> classic = render(mgr.buildTrees(s));
+			mgr.getParserConfig().setMemo(true);
+			List<String> memo = render(mgr.buildTrees(s));
+			mgr.getParserConfig().setGss(true);
+			List<String> both = render(mgr.buildTrees(s));
+			mgr.getParserConfig().setGss(false);
+			mgr.getParserConfig().setMemo(false);
+
+			logger.debug("classic: " + classic.size() + " memo: " + memo.size() + " for " + s);
+			assertEquals(classic, memo);
+			assertEquals(classic, both);
+		}
+	}
+
+	@Test
+	public void testMemo() {
+		BioFuzzMemoTable memo = sqlMgr.getParser().getMemoTable();
+		long hits = memo.getHitCnt();
+
+		compareMemo(sqlMgr, sqlQueries);
+		compareMemo(mathMgr, mathExprs);
+
+		logger.debug("memo " + memo.toString() + " hit rate: " + memo.getHitRate());
+		assertTrue(memo.getHitCnt() > hits);
+	}
+
+	private static String chain(String stmt, int n) {
+		StringBuilder sb = new StringBuilder(stmt);
+		for(int i = 1; i < n; i++) {
+			sb.append(" ; ").append(stmt);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 
+	 * Sub-parses are computed on a work stack, so long chains of
+	 * right-recursive statements do not overflow the Java stack. Stacks 
+	 * that grafted a sub-parse wait for the iterations the sub-parse took,
+	 * so the iteration limit cuts the same inputs as in the classic mode.
+	 * 
+	 */
+	@Test
+	public void testLongInput() {
+		BioFuzzTokenizer tokenizer = new BioFuzzSQLTokenizer();
+		String stmt = "SELECT a FROM b";
+		
+		BioFuzzParserConfig config = new BioFuzzParserConfig(20, BioFuzzParsingStatus.FINISHED, 400);
+		BioFuzzParser parser = new BioFuzzParser(sqlMgr.getAtackCfgMgr(), config, tokenizer);
+		int cut = 0;
+		for(int n = 1; n <= 40; n += 3) {
+			String s = chain(stmt, n);
+			List<String> classic = render(parser.buildTrees(s));
+			config.setMemo(true);
+			List<String> memo = render(parser.buildTrees(s));
+			config.setMemo(false);
+			
+			assertEquals(classic, memo);
+			if(classic.isEmpty())
+				cut++;
+		}
+		assertTrue(cut > 0 && cut < 14);
+		
+		// sub-parses must not recurse once per nested statement
+		config = new BioFuzzParserConfig(20, BioFuzzParsingStatus.FINISHED, 100000);
+		config.setGss(true);
+		final BioFuzzParser deep = new BioFuzzParser(sqlMgr.getAtackCfgMgr(), config, tokenizer);
+		final String s = chain(stmt, 300);
+		List<String> classic = render(deep.buildTrees(s));
+		config.setMemo(true);
+		
+		final List<List<String>> memo = new Vector<List<String>>();
+		final List<Throwable> errors = new Vector<Throwable>();
+		Thread t = new Thread(null, new Runnable() {
+			public void run() {
+				try {
+					memo.add(render(deep.buildTrees(s)));
+				} catch(Throwable e) {
+					errors.add(e);
+				}
+			}
+		}, "memo", 256 * 1024);
+		t.start();
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			fail();
+		}
+		
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(1, classic.size());
+		assertEquals(classic, memo.get(0));
+	}
+
+}
@@ -0,0 +1,85 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.biofuzztk.test.BioFuzzTestUtils.sqlQueries;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.components.parser.BioFuzzParseStats;
+import org.biofuzztk.components.parser.BioFuzzParserMetrics;
+import org.biofuzztk.ptree.BioFuzzParseTree;
+
+public class TestBioFuzzMetrics {
+
+	final static Logger logger = LoggerFactory.getLogger(TestBioFuzzMetrics.class);
+
+	@Test
+	public void testMetrics() throws Exception {
+		BioFuzzMgr mgr = BioFuzzTestUtils.createSqlMgr();
+		
+		mgr.buildTrees(sqlQueries[0]);
+		assertNull(mgr.getLastParseStats());
+		
+		BioFuzzParserMetrics metrics = new BioFuzzParserMetrics();
+		mgr.getParserConfig().setMetrics(metrics);
+		
+		for(String s : sqlQueries) {
+			List<BioFuzzParseTree> trees = mgr.buildTrees(s);
+			BioFuzzParseStats stats = mgr.getLastParseStats();
+			logger.debug("stats: " + stats);
+			assertNotNull(stats);
+			assertTrue(stats.getIterCnt() > 0);
+			assertTrue(stats.getForkCnt() > 0);
+			assertTrue(stats.getPeakCnt() > 0);
+			assertTrue(stats.getReuseCnt() > 0);
+			assertEquals(trees == null ? 0 : trees.size(), stats.getTreeCnt());
+		}
+		assertEquals(sqlQueries.length, metrics.getParseCnt());
+		assertTrue(metrics.getIterCnt() > 0);
+		
+		assertTrue(metrics.register("test"));
+		try {
+			Object cnt = ManagementFactory.getPlatformMBeanServer().getAttribute(metrics.getObjectName(), "ParseCnt");
+			assertEquals(sqlQueries.length, ((Long)cnt).longValue());
+		} finally {
+			metrics.unregister();
+		}
+		
+		metrics.reset();
+		assertEquals(0, metrics.getParseCnt());
+		mgr.getParserConfig().setMetrics(null);
+		mgr.buildTrees(sqlQueries[0]);
+		assertNull(mgr.getLastParseStats());
+		mgr.shutdown();
+	}
+
+}
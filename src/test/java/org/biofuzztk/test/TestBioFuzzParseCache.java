@@ -0,0 +1,195 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.biofuzztk.test.BioFuzzTestUtils.render;
+import static org.biofuzztk.test.BioFuzzTestUtils.sqlQueries;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.components.parser.BioFuzzParseCache;
+import org.biofuzztk.components.parser.BioFuzzParseStats;
+import org.biofuzztk.components.parser.BioFuzzParserMetrics;
+import org.biofuzztk.components.parser.BioFuzzProgressScorer;
+import org.biofuzztk.ptree.BioFuzzParseNode;
+import org.biofuzztk.ptree.BioFuzzParseTree;
+
+public class TestBioFuzzParseCache {
+
+	private static BioFuzzMgr sqlMgr;
+
+	@BeforeClass
+	public static void testParser() {
+		sqlMgr = BioFuzzTestUtils.createSqlMgr();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		sqlMgr.shutdown();
+	}
+
+	@Test
+	public void testParseCache() {
+		BioFuzzMgr mgr = BioFuzzTestUtils.createSqlMgr();
+		BioFuzzParseCache cache = new BioFuzzParseCache(2);
+		mgr.setParseCache(cache);
+		
+		List<String> expected = render(sqlMgr.buildTrees(sqlQueries[0]));
+		assertEquals(expected, render(mgr.buildTrees(sqlQueries[0])));
+		assertEquals(1, cache.getMissCnt());
+		assertEquals(1, cache.getSize());
+		
+		// modifying a returned tree does not touch the cached one
+		List<BioFuzzParseTree> trees = mgr.buildTrees(sqlQueries[0]);
+		assertEquals(1, cache.getHitCnt());
+		BioFuzzParseNode root = trees.get(0).getRootNode();
+		root.removeChild(root.getChildren().get(0));
+		assertEquals(expected, render(mgr.buildTrees(sqlQueries[0])));
+		assertEquals(2, cache.getHitCnt());
+		
+		// the least recently used entry is evicted
+		mgr.buildTrees(sqlQueries[1]);
+		mgr.buildTrees(sqlQueries[0]);
+		mgr.buildTrees(sqlQueries[2]);
+		assertEquals(1, cache.getEvictCnt());
+		mgr.buildTrees(sqlQueries[0]);
+		assertEquals(4, cache.getHitCnt());
+		mgr.buildTrees(sqlQueries[1]);
+		assertEquals(4, cache.getMissCnt());
+		
+		// with FIFO the oldest entry is evicted even if it was used
+		cache = new BioFuzzParseCache(2, BioFuzzParseCache.Policy.FIFO);
+		mgr.setParseCache(cache);
+		mgr.buildTrees(sqlQueries[0]);
+		mgr.buildTrees(sqlQueries[1]);
+		mgr.buildTrees(sqlQueries[0]);
+		mgr.buildTrees(sqlQueries[2]);
+		mgr.buildTrees(sqlQueries[0]);
+		assertEquals(1, cache.getHitCnt());
+		assertEquals(4, cache.getMissCnt());
+		
+		mgr.setParseCache(null);
+		assertEquals(expected, render(mgr.buildTrees(sqlQueries[0])));
+	}
+
+	/**
+	 * 
+	 * Cache hits and misses are counted in the stats and metrics, and 
+	 * entries of other parser settings are not reused.
+	 * 
+	 */
+	@Test
+	public void testParseCacheStats() {
+		BioFuzzMgr mgr = BioFuzzTestUtils.createSqlMgr();
+		BioFuzzParserMetrics metrics = new BioFuzzParserMetrics();
+		mgr.getParserConfig().setMetrics(metrics);
+		BioFuzzParseCache cache = new BioFuzzParseCache(8);
+		mgr.setParseCache(cache);
+		
+		List<BioFuzzParseTree> trees = mgr.buildTrees(sqlQueries[0]);
+		BioFuzzParseStats stats = mgr.getLastParseStats();
+		assertEquals(0, stats.getCacheHitCnt());
+		assertEquals(1, stats.getCacheMissCnt());
+		assertTrue(stats.getIterCnt() > 0);
+		
+		mgr.buildTrees(sqlQueries[0]);
+		assertNotSame(stats, mgr.getLastParseStats());
+		stats = mgr.getLastParseStats();
+		assertEquals(1, stats.getCacheHitCnt());
+		assertEquals(0, stats.getCacheMissCnt());
+		assertEquals(0, stats.getIterCnt());
+		assertEquals(trees.size(), stats.getTreeCnt());
+		assertEquals(1, metrics.getCacheHitCnt());
+		assertEquals(1, metrics.getCacheMissCnt());
+		assertEquals(2, metrics.getParseCnt());
+		
+		// other settings use other entries
+		String fingerprint = mgr.getParser().getFingerprint();
+		mgr.getParserConfig().setBeamWidth(1);
+		assertFalse(fingerprint.equals(mgr.getParser().getFingerprint()));
+		List<String> expected = render(mgr.getParser().buildTrees(sqlQueries[0]));
+		assertEquals(expected, render(mgr.buildTrees(sqlQueries[0])));
+		assertEquals(1, mgr.getLastParseStats().getCacheMissCnt());
+		assertEquals(2, cache.getSize());
+		
+		mgr.getParserConfig().setBeamWidth(0);
+		assertEquals(fingerprint, mgr.getParser().getFingerprint());
+		assertEquals(render(trees), render(mgr.buildTrees(sqlQueries[0])));
+		assertEquals(1, mgr.getLastParseStats().getCacheHitCnt());
+		assertEquals(2, metrics.getCacheHitCnt());
+		assertEquals(2, metrics.getCacheMissCnt());
+	}
+	
+	/**
+	 * 
+	 * Parsers of equal grammars and settings share the entries of a cache,
+	 * and the parse-trees of a hit can be reparsed from their snapshots.
+	 * 
+	 */
+	@Test
+	public void testParseCacheShared() {
+		BioFuzzMgr mgr = BioFuzzTestUtils.createSqlMgr();
+		BioFuzzMgr other = BioFuzzTestUtils.createSqlMgr();
+		BioFuzzMgr math = BioFuzzTestUtils.createMathMgr();
+		
+		// the fingerprint does not depend on the identity of the grammar or the scorer
+		other.getParserConfig().setScorer(new BioFuzzProgressScorer());
+		assertEquals(mgr.getParser().getFingerprint(), other.getParser().getFingerprint());
+		assertFalse(mgr.getParser().getFingerprint().equals(math.getParser().getFingerprint()));
+		other.getParserConfig().setScorer(new BioFuzzProgressScorer(0.5));
+		assertFalse(mgr.getParser().getFingerprint().equals(other.getParser().getFingerprint()));
+		other.getParserConfig().setScorer(new BioFuzzProgressScorer());
+		
+		BioFuzzParseCache cache = new BioFuzzParseCache(8);
+		mgr.setParseCache(cache);
+		other.setParseCache(cache);
+		mgr.getParserConfig().setSnapshots(true);
+		other.getParserConfig().setSnapshots(true);
+		
+		String s = "SELECT * from tab WHERE 1 = 1";
+		List<BioFuzzParseTree> trees = mgr.buildTrees(s);
+		assertEquals(1, cache.getMissCnt());
+		List<BioFuzzParseTree> hit = other.buildTrees(s);
+		assertEquals(1, cache.getHitCnt());
+		assertEquals(render(trees), render(hit));
+		assertEquals(hit.size(), other.getParser().getStateCnt());
+		
+		BioFuzzParseTree tree = hit.get(0);
+		tree.getTokLst().getTokLst().set(3, "users");
+		other.setParseCache(null);
+		assertEquals(render(other.buildTrees("SELECT * from users WHERE 1 = 1")), 
+				render(other.reparse(tree, 3)));
+		
+		mgr.shutdown();
+		other.shutdown();
+		math.shutdown();
+	}
+
+}
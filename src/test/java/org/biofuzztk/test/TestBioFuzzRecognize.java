@@ -0,0 +1,119 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.biofuzztk.test.BioFuzzTestUtils.mathExprs;
+import static org.biofuzztk.test.BioFuzzTestUtils.render;
+import static org.biofuzztk.test.BioFuzzTestUtils.sqlQueries;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.components.parser.BioFuzzParser;
+import org.biofuzztk.components.parser.BioFuzzParserConfig;
+import org.biofuzztk.components.parser.BioFuzzParsingStatus;
+import org.biofuzztk.components.tokenizer.BioFuzzSQLTokenizer;
+import org.biofuzztk.ptree.BioFuzzParseTree;
+
+public class TestBioFuzzRecognize {
+
+	private static BioFuzzMgr sqlMgr;
+	private static BioFuzzMgr mathMgr;
+
+	@BeforeClass
+	public static void testParser() {
+		sqlMgr = BioFuzzTestUtils.createSqlMgr();
+		mathMgr = BioFuzzTestUtils.createMathMgr();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		sqlMgr.shutdown();
+		mathMgr.shutdown();
+	}
+
+	/**
+	 * 
+	 * buildTrees() keeps its notion of VALID: a stack is only VALID if it 
+	 * was reduced completely. Only recognize() and buildFirstTree() accept
+	 * stacks that can be completed without consuming further tokens.
+	 * 
+	 */
+	@Test
+	public void testValidStatus() {
+		for(int mode = 0; mode < 4; mode++) {
+			BioFuzzParserConfig config = new BioFuzzParserConfig(20, BioFuzzParsingStatus.VALID, 400);
+			config.setGss((mode & 1) != 0);
+			config.setMemo((mode & 2) != 0);
+			
+			BioFuzzParser sql = new BioFuzzParser(sqlMgr.getAtackCfgMgr(), config, 
+					new BioFuzzSQLTokenizer());
+			BioFuzzParser math = new BioFuzzParser(mathMgr.getAtackCfgMgr(), config, 
+					BioFuzzTestUtils.createMathTokenizer());
+			
+			for(String s : sqlQueries) {
+				assertNull(sql.buildTrees(s));
+				assertEquals(!s.equals("UPDATE schoolinfo SET"), sql.buildFirstTree(s) != null);
+			}
+			for(String s : mathExprs) {
+				assertNull(math.buildTrees(s));
+				assertEquals(!s.endsWith("+"), math.buildFirstTree(s) != null);
+			}
+		}
+	}
+
+	@Test
+	public void testRecognize() {
+		String [] invalid = {
+			"UPDATE schoolinfo SET",
+			"SELECT * from",
+			"DELETE x"
+		};
+
+		for(int mode = 0; mode < 4; mode++) {
+			sqlMgr.getParserConfig().setGss((mode & 1) != 0);
+			sqlMgr.getParserConfig().setMemo((mode & 2) != 0);
+
+			for(String s : sqlQueries) {
+				if(s.equals("UPDATE schoolinfo SET"))
+					continue;
+				assertTrue(sqlMgr.recognize(s));
+
+				BioFuzzParseTree first = sqlMgr.buildFirstTree(s);
+				assertNotNull(first);
+				assertTrue(render(sqlMgr.buildTrees(s)).contains(first.toString()));
+			}
+			for(String s : invalid) {
+				assertFalse(sqlMgr.recognize(s));
+			}
+		}
+		sqlMgr.getParserConfig().setGss(false);
+		sqlMgr.getParserConfig().setMemo(false);
+	}
+
+}
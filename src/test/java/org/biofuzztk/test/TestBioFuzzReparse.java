@@ -0,0 +1,176 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.biofuzztk.test.BioFuzzTestUtils.render;
+import static org.biofuzztk.test.BioFuzzTestUtils.sqlQueries;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Vector;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.components.parser.BioFuzzParser;
+import org.biofuzztk.components.parser.BioFuzzParserConfig;
+import org.biofuzztk.components.parser.BioFuzzParsingStatus;
+import org.biofuzztk.components.tokenizer.BioFuzzSQLTokenizer;
+import org.biofuzztk.ptree.BioFuzzParseTree;
+
+public class TestBioFuzzReparse {
+
+	private static BioFuzzMgr sqlMgr;
+	private static BioFuzzMgr mathMgr;
+	final static Logger logger = LoggerFactory.getLogger(TestBioFuzzReparse.class);
+
+	@BeforeClass
+	public static void testParser() {
+		sqlMgr = BioFuzzTestUtils.createSqlMgr();
+		mathMgr = BioFuzzTestUtils.createMathMgr();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		sqlMgr.shutdown();
+		mathMgr.shutdown();
+	}
+
+	private static void compareReparse(BioFuzzMgr mgr, String s, int idx, String tok, String edited) {
+		mgr.getParserConfig().setSnapshots(true);
+		List<BioFuzzParseTree> trees = mgr.buildTrees(s);
+		mgr.getParserConfig().setSnapshots(false);
+		assertNotNull(trees);
+		assertFalse(trees.isEmpty());
+
+		BioFuzzParseTree tree = trees.get(0);
+		tree.getTokLst().getTokLst().set(idx, tok);
+
+		List<String> reparsed = render(mgr.reparse(tree, idx));
+		List<String> full = render(mgr.buildTrees(edited));
+
+		logger.debug("reparsed: " + reparsed.size() + " full: " + full.size() + " for " + edited);
+		assertEquals(full, reparsed);
+	}
+
+	@Test
+	public void testReparse() {
+		compareReparse(sqlMgr, "SELECT * from tab WHERE 1 = 1", 3, "users", "SELECT * from users WHERE 1 = 1");
+		compareReparse(sqlMgr, "SELECT * from tab WHERE 1 = 1", 5, "x", "SELECT * from tab WHERE x = 1");
+		compareReparse(sqlMgr, "DELETE FROM posts WHERE id = 1", 2, "comments", "DELETE FROM comments WHERE id = 1");
+		compareReparse(mathMgr, "1+4*(5+2)/10-4", 2, "7", "1+7*(5+2)/10-4");
+		compareReparse(mathMgr, "1+4*(5+2)/10-4", 11, "+", "1+4*(5+2)/10+4");
+
+		// parse-trees without snapshots are reparsed from scratch
+		BioFuzzParseTree tree = mathMgr.buildTrees("5-2/(1+3)-4").get(0);
+		tree.getTokLst().getTokLst().set(0, "6");
+		assertEquals(render(mathMgr.buildTrees("6-2/(1+3)-4")), render(mathMgr.reparse(tree, 0)));
+	}
+
+	/**
+	 * 
+	 * A reparse is bounded by the same amount of iterations as a full parse 
+	 * and snapshots cannot be combined with memoization.
+	 * 
+	 */
+	@Test
+	public void testReparseIterations() {
+		String s = "1+4*(5+2)/10-4";
+		int checked = 0;
+		for(int maxIter = 1; maxIter <= 80; maxIter++) {
+			BioFuzzParserConfig config = new BioFuzzParserConfig(20, BioFuzzParsingStatus.FINISHED, maxIter);
+			config.setSnapshots(true);
+			BioFuzzParser parser = new BioFuzzParser(mathMgr.getAtackCfgMgr(), config, 
+					BioFuzzTestUtils.createMathTokenizer());
+			
+			List<BioFuzzParseTree> trees = parser.buildTrees(s);
+			if(trees == null)
+				continue;
+			
+			// the edited token list is longer and needs more iterations, the
+			// last token is the end marker
+			BioFuzzParseTree tree = trees.get(0);
+			List<String> toks = tree.getTokLst().getTokLst();
+			toks.add(13, "*");
+			toks.add(14, "3");
+			assertEquals(render(parser.buildTrees(s + "*3")), render(parser.reparse(tree, 13)));
+			checked++;
+		}
+		assertTrue(checked > 0);
+		
+		BioFuzzParserConfig config = new BioFuzzParserConfig(20, BioFuzzParsingStatus.FINISHED, 400);
+		config.setSnapshots(true);
+		try {
+			config.setMemo(true);
+			fail("snapshots were combined with memoization");
+		} catch(IllegalStateException e) {
+			assertFalse(config.isMemo());
+		}
+		config.setSnapshots(false);
+		config.setMemo(true);
+		try {
+			config.setSnapshots(true);
+			fail("memoization was combined with snapshots");
+		} catch(IllegalStateException e) {
+			assertFalse(config.isSnapshots());
+		}
+	}
+	
+	/**
+	 * 
+	 * The parser state of a parse-tree must not keep the parse-tree alive.
+	 * 
+	 */
+	@Test
+	public void testReparseStatesDrain() throws InterruptedException {
+		for(boolean gss : new boolean [] {false, true}) {
+			BioFuzzParserConfig config = new BioFuzzParserConfig(20, BioFuzzParsingStatus.FINISHED, 400);
+			config.setSnapshots(true);
+			config.setGss(gss);
+			BioFuzzParser parser = new BioFuzzParser(sqlMgr.getAtackCfgMgr(), config, 
+					new BioFuzzSQLTokenizer());
+			
+			List<BioFuzzParseTree> trees = new Vector<BioFuzzParseTree>();
+			for(String s : sqlQueries) {
+				List<BioFuzzParseTree> lst = parser.buildTrees(s);
+				if(lst != null)
+					trees.addAll(lst);
+			}
+			assertEquals(trees.size(), parser.getStateCnt());
+			
+			trees = null;
+			for(int i = 0; i < 50 && parser.getStateCnt() > 0; i++) {
+				System.gc();
+				Thread.sleep(20);
+			}
+			assertEquals(0, parser.getStateCnt());
+		}
+	}
+
+}
@@ -0,0 +1,112 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.biofuzztk.components.tokenizer.BioFuzzRegexSQLTokenizer;
+import org.biofuzztk.components.tokenizer.BioFuzzSQLTokenizer;
+import org.biofuzztk.components.tokenizer.BioFuzzTokenizer;
+
+public class TestBioFuzzSQLTokenizer {
+
+	final static Logger logger = LoggerFactory.getLogger(TestBioFuzzSQLTokenizer.class);
+
+	static String [] queries = {
+		"SELECT * from tab_user",
+		"SELECT * from tab WHERE 1 = 1",
+		"SELECT nick FROM players,games WHERE playerID=blackPlayer AND gameID=204398",
+		"INSERT INTO tab_test VALUES('a',4)",
+		"DELETE FROM posts WHERE id = 1",
+		"UPDATE schoolinfo SET",
+		"UPDATE schoolinfo SET schoolname = \"School Name\", address = '1,Street', " +
+				"sitetext = '', fpoint = '0.0' where schoolname = 'School Name' LIMIT 1",
+		"UPDATE schoolinfo SET schoolname = \" 904995 CONCAT(CHAR(34)) WHERE 808 =",
+		"SELECT count(*) FROM games WHERE gameID <> 3 ORDER BY name DESC;",
+		"SELECT NOW() + 1, md5( 'x' ), char( 65 ) FROM t order  by description",
+		"SELECT a FROM t WHERE b = 'line\nbreak' AND c = `d`;;",
+		"'a''b'",
+		"",
+		"\n"
+	};
+
+	// fragments that trigger the special cases of the regular expressions
+	static String [] fragments = {
+		"select", "*", "from", "t", " ", "  ", ",", ", ", "(", ")", "=", "<", ">", 
+		"< >", "now()", "NoW ( )", "count", "count(*)", "+count(*)", "char(65)", 
+		"CHAR ( 12 )", "concat(", "MD5 (", "order", "by", "orderby", "border", 
+		"byte", "desc", "description", ";", "'", "\"", "`", "'abc'", "''", "\n", 
+		"\t", "+", "12", "varchar(10)", "nownow"
+	};
+
+	private static void compare(BioFuzzTokenizer legacy, BioFuzzTokenizer lexer, String s) {
+		String [] expected = legacy.tokenize(s);
+		String [] actual = lexer.tokenize(s);
+		if(!Arrays.equals(expected, actual)) {
+			fail("different tokens for " + s + ": " + Arrays.toString(expected) + 
+					" vs. " + Arrays.toString(actual));
+		}
+	}
+
+	@Test
+	public void testDifferential() {
+		BioFuzzTokenizer legacy = new BioFuzzRegexSQLTokenizer();
+		BioFuzzTokenizer lexer = new BioFuzzSQLTokenizer();
+
+		for(String s : queries) {
+			compare(legacy, lexer, s);
+		}
+
+		Random rand = new Random(42);
+		for(int i = 0; i < 2000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int len = rand.nextInt(12);
+			for(int j = 0; j < len; j++) {
+				if(rand.nextInt(4) == 0)
+					sb.append((char)(' ' + rand.nextInt(95)));
+				else
+					sb.append(fragments[rand.nextInt(fragments.length)]);
+				if(rand.nextBoolean())
+					sb.append(' ');
+			}
+			compare(legacy, lexer, sb.toString());
+		}
+	}
+
+	@Test
+	public void testTokens() {
+		List<String> toks = new ArrayList<String>(Arrays.asList(new BioFuzzSQLTokenizer().tokenize(
+				"SELECT count(*) FROM t WHERE a <> 'x y' ORDER BY b DESC")));
+		assertEquals(Arrays.asList("SELECT", "COUNT(*)", "FROM", "t", "WHERE", "a", "<>", 
+				"'", "x y", "'", "ORDERBY", "b", "DESC", "", "$"), toks);
+	}
+
+}
@@ -0,0 +1,107 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.biofuzztk.test.BioFuzzTestUtils.render;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.components.parser.BioFuzzStreamParser;
+import org.biofuzztk.ptree.BioFuzzParseTree;
+
+public class TestBioFuzzStream {
+
+	private static BioFuzzMgr sqlMgr;
+
+	@BeforeClass
+	public static void testParser() {
+		sqlMgr = BioFuzzTestUtils.createSqlMgr();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		sqlMgr.shutdown();
+	}
+
+	@Test
+	public void testStream() {
+		String [] stmts = {
+			"SELECT * from tab_user",
+			"DELETE FROM posts WHERE id = 1",
+			"INSERT INTO tab_test VALUES('a;b',4)",
+			"SELECT * from tab WHERE 1 = 1"
+		};
+
+		String script = "";
+		for(String stmt : stmts) {
+			script += stmt + ";\n";
+		}
+
+		BioFuzzStreamParser sp = sqlMgr.parseStream(new StringReader(script), ';');
+		int i = 0;
+		while(sp.hasNext()) {
+			List<BioFuzzParseTree> trees = sp.next();
+			assertFalse(trees.isEmpty());
+			assertEquals(render(sqlMgr.buildTrees(stmts[i])), render(trees));
+			i++;
+		}
+		assertEquals(stmts.length, i);
+		assertEquals(stmts.length, sp.getStmtCnt());
+
+		// the same statements as a single token stream
+		List<String> toks = new ArrayList<String>();
+		for(String stmt : stmts) {
+			for(String tok : sqlMgr.getParser().tokenize(stmt)) {
+				if(!tok.equals("$"))
+					toks.add(tok);
+			}
+			toks.add(";");
+		}
+
+		sp = sqlMgr.parseStream(toks.iterator(), ";");
+		i = 0;
+		while(sp.hasNext()) {
+			List<BioFuzzParseTree> trees = sp.next();
+			assertEquals(render(sqlMgr.buildTrees(stmts[i])), render(trees));
+			i++;
+		}
+		assertEquals(stmts.length, i);
+
+		// statements that cannot be parsed yield no parse-trees
+		sp = sqlMgr.parseStream(Arrays.asList("DELETE", "x", ";", "$").iterator(), ";");
+		assertTrue(sp.hasNext());
+		List<BioFuzzParseTree> trees = sp.next();
+		assertTrue(trees.isEmpty());
+		assertFalse(sp.hasNext());
+	}
+
+}
@@ -0,0 +1,151 @@
+/** 
+ *  The BioFuzz Toolkit for input parsing/generation/modification of
+ *  structured input.
+ *  
+ *  Copyright (C) 2014 Julian Thome (frostisch@yahoo.de)
+ *  
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.biofuzztk.test;
+
+import static org.biofuzztk.test.BioFuzzTestUtils.render;
+import static org.biofuzztk.test.BioFuzzTestUtils.sqlQueries;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.biofuzztk.cfg.BioFuzzSymbolTable;
+import org.biofuzztk.components.BioFuzzMgr;
+import org.biofuzztk.components.tokenizer.BioFuzzGrammarTokenizer;
+import org.biofuzztk.ptree.BioFuzzParseNode;
+import org.biofuzztk.ptree.BioFuzzParseTree;
+import org.biofuzztk.ptree.BioFuzzTokLst;
+import org.biofuzztk.ptree.BioFuzzTokStream;
+
+public class TestBioFuzzTokStream {
+
+	private static BioFuzzMgr sqlMgr;
+	private static BioFuzzMgr mathMgr;
+
+	@BeforeClass
+	public static void testParser() {
+		sqlMgr = BioFuzzTestUtils.createSqlMgr();
+		mathMgr = BioFuzzTestUtils.createMathMgr();
+	}
+
+	@AfterClass
+	public static void shutdown() {
+		sqlMgr.shutdown();
+		mathMgr.shutdown();
+	}
+
+	private static void checkOffsets(BioFuzzParseNode node, String input) {
+		int start = node.getStart();
+		int end = node.getEnd();
+		if(!node.hasChildren() && start != BioFuzzTokStream.NO_OFFSET) {
+			assertEquals(node.getTok(), input.substring(start, end));
+		}
+		for(BioFuzzParseNode child : node.getChildren()) {
+			checkOffsets(child, input);
+			assertTrue(child.getStart() == BioFuzzTokStream.NO_OFFSET || child.getStart() >= start);
+			assertTrue(child.getEnd() <= end);
+		}
+	}
+
+	@Test
+	public void testTokStream() {
+		String q = "SELECT nick FROM players WHERE playerID=blackPlayer";
+		
+		// tokens of tokenizers without offsets are only located on request
+		BioFuzzMgr mgr = BioFuzzTestUtils.createSqlMgr();
+		BioFuzzParseNode root = mgr.getParser().buildTrees(q).get(0).getRootNode();
+		assertEquals(BioFuzzTokStream.NO_OFFSET, root.getStart());
+		
+		try {
+			sqlMgr.getParserConfig().setOffsets(true);
+			checkTokStream(q);
+		} finally {
+			sqlMgr.getParserConfig().setOffsets(false);
+		}
+		
+		// empty tokens are dropped without creating strings for them
+		BioFuzzTokStream t = new BioFuzzTokStream("select  b");
+		t.addRange(0, 6);
+		t.addRange(6, 6);
+		t.addRange(6, 8);
+		t.addRange(8, 9);
+		t.add("$");
+		assertEquals(Arrays.asList("select", "b", "$"), new BioFuzzTokLst(t).getTokLst());
+		assertEquals(8, t.getStart(1));
+		
+		// tokens are classified by their range in the input
+		BioFuzzSymbolTable table = sqlMgr.getAtackCfgMgr().getSymbolTable();
+		t = new BioFuzzTokStream("SELECT b");
+		t.addRange(0, 6);
+		t.addRange(7, 8);
+		assertEquals(table.lookup("select"), t.getSymbol(table, 0));
+		assertTrue(t.getSymbol(table, 0) != BioFuzzSymbolTable.NONE);
+		assertEquals(table.lookup("b"), t.getSymbol(table, 1));
+	}
+	
+	private static void checkTokStream(String q) {
+		for(String s : sqlQueries) {
+			String [] toks = sqlMgr.getParser().tokenize(s);
+			List<BioFuzzParseTree> trees = sqlMgr.getParser().buildTrees(s);
+			assertEquals(render(sqlMgr.getParser().buildTrees(toks)), render(trees));
+			if(trees == null)
+				continue;
+			for(BioFuzzParseTree tree : trees) {
+				checkOffsets(tree.getRootNode(), s);
+			}
+		}
+		
+		BioFuzzParseNode root = sqlMgr.getParser().buildTrees(q).get(0).getRootNode();
+		assertEquals(0, root.getStart());
+		assertEquals(q.length(), root.getEnd());
+		
+		BioFuzzTokStream t = sqlMgr.getParser().tokenizeStream("DELETE  FROM posts");
+		assertEquals(8, t.getStart(1));
+		assertEquals(12, t.getEnd(1));
+		assertEquals("FROM", t.get(1));
+		assertTrue(t.getSymbol(sqlMgr.getAtackCfgMgr().getSymbolTable(), 0) != BioFuzzSymbolTable.NONE);
+		assertEquals(BioFuzzTokStream.NO_OFFSET, t.getStart(t.size() - 1));
+		
+		// edited tokens no longer refer to the input
+		BioFuzzTokLst tokLst = new BioFuzzTokLst(t);
+		tokLst.insert(1, "*");
+		tokLst.replace(3, "tab");
+		assertEquals(0, tokLst.getStart(0));
+		assertEquals(8, tokLst.getStart(2));
+		assertEquals(BioFuzzTokStream.NO_OFFSET, tokLst.getStart(1));
+		assertEquals(BioFuzzTokStream.NO_OFFSET, tokLst.getStart(3));
+		assertEquals("DELETE * FROM tab", tokLst.getStrFromTokens());
+		assertEquals(12, new BioFuzzTokLst(tokLst).getEnd(2));
+		
+		BioFuzzGrammarTokenizer gt = new BioFuzzGrammarTokenizer(mathMgr.getAtackCfgMgr(), 
+				BioFuzzGrammarTokenizer.WHITESPACE, "'");
+		t = gt.tokenizeStream("12 * 'a b'");
+		assertEquals(Arrays.asList("12", "*", "'", "a b", "'", "$"), t);
+		assertEquals(6, t.getStart(3));
+		assertEquals(9, t.getEnd(3));
+	}
+
+}